@@ -0,0 +1,39 @@
+package com.example.scene.decodersystem.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * 基准共用的输入：仓库根目录下自带的 tshark JSON，以及和
+ * MessageProcessingServiceTests 一致的 wanted / enabledRaw 配置。
+ */
+final class BenchInputs {
+
+    private BenchInputs() {}
+
+    static final Set<String> WANTED = Set.of(
+            "nas-5gs_raw", "nas-5gs", "nr-rrc", "mac-nr", "mac-nr_raw", "ngap", "http2", "json.object");
+
+    static final Set<String> ENABLED_RAW = Set.of("nas-5gs_raw", "mac-nr_raw");
+
+    /** 相对路径按 -Dbench.dataDir（默认当前工作目录，即项目根）解析 */
+    static Path resolve(String file) {
+        Path base = Path.of(System.getProperty("bench.dataDir", "."));
+        Path p = base.resolve(file);
+        if (!Files.exists(p)) {
+            throw new IllegalStateException("bench input not found: " + p.toAbsolutePath());
+        }
+        return p;
+    }
+
+    static byte[] readAll(String file) {
+        try {
+            return Files.readAllBytes(resolve(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
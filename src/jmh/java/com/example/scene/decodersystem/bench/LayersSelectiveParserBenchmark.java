@@ -0,0 +1,64 @@
+package com.example.scene.decodersystem.bench;
+
+import com.example.procedure.streaming.layers.ChainsInspectConsumer;
+import com.example.procedure.streaming.layers.LayersSelectiveParser;
+import com.example.procedure.streaming.parser.RrcNasParseResult;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式解析链路基准：
+ *  - parsePackets：tshark JSON 字节流 -> 每包 chain 列表
+ *  - chainsInspectAccept：chain 列表 -> SignalingMessage（解析结果在 setup 里预先算好）
+ * 一次调用 = 完整跑一遍输入文件。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LayersSelectiveParserBenchmark {
+
+    @Param({"pcap_decode.json", "test.json", "gnb_capture.json", "gnb_capture_raw.json"})
+    public String file;
+
+    private byte[] data;
+    private List<List<RrcNasParseResult>> packets;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        data = BenchInputs.readAll(file);
+
+        List<List<RrcNasParseResult>> out = new ArrayList<>();
+        LayersSelectiveParser.parsePackets(new ByteArrayInputStream(data),
+                BenchInputs.WANTED, BenchInputs.ENABLED_RAW, out::add);
+        packets = out;
+    }
+
+    @Benchmark
+    public void parsePackets(PacketCounters counters, Blackhole bh) throws IOException {
+        LayersSelectiveParser.parsePackets(new ByteArrayInputStream(data),
+                BenchInputs.WANTED, BenchInputs.ENABLED_RAW, chains -> {
+                    counters.packets++;
+                    bh.consume(chains);
+                });
+        counters.bytes += data.length;
+    }
+
+    @Benchmark
+    public void chainsInspectAccept(PacketCounters counters, Blackhole bh) {
+        ChainsInspectConsumer consumer = new ChainsInspectConsumer(bh::consume);
+        for (List<RrcNasParseResult> chains : packets) {
+            consumer.accept(chains);
+        }
+        counters.packets += packets.size();
+        counters.bytes += data.length;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.scene.decodersystem.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 辅助计数：JMH 会把 OPERATIONS 类型的 public 字段按吞吐（/s）输出，
+ * 即 packets/sec 与 bytes/sec；分配率由 -prof gc 给出。
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class PacketCounters {
+
+    public long packets;
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        packets = 0;
+        bytes = 0;
+    }
+}
@@ -0,0 +1,418 @@
+package com.example.scene.decodersystem.bench;
+
+import ch.qos.logback.classic.Level;
+import com.example.procedure.archive.ProcedureArchiveWriter;
+import com.example.procedure.clock.EventTimeClock;
+import com.example.procedure.clock.EventTimeReplayer;
+import com.example.procedure.decrypt.AsyncDecryptClient;
+import com.example.procedure.decrypt.CountTracker;
+import com.example.procedure.decrypt.DecryptProperties;
+import com.example.procedure.decrypt.DecryptResultCache;
+import com.example.procedure.decrypt.DeferredDecryptQueue;
+import com.example.procedure.decrypt.KeyTrialEngine;
+import com.example.procedure.decrypt.LocalDecryptEngine;
+import com.example.procedure.expiry.ExpiryProperties;
+import com.example.procedure.expiry.ProcedureExpiry;
+import com.example.procedure.flow.FlowRegistry;
+import com.example.procedure.id.IdGenerator;
+import com.example.procedure.identity.IdentityProperties;
+import com.example.procedure.identity.UeBinder;
+import com.example.procedure.identity.UeIdentityCorrelator;
+import com.example.procedure.keyderivation.JavaKeyDerivationProvider;
+import com.example.procedure.model.MessageProcessingResult;
+import com.example.procedure.model.SignalingMessage;
+import com.example.procedure.rule.MessageCategoryClassifier;
+import com.example.procedure.rule.UeIdBinder;
+import com.example.procedure.rule.UeIdBinderProperties;
+import com.example.procedure.service.MsgProcessing_Service;
+import com.example.procedure.service.ProClassify_Service;
+import com.example.procedure.service.ProDispatcher_Service;
+import com.example.procedure.service.ProManager_Service;
+import com.example.procedure.service.UEContextService;
+import com.example.procedure.state.OnHeapStateBackend;
+import com.example.procedure.store.InMemoryProcedureStore;
+import com.example.procedure.streaming.layers.ChainsInspectConsumer;
+import com.example.procedure.streaming.layers.LayersSelectiveParser;
+import com.example.procedure.streaming.parser.RrcNasParseResult;
+import com.example.procedure.uecontext.UEContextCacheProperties;
+import com.example.procedure.wireshark.TsharkRunner;
+import com.example.procedure.wireshark.WiresharkProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 端到端离线回放基准（不是 JMH：要的是整条链路每个阶段的分布，不是单个方法的吞吐）。
+ *
+ *   tshark JSON（或 pcap，机器上有 tshark 时先转一次 JSON）
+ *     -> parse    LayersSelectiveParser.parsePackets     每包
+ *     -> inspect  ChainsInspectConsumer                  每包
+ *     -> bind     EventTimeReplayer + UeBinder           每条消息（不含下游）
+ *     -> process  MsgProcessing_Service.process          每条消息（分类、流程识别、解密、上下文）
+ *
+ * 状态全在本进程（OnHeapStateBackend）：流程 InMemoryProcedureStore、UE 上下文 / 映射在堆上、UeIdBinder 不写副本，
+ * 解密走 local。时钟是 EventTimeClock，计时器按报文时间触发，所以每轮回放结果一样（resultHash 可以对比）。
+ * 每轮都新建整条链路，预热轮只用来让 JIT 稳定，不计入结果。
+ *
+ * 运行（项目根目录，不需要网络 / Redis / tshark）：
+ *   mvn -B -Pjmh -DskipTests test-compile exec:exec@replay
+ *   mvn -B -Pjmh -DskipTests test-compile exec:exec@replay -Dreplay.args="--iterations 10 --json target/replay.json gnb_capture.json"
+ *
+ * 参数：[--warmup N] [--iterations N] [--lateness-ms N] [--single-ue ID] [--binder binder|correlator]
+ *       [--tshark PATH] [--json OUT] 文件...
+ * 文件相对路径按 -Dbench.dataDir 解析（同 BenchInputs），默认 gnb_capture.json。
+ * --single-ue：单 UE 的抓包（仓库里自带的几个都是）没有 SUPI，UeIdBinder 绑不上、全停在 pending，
+ * process 阶段就量不到；给了这个参数，没 ueId 的消息在进 binder 前先记到这个 UE 名下。
+ * --binder：补 ueId 用哪个实现（同 identity.binder），默认 binder = UeIdBinder，correlator = UeIdentityCorrelator。
+ */
+public final class ReplayBench {
+
+    private final int warmup;
+    private final int iterations;
+    private final long latenessMs;
+    private final String singleUe;
+    private final String binderImpl;
+    private final String tshark;
+    private final Path jsonOut;
+    private final List<String> files;
+
+    private ReplayBench(int warmup, int iterations, long latenessMs, String singleUe, String binderImpl, String tshark,
+                        Path jsonOut, List<String> files) {
+        this.warmup = warmup;
+        this.iterations = iterations;
+        this.latenessMs = latenessMs;
+        this.singleUe = singleUe;
+        this.binderImpl = binderImpl;
+        this.tshark = tshark;
+        this.jsonOut = jsonOut;
+        this.files = files;
+    }
+
+    public static void main(String[] args) throws Exception {
+        // 没有 logback 配置时默认 DEBUG，ProDispatcher 每条消息一行 info 会把结果全盖掉
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        parse(args).run();
+    }
+
+    private static ReplayBench parse(String[] args) {
+        int warmup = 3, iterations = 5;
+        long lateness = 2_000;
+        String singleUe = null;
+        String binder = "binder";
+        String tshark = null;
+        Path json = null;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            switch (a) {
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--iterations" -> iterations = Integer.parseInt(args[++i]);
+                case "--lateness-ms" -> lateness = Long.parseLong(args[++i]);
+                case "--single-ue" -> singleUe = args[++i];
+                case "--binder" -> binder = args[++i];
+                case "--tshark" -> tshark = args[++i];
+                case "--json" -> json = Path.of(args[++i]);
+                default -> {
+                    if (a.startsWith("--")) throw new IllegalArgumentException("unknown option: " + a);
+                    files.add(a);
+                }
+            }
+        }
+        if (files.isEmpty()) files.add("gnb_capture.json");
+        if (!binder.equals("binder") && !binder.equals("correlator")) {
+            throw new IllegalArgumentException("--binder must be binder or correlator: " + binder);
+        }
+        return new ReplayBench(warmup, Math.max(1, iterations), lateness, singleUe, binder, tshark, json, files);
+    }
+
+    private void run() throws Exception {
+        List<Map<String, Object>> reports = new ArrayList<>();
+        for (String file : files) {
+            byte[] data = load(file);
+            Map<String, Object> report = bench(file, data);
+            print(report);
+            reports.add(report);
+        }
+        if (jsonOut != null) {
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(jsonOut.toFile(), reports);
+            System.out.println("written " + jsonOut.toAbsolutePath());
+        }
+    }
+
+    // ===================== 输入 =====================
+
+    private byte[] load(String file) throws Exception {
+        if (file.toLowerCase(Locale.ROOT).endsWith(".json")) return BenchInputs.readAll(file);
+
+        // pcap / pcapng：转一次 JSON，tshark 的时间不算进链路
+        String exe = tshark != null ? tshark : findOnPath("tshark");
+        if (exe == null) throw new IllegalStateException("tshark not found, pass --tshark or a .json capture: " + file);
+        WiresharkProperties props = new WiresharkProperties();
+        props.setTsharkPath(exe);
+        props.setUseIsolatedConfig(false);
+        byte[][] out = new byte[1][];
+        new TsharkRunner(props).decodeToJsonStream(BenchInputs.resolve(file), in -> {
+            try {
+                out[0] = in.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return out[0];
+    }
+
+    private static String findOnPath(String name) {
+        String path = System.getenv("PATH");
+        if (path == null) return null;
+        for (String dir : path.split(File.pathSeparator)) {
+            for (String n : List.of(name, name + ".exe")) {
+                Path p = Path.of(dir, n);
+                if (Files.isExecutable(p)) return p.toString();
+            }
+        }
+        return null;
+    }
+
+    // ===================== 回放 =====================
+
+    private Map<String, Object> bench(String file, byte[] data) throws IOException {
+        for (int i = 0; i < warmup; i++) {
+            replayOnce(data, new Stages());
+        }
+
+        Stages stages = new Stages();
+        long gcCount0 = gcCount(), gcMs0 = gcTimeMs();
+        Map<String, Object> last = null;
+        for (int i = 0; i < iterations; i++) {
+            Map<String, Object> outcome = replayOnce(data, stages);
+            if (last != null && !last.get("resultHash").equals(outcome.get("resultHash"))) {
+                System.err.println("WARN: replay result differs between iterations: " + last + " vs " + outcome);
+            }
+            last = outcome;
+        }
+
+        long packets = stages.parse.count();
+        long messages = stages.process.count();
+        long wallNanos = stages.wallNanos;
+        double seconds = wallNanos / 1e9;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("file", file);
+        report.put("bytes", data.length);
+        report.put("iterations", iterations);
+        report.put("wallMs", wallNanos / 1_000_000.0);
+        report.put("packetsPerSec", packets / seconds);
+        report.put("messagesPerSec", messages / seconds);
+        report.put("mbPerSec", (double) data.length * iterations / seconds / (1024 * 1024));
+        report.put("gcCount", gcCount() - gcCount0);
+        report.put("gcMs", gcTimeMs() - gcMs0);
+        report.put("outcome", last);
+        report.put("stages", List.of(stages.parse.summary(), stages.inspect.summary(),
+                stages.bind.summary(), stages.process.summary()));
+        return report;
+    }
+
+    /** 跑一遍完整输入；返回这一遍的结果摘要（用来确认各轮、各版本的输出一致） */
+    private Map<String, Object> replayOnce(byte[] data, Stages st) throws IOException {
+        Path archiveDir = Files.createTempDirectory("replay-bench");
+        Pipeline p = new Pipeline(archiveDir, latenessMs);
+        try {
+            // 1) parse：回调之间的间隔就是解析一个包的时间
+            List<List<RrcNasParseResult>> packets = new ArrayList<>();
+            long start = System.nanoTime();
+            long[] mark = {start};
+            st.parse.begin();
+            LayersSelectiveParser.parsePackets(new ByteArrayInputStream(data),
+                    BenchInputs.WANTED, BenchInputs.ENABLED_RAW, chains -> {
+                        st.parse.record(System.nanoTime() - mark[0]);
+                        packets.add(chains);
+                        mark[0] = System.nanoTime();
+                    });
+            st.parse.end();
+            st.parse.addBytes(data.length);
+
+            // 2) inspect：chain -> SignalingMessage
+            List<SignalingMessage> messages = new ArrayList<>();
+            ChainsInspectConsumer inspect = new ChainsInspectConsumer(messages::add);
+            st.inspect.begin();
+            for (List<RrcNasParseResult> chains : packets) {
+                long t = System.nanoTime();
+                inspect.accept(chains);
+                st.inspect.record(System.nanoTime() - t);
+            }
+            st.inspect.end();
+
+            // 3) + 4) bind -> process：process 自己计时，bind 的耗时 / 分配扣掉它
+            long processAllocBefore = st.process.allocated();
+            st.bind.begin();
+            for (SignalingMessage msg : messages) {
+                long inner = st.process.totalNanos();
+                long t = System.nanoTime();
+                p.replayer.accept(msg);
+                st.bind.record(System.nanoTime() - t - (st.process.totalNanos() - inner));
+            }
+            p.replayer.finish();
+            st.bind.end();
+            // 端到端只算四个阶段本身，链路的搭建 / 关闭（起线程、归档落盘）不算
+            st.wallNanos += System.nanoTime() - start;
+            st.bind.excludeAllocated(st.process.allocated() - processAllocBefore);
+
+            return p.outcome(messages.size());
+        } finally {
+            p.close();
+            deleteQuietly(archiveDir);
+        }
+    }
+
+    /** 回放用的整条链路，全部手工接线（不起 Spring，不连 Redis） */
+    private final class Pipeline implements AutoCloseable {
+        final EventTimeClock clock = new EventTimeClock();
+        final ProcedureExpiry expiry;
+        final ProcedureArchiveWriter archive;
+        final OnHeapStateBackend state = new OnHeapStateBackend(clock::now);
+        final InMemoryProcedureStore store = state.procedures();
+        final DeferredDecryptQueue deferred;
+        final UeBinder binder;
+        final MsgProcessing_Service processing;
+        final EventTimeReplayer replayer;
+
+        long results, hash = 1;
+
+        Pipeline(Path archiveDir, long latenessMs) {
+            ObjectMapper mapper = new ObjectMapper();
+            DecryptProperties dp = new DecryptProperties();
+            dp.setMode("local");
+            deferred = new DeferredDecryptQueue(dp, clock);
+            KeyTrialEngine trial = new KeyTrialEngine(dp);
+            UEContextService ue = new UEContextService(state, new JavaKeyDerivationProvider(), deferred, trial,
+                    new UEContextCacheProperties());
+
+            expiry = new ProcedureExpiry(new ExpiryProperties(), clock);
+            archive = new ProcedureArchiveWriter(mapper, archiveDir, "procedure_history", 65_536, 1_024, 1_000,
+                    0, 0, false, System::currentTimeMillis);
+            ProManager_Service pm = new ProManager_Service(store, new IdGenerator(1, 1_024), archive, expiry, clock);
+
+            processing = new MsgProcessing_Service(ue, mapper, new MessageCategoryClassifier(),
+                    new ProClassify_Service(pm, new FlowRegistry(), clock), new ProDispatcher_Service(ue), dp,
+                    new LocalDecryptEngine(dp), new AsyncDecryptClient(dp, mapper), new DecryptResultCache(dp),
+                    new CountTracker(dp), deferred, trial, clock);
+
+            if (binderImpl.equals("correlator")) {
+                binder = new UeIdentityCorrelator(new IdentityProperties(), clock);
+            } else {
+                UeIdBinderProperties bp = new UeIdBinderProperties();
+                binder = new UeIdBinder(null, bp.getPendingTtlMs(), bp.getBindingTtlMs(), false,
+                        bp.getNegativeTtlMs(), bp.getNegativeMaxEntries(), -1, bp.getMaxPendingWrites(), clock::now);
+            }
+            replayer = new EventTimeReplayer(clock, m -> {
+                if (singleUe != null && m.getUeId() == null) m.setUeId(singleUe);
+                binder.handle(m, this::process);
+            }, latenessMs, 100_000);
+        }
+
+        /** 这里只挂 process 阶段的计时；结果（不含 procedureId：ID 带墙钟）折进 hash */
+        private void process(SignalingMessage m) {
+            StageRecorder rec = current.process;
+            rec.begin();
+            long t = System.nanoTime();
+            MessageProcessingResult r = processing.process(m);
+            rec.record(System.nanoTime() - t);
+            rec.end();
+            results++;
+            hash = 31 * hash + (r.getUeId() + "|" + r.getMsgType() + "|" + r.getCategory() + "|"
+                    + r.getProcedureType()).hashCode();
+        }
+
+        Map<String, Object> outcome(int messages) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("messages", messages);
+            m.put("processed", results);
+            m.put("resultHash", Long.toHexString(hash));
+            m.put("replayer", replayer.stats());
+            m.put("binder", binder.stats());
+            m.put("procedures", store.stats());
+            m.put("expiry", expiry.stats());
+            m.put("deferredDecrypt", deferred.stats());
+            return m;
+        }
+
+        @Override
+        public void close() {
+            expiry.close();
+            archive.close();
+            binder.close();
+            state.close();
+        }
+    }
+
+    /** replayOnce 期间的各阶段计数（Pipeline.process 在回调里拿它） */
+    private Stages current;
+
+    private final class Stages {
+        final StageRecorder parse = new StageRecorder("parse");
+        final StageRecorder inspect = new StageRecorder("inspect");
+        final StageRecorder bind = new StageRecorder("bind");
+        final StageRecorder process = new StageRecorder("process");
+        long wallNanos;
+
+        Stages() {
+            current = this;
+        }
+    }
+
+    // ===================== 输出 =====================
+
+    @SuppressWarnings("unchecked")
+    private static void print(Map<String, Object> r) {
+        System.out.printf(Locale.ROOT, "%n== %s  (%d bytes x %d iterations, wall %.1f ms, gc %d / %d ms)%n",
+                r.get("file"), r.get("bytes"), r.get("iterations"), r.get("wallMs"), r.get("gcCount"), r.get("gcMs"));
+        System.out.printf(Locale.ROOT, "   end-to-end: %.0f packets/s, %.0f messages/s, %.2f MB/s%n",
+                r.get("packetsPerSec"), r.get("messagesPerSec"), r.get("mbPerSec"));
+        System.out.printf(Locale.ROOT, "   %-8s %9s %12s %9s %9s %9s %9s %9s %10s%n",
+                "stage", "units", "units/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "B/unit");
+        for (Map<String, Object> s : (List<Map<String, Object>>) r.get("stages")) {
+            System.out.printf(Locale.ROOT, "   %-8s %9d %12.0f %9.1f %9.1f %9.1f %9.1f %9.1f %10.0f%n",
+                    s.get("stage"), s.get("units"), s.get("unitsPerSec"), s.get("p50Us"), s.get("p90Us"),
+                    s.get("p99Us"), s.get("p999Us"), s.get("maxUs"), s.get("allocBytesPerUnit"));
+        }
+        System.out.println("   outcome: " + r.get("outcome"));
+        Map<String, Object> outcome = (Map<String, Object>) r.get("outcome");
+        if (((Number) outcome.get("processed")).longValue() == 0 && ((Number) outcome.get("messages")).longValue() > 0) {
+            System.out.println("   (no message got a ueId, process was not reached; single-UE capture? try --single-ue <id>)");
+        }
+    }
+
+    private static long gcCount() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionCount());
+        return n;
+    }
+
+    private static long gcTimeMs() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionTime());
+        return n;
+    }
+
+    private static void deleteQuietly(Path dir) {
+        try (Stream<Path> s = Files.walk(dir)) {
+            s.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+        } catch (IOException ignored) {
+        }
+    }
+}
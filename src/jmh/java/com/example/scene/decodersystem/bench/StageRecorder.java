@@ -0,0 +1,100 @@
+package com.example.scene.decodersystem.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ReplayBench 里一个阶段的计数：每个单元（包 / 消息）的耗时、处理的字节数，
+ * 以及这个阶段在当前线程上分配的字节数（com.sun.management.ThreadMXBean）。
+ *
+ * 耗时用 long[] 存原始值、最后排序求分位数；一次回放几十万条也就几 MB，不做直方图近似。
+ */
+final class StageRecorder {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    final String name;
+    private long[] nanos = new long[1024];
+    private int count;
+    private long totalNanos;
+    private long bytes;
+    private long allocated;
+    private long allocStart = -1;
+
+    StageRecorder(String name) {
+        this.name = name;
+    }
+
+    /** 阶段开始：记当前线程已分配的字节数 */
+    void begin() {
+        allocStart = threadAllocated();
+    }
+
+    /** 阶段结束：累计这段时间的分配 */
+    void end() {
+        if (allocStart >= 0) allocated += threadAllocated() - allocStart;
+        allocStart = -1;
+    }
+
+    void record(long elapsedNanos) {
+        if (count == nanos.length) nanos = Arrays.copyOf(nanos, count * 2);
+        nanos[count++] = elapsedNanos;
+        totalNanos += elapsedNanos;
+    }
+
+    void addBytes(long n) {
+        bytes += n;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long totalNanos() {
+        return totalNanos;
+    }
+
+    long allocated() {
+        return allocated;
+    }
+
+    /** 嵌套调用的下游阶段自己记了分配，从外层扣掉 */
+    void excludeAllocated(long n) {
+        allocated -= n;
+    }
+
+    /** 排好序的一份拷贝上取分位数（q 在 0..1） */
+    static long percentile(long[] sorted, double q) {
+        if (sorted.length == 0) return 0;
+        int i = (int) Math.ceil(q * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))];
+    }
+
+    Map<String, Object> summary() {
+        long[] sorted = Arrays.copyOf(nanos, count);
+        Arrays.sort(sorted);
+        double seconds = totalNanos / 1e9;
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("stage", name);
+        m.put("units", count);
+        m.put("busyMs", totalNanos / 1_000_000.0);
+        m.put("unitsPerSec", seconds == 0 ? 0 : count / seconds);
+        m.put("mbPerSec", seconds == 0 || bytes == 0 ? 0 : bytes / seconds / (1024 * 1024));
+        m.put("p50Us", percentile(sorted, 0.50) / 1000.0);
+        m.put("p90Us", percentile(sorted, 0.90) / 1000.0);
+        m.put("p99Us", percentile(sorted, 0.99) / 1000.0);
+        m.put("p999Us", percentile(sorted, 0.999) / 1000.0);
+        m.put("maxUs", sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1000.0);
+        m.put("allocBytes", allocated);
+        m.put("allocBytesPerUnit", count == 0 ? 0 : (double) allocated / count);
+        return m;
+    }
+
+    private static long threadAllocated() {
+        return THREADS.isThreadAllocatedMemorySupported() && THREADS.isThreadAllocatedMemoryEnabled()
+                ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+}
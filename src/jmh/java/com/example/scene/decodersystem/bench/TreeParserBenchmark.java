@@ -0,0 +1,84 @@
+package com.example.scene.decodersystem.bench;
+
+import com.example.procedure.parser.RrcNasPacketParser;
+import com.example.procedure.parser.TsharkJsonMessageParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 树模型解析基准（旧链路），用于和流式解析对比：
+ *  - parseFileWithRaw：logic + raw 两个文件整文件读入 + 逐包解析
+ *  - rrcNasPacketParse：已读成 JsonNode 的 packet 上单独跑 RrcNasPacketParser.parse
+ * gnb_capture.json 有单独的 gnb_capture_raw.json；其余文件是 -T json -x 输出，
+ * raw 字段就内联在同一个 packet 里，logic/raw 传同一个文件/节点。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TreeParserBenchmark {
+
+    private static final String GNB_LOGIC = "gnb_capture.json";
+    private static final String GNB_RAW = "gnb_capture_raw.json";
+
+    @Param({"pcap_decode.json", "test.json", "gnb_capture.json"})
+    public String file;
+
+    private final TsharkJsonMessageParser parser = new TsharkJsonMessageParser();
+
+    private String logicPath;
+    private String rawPath;
+    private long fileBytes;
+
+    private List<JsonNode> logicPackets;
+    private List<JsonNode> rawPackets;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        String rawFile = GNB_LOGIC.equals(file) ? GNB_RAW : file;
+        logicPath = BenchInputs.resolve(file).toString();
+        rawPath = BenchInputs.resolve(rawFile).toString();
+
+        ObjectMapper mapper = new ObjectMapper();
+        byte[] logicData = BenchInputs.readAll(file);
+        byte[] rawData = BenchInputs.readAll(rawFile);
+        fileBytes = logicData.length + (rawFile.equals(file) ? 0L : rawData.length);
+        logicPackets = readArray(mapper, logicData);
+        rawPackets = rawFile.equals(file) ? logicPackets : readArray(mapper, rawData);
+    }
+
+    private static List<JsonNode> readArray(ObjectMapper mapper, byte[] data) throws IOException {
+        String text = new String(data, StandardCharsets.UTF_8);
+        int idx = text.indexOf('[');
+        JsonNode root = mapper.readTree(text.substring(Math.max(idx, 0)));
+        List<JsonNode> out = new ArrayList<>(root.size());
+        root.forEach(out::add);
+        return out;
+    }
+
+    @Benchmark
+    public void parseFileWithRaw(PacketCounters counters, Blackhole bh) throws IOException {
+        bh.consume(parser.parseFileWithRaw(logicPath, rawPath));
+        counters.packets += logicPackets.size();
+        counters.bytes += fileBytes;
+    }
+
+    @Benchmark
+    public void rrcNasPacketParse(PacketCounters counters, Blackhole bh) {
+        for (int i = 0; i < logicPackets.size(); i++) {
+            bh.consume(RrcNasPacketParser.parse(logicPackets.get(i), rawPackets.get(i)));
+        }
+        counters.packets += logicPackets.size();
+        counters.bytes += fileBytes;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.procedure.archive;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "archive")
+public class ArchiveProperties {
+
+    /** 归档目录，段文件名：&lt;prefix&gt;-yyyyMMdd-HHmmssSSS.jsonl[.gz] */
+    private String dir = "data";
+    private String prefix = "procedure_history";
+
+    /** 待写队列容量（流程数），满了 end_Procedure 返回失败、流程留在活跃表里 */
+    private int queueCapacity = 65536;
+
+    /** 组提交：攒够这么多条或者距上次 fsync 这么久，flush + fsync 一次 */
+    private int fsyncEveryRecords = 256;
+    private long fsyncIntervalMs = 200;
+
+    /** 段滚动：超过大小（未压缩字节）或时长就换新文件 */
+    private long segmentMaxBytes = 64L * 1024 * 1024;
+    private long segmentMaxAgeMs = 60 * 60 * 1000L;
+
+    /** 段文件 gzip 压缩（边写边压，每次 fsync 前 SYNC_FLUSH，崩溃时已 fsync 的部分可读） */
+    private boolean gzip = false;
+}
@@ -0,0 +1,51 @@
+package com.example.procedure.archive;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+
+/**
+ * 归档流程查询接口：
+ *
+ *   GET /api/archive/procedures?ueId=460011234567890&type=IA&from=2025-12-04 15:00:00&to=2025-12-04 16:00:00&offset=0&limit=100
+ *
+ * from/to 可以是 "yyyy-MM-dd HH:mm:ss"（本地时区）或毫秒时间戳；参数都可以不传。
+ */
+@RestController
+@RequestMapping("/api/archive")
+@RequiredArgsConstructor
+public class ArchiveQueryController {
+
+    private final ProcedureArchiveQuery archiveQuery;
+
+    @GetMapping("/procedures")
+    public ProcedureArchiveQuery.Page procedures(@RequestParam(required = false) String ueId,
+                                                 @RequestParam(required = false) String type,
+                                                 @RequestParam(required = false) String from,
+                                                 @RequestParam(required = false) String to,
+                                                 @RequestParam(defaultValue = "0") int offset,
+                                                 @RequestParam(defaultValue = "100") int limit) throws IOException {
+        return archiveQuery.query(new ProcedureArchiveQuery.Query(
+                blankToNull(ueId), blankToNull(type), time("from", from), time("to", to), offset, limit));
+    }
+
+    private static long time(String name, String v) {
+        if (v == null || v.isBlank()) return 0;
+        if (v.chars().allMatch(Character::isDigit)) return Long.parseLong(v);
+        long ms = SegmentIndex.parseTime(v.trim());
+        if (ms == 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, name + " must be 'yyyy-MM-dd HH:mm:ss' or epoch ms");
+        }
+        return ms;
+    }
+
+    private static String blankToNull(String s) {
+        return s == null || s.isBlank() ? null : s;
+    }
+}
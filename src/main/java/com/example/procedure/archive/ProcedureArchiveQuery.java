@@ -0,0 +1,167 @@
+package com.example.procedure.archive;
+
+import com.example.procedure.model.Procedure;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 归档流程查询（"某 IMSI 在 T1~T2 之间的所有 IA 流程"）。
+ *
+ * 不再整文件 grep + 每行 JSON 解析：每个段有一份旁路索引（SegmentIndex，写归档时顺手写的 .idx），
+ * 过滤只在内存索引上做，命中的记录再按 offset 去段里读（普通段 mmap，gzip 段解压着跳）。
+ * 索引第一次查询时加载，之后每次查询只读新追加的部分；老的 data/procedure_history.jsonl 没有索引，第一次现扫。
+ *
+ * 结果按归档顺序（老的在前），offset/limit 分页，total 是过滤后的总条数。
+ */
+@Slf4j
+@Component
+public class ProcedureArchiveQuery {
+
+    /**
+     * ueId / typeCode 为 null 表示不限；fromMs/toMs <= 0 表示不限，
+     * 时间条件是和 [activateTime, endTime] 有交集。
+     */
+    public record Query(String ueId, String typeCode, long fromMs, long toMs, int offset, int limit) {}
+
+    public record Page(List<Procedure> items, int total, int offset, int limit) {}
+
+    public static final int MAX_LIMIT = 1000;
+
+    private final ObjectMapper objectMapper;
+    private final Path dir;
+    private final String prefix;
+
+    private final Map<Path, SegmentIndex> segments = new HashMap<>();
+
+    @Autowired
+    public ProcedureArchiveQuery(ArchiveProperties props, ObjectMapper objectMapper) {
+        this(objectMapper, Path.of(props.getDir()), props.getPrefix());
+    }
+
+    public ProcedureArchiveQuery(ObjectMapper objectMapper, Path dir, String prefix) {
+        this.objectMapper = objectMapper;
+        this.dir = dir;
+        this.prefix = prefix;
+    }
+
+    public synchronized Page query(Query q) throws IOException {
+        int offset = Math.max(0, q.offset());
+        int limit = Math.max(0, Math.min(q.limit(), MAX_LIMIT));
+        long from = q.fromMs() > 0 ? q.fromMs() : Long.MIN_VALUE;
+        long to = q.toMs() > 0 ? q.toMs() : Long.MAX_VALUE;
+
+        List<Procedure> items = new ArrayList<>(Math.min(limit, 64));
+        int total = 0;
+        for (SegmentIndex seg : refresh()) {
+            int[] rows;
+            int n;
+            if (q.ueId() != null) {
+                rows = seg.byUe.get(q.ueId());
+                if (rows == null) continue;
+                n = rows[0];
+            } else {
+                rows = null;
+                n = seg.size;
+            }
+
+            int[] hits = new int[Math.min(n, 64)];
+            int hitCount = 0;
+            for (int k = 0; k < n; k++) {
+                int i = rows == null ? k : rows[k + 1];
+                if (q.typeCode() != null && !q.typeCode().equals(seg.typeCode[i])) continue;
+                if (seg.endMs[i] < from || seg.activateMs[i] > to) continue;
+                // 只有落在这一页里的才需要读
+                if (total >= offset && total < offset + limit) {
+                    if (hitCount == hits.length) hits = Arrays.copyOf(hits, hitCount * 2);
+                    hits[hitCount++] = i;
+                }
+                total++;
+            }
+            if (hitCount > 0) read(seg, hits, hitCount, items);
+        }
+        return new Page(items, total, offset, limit);
+    }
+
+    // ===================== internal =====================
+
+    private void read(SegmentIndex seg, int[] rows, int count, List<Procedure> out) throws IOException {
+        if (seg.gzip) {
+            byte[][] lines = seg.readGzip(rows, count);
+            for (byte[] line : lines) {
+                if (line != null) out.add(objectMapper.readValue(line, Procedure.class));
+            }
+        } else {
+            for (int k = 0; k < count; k++) out.add(objectMapper.readValue(seg.read(rows[k]), Procedure.class));
+        }
+    }
+
+    /** 列出目录里的段、增量刷新索引；老的单文件（&lt;prefix&gt;.jsonl）排最前，其余按文件名（= 时间）排 */
+    private List<SegmentIndex> refresh() throws IOException {
+        List<Path> files;
+        try (Stream<Path> s = Files.list(dir)) {
+            files = s.filter(this::isSegment)
+                    .sorted(Comparator.comparing((Path p) -> !isLegacy(p))
+                            .thenComparing(ProcedureArchiveQuery::stem)
+                            .thenComparingInt(ProcedureArchiveQuery::seq))
+                    .toList();
+        } catch (NoSuchFileException e) {
+            files = List.of();
+        }
+
+        segments.keySet().retainAll(files);
+        List<SegmentIndex> out = new ArrayList<>(files.size());
+        for (Path f : files) {
+            SegmentIndex seg = segments.computeIfAbsent(f, SegmentIndex::new);
+            try {
+                seg.refresh(objectMapper);
+            } catch (IOException e) {
+                // 一个段坏了不影响其他段
+                log.warn("Failed to index archive segment {}", f, e);
+            }
+            out.add(seg);
+        }
+        return out;
+    }
+
+    private boolean isSegment(Path p) {
+        String name = p.getFileName().toString();
+        return name.startsWith(prefix) && (name.endsWith(".jsonl") || name.endsWith(".jsonl.gz"));
+    }
+
+    private static final Pattern SEQ = Pattern.compile("(.*-\\d{8}-\\d{9})-(\\d+)$");
+
+    /** 段名去掉扩展名和同毫秒的 -n 后缀（-n 要按数字排，不能按字符串） */
+    private static String stem(Path p) {
+        Matcher m = SEQ.matcher(bareName(p));
+        return m.matches() ? m.group(1) : bareName(p);
+    }
+
+    private static int seq(Path p) {
+        Matcher m = SEQ.matcher(bareName(p));
+        return m.matches() ? Integer.parseInt(m.group(2)) : 0;
+    }
+
+    private static String bareName(Path p) {
+        return p.getFileName().toString().replaceFirst("\\.jsonl(\\.gz)?$", "");
+    }
+
+    private boolean isLegacy(Path p) {
+        return p.getFileName().toString().equals(prefix + ".jsonl");
+    }
+}
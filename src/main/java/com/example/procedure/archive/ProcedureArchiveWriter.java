@@ -0,0 +1,267 @@
+package com.example.procedure.archive;
+
+import com.example.procedure.model.Procedure;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 流程归档写入器（替代 end_Procedure 里每条 new FileWriter 同步写一行）：
+ *
+ *  - 单个后台线程写文件，处理线程只往有界队列里放，满了 append 返回 false 不等待；
+ *  - 组提交：攒够 fsyncEveryRecords 条或者过了 fsyncIntervalMs，flush + fsync 一次；
+ *  - 段滚动：按大小 / 时长换新文件，文件只在第一条记录到来时才建，不会有空段；
+ *  - 可选 gzip：边写边压，fsync 前 SYNC_FLUSH；
+ *  - 旁路索引：每个段边写边记一份 &lt;段&gt;.idx（offset、ueId、类型、起止时间），给 ProcedureArchiveQuery 用；
+ *  - close：把队列里剩下的写完、fsync、关文件。
+ *
+ * 一行一个流程 JSON，和原来的 data/procedure_history.jsonl 格式一样。
+ */
+@Slf4j
+@Component
+public class ProcedureArchiveWriter implements AutoCloseable {
+
+    public record Stats(long appended, long written, long rejected, long failed, long syncs, long segments, int pending) {}
+
+    private static final DateTimeFormatter SEGMENT_TIME =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmssSSS").withZone(ZoneId.systemDefault());
+    private static final int DRAIN_BATCH = 1024;
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final ObjectMapper objectMapper;
+    private final Path dir;
+    private final String prefix;
+    private final int fsyncEveryRecords;
+    private final long fsyncIntervalMs;
+    private final long segmentMaxBytes;
+    private final long segmentMaxAgeMs;
+    private final boolean gzip;
+    private final LongSupplier clock;
+
+    private final BlockingQueue<Procedure> queue;
+    private final Thread thread;
+    private volatile boolean running = true;
+    /** append 查 running + 入队拿读锁（互相不挡），close 改 running 拿写锁：关了之后不会再有漏进队列没人写的 */
+    private final ReadWriteLock closing = new ReentrantReadWriteLock();
+
+    // ---- 以下只在写线程里用 ----
+    private FileOutputStream file;
+    private FileChannel channel;
+    private OutputStream out;
+    private DataOutputStream idx;
+    private volatile Path segment;
+    private long segmentBytes;
+    private long segmentOpenedAt;
+    private int unsynced;
+    private long lastSyncAt;
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile long written, failed, syncs, segments;      // 只有写线程改
+
+    @Autowired
+    public ProcedureArchiveWriter(ArchiveProperties props, ObjectMapper objectMapper) {
+        this(objectMapper, Path.of(props.getDir()), props.getPrefix(), props.getQueueCapacity(),
+                props.getFsyncEveryRecords(), props.getFsyncIntervalMs(),
+                props.getSegmentMaxBytes(), props.getSegmentMaxAgeMs(), props.isGzip(), System::currentTimeMillis);
+    }
+
+    public ProcedureArchiveWriter(ObjectMapper objectMapper, Path dir, String prefix, int queueCapacity,
+                                  int fsyncEveryRecords, long fsyncIntervalMs,
+                                  long segmentMaxBytes, long segmentMaxAgeMs, boolean gzip, LongSupplier clock) {
+        this.objectMapper = objectMapper;
+        this.dir = dir;
+        this.prefix = prefix;
+        this.fsyncEveryRecords = Math.max(1, fsyncEveryRecords);
+        this.fsyncIntervalMs = Math.max(1, fsyncIntervalMs);
+        this.segmentMaxBytes = segmentMaxBytes > 0 ? segmentMaxBytes : Long.MAX_VALUE;
+        this.segmentMaxAgeMs = segmentMaxAgeMs > 0 ? segmentMaxAgeMs : Long.MAX_VALUE;
+        this.gzip = gzip;
+        this.clock = clock;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.thread = new Thread(this::run, "procedure-archive");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /** 放进队列就返回；队列满了或已关闭返回 false（调用方决定怎么办） */
+    public boolean append(Procedure p) {
+        boolean queued;
+        closing.readLock().lock();
+        try {
+            queued = running && queue.offer(p);
+        } finally {
+            closing.readLock().unlock();
+        }
+        if (!queued) {
+            rejected.increment();
+            return false;
+        }
+        appended.increment();
+        return true;
+    }
+
+    public Stats stats() {
+        return new Stats(appended.sum(), written, rejected.sum(), failed, syncs, segments, queue.size());
+    }
+
+    /** 当前正在写的段（没有返回 null） */
+    public Path currentSegment() {
+        return segment;
+    }
+
+    /** 停止接收，写完队列里剩下的，fsync 并关闭当前段 */
+    @Override
+    public void close() {
+        closing.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            closing.writeLock().unlock();
+        }
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ===================== 写线程 =====================
+
+    private void run() {
+        List<Procedure> batch = new ArrayList<>(DRAIN_BATCH);
+        try {
+            while (running || !queue.isEmpty()) {
+                Procedure first = queue.poll(Math.min(fsyncIntervalMs, 100), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, DRAIN_BATCH - 1);
+                    for (Procedure p : batch) write(p);
+                    batch.clear();
+                }
+                long now = clock.getAsLong();
+                if (unsynced > 0 && (unsynced >= fsyncEveryRecords || now - lastSyncAt >= fsyncIntervalMs)) {
+                    sync(now);
+                }
+                if (out != null && now - segmentOpenedAt >= segmentMaxAgeMs) {
+                    closeSegment();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // 线程被打断时队列里可能还有，尽量写完
+            Procedure p;
+            while ((p = queue.poll()) != null) write(p);
+            closeSegment();
+        }
+    }
+
+    private void write(Procedure p) {
+        try {
+            byte[] line = objectMapper.writeValueAsBytes(p);
+            if (out != null && segmentBytes + line.length + 1 > segmentMaxBytes && segmentBytes > 0) {
+                closeSegment();
+            }
+            if (out == null) openSegment();
+            long offset = segmentBytes;
+            out.write(line);
+            out.write(NEWLINE);
+            SegmentIndex.writeEntry(idx, offset, line.length, p);
+            segmentBytes += line.length + 1;
+            unsynced++;
+            written++;
+            if (unsynced >= fsyncEveryRecords) sync(clock.getAsLong());
+        } catch (IOException e) {
+            failed++;
+            log.error("Failed to archive procedure. ueId={}, procedureId={}", p.getUeId(), p.getProcedureId(), e);
+            // 文件可能坏了，换个新段再写后面的
+            closeSegment();
+        }
+    }
+
+    private void openSegment() throws IOException {
+        Files.createDirectories(dir);
+        long now = clock.getAsLong();
+        String base = prefix + "-" + SEGMENT_TIME.format(Instant.ofEpochMilli(now));
+        String ext = gzip ? ".jsonl.gz" : ".jsonl";
+        Path p = dir.resolve(base + ext);
+        for (int i = 1; Files.exists(p); i++) p = dir.resolve(base + "-" + i + ext);
+
+        file = new FileOutputStream(p.toFile());
+        channel = file.getChannel();
+        OutputStream buffered = new BufferedOutputStream(file, 64 * 1024);
+        out = gzip ? new GZIPOutputStream(buffered, 8192, true) : buffered;
+        idx = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(SegmentIndex.sidecar(p)), 16 * 1024));
+        segment = p;
+        segmentBytes = 0;
+        segmentOpenedAt = now;
+        lastSyncAt = now;
+        segments++;
+    }
+
+    private void sync(long now) {
+        if (out == null) return;
+        try {
+            out.flush();
+            channel.force(false);
+            // 索引在段之后 flush：索引里有的行段里一定有；索引不 fsync，丢了查询时会从段里补
+            idx.flush();
+            syncs++;
+        } catch (IOException e) {
+            log.error("Failed to fsync archive segment {}", segment, e);
+        }
+        unsynced = 0;
+        lastSyncAt = now;
+    }
+
+    private void closeSegment() {
+        if (out == null) return;
+        try {
+            // gzip 的尾部也要落盘
+            if (out instanceof GZIPOutputStream gz) gz.finish();
+        } catch (IOException e) {
+            log.warn("Failed to finish archive segment {}", segment, e);
+        }
+        sync(clock.getAsLong());
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.warn("Failed to close archive segment {}", segment, e);
+        }
+        try {
+            idx.close();
+        } catch (IOException e) {
+            log.warn("Failed to close archive index of {}", segment, e);
+        }
+        out = null;
+        idx = null;
+        channel = null;
+        file = null;
+        segment = null;
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.procedure.archive;
+
+import com.example.procedure.model.Procedure;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 一个归档段的旁路索引（&lt;段文件名&gt;.idx）。
+ *
+ * 文件格式：一条记录一项，只追加，DataOutputStream 大端：
+ *   long offset | int length | long activateMs | long endMs | UTF ueId | UTF procedureTypeCode
+ * offset/length 是 JSON 行在段里的位置（gzip 段是解压后的位置，不含换行）。
+ * 写线程边写段边写索引（见 ProcedureArchiveWriter），索引只在段数据 flush 之后 flush，
+ * 所以索引里有的行，段里一定已经有了。
+ *
+ * 内存里按列存（几个基本类型数组）+ ueId 倒排，查询时先在这里过滤，命中的再去段里按 offset 读。
+ * 没有 .idx 的段（老的 data/procedure_history.jsonl、崩溃时索引没来得及写的尾巴）现扫一遍补上，
+ * 补出来的只在内存里，不回写文件。
+ */
+@Slf4j
+final class SegmentIndex {
+
+    static final String SUFFIX = ".idx";
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    final Path segment;
+    final Path sidecar;
+    final boolean gzip;
+
+    int size;
+    long[] offset = new long[64];
+    int[] length = new int[64];
+    long[] activateMs = new long[64];
+    long[] endMs = new long[64];
+    String[] typeCode = new String[64];
+    /** ueId -> 该 UE 的记录下标（升序） */
+    final Map<String, int[]> byUe = new HashMap<>();
+
+    /** 已经读过的 .idx 字节数、已经索引到的段字节数（下次 refresh 从这里接着读） */
+    private long sidecarRead;
+    private long indexedTo;
+    private long lastSegmentSize = -1;
+    private long lastSidecarSize = -1;
+
+    private MappedByteBuffer mapped;
+
+    SegmentIndex(Path segment) {
+        this.segment = segment;
+        this.sidecar = sidecar(segment);
+        this.gzip = segment.getFileName().toString().endsWith(".gz");
+    }
+
+    static Path sidecar(Path segment) {
+        return segment.resolveSibling(segment.getFileName() + SUFFIX);
+    }
+
+    // ===================== 写（写线程调用） =====================
+
+    static void writeEntry(DataOutputStream idx, long offset, int length, Procedure p) throws IOException {
+        idx.writeLong(offset);
+        idx.writeInt(length);
+        long act = parseTime(p.getActivateTime());
+        long end = parseTime(p.getEndTime());
+        idx.writeLong(act);
+        idx.writeLong(end == 0 ? act : end);
+        idx.writeUTF(p.getUeId() == null ? "" : p.getUeId());
+        idx.writeUTF(p.getProcedureTypeCode() == null ? "" : p.getProcedureTypeCode());
+    }
+
+    /** "yyyy-MM-dd HH:mm:ss"（本地时区）-> epoch ms；空或格式不对返回 0 */
+    static long parseTime(String s) {
+        if (s == null || s.isEmpty()) return 0;
+        try {
+            return LocalDateTime.parse(s, TIME).atZone(ZONE).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    // ===================== 读 =====================
+
+    /** 把上次以来新追加的索引项 / 段尾巴读进来；文件都没变就什么都不做 */
+    void refresh(ObjectMapper mapper) throws IOException {
+        long segSize, idxSize;
+        try {
+            segSize = Files.size(segment);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        idxSize = Files.exists(sidecar) ? Files.size(sidecar) : 0;
+        if (segSize == lastSegmentSize && idxSize == lastSidecarSize) return;
+
+        if (idxSize > sidecarRead) readSidecar(idxSize);
+        // gzip 段的大小是压缩后的，没法和 indexedTo 比；有索引就信索引，没有才整段扫
+        if (gzip ? (idxSize == 0 && size == 0) : indexedTo < segSize) scanTail(mapper, segSize);
+
+        lastSegmentSize = segSize;
+        lastSidecarSize = idxSize;
+    }
+
+    private void readSidecar(long idxSize) throws IOException {
+        try (InputStream raw = Files.newInputStream(sidecar);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 64 * 1024))) {
+            in.skipNBytes(sidecarRead);
+            long pos = sidecarRead;
+            while (pos < idxSize) {
+                long off, act, end;
+                int len;
+                String ue, type;
+                try {
+                    off = in.readLong();
+                    len = in.readInt();
+                    act = in.readLong();
+                    end = in.readLong();
+                    ue = in.readUTF();
+                    type = in.readUTF();
+                } catch (EOFException e) {
+                    break;      // 最后一项写了一半：下次再读
+                }
+                pos += 8 + 4 + 8 + 8 + 2 + utfLength(ue) + 2 + utfLength(type);
+                sidecarRead = pos;
+                if (off < indexedTo) continue;      // 这段已经扫过了
+                add(off, len, act, end, ue, type);
+                indexedTo = off + len + 1;
+            }
+        }
+    }
+
+    /** 从 indexedTo 往后逐行扫，只认完整（有换行）的行 */
+    private void scanTail(ObjectMapper mapper, long segSize) throws IOException {
+        try (InputStream in = open()) {
+            in.skipNBytes(indexedTo);
+            long pos = indexedTo;
+            byte[] buf = new byte[64 * 1024];
+            byte[] line = new byte[1024];
+            int lineLen = 0;
+            int n;
+            while ((n = readSome(in, buf)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    byte b = buf[i];
+                    if (b != '\n') {
+                        if (lineLen == line.length) line = Arrays.copyOf(line, lineLen * 2);
+                        line[lineLen++] = b;
+                        continue;
+                    }
+                    if (lineLen > 0) indexLine(mapper, pos, line, lineLen);
+                    pos += lineLen + 1;
+                    lineLen = 0;
+                    indexedTo = pos;
+                }
+            }
+        }
+    }
+
+    private void indexLine(ObjectMapper mapper, long pos, byte[] line, int len) {
+        try {
+            JsonNode n = mapper.readTree(line, 0, len);
+            long act = parseTime(n.path("activateTime").asText(null));
+            long end = parseTime(n.path("endTime").asText(null));
+            add(pos, len, act, end == 0 ? act : end,
+                    n.path("ueId").asText(""), n.path("procedureTypeCode").asText(""));
+        } catch (IOException e) {
+            log.warn("Skip unreadable archive line. segment={}, offset={}", segment, pos);
+        }
+    }
+
+    /** 按 offset 读一条记录的 JSON 字节：普通段走 mmap，gzip 段只能解压着往后跳（见 readGzip） */
+    byte[] read(int i) throws IOException {
+        long off = offset[i];
+        int len = length[i];
+        if (off + len > Integer.MAX_VALUE) {
+            // 超过 2G 的段（segmentMaxBytes 调得很大时）：不 mmap，直接按位置读
+            try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ)) {
+                ByteBuffer buf = ByteBuffer.allocate(len);
+                while (buf.hasRemaining() && ch.read(buf, off + buf.position()) > 0) { }
+                return buf.array();
+            }
+        }
+        if (mapped == null || mapped.capacity() < off + len) {
+            try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ)) {
+                mapped = ch.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(ch.size(), Integer.MAX_VALUE));
+            }
+        }
+        byte[] out = new byte[len];
+        mapped.get((int) off, out);
+        return out;
+    }
+
+    /** gzip 段：rows 要升序，一遍解压读出来 */
+    byte[][] readGzip(int[] rows, int count) throws IOException {
+        byte[][] out = new byte[count][];
+        try (InputStream in = open()) {
+            long pos = 0;
+            for (int k = 0; k < count; k++) {
+                int i = rows[k];
+                in.skipNBytes(offset[i] - pos);
+                out[k] = in.readNBytes(length[i]);
+                pos = offset[i] + out[k].length;
+            }
+        } catch (EOFException e) {
+            // 正在写的 gzip 段最后一个 SYNC_FLUSH 之后的部分读不到，已经读到的照样返回
+        }
+        return out;
+    }
+
+    // ===================== internal =====================
+
+    private InputStream open() throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(segment), 64 * 1024);
+        return gzip ? new GZIPInputStream(in, 64 * 1024) : in;
+    }
+
+    private static int readSome(InputStream in, byte[] buf) throws IOException {
+        try {
+            return in.read(buf);
+        } catch (EOFException e) {
+            return -1;      // 没写完的 gzip 段
+        }
+    }
+
+    private void add(long off, int len, long act, long end, String ue, String type) {
+        if (size == offset.length) {
+            int cap = size * 2;
+            offset = Arrays.copyOf(offset, cap);
+            length = Arrays.copyOf(length, cap);
+            activateMs = Arrays.copyOf(activateMs, cap);
+            endMs = Arrays.copyOf(endMs, cap);
+            typeCode = Arrays.copyOf(typeCode, cap);
+        }
+        offset[size] = off;
+        length[size] = len;
+        activateMs[size] = act;
+        endMs[size] = end;
+        typeCode[size] = type.intern();     // 类型就那几个
+        byUe.merge(ue, new int[]{1, size}, (rows, one) -> {
+            // rows[0] 是个数，后面是下标
+            int n = rows[0] + 1;
+            if (n == rows.length) rows = Arrays.copyOf(rows, rows.length * 2);
+            rows[n] = one[1];
+            rows[0] = n;
+            return rows;
+        });
+        size++;
+    }
+
+    private static int utfLength(String s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            n += (c >= 0x0001 && c <= 0x007F) ? 1 : (c <= 0x07FF ? 2 : 3);
+        }
+        return n;
+    }
+}
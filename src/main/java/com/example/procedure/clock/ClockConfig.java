@@ -0,0 +1,28 @@
+package com.example.procedure.clock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Locale;
+
+@Configuration
+public class ClockConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ClockConfig.class);
+
+    @Bean
+    public ProcedureClock procedureClock(ClockProperties props) {
+        String mode = props.getMode() == null ? "wall" : props.getMode().trim().toLowerCase(Locale.ROOT);
+        switch (mode) {
+            case "wall":
+                return new WallClock();
+            case "event":
+                log.info("Procedure clock: event time (allowed lateness {} ms)", props.getAllowedLatenessMs());
+                return new EventTimeClock();
+            default:
+                throw new IllegalArgumentException("unknown procedure.clock.mode: " + props.getMode());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.procedure.clock;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "procedure.clock")
+public class ClockProperties {
+
+    /**
+     * wall ：在线，墙钟
+     * event：离线回放，按报文时间戳走（见 EventTimeClock / EventTimeReplayer）
+     */
+    private String mode = "wall";
+
+    /** 回放时允许的乱序：水位线 = 见过的最大时间戳 - 这么多，水位线之前的消息按时间戳排好再放 */
+    private long allowedLatenessMs = 2_000;
+
+    /** 重排缓冲最多压多少条，满了不等水位线直接放最早的 */
+    private int maxBuffered = 100_000;
+}
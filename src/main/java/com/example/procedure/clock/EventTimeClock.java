@@ -0,0 +1,54 @@
+package com.example.procedure.clock;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongConsumer;
+
+/**
+ * 回放：报文时间戳推着走的时钟。只进不退，往前走的时候同步回调 listener（在调 observe 的线程上，
+ * 所以到期的流程先关掉，再处理推动时间的这条消息，和在线时"计时器先到、消息后到"的顺序一致）。
+ */
+public final class EventTimeClock implements ProcedureClock {
+
+    private final List<LongConsumer> listeners = new CopyOnWriteArrayList<>();
+    private volatile long now;
+
+    public EventTimeClock() {
+        this(0);
+    }
+
+    public EventTimeClock(long startMs) {
+        this.now = startMs;
+    }
+
+    @Override
+    public long now() {
+        return now;
+    }
+
+    @Override
+    public long observe(long eventMs) {
+        if (eventMs <= 0) return now;
+        advanceTo(eventMs);
+        return eventMs;
+    }
+
+    /** 把时间推到 ms（比现在早就不动）；回放结束时用它把尾巴上的计时器放完 */
+    public void advanceTo(long ms) {
+        synchronized (this) {
+            if (ms <= now) return;
+            now = ms;
+        }
+        for (LongConsumer l : listeners) l.accept(ms);
+    }
+
+    @Override
+    public boolean isEventTime() {
+        return true;
+    }
+
+    @Override
+    public void addListener(LongConsumer listener) {
+        listeners.add(listener);
+    }
+}
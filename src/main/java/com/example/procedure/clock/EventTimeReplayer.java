@@ -0,0 +1,122 @@
+package com.example.procedure.clock;
+
+import com.example.procedure.model.SignalingMessage;
+
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * 离线回放的入口：抓包解析出来的消息（ChainsInspectConsumer 的 onMessage）先进这里，
+ * 按报文时间戳排好序、推着 EventTimeClock 走，再交给下游（MsgProcessing_Service::process 等）。
+ * 不 sleep，解析多快就放多快。
+ *
+ * 乱序：多个接口的报文合到一起时间戳不一定单调。水位线 = 见过的最大时间戳 - allowedLatenessMs，
+ * 时间戳不晚于水位线的消息按（时间戳，到达顺序）放出去，之后不会再有更早的了（除了迟到的）。
+ *  - 迟到的（比已经放出去的还早）：直接放，不回拨时钟，记 late；
+ *  - 没时间戳的：当作和目前最大时间戳同时到，保持到达顺序；
+ *  - 缓冲超过 maxBuffered：不等水位线，先放最早的。
+ *
+ * 非线程安全：一个回放一个实例，单线程喂。
+ */
+public final class EventTimeReplayer implements Consumer<SignalingMessage>, AutoCloseable {
+
+    public record Stats(long in, long out, long late, long untimed, int buffered, long watermark) {}
+
+    private final ProcedureClock clock;
+    private final Consumer<SignalingMessage> downstream;
+    private final long allowedLatenessMs;
+    private final int maxBuffered;
+
+    private final PriorityQueue<Pending> buffer = new PriorityQueue<>();
+    private long seq;
+    private long maxSeen;
+    /** 已经放出去的最大时间戳 */
+    private long released;
+
+    private long in, out, late, untimed;
+
+    public EventTimeReplayer(ProcedureClock clock, Consumer<SignalingMessage> downstream,
+                             long allowedLatenessMs, int maxBuffered) {
+        this.clock = clock;
+        this.downstream = downstream;
+        this.allowedLatenessMs = Math.max(0, allowedLatenessMs);
+        this.maxBuffered = Math.max(1, maxBuffered);
+    }
+
+    public EventTimeReplayer(ProcedureClock clock, Consumer<SignalingMessage> downstream, ClockProperties props) {
+        this(clock, downstream, props.getAllowedLatenessMs(), props.getMaxBuffered());
+    }
+
+    @Override
+    public void accept(SignalingMessage msg) {
+        if (msg == null) return;
+        in++;
+        long ts = msg.getTimestamp();
+        if (ts <= 0) {
+            untimed++;
+            ts = maxSeen;
+        }
+        if (ts < released) {
+            late++;
+            emit(msg);
+            return;
+        }
+        buffer.add(new Pending(ts, seq++, msg));
+        if (ts > maxSeen) maxSeen = ts;
+
+        drain(maxSeen - allowedLatenessMs);
+        while (buffer.size() > maxBuffered) emit(buffer.poll());
+    }
+
+    /**
+     * 外部给的水位线（比如一个抓包文件读完、或者各路输入都过了某个时间）：之前的全放出去，
+     * 时钟也推到这里，这段时间里到期的计时器都会触发。
+     */
+    public void advanceWatermark(long watermarkMs) {
+        drain(watermarkMs);
+        if (clock instanceof EventTimeClock c) c.advanceTo(watermarkMs);
+    }
+
+    /** 输入结束：缓冲里剩下的全放掉（时钟停在最后一条消息的时间，不替在线模式"多等"） */
+    public void finish() {
+        drain(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void close() {
+        finish();
+    }
+
+    public Stats stats() {
+        return new Stats(in, out, late, untimed, buffer.size(), maxSeen - allowedLatenessMs);
+    }
+
+    // ===================== internal =====================
+
+    private void drain(long watermark) {
+        Pending p;
+        while ((p = buffer.peek()) != null && p.ts <= watermark) {
+            buffer.poll();
+            emit(p);
+        }
+    }
+
+    private void emit(Pending p) {
+        if (p.ts > released) released = p.ts;
+        emit(p.msg);
+    }
+
+    private void emit(SignalingMessage msg) {
+        clock.observe(msg.getTimestamp());
+        out++;
+        downstream.accept(msg);
+    }
+
+    private record Pending(long ts, long seq, SignalingMessage msg) implements Comparable<Pending> {
+        @Override
+        public int compareTo(Pending o) {
+            int c = Long.compare(ts, o.ts);
+            return c != 0 ? c : Long.compare(seq, o.seq);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.procedure.clock;
+
+import java.util.function.LongConsumer;
+
+/**
+ * 流程识别里所有"现在几点"的来源：打分的时间差、流程的 activate / lastUpdate / end 时间、
+ * 各种超时（ProcedureExpiry、UeIdBinder / UeIdentityCorrelator 的缓冲、DeferredDecryptQueue）。
+ *
+ *  - wall（在线，默认）：墙钟，observe 什么都不改；
+ *  - event（离线回放）：时间只由报文时间戳推着走，一条消息进来先 observe(它的时间戳)，
+ *    时钟拨到目前见过的最大时间戳，到期的计时器在处理这条消息之前触发。
+ *    回放多快都行，结果只和报文里的时间有关，和跑了多久无关。
+ *
+ * 乱序由上游处理（EventTimeReplayer 按水位线排好序再送进来）；这里的时间只进不退。
+ */
+public interface ProcedureClock {
+
+    /** 现在：wall 是墙钟，event 是见过的最大报文时间（还没见过报文是 0） */
+    long now();
+
+    /**
+     * 一条消息进来时调：event 模式把时钟推到 eventMs（比现在早就不动），返回这条消息自己的时间
+     * （eventMs <= 0 的没带时间戳，用 now()）；wall 模式直接返回墙钟。
+     */
+    long observe(long eventMs);
+
+    boolean isEventTime();
+
+    /** 时间往前走了的回调（event 模式 ProcedureExpiry 靠它拨时间轮）；wall 模式没有回调，各自起线程 */
+    default void addListener(LongConsumer listener) {
+    }
+}
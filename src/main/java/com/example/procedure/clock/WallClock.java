@@ -0,0 +1,32 @@
+package com.example.procedure.clock;
+
+import java.util.function.LongSupplier;
+
+/** 在线：墙钟 */
+public final class WallClock implements ProcedureClock {
+
+    private final LongSupplier source;
+
+    public WallClock() {
+        this(System::currentTimeMillis);
+    }
+
+    public WallClock(LongSupplier source) {
+        this.source = source;
+    }
+
+    @Override
+    public long now() {
+        return source.getAsLong();
+    }
+
+    @Override
+    public long observe(long eventMs) {
+        return source.getAsLong();
+    }
+
+    @Override
+    public boolean isEventTime() {
+        return false;
+    }
+}
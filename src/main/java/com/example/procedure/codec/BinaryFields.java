@@ -0,0 +1,243 @@
+package com.example.procedure.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * UEContext / Procedure 二进制编码共用的底层格式：
+ *
+ *   [版本 1 字节] { [tag varint] [值] }*
+ *
+ * tag = 字段序号 << 3 | 线型。字段序号一经分配不再改、不复用，新字段只能往后加；
+ * 解码遇到不认识的序号按线型跳过，所以老代码能读新数据。
+ *
+ * 线型：
+ *   0 VARINT   ：zigzag varint（int/long/boolean）
+ *   1 STRING   ：varint 长度 + UTF-8
+ *   2 HEX      ：varint 长度 + 原始字节；原值是偶数长度的小写 hex 串（密钥），比存 hex 省一半
+ *   3 DATETIME ："yyyy-MM-dd HH:mm:ss" 存成 varint 秒数
+ *   4 HEX_UPPER：同 HEX，原值是大写（KDF 出来的密钥都是大写），读回来还是大写
+ * 字符串写入时自动挑最省的线型，只要能原样还原。
+ */
+public final class BinaryFields {
+
+    public static final int VARINT = 0;
+    public static final int STRING = 1;
+    public static final int HEX = 2;
+    public static final int DATETIME = 3;
+    public static final int HEX_UPPER = 4;
+
+    private static final DateTimeFormatter DATETIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final char[] HEX_DIGITS_UPPER = "0123456789ABCDEF".toCharArray();
+
+    private BinaryFields() {}
+
+    // ===================== writer =====================
+
+    public static final class Writer {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+
+        public Writer(int version) {
+            out.write(version);
+        }
+
+        public Writer num(int ordinal, long v) {
+            tag(ordinal, VARINT);
+            varint((v << 1) ^ (v >> 63));
+            return this;
+        }
+
+        public Writer bool(int ordinal, boolean v) {
+            return num(ordinal, v ? 1 : 0);
+        }
+
+        /** 普通字符串；null 不写 */
+        public Writer str(int ordinal, String s) {
+            if (s == null) return this;
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            tag(ordinal, STRING);
+            varint(b.length);
+            out.write(b, 0, b.length);
+            return this;
+        }
+
+        /** 密钥一类：全小写或全大写的 hex 存原始字节（大小写记在线型里），其它写法（混写、带 0x/冒号）原样存字符串 */
+        public Writer hex(int ordinal, String s) {
+            if (s == null) return this;
+            int wire = hexCase(s);
+            if (wire < 0) return str(ordinal, s);
+            byte[] raw = parseHex(s);
+            tag(ordinal, wire);
+            varint(raw.length);
+            out.write(raw, 0, raw.length);
+            return this;
+        }
+
+        /** "yyyy-MM-dd HH:mm:ss" 存秒数，格式对不上原样存字符串 */
+        public Writer time(int ordinal, String s) {
+            if (s == null) return this;
+            Long sec = parseDateTime(s);
+            if (sec == null) return str(ordinal, s);
+            tag(ordinal, DATETIME);
+            varint((sec << 1) ^ (sec >> 63));
+            return this;
+        }
+
+        public byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        private void tag(int ordinal, int wire) {
+            varint(((long) ordinal << 3) | wire);
+        }
+
+        private void varint(long v) {
+            while ((v & ~0x7FL) != 0) {
+                out.write((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            out.write((int) v);
+        }
+    }
+
+    // ===================== reader =====================
+
+    public static final class Reader {
+        private final byte[] buf;
+        private int pos;
+        private final int version;
+
+        private int wire;
+        private long num;
+        private String str;
+
+        public Reader(byte[] buf) {
+            if (buf == null || buf.length == 0) throw new IllegalArgumentException("empty record");
+            this.buf = buf;
+            this.version = buf[0] & 0xFF;
+            this.pos = 1;
+        }
+
+        public int version() {
+            return version;
+        }
+
+        /** 读下一个字段，返回字段序号；读完返回 -1 */
+        public int next() {
+            if (pos >= buf.length) return -1;
+            long tag = varint();
+            wire = (int) (tag & 0x7);
+            switch (wire) {
+                case VARINT -> {
+                    long z = varint();
+                    num = (z >>> 1) ^ -(z & 1);
+                    str = null;
+                }
+                case STRING -> {
+                    int n = length();
+                    str = new String(buf, pos, n, StandardCharsets.UTF_8);
+                    pos += n;
+                }
+                case HEX, HEX_UPPER -> {
+                    int n = length();
+                    char[] digits = wire == HEX ? HEX_DIGITS : HEX_DIGITS_UPPER;
+                    char[] c = new char[n * 2];
+                    for (int i = 0; i < n; i++) {
+                        int b = buf[pos + i] & 0xFF;
+                        c[2 * i] = digits[b >>> 4];
+                        c[2 * i + 1] = digits[b & 0xF];
+                    }
+                    str = new String(c);
+                    pos += n;
+                }
+                case DATETIME -> {
+                    long z = varint();
+                    long sec = (z >>> 1) ^ -(z & 1);
+                    str = LocalDateTime.ofEpochSecond(sec, 0, ZoneOffset.UTC).format(DATETIME_FORMAT);
+                }
+                default -> throw new IllegalArgumentException("unknown wire type " + wire + " at " + pos);
+            }
+            return (int) (tag >>> 3);
+        }
+
+        /** 当前字段按字符串取（STRING/HEX/DATETIME） */
+        public String str() {
+            return str != null ? str : String.valueOf(num);
+        }
+
+        public long num() {
+            return num;
+        }
+
+        public int int32() {
+            return (int) num;
+        }
+
+        public boolean bool() {
+            return num != 0;
+        }
+
+        private int length() {
+            long n = varint();
+            if (n < 0 || n > buf.length - pos) throw new IllegalArgumentException("bad length " + n + " at " + pos);
+            return (int) n;
+        }
+
+        private long varint() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (pos >= buf.length) throw new IllegalArgumentException("truncated varint");
+                int b = buf[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IllegalArgumentException("varint too long");
+        }
+    }
+
+    // ===================== helpers =====================
+
+    /**
+     * 能原样还原的 hex 返回线型：全小写（或只有数字）HEX，全大写 HEX_UPPER；
+     * 奇数长度、大小写混着、有别的字符返回 -1
+     */
+    private static int hexCase(String s) {
+        int n = s.length();
+        if (n == 0 || (n & 1) != 0) return -1;
+        boolean lower = false, upper = false;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') continue;
+            if (c >= 'a' && c <= 'f') lower = true;
+            else if (c >= 'A' && c <= 'F') upper = true;
+            else return -1;
+        }
+        if (lower && upper) return -1;
+        return upper ? HEX_UPPER : HEX;
+    }
+
+    /** 调用前已经过 hexCase 检查 */
+    private static byte[] parseHex(String s) {
+        byte[] out = new byte[s.length() / 2];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (byte) ((Character.digit(s.charAt(2 * i), 16) << 4) | Character.digit(s.charAt(2 * i + 1), 16));
+        }
+        return out;
+    }
+
+    private static Long parseDateTime(String s) {
+        if (s.length() != 19) return null;
+        try {
+            LocalDateTime t = LocalDateTime.parse(s, DATETIME_FORMAT);
+            // 宽松解析会把 02-30 之类挪到别的日子，还原不回来的不走这条线型
+            return t.format(DATETIME_FORMAT).equals(s) ? t.toEpochSecond(ZoneOffset.UTC) : null;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
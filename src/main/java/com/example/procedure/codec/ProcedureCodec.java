@@ -0,0 +1,102 @@
+package com.example.procedure.codec;
+
+import com.example.procedure.model.Procedure;
+
+import java.util.Arrays;
+
+/**
+ * Procedure 的二进制编码（替代 procedure:hash:&lt;id&gt; 那个全是 String.valueOf 的 hash）。
+ * 数字走 varint，时间串存秒数；和 new Procedure() 默认值一样的数字字段不写。
+ */
+public final class ProcedureCodec {
+
+    public static final int VERSION = 1;
+
+    // 字段序号：不要改、不要复用
+    private static final int PROCEDURE_ID = 1;
+    private static final int UE_ID = 2;
+    private static final int PROCEDURE_TYPE = 3;
+    private static final int PROCEDURE_TYPE_CODE = 4;
+    private static final int LAST_MESSAGE_TYPE = 5;
+    private static final int ACTIVATE_TIME = 6;
+    private static final int LAST_UPDATE_TIME = 7;
+    public static final int MESSAGE_NUM = 8;          // 服务端更新脚本要对它 +1
+    private static final int END_TIME = 9;
+    private static final int LAST_PHASE_INDEX = 10;
+    private static final int LAST_ORDER_INDEX = 11;
+    private static final int END_SEEN = 12;
+    private static final int END_SEEN_AT_MS = 13;
+    private static final int KEY_MASK = 14;
+    private static final int ACTIVATE_MS = 15;
+    private static final int LAST_UPDATE_MS = 16;
+
+    private ProcedureCodec() {}
+
+    public static byte[] encode(Procedure p) {
+        BinaryFields.Writer w = new BinaryFields.Writer(VERSION)
+                .str(PROCEDURE_ID, p.getProcedureId())
+                .str(UE_ID, p.getUeId())
+                .str(PROCEDURE_TYPE, p.getProcedureType())
+                .str(PROCEDURE_TYPE_CODE, p.getProcedureTypeCode())
+                .str(LAST_MESSAGE_TYPE, p.getLastMessageType())
+                .time(ACTIVATE_TIME, p.getActivateTime())
+                .time(LAST_UPDATE_TIME, p.getLastUpdateTime())
+                .time(END_TIME, p.getEndTime());
+        if (p.getMessageNum() != 0) w.num(MESSAGE_NUM, p.getMessageNum());
+        if (p.getLastPhaseIndex() != -1) w.num(LAST_PHASE_INDEX, p.getLastPhaseIndex());
+        if (p.getLastOrderIndex() != -1) w.num(LAST_ORDER_INDEX, p.getLastOrderIndex());
+        if (p.isEndSeen()) w.bool(END_SEEN, true);
+        if (p.getEndSeenAtMs() != 0L) w.num(END_SEEN_AT_MS, p.getEndSeenAtMs());
+        if (p.getKeyMask() != 0) w.num(KEY_MASK, p.getKeyMask());
+        if (p.getActivateMs() != 0L) w.num(ACTIVATE_MS, p.getActivateMs());
+        if (p.getLastUpdateMs() != 0L) w.num(LAST_UPDATE_MS, p.getLastUpdateMs());
+        return w.toByteArray();
+    }
+
+    /**
+     * 一次更新要覆盖的字段，编码同 encode 但不带版本字节；服务端脚本把原 value 里同序号的字段换成这些。
+     * 见 resources/lua/procedure_update_bin.lua；endSeen 为 null 表示不动乱序结束那三个字段。
+     */
+    public static byte[] patch(String lastMessageType, String lastUpdateTime, long lastUpdateMs,
+                               int lastPhaseIndex, int lastOrderIndex,
+                               Boolean endSeen, long endSeenAtMs, int keyMask) {
+        BinaryFields.Writer w = new BinaryFields.Writer(VERSION)
+                .str(LAST_MESSAGE_TYPE, lastMessageType)
+                .time(LAST_UPDATE_TIME, lastUpdateTime)
+                .num(LAST_UPDATE_MS, lastUpdateMs)
+                .num(LAST_PHASE_INDEX, lastPhaseIndex)
+                .num(LAST_ORDER_INDEX, lastOrderIndex);
+        if (endSeen != null) {
+            w.bool(END_SEEN, endSeen).num(END_SEEN_AT_MS, endSeenAtMs).num(KEY_MASK, keyMask);
+        }
+        byte[] b = w.toByteArray();
+        return Arrays.copyOfRange(b, 1, b.length);
+    }
+
+    public static Procedure decode(byte[] data) {
+        BinaryFields.Reader r = new BinaryFields.Reader(data);
+        Procedure p = new Procedure();
+        for (int f; (f = r.next()) >= 0; ) {
+            switch (f) {
+                case PROCEDURE_ID -> p.setProcedureId(r.str());
+                case UE_ID -> p.setUeId(r.str());
+                case PROCEDURE_TYPE -> p.setProcedureType(r.str());
+                case PROCEDURE_TYPE_CODE -> p.setProcedureTypeCode(r.str());
+                case LAST_MESSAGE_TYPE -> p.setLastMessageType(r.str());
+                case ACTIVATE_TIME -> p.setActivateTime(r.str());
+                case LAST_UPDATE_TIME -> p.setLastUpdateTime(r.str());
+                case MESSAGE_NUM -> p.setMessageNum(r.int32());
+                case END_TIME -> p.setEndTime(r.str());
+                case LAST_PHASE_INDEX -> p.setLastPhaseIndex(r.int32());
+                case LAST_ORDER_INDEX -> p.setLastOrderIndex(r.int32());
+                case END_SEEN -> p.setEndSeen(r.bool());
+                case END_SEEN_AT_MS -> p.setEndSeenAtMs(r.num());
+                case KEY_MASK -> p.setKeyMask(r.int32());
+                case ACTIVATE_MS -> p.setActivateMs(r.num());
+                case LAST_UPDATE_MS -> p.setLastUpdateMs(r.num());
+                default -> { /* 新版本加的字段，跳过 */ }
+            }
+        }
+        return p;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.procedure.codec;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "state.storage")
+public class StateStorageProperties {
+
+    /**
+     * UEContext / Procedure 在 Redis 里的存法：
+     *  binary：一个 key 一个二进制 value（UEContextCodec / ProcedureCodec）
+     *  hash  ：老的字符串 hash（ue:ctx:* / procedure:hash:*）
+     */
+    private String format = "binary";
+
+    /** binary 模式下读不到二进制 value 时，去老 hash 里找，找到就转存成二进制并删掉老 hash */
+    private boolean migrate = true;
+
+    public boolean isBinary() {
+        return !"hash".equalsIgnoreCase(format);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.procedure.codec;
+
+import com.example.procedure.model.UEContext;
+
+/**
+ * UEContext 的二进制编码（存成 Redis 里的一个 value，替代 ue:ctx:&lt;ueId&gt; 那个字符串 hash）。
+ * 字段序号固定，只能往后加；密钥字段存原始字节。
+ */
+public final class UEContextCodec {
+
+    public static final int VERSION = 1;
+
+    // 字段序号：不要改、不要复用
+    private static final int UE_ID = 1;
+    private static final int SUPI = 2;
+    private static final int AMF_UE_NGAP_ID = 3;
+    private static final int RAN_UE_NGAP_ID = 4;
+    private static final int CRNTI = 5;
+    private static final int CELL_ID = 6;
+    private static final int NAS_CIPHER_ALG = 7;
+    private static final int NAS_INT_ALG = 8;
+    private static final int RRC_INT_ALG = 9;
+    private static final int RRC_CIPHER_ALG = 10;
+    private static final int ATTACH_STATE = 11;
+    private static final int K_SEAF = 12;
+    private static final int K_AMF = 13;
+    private static final int SECURITY_KEY_HEX = 14;
+    private static final int K_NAS_ENC = 15;
+    private static final int K_NAS_INT = 16;
+    private static final int K_RRC_ENC = 17;
+    private static final int K_RRC_INT = 18;
+
+    private UEContextCodec() {}
+
+    public static byte[] encode(UEContext c) {
+        return new BinaryFields.Writer(VERSION)
+                .str(UE_ID, c.getUeId())
+                .str(SUPI, c.getSupi())
+                .str(AMF_UE_NGAP_ID, c.getAmfUeNgapId())
+                .str(RAN_UE_NGAP_ID, c.getRanUeNgapId())
+                .str(CRNTI, c.getCrnti())
+                .str(CELL_ID, c.getCellId())
+                .str(NAS_CIPHER_ALG, c.getNasCipherAlg())
+                .str(NAS_INT_ALG, c.getNasIntAlg())
+                .str(RRC_INT_ALG, c.getRrcIntAlg())
+                .str(RRC_CIPHER_ALG, c.getRrcCipherAlg())
+                .str(ATTACH_STATE, c.getAttachState())
+                .hex(K_SEAF, c.getKSeaf())
+                .hex(K_AMF, c.getKAmf())
+                .hex(SECURITY_KEY_HEX, c.getSecurityKeyHex())
+                .hex(K_NAS_ENC, c.getKNasEnc())
+                .hex(K_NAS_INT, c.getKNasInt())
+                .hex(K_RRC_ENC, c.getKRrcEnc())
+                .hex(K_RRC_INT, c.getKRrcInt())
+                .toByteArray();
+    }
+
+    public static UEContext decode(byte[] data) {
+        // 版本号目前只有 1；新版本只会往后加字段，老代码照样能读出认识的那部分
+        BinaryFields.Reader r = new BinaryFields.Reader(data);
+        UEContext c = new UEContext();
+        for (int f; (f = r.next()) >= 0; ) {
+            switch (f) {
+                case UE_ID -> c.setUeId(r.str());
+                case SUPI -> c.setSupi(r.str());
+                case AMF_UE_NGAP_ID -> c.setAmfUeNgapId(r.str());
+                case RAN_UE_NGAP_ID -> c.setRanUeNgapId(r.str());
+                case CRNTI -> c.setCrnti(r.str());
+                case CELL_ID -> c.setCellId(r.str());
+                case NAS_CIPHER_ALG -> c.setNasCipherAlg(r.str());
+                case NAS_INT_ALG -> c.setNasIntAlg(r.str());
+                case RRC_INT_ALG -> c.setRrcIntAlg(r.str());
+                case RRC_CIPHER_ALG -> c.setRrcCipherAlg(r.str());
+                case ATTACH_STATE -> c.setAttachState(r.str());
+                case K_SEAF -> c.setKSeaf(r.str());
+                case K_AMF -> c.setKAmf(r.str());
+                case SECURITY_KEY_HEX -> c.setSecurityKeyHex(r.str());
+                case K_NAS_ENC -> c.setKNasEnc(r.str());
+                case K_NAS_INT -> c.setKNasInt(r.str());
+                case K_RRC_ENC -> c.setKRrcEnc(r.str());
+                case K_RRC_INT -> c.setKRrcInt(r.str());
+                default -> { /* 新版本加的字段，跳过 */ }
+            }
+        }
+        return c;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.procedure.decrypt;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * DecryptClient 的非阻塞版本：
+ *  - java.net.http.HttpClient，HTTP/1.1 keep-alive 连接复用（不再每次 new HttpURLConnection）
+ *  - decryptAsync 返回 CompletableFuture，同时在途请求数用 Semaphore 限制
+ *  - decryptAll：一组请求要么逐个并发发出，要么打包成一次 POST {url}/batch
+ *
+ * 返回顺序与入参顺序一致，调用方按下标对回 NasInfo / PdcpInfo；单个失败位置为 null。
+ */
+@Component
+public class AsyncDecryptClient {
+
+    private static final TypeReference<List<DecryptResponse>> RESPONSE_LIST = new TypeReference<>() {};
+
+    private final HttpClient http;
+    private final ObjectMapper mapper;
+    private final Semaphore inFlight;
+    private final Duration requestTimeout;
+    private final boolean batch;
+
+    @Autowired
+    public AsyncDecryptClient(DecryptProperties props, ObjectMapper mapper) {
+        this(mapper, props.getHttp().getMaxInFlight(), props.getHttp().getConnectTimeoutMs(),
+                props.getHttp().getRequestTimeoutMs(), props.getHttp().isBatch());
+    }
+
+    public AsyncDecryptClient(ObjectMapper mapper, int maxInFlight, long connectTimeoutMs,
+                              long requestTimeoutMs, boolean batch) {
+        this.mapper = mapper;
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.batch = batch;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(Executors.newCachedThreadPool(r -> {
+                    Thread t = new Thread(r, "decrypt-http");
+                    t.setDaemon(true);
+                    return t;
+                }))
+                .build();
+    }
+
+    /** 单条异步解密，失败时 future 异常完成 */
+    public CompletableFuture<DecryptResponse> decryptAsync(String url, DecryptClient.DecryptRequest req) {
+        final byte[] body;
+        try {
+            body = mapper.writeValueAsBytes(req);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return send(url, body).thenApply(json -> {
+            try {
+                return mapper.readValue(json, DecryptResponse.class);
+            } catch (Exception e) {
+                throw new IllegalStateException("bad decrypt response: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * 多条一起：返回的 List 与 reqs 下标一一对应，失败的位置为 null。
+     * batch 打开且多于 1 条时走 {url}/batch，请求体/响应体都是 JSON 数组。
+     */
+    public CompletableFuture<List<DecryptResponse>> decryptAll(String url, List<DecryptClient.DecryptRequest> reqs) {
+        if (reqs.isEmpty()) return CompletableFuture.completedFuture(List.of());
+        if (batch && reqs.size() > 1) {
+            return decryptBatch(url + "/batch", reqs);
+        }
+
+        List<CompletableFuture<DecryptResponse>> futures = new ArrayList<>(reqs.size());
+        for (DecryptClient.DecryptRequest r : reqs) {
+            futures.add(decryptAsync(url, r).exceptionally(e -> null));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(v -> {
+                    List<DecryptResponse> out = new ArrayList<>(futures.size());
+                    for (CompletableFuture<DecryptResponse> f : futures) out.add(f.join());
+                    return out;
+                });
+    }
+
+    private CompletableFuture<List<DecryptResponse>> decryptBatch(String batchUrl, List<DecryptClient.DecryptRequest> reqs) {
+        final byte[] body;
+        try {
+            body = mapper.writeValueAsBytes(reqs);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return send(batchUrl, body).handle((json, err) -> {
+            List<DecryptResponse> out = new ArrayList<>(reqs.size());
+            List<DecryptResponse> got = null;
+            if (err == null) {
+                try {
+                    got = mapper.readValue(json, RESPONSE_LIST);
+                } catch (Exception ignore) {
+                    // 返回不是合法 JSON 数组，整批按失败处理
+                }
+            }
+            for (int i = 0; i < reqs.size(); i++) {
+                DecryptResponse r = (got != null && i < got.size()) ? got.get(i) : null;
+                // 服务端带回了 messageId 就核对一下，错位的丢掉
+                if (r != null && r.getMessageId() != null
+                        && !Objects.equals(r.getMessageId(), reqs.get(i).messageId)) {
+                    r = null;
+                }
+                out.add(r);
+            }
+            return out;
+        });
+    }
+
+    private CompletableFuture<String> send(String url, byte[] body) {
+        // 先把请求建好（URL 不合法在这里就抛），再去拿许可，免得许可漏还
+        final HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(requestTimeout)
+                    .header("Content-Type", "application/json; charset=UTF-8")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<HttpResponse<String>> sent;
+        try {
+            sent = http.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        } catch (RuntimeException e) {
+            // sendAsync 同步抛（客户端已关闭等）：whenComplete 挂不上，这里还
+            inFlight.release();
+            return CompletableFuture.failedFuture(e);
+        }
+        return sent
+                .whenComplete((r, e) -> inFlight.release())
+                .thenApply(r -> {
+                    if (r.statusCode() < 200 || r.statusCode() >= 300) {
+                        throw new IllegalStateException("HTTP " + r.statusCode() + ": " + r.body());
+                    }
+                    return r.body();
+                });
+    }
+
+    public int availablePermits() {
+        return inFlight.availablePermits();
+    }
+}
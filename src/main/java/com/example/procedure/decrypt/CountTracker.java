@@ -0,0 +1,179 @@
+package com.example.procedure.decrypt;
+
+import com.example.procedure.parser.MacInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按 UE / 层 / 方向 / BEARER 跟踪 COUNT，从报文里的短序号还原完整 COUNT。
+ *
+ *  - NAS ：COUNT = NAS overflow(16bit) || SQN(8bit)（TS 24.501 4.4.3.1）
+ *  - PDCP：COUNT = HFN || SN，SRB 的 SN 为 12bit（TS 38.323 6.3.2）
+ *
+ * 估计方法跟 PDCP 接收窗口一样（TS 38.323 5.2.2.1）：以已确认的最大 COUNT 为参考，
+ * SN 落在参考 SN 半窗之外就判定跨了一次 overflow/HFN。乱序、重复在半窗内都能正确还原。
+ * 还原不确定时给出按置信度排序的候选列表，调用方按顺序试，用完整性校验确认后 confirm。
+ *
+ * 安全上下文变了（密钥不同）COUNT 从 0 重新开始，所以每条流记住当时的 keyTag，变了就重置。
+ *
+ * 最多跟踪 decrypt.count.max-ues 个 UE（LRU，同 KeyTrialEngine）。不在 UE 上下文释放时清：
+ * NAS COUNT 跨连接保留（空闲态安全上下文还在），被挤掉的 UE 下次从候选列表重新找回参考。
+ */
+@Component
+public class CountTracker {
+
+    public static final String LAYER_NAS = "NAS";
+    public static final String LAYER_PDCP = "PDCP";
+
+    public static final int NAS_SQN_BITS = 8;
+    public static final int PDCP_SRB_SN_BITS = 12;
+
+    /** NAS connection identifier：3GPP 接入 = 0（TS 33.501 6.4.3.1） */
+    public static final int NAS_BEARER_3GPP = 0;
+
+    /** 一个候选 COUNT 及其置信度（0..1） */
+    public record Candidate(int count, double confidence) {}
+
+    /** ueId -> (层|方向|bearer -> 流)；access-order 的 LRU，读写都在 synchronized (ues) 里 */
+    private final Map<String, Map<String, Stream>> ues;
+
+    @Autowired
+    public CountTracker(DecryptProperties props) {
+        this(props.getCount().getMaxUes());
+    }
+
+    public CountTracker(int maxUes) {
+        int cap = Math.max(16, maxUes);
+        this.ues = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, Stream>> eldest) {
+                return size() > cap;
+            }
+        };
+    }
+
+    // ===================== bearer =====================
+
+    /**
+     * PDCP 的 BEARER = RB identity - 1（TS 38.323 / TS 33.501 D.2）。
+     * SRB1..3 的 LCID 就是 SRB id；没有 LCID 时按 SRB1 处理（信令 PDCP 绝大多数走 SRB1）。
+     */
+    public static int pdcpBearer(MacInfo mac) {
+        Integer lcid = mac == null ? null : mac.getLcid();
+        if (lcid == null || lcid < 1) return 0;
+        return (lcid - 1) & 0x1F;
+    }
+
+    public static int direction(String dir) {
+        return "DL".equalsIgnoreCase(dir) ? 1 : 0;
+    }
+
+    // ===================== estimate / confirm =====================
+
+    /**
+     * 为收到的 sn 给出候选 COUNT（置信度从高到低，至少一个）。
+     * 只读，不改变状态；确认后调用 confirm。
+     */
+    public List<Candidate> candidates(String ueId, String layer, int direction, int bearer,
+                                      String keyTag, int sn, int snBits) {
+        Stream st = stream(ueId, layer, direction, bearer);
+        synchronized (st) {
+            st.checkKey(keyTag);
+            return st.candidates(sn, snBits);
+        }
+    }
+
+    /** 某个 COUNT 已被确认（完整性校验通过，或没有完整性时解密成功） */
+    public void confirm(String ueId, String layer, int direction, int bearer, String keyTag, int count) {
+        Stream st = stream(ueId, layer, direction, bearer);
+        synchronized (st) {
+            st.checkKey(keyTag);
+            st.confirm(count);
+        }
+    }
+
+    /** 这条流在当前密钥下已经有确认过的 COUNT（候选的第一个基本就是对的）；只读，不重置 */
+    public boolean hasReference(String ueId, String layer, int direction, int bearer, String keyTag) {
+        Stream st = stream(ueId, layer, direction, bearer);
+        synchronized (st) {
+            return st.initialized && keyTag != null && keyTag.equalsIgnoreCase(st.keyTag);
+        }
+    }
+
+    /** 当前跟踪着几个 UE */
+    public int size() {
+        synchronized (ues) {
+            return ues.size();
+        }
+    }
+
+    private Stream stream(String ueId, String layer, int direction, int bearer) {
+        String id = layer + "|" + direction + "|" + bearer;
+        synchronized (ues) {
+            return ues.computeIfAbsent(ueId == null ? "" : ueId, k -> new HashMap<>(4))
+                    .computeIfAbsent(id, k -> new Stream());
+        }
+    }
+
+    // ===================== per-stream state =====================
+
+    private static final class Stream {
+        String keyTag;
+        boolean initialized;
+        long highest;      // 已确认的最大 COUNT
+
+        void checkKey(String tag) {
+            if (tag != null && !tag.equalsIgnoreCase(keyTag)) {
+                keyTag = tag;
+                initialized = false;
+                highest = 0;
+            }
+        }
+
+        List<Candidate> candidates(int sn, int snBits) {
+            long snMask = (1L << snBits) - 1;
+            long s = sn & snMask;
+            long maxHfn = (0xFFFFFFFFL >>> snBits);
+            List<Candidate> out = new ArrayList<>(3);
+
+            if (!initialized) {
+                // 没有参考：抓包一般从注册/建链开始，overflow/HFN 多半还是 0
+                out.add(new Candidate((int) s, 0.7));
+                out.add(new Candidate((int) ((1L << snBits) | s), 0.2));
+                out.add(new Candidate((int) ((2L << snBits) | s), 0.1));
+                return out;
+            }
+
+            long window = 1L << (snBits - 1);
+            long refHfn = highest >>> snBits;
+            long refSn = highest & snMask;
+            long hfn;
+            if (s + window < refSn) {
+                hfn = refHfn + 1;          // 序号回绕
+            } else if (s >= refSn + window) {
+                hfn = refHfn - 1;          // 回绕前的迟到报文
+            } else {
+                hfn = refHfn;
+            }
+            if (hfn < 0) hfn = 0;
+            if (hfn > maxHfn) hfn = maxHfn;
+
+            out.add(new Candidate((int) ((hfn << snBits) | s), 0.9));
+            if (hfn + 1 <= maxHfn) out.add(new Candidate((int) (((hfn + 1) << snBits) | s), 0.07));
+            if (hfn - 1 >= 0) out.add(new Candidate((int) (((hfn - 1) << snBits) | s), 0.03));
+            return out;
+        }
+
+        void confirm(int countInt) {
+            long c = countInt & 0xFFFFFFFFL;
+            if (!initialized || c > highest) highest = c;
+            initialized = true;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.procedure.decrypt;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "decrypt")
+public class DecryptProperties {
+
+    /** local：进程内 NEA/NIA；http：调用外部解密服务 */
+    private String mode = "local";
+
+    /** mode=http 时的服务地址 */
+    private String url = "http://127.0.0.1:8004/decrypt";
+
+    private Local local = new Local();
+
+    private Http http = new Http();
+
+    private Cache cache = new Cache();
+
+    private Deferred deferred = new Deferred();
+
+    private Count count = new Count();
+
+    private Trial trial = new Trial();
+
+    @Setter
+    @Getter
+    public static class Local {
+        /** 最多保留多少个 UE/层 的密码实例（LRU） */
+        private int maxSessions = 10000;
+        /** 解密完一个 COUNT 后，后台预算后续多少个 COUNT 的密钥流；0 关闭 */
+        private int prefetchDepth = 0;
+        /** 预算密钥流的字节长度（覆盖常见 NAS/RRC 报文长度即可） */
+        private int prefetchBytes = 256;
+    }
+
+    @Setter
+    @Getter
+    public static class Http {
+        /** 同时在途的请求上限 */
+        private int maxInFlight = 64;
+        private long connectTimeoutMs = 2000;
+        private long requestTimeoutMs = 5000;
+        /** 一条消息里多个 PDU 时打包成一次 POST {url}/batch */
+        private boolean batch = false;
+    }
+
+    @Setter
+    @Getter
+    public static class Cache {
+        private boolean enabled = true;
+        /** 最多缓存多少条解密结果 */
+        private int maxEntries = 100_000;
+        /** 明文等占用的估算字节上限，<=0 不限 */
+        private long maxBytes = 64L * 1024 * 1024;
+    }
+
+    @Setter
+    @Getter
+    public static class Deferred {
+        /** 密钥没到时先停住加密消息，密钥推出后按 COUNT 顺序补解 */
+        private boolean enabled = true;
+        /** 单个 UE 最多停多少条，超出的最早一条直接放出（不带明文） */
+        private int maxPerUe = 256;
+        /** 全部 UE 加起来最多停多少条 */
+        private int maxTotal = 50_000;
+        /** 停留超过这么久还没等到密钥就放出；<=0 不限 */
+        private long maxAgeMs = 30_000;
+    }
+
+    @Setter
+    @Getter
+    public static class Count {
+        /** CountTracker 最多跟踪多少个 UE（LRU） */
+        private int maxUes = 100_000;
+    }
+
+    @Setter
+    @Getter
+    public static class Trial {
+        /** 每个 UE 每层记住最近几代密钥（切换/重鉴权前后的旧上下文） */
+        private int maxGenerations = 3;
+        /** 并行校验 MAC 的线程数；<=0 取 CPU 核数，1 表示串行 */
+        private int parallelism = 0;
+        /** 候选少于这个数就串行试（线程切换比算一次 MAC 还贵） */
+        private int parallelThreshold = 4;
+        /** 最多记多少个 UE/层 的密钥代和胜出记录（LRU） */
+        private int maxUes = 100_000;
+    }
+}
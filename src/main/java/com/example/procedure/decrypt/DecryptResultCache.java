@@ -0,0 +1,202 @@
+package com.example.procedure.decrypt;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 解密结果缓存：同一把密钥、同一算法、同一 COUNT/BEARER/DIRECTION 下
+ * 密文和 MAC 完全一样的 PDU（SCTP/NGAP 重传、同一条 NAS 在 Uu 和 N2 上各出现一次）
+ * 解出来的结果一定一样，命中直接写回明文，不再算密码/发 HTTP。
+ *
+ * key = SHA-256(layer, encKey, intKey, encAlgo, intAlgo, count, bearer, direction, ciphertext, mac) 的前 128 bit；
+ * 只缓存 DECRYPT_SUCCESS 的结果。按条数 + 估算字节数做 LRU 淘汰。
+ */
+@Component
+public class DecryptResultCache {
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    /** 每条的固定开销估算（key、LinkedHashMap.Entry、Entry 对象头） */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> map = new LinkedHashMap<>(1024, 0.75f, true);
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public DecryptResultCache(DecryptProperties props) {
+        this(props.getCache().isEnabled(), props.getCache().getMaxEntries(), props.getCache().getMaxBytes());
+    }
+
+    public DecryptResultCache(boolean enabled, int maxEntries, long maxBytes) {
+        this.enabled = enabled && maxEntries > 0;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** 命中返回一份新的 DecryptResponse（messageId/ueId 换成本次请求的），未命中返回 null */
+    public DecryptResponse get(DecryptClient.DecryptRequest req) {
+        if (!enabled) return null;
+        Key k = keyOf(req);
+        Entry e;
+        synchronized (this) {
+            e = map.get(k);
+        }
+        if (e == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        DecryptResponse r = new DecryptResponse();
+        r.setMessageId(req.messageId);
+        r.setUeId(req.ueId);
+        r.setDecryptStatus(e.decryptStatus);
+        r.setIntegrityStatus(e.integrityStatus);
+        r.setPlainData(e.plainData);
+        r.setPlainMac(e.plainMac);
+        return r;
+    }
+
+    /**
+     * 有没有这条请求、且完整性没失败的结果（试密钥/COUNT 前先问一下，命中就不用算 NIA）。
+     * 不计命中/未命中，真正取结果还是走 get。
+     */
+    public boolean hasVerified(DecryptClient.DecryptRequest req) {
+        if (!enabled) return false;
+        Key k = keyOf(req);
+        Entry e;
+        synchronized (this) {
+            e = map.get(k);
+        }
+        return e != null && !LocalDecryptEngine.INTEGRITY_FAILED.equals(e.integrityStatus);
+    }
+
+    /** 只缓存解密成功的结果 */
+    public void put(DecryptClient.DecryptRequest req, DecryptResponse resp) {
+        if (!enabled || resp == null || !"DECRYPT_SUCCESS".equals(resp.getDecryptStatus())) return;
+        Key k = keyOf(req);
+        Entry e = new Entry(resp.getDecryptStatus(), resp.getIntegrityStatus(), resp.getPlainData(), resp.getPlainMac());
+        synchronized (this) {
+            Entry old = map.put(k, e);
+            if (old != null) bytes -= old.size;
+            bytes += e.size;
+            Iterator<Entry> it = map.values().iterator();
+            while ((map.size() > maxEntries || (maxBytes > 0 && bytes > maxBytes)) && it.hasNext()) {
+                Entry eldest = it.next();
+                it.remove();
+                bytes -= eldest.size;
+                evictions.increment();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        bytes = 0;
+    }
+
+    public Stats stats() {
+        int size;
+        long b;
+        synchronized (this) {
+            size = map.size();
+            b = bytes;
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size, b);
+    }
+
+    // ===================== key =====================
+
+    static Key keyOf(DecryptClient.DecryptRequest req) {
+        MessageDigest md = SHA256.get();
+        md.reset();
+        field(md, req.layer);
+        field(md, normHex(req.encKey));
+        field(md, normHex(req.intKey));
+        field(md, req.encAlgo);
+        field(md, req.intAlgo);
+        field(md, Integer.toString(req.count));
+        field(md, Integer.toString(req.bearer));
+        field(md, req.direction);
+        field(md, normHex(req.ciphertext));
+        field(md, normHex(req.mac));
+        field(md, Integer.toString(req.dataLength));
+        byte[] d = md.digest();
+        return new Key(toLong(d, 0), toLong(d, 8));
+    }
+
+    private static void field(MessageDigest md, String v) {
+        byte[] b = v == null ? new byte[0] : v.getBytes(StandardCharsets.UTF_8);
+        md.update((byte) (b.length >>> 8));
+        md.update((byte) b.length);
+        md.update(b);
+    }
+
+    private static String normHex(String v) {
+        if (v == null) return null;
+        String s = v.trim();
+        if (s.startsWith("0x") || s.startsWith("0X")) s = s.substring(2);
+        return s.replace(":", "").replace(" ", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static long toLong(byte[] b, int off) {
+        long v = 0;
+        for (int i = 0; i < 8; i++) v = (v << 8) | (b[off + i] & 0xFF);
+        return v;
+    }
+
+    record Key(long hi, long lo) {}
+
+    private static final class Entry {
+        final String decryptStatus;
+        final String integrityStatus;
+        final String plainData;
+        final String plainMac;
+        final int size;
+
+        Entry(String decryptStatus, String integrityStatus, String plainData, String plainMac) {
+            this.decryptStatus = decryptStatus;
+            this.integrityStatus = integrityStatus;
+            this.plainData = plainData;
+            this.plainMac = plainMac;
+            this.size = ENTRY_OVERHEAD + len(plainData) + len(plainMac);
+        }
+
+        private static int len(String s) {
+            // Latin-1 compact string：1 字节/字符 + 对象头
+            return s == null ? 0 : 24 + s.length();
+        }
+    }
+
+    public record Stats(long hits, long misses, long evictions, int size, long bytes) {
+        public double hitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.procedure.decrypt;
+
+import com.example.procedure.clock.ProcedureClock;
+import com.example.procedure.model.SignalingMessage;
+import com.example.procedure.model.UEContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * 密钥还没推出来时到达的加密消息先停在这里（按 UE 分桶），
+ * 等 UEContextService.saveContext 存下对应的 kNasEnc / kRrcEnc 后再放出来重新走 process()。
+ *
+ *  - 放出顺序：同一条流（层 + 方向）内按 COUNT 升序；不同流之间保持到达时的相对位置，
+ *    这样 UL/DL 一问一答的先后关系不会被打乱。
+ *  - COUNT 在入队时按该流上一条的 COUNT 把短序号展开（半窗判定回绕，同 CountTracker）。
+ *  - 上限：单 UE 条数、全局条数、停留时长。超限的不丢，按"没有明文"直接放出去正常处理，
+ *    至少流程判别还能拿到这条消息。
+ *
+ * 本类只管数据，不依赖 service；调用方（MsgProcessing_Service）负责 drain 之后重新 process。
+ */
+@Component
+public class DeferredDecryptQueue {
+
+    /** drain 出来的一条消息；keyReady=false 表示是超限/超时放出的，不要再 park */
+    public record Released(SignalingMessage msg, String layer, boolean keyReady) {}
+
+    /** 统计 */
+    public record Stats(long parked, long flushed, long expired, long overflowed, int pending) {}
+
+    private final boolean enabled;
+    private final int maxPerUe;
+    private final int maxTotal;
+    private final long maxAgeMs;
+    private final LongSupplier clock;
+
+    /** ueId -> 该 UE 还在等的消息（到达顺序） */
+    private final Map<String, UeBucket> buckets = new HashMap<>();
+    /** 全局到达顺序，用来做总量/超时淘汰（惰性删除：已放出的条目 state != PARKED） */
+    private final ArrayDeque<Entry> arrival = new ArrayDeque<>();
+    /** 已确定要放出的（密钥就绪 / 超限 / 超时），等 drain 取走 */
+    private final List<Released> out = new ArrayList<>();
+
+    private long seq;
+    private int pending;
+
+    private long parked, flushed, expired, overflowed;
+
+    @Autowired
+    public DeferredDecryptQueue(DecryptProperties props, ProcedureClock clock) {
+        this(props.getDeferred().isEnabled(), props.getDeferred().getMaxPerUe(),
+                props.getDeferred().getMaxTotal(), props.getDeferred().getMaxAgeMs(), clock::now);
+    }
+
+    public DeferredDecryptQueue(boolean enabled, int maxPerUe, int maxTotal, long maxAgeMs, LongSupplier clock) {
+        this.enabled = enabled;
+        this.maxPerUe = Math.max(1, maxPerUe);
+        this.maxTotal = Math.max(1, maxTotal);
+        this.maxAgeMs = maxAgeMs;
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ===================== park =====================
+
+    /**
+     * 停一条消息。sn 为报文里的短序号（NAS SQN / PDCP SN），没有就传 null，按到达位置放出。
+     * 返回 false 表示没停（功能关闭或参数不全），调用方照常处理。
+     */
+    public synchronized boolean park(SignalingMessage msg, String layer, int dir, Integer sn, int snBits) {
+        if (!enabled || msg == null || msg.getUeId() == null || layer == null) return false;
+        long now = clock.getAsLong();
+        expire(now);
+
+        UeBucket b = buckets.computeIfAbsent(msg.getUeId(), k -> new UeBucket());
+        String stream = layer + ":" + dir;
+        long count = sn == null ? -1 : b.unwrap(stream, sn, snBits);
+
+        Entry e = new Entry(msg, msg.getUeId(), layer, stream, count, seq++, now);
+        b.entries.add(e);
+        arrival.addLast(e);
+        pending++;
+        parked++;
+
+        // 单 UE 超限：放出该 UE 最早的一条
+        if (b.entries.size() > maxPerUe) {
+            Entry old = b.entries.remove(0);
+            release(old, false);
+            overflowed++;
+        }
+        // 全局超限：放出全局最早的
+        while (pending > maxTotal) {
+            Entry old = pollOldestParked();
+            if (old == null) break;
+            removeFromBucket(old);
+            release(old, false);
+            overflowed++;
+        }
+        compactArrival();
+        return true;
+    }
+
+    /** 该 UE 在这一层是否有消息在等 */
+    public synchronized boolean hasPending(String ueId, String layer) {
+        UeBucket b = buckets.get(ueId);
+        if (b == null) return false;
+        for (Entry e : b.entries) {
+            if (e.layer.equals(layer)) return true;
+        }
+        return false;
+    }
+
+    // ===================== key ready =====================
+
+    /**
+     * saveContext 之后调用：kNasEnc 有了就放 NAS 层，kRrcEnc 有了就放 PDCP 层。
+     * 只是把条目挪到待放出列表，真正重新处理在 drain 之后由调用方做。
+     */
+    public void onContextSaved(UEContext ctx) {
+        if (!enabled || ctx == null || ctx.getUeId() == null) return;
+        boolean nas = !isBlank(ctx.getKNasEnc());
+        boolean as = !isBlank(ctx.getKRrcEnc());
+        if (!nas && !as) return;
+        synchronized (this) {
+            UeBucket b = buckets.get(ctx.getUeId());
+            if (b == null) return;
+            if (nas) releaseLayer(ctx.getUeId(), b, CountTracker.LAYER_NAS);
+            if (as) releaseLayer(ctx.getUeId(), b, CountTracker.LAYER_PDCP);
+        }
+    }
+
+    /**
+     * 取走所有该放出的消息（顺序即重新处理的顺序），顺带做一次超时清理。
+     */
+    public synchronized List<Released> drain() {
+        expire(clock.getAsLong());
+        if (out.isEmpty()) return List.of();
+        List<Released> r = new ArrayList<>(out);
+        out.clear();
+        return r;
+    }
+
+    /** 有没有等着 drain 的（不取走）；同样先做超时清理，和 drain 看到的一致 */
+    public synchronized boolean hasReleased() {
+        expire(clock.getAsLong());
+        return !out.isEmpty();
+    }
+
+    public synchronized void evict(String ueId) {
+        UeBucket b = buckets.remove(ueId);
+        if (b == null) return;
+        for (Entry e : b.entries) {
+            e.state = Entry.DONE;
+            pending--;
+        }
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(parked, flushed, expired, overflowed, pending);
+    }
+
+    // ===================== internal =====================
+
+    private void releaseLayer(String ueId, UeBucket b, String layer) {
+        List<Entry> hit = new ArrayList<>();
+        for (Iterator<Entry> it = b.entries.iterator(); it.hasNext(); ) {
+            Entry e = it.next();
+            if (e.layer.equals(layer)) {
+                hit.add(e);
+                it.remove();
+            }
+        }
+        if (hit.isEmpty()) return;
+
+        // 每条流占着的到达位置不变，流内按 COUNT 重新排进这些位置；没有 SN 的原地不动
+        Map<String, List<Entry>> byStream = new LinkedHashMap<>();
+        for (Entry e : hit) {
+            if (e.count >= 0) byStream.computeIfAbsent(e.stream, k -> new ArrayList<>()).add(e);
+        }
+        Entry[] slots = hit.toArray(new Entry[0]);
+        for (List<Entry> s : byStream.values()) {
+            List<Integer> pos = new ArrayList<>(s.size());
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[i].count >= 0 && slots[i].stream.equals(s.get(0).stream)) pos.add(i);
+            }
+            s.sort(Comparator.comparingLong((Entry e) -> e.count).thenComparingLong(e -> e.seq));
+            for (int i = 0; i < pos.size(); i++) slots[pos.get(i)] = s.get(i);
+        }
+        for (Entry e : slots) {
+            release(e, true);
+            flushed++;
+        }
+        if (b.entries.isEmpty()) buckets.remove(ueId);
+    }
+
+    private void expire(long now) {
+        if (maxAgeMs <= 0) return;
+        while (!arrival.isEmpty()) {
+            Entry e = arrival.peekFirst();
+            if (e.state != Entry.PARKED) {
+                arrival.pollFirst();
+                continue;
+            }
+            if (now - e.parkedAt < maxAgeMs) break;
+            arrival.pollFirst();
+            removeFromBucket(e);
+            release(e, false);
+            expired++;
+        }
+    }
+
+    private Entry pollOldestParked() {
+        while (!arrival.isEmpty()) {
+            Entry e = arrival.pollFirst();
+            if (e.state == Entry.PARKED) return e;
+        }
+        return null;
+    }
+
+    /** 惰性删除的条目太多时整理一次，避免 arrival 无限长 */
+    private void compactArrival() {
+        if (arrival.size() <= 2 * maxTotal) return;
+        arrival.removeIf(e -> e.state != Entry.PARKED);
+    }
+
+    private void removeFromBucket(Entry e) {
+        UeBucket b = buckets.get(e.ueId);
+        if (b == null) return;
+        b.entries.remove(e);
+        if (b.entries.isEmpty()) buckets.remove(e.ueId);
+    }
+
+    private void release(Entry e, boolean keyReady) {
+        if (e.state != Entry.PARKED) return;
+        e.state = Entry.DONE;
+        pending--;
+        out.add(new Released(e.msg, e.layer, keyReady));
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.trim().isEmpty();
+    }
+
+    private static final class UeBucket {
+        final List<Entry> entries = new ArrayList<>();
+        /** stream -> 上一条展开后的 COUNT（只用于排序，第一条从 2^32 起算，给往回展开留余量） */
+        final Map<String, Long> last = new HashMap<>();
+
+        long unwrap(String stream, int sn, int snBits) {
+            long mod = 1L << snBits;
+            long s = sn & (mod - 1);
+            Long prev = last.get(stream);
+            long count;
+            if (prev == null) {
+                count = (1L << 32) + s;
+            } else {
+                long delta = (s - (prev & (mod - 1))) & (mod - 1);
+                if (delta >= mod / 2) delta -= mod;      // 半窗之外算往回
+                count = prev + delta;
+            }
+            last.put(stream, count);
+            return count;
+        }
+    }
+
+    private static final class Entry {
+        static final int PARKED = 0, DONE = 1;
+
+        final SignalingMessage msg;
+        final String ueId;
+        final String layer;
+        final String stream;
+        final long count;
+        final long seq;
+        final long parkedAt;
+        int state = PARKED;
+
+        Entry(SignalingMessage msg, String ueId, String layer, String stream, long count, long seq, long parkedAt) {
+            this.msg = msg;
+            this.ueId = ueId;
+            this.layer = layer;
+            this.stream = stream;
+            this.count = count;
+            this.seq = seq;
+            this.parkedAt = parkedAt;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.procedure.decrypt;
+
+import com.example.procedure.model.UEContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 候选密钥试验：切换/重鉴权前后同一个 UE 可能同时有好几代 KAMF/KgNB 派生出的密钥，
+ * COUNT 也可能不确定。给一条带完整性保护的 PDU 和一组 (密钥, 算法, COUNT) 候选，
+ * 先并行校验 NIA MAC，挑出能对上的那一组再去解密，而不是拿当前密钥盲解一次。
+ *
+ *  - 密钥代：saveContext 时 observe(ctx) 记下每层最近 maxGenerations 代（新的在前）。
+ *  - 胜出缓存：每个 UE 每层记住上次对上的那代密钥，下次排在最前面，
+ *    稳定状态下第一个候选就命中，基本不用多算。
+ *  - 结果是确定的：并行算完后取排序后下标最小的命中者，不看谁先算完。
+ *  - 校验线程池归这个 bean，close 时关掉。
+ */
+@Component
+public class KeyTrialEngine implements AutoCloseable {
+
+    /**
+     * 一代安全上下文（某一层的加密/完整性密钥 + 算法，算法统一成 "NEA2"/"NIA2" 这种写法）。
+     * 算法为 null 表示上下文里没有 / 认不出来。不猜也不换着算法试：密钥是按算法号推出来的，
+     * 换个算法号这把密钥本来就不对。
+     */
+    public record KeySet(String encKey, String encAlgo, String intKey, String intAlgo) {
+
+        /** 算法号可以是 "2" / "NEA2" / "128-NEA2"，取最后一位；没有或不认识记成 null */
+        public static KeySet of(String encKey, String encAlg, String intKey, String intAlg) {
+            Integer e = algNo(encAlg), i = algNo(intAlg);
+            return new KeySet(encKey, e == null ? null : "NEA" + e, intKey, i == null ? null : "NIA" + i);
+        }
+
+        /** 两个算法都认得才能拿来试；不全的这代跳过 */
+        public boolean isComplete() {
+            return encAlgo != null && intAlgo != null;
+        }
+
+        private static Integer algNo(String s) {
+            if (s == null || s.isBlank()) return null;
+            char c = s.trim().charAt(s.trim().length() - 1);
+            return (c >= '0' && c <= '3') ? c - '0' : null;
+        }
+    }
+
+    /** 一个候选：哪代密钥 + 哪个 COUNT */
+    public record Trial(KeySet keys, int count) {}
+
+    /** 胜出的候选（trials 里的原始下标） */
+    public record Outcome(int index, Trial trial) {}
+
+    public record Stats(long selections, long trials, long winnerFirstHits, long noMatch) {}
+
+    private final int maxGenerations;
+    private final int parallelThreshold;
+    private final ExecutorService pool;
+
+    /** ueId|layer -> 最近几代密钥（新的在前） */
+    private final Map<String, List<KeySet>> generations;
+    /** ueId|layer -> 上次胜出的那代 */
+    private final Map<String, KeySet> winners;
+
+    private long selections, trialCount, winnerFirstHits, noMatch;
+
+    @Autowired
+    public KeyTrialEngine(DecryptProperties props) {
+        this(props.getTrial().getMaxGenerations(), props.getTrial().getParallelism(),
+                props.getTrial().getParallelThreshold(), props.getTrial().getMaxUes());
+    }
+
+    public KeyTrialEngine(int maxGenerations, int parallelism, int parallelThreshold, int maxUes) {
+        this.maxGenerations = Math.max(1, maxGenerations);
+        this.parallelThreshold = Math.max(2, parallelThreshold);
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = threads <= 1 ? null : Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "key-trial");
+            t.setDaemon(true);
+            return t;
+        });
+        this.generations = lru(maxUes);
+        this.winners = lru(maxUes);
+    }
+
+    /** 关掉校验线程池（Spring 销毁 bean 时调） */
+    @Override
+    public void close() {
+        if (pool != null) pool.shutdownNow();
+    }
+
+    // ===================== generations =====================
+
+    /** saveContext 后调用：把 NAS / AS 当前这代密钥记下来 */
+    public void observe(UEContext ctx) {
+        if (ctx == null || ctx.getUeId() == null) return;
+        remember(ctx.getUeId(), CountTracker.LAYER_NAS,
+                ctx.getKNasEnc(), ctx.getNasCipherAlg(), ctx.getKNasInt(), ctx.getNasIntAlg());
+        remember(ctx.getUeId(), CountTracker.LAYER_PDCP,
+                ctx.getKRrcEnc(), ctx.getRrcCipherAlg(), ctx.getKRrcInt(), ctx.getRrcIntAlg());
+    }
+
+    /**
+     * 该层的候选密钥代：current（上下文里的当前密钥）+ 记住的旧代，去重，上次胜出的排最前。
+     * current 可以为 null（例如只剩旧代）。
+     */
+    public List<KeySet> keySets(String ueId, String layer, KeySet current) {
+        List<KeySet> out = new ArrayList<>(maxGenerations + 1);
+        if (current != null && current.encKey() != null) out.add(current);
+        String id = ueId + "|" + layer;
+        synchronized (generations) {
+            List<KeySet> g = generations.get(id);
+            if (g != null) {
+                for (KeySet k : g) if (!out.contains(k)) out.add(k);
+            }
+        }
+        KeySet w;
+        synchronized (winners) {
+            w = winners.get(id);
+        }
+        if (w != null && out.remove(w)) out.add(0, w);
+        return out;
+    }
+
+    public void evict(String ueId) {
+        String prefix = ueId + "|";
+        synchronized (generations) {
+            generations.keySet().removeIf(k -> k.startsWith(prefix));
+        }
+        synchronized (winners) {
+            winners.keySet().removeIf(k -> k.startsWith(prefix));
+        }
+    }
+
+    // ===================== select =====================
+
+    /**
+     * 在 trials 里挑出完整性校验通过的候选（按 trials 顺序取第一个命中的）。
+     * template 提供 ueId/layer/bearer/direction/ciphertext/mac，密钥/算法/COUNT 由候选覆盖。
+     * 都不过返回 null；没有完整性可校验（缺完整性密钥或 MAC）的候选不算命中。
+     */
+    public Outcome select(DecryptClient.DecryptRequest template, List<Trial> trials) {
+        if (trials == null || trials.isEmpty()) return null;
+        int n = trials.size();
+        boolean[] ok = new boolean[n];
+
+        if (pool == null || n < parallelThreshold) {
+            for (int i = 0; i < n; i++) {
+                ok[i] = check(template, trials.get(i));
+                if (ok[i]) break;          // 串行时第一个命中就够了
+            }
+        } else {
+            List<Future<Boolean>> fs = new ArrayList<>(n);
+            for (Trial t : trials) {
+                Callable<Boolean> c = () -> check(template, t);
+                fs.add(pool.submit(c));
+            }
+            for (int i = 0; i < n; i++) {
+                try {
+                    ok[i] = fs.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    fs.forEach(f -> f.cancel(true));
+                    return null;
+                } catch (ExecutionException e) {
+                    ok[i] = false;
+                }
+            }
+        }
+
+        int win = -1;
+        for (int i = 0; i < n; i++) {
+            if (ok[i]) {
+                win = i;
+                break;
+            }
+        }
+        synchronized (this) {
+            selections++;
+            trialCount += n;
+            if (win == 0) winnerFirstHits++;
+            if (win < 0) noMatch++;
+        }
+        if (win < 0) return null;
+
+        Trial t = trials.get(win);
+        synchronized (winners) {
+            winners.put(template.ueId + "|" + layerOf(template), t.keys());
+        }
+        return new Outcome(win, t);
+    }
+
+    /** 把候选的密钥/算法/COUNT 写进请求 */
+    public static void apply(DecryptClient.DecryptRequest req, Trial t) {
+        req.encKey = t.keys().encKey();
+        req.encAlgo = t.keys().encAlgo();
+        req.intKey = t.keys().intKey();
+        req.intAlgo = t.keys().intAlgo();
+        req.count = t.count();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(selections, trialCount, winnerFirstHits, noMatch);
+    }
+
+    // ===================== internal =====================
+
+    private static boolean check(DecryptClient.DecryptRequest template, Trial t) {
+        DecryptClient.DecryptRequest r = new DecryptClient.DecryptRequest();
+        r.layer = template.layer;
+        r.bearer = template.bearer;
+        r.direction = template.direction;
+        r.ciphertext = template.ciphertext;
+        r.mac = template.mac;
+        r.dataLength = template.dataLength;
+        apply(r, t);
+        return LocalDecryptEngine.INTEGRITY_SUCCESS.equals(LocalDecryptEngine.verify(r));
+    }
+
+    private void remember(String ueId, String layer, String encKey, String encAlg, String intKey, String intAlg) {
+        if (isBlank(encKey) || isBlank(intKey)) return;
+        KeySet k = KeySet.of(encKey, encAlg, intKey, intAlg);
+        String id = ueId + "|" + layer;
+        synchronized (generations) {
+            List<KeySet> g = generations.get(id);
+            if (g == null) {
+                g = new ArrayList<>(maxGenerations);
+                generations.put(id, g);
+            } else if (!g.isEmpty() && g.get(0).equals(k)) {
+                return;
+            }
+            g.remove(k);
+            g.add(0, k);
+            while (g.size() > maxGenerations) g.remove(g.size() - 1);
+        }
+    }
+
+    /** NAS 对 NAS，其余（AS/PDCP）都算 PDCP，和 observe 的分层一致 */
+    private static String layerOf(DecryptClient.DecryptRequest req) {
+        return "NAS".equalsIgnoreCase(req.layer) ? CountTracker.LAYER_NAS : CountTracker.LAYER_PDCP;
+    }
+
+    private static <V> Map<String, V> lru(int max) {
+        int cap = Math.max(16, max);
+        return new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > cap;
+            }
+        };
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.trim().isEmpty();
+    }
+}
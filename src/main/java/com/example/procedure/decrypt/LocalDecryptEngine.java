@@ -0,0 +1,332 @@
+package com.example.procedure.decrypt;
+
+import com.example.procedure.decrypt.engine.NeaCipher;
+import com.example.procedure.decrypt.engine.NiaMac;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 进程内 NEA/NIA 解密，替代 POST 127.0.0.1:8004/decrypt。
+ *
+ * 入参/出参沿用 DecryptClient.DecryptRequest / DecryptResponse：
+ *  - layer=NAS：ciphertext 为 NAS 密文，MAC 不加密；
+ *               完整性输入 = SQN(COUNT 低 8 位) || 密文（TS 24.501 4.4.3.3）
+ *  - 其它（AS/PDCP）：密文 || MAC-I 一起解密，后 4 字节是明文 MAC-I；
+ *               完整性输入 = PDCP 头（SRB，12bit SN，取 COUNT 低 12 位）|| 明文
+ *
+ * 每个 UE 每层一个 session，缓存已构造好的 NeaCipher/NiaMac（AES key schedule、
+ * SNOW 3G 密钥字等只算一次），密钥或算法变化时重建。
+ * session 里还可以存预先算好的密钥流（precompute），解密时命中就直接异或。
+ */
+@Component
+public class LocalDecryptEngine {
+
+    public static final String DECRYPT_SUCCESS = "DECRYPT_SUCCESS";
+    public static final String DECRYPT_FAILED = "DECRYPT_FAILED";
+    public static final String INTEGRITY_SUCCESS = "INTEGRITY_SUCCESS";
+    public static final String INTEGRITY_FAILED = "INTEGRITY_FAILED";
+    public static final String INTEGRITY_SKIPPED = "INTEGRITY_SKIPPED";
+
+    private static final HexFormat HEX = HexFormat.of();
+    private static final int MAX_PRECOMPUTED_PER_SESSION = 64;
+
+    private final Map<String, Session> sessions;
+    private final int prefetchDepth;
+    private final int prefetchBytes;
+    private final ThreadPoolExecutor prefetcher;
+
+    @Autowired
+    public LocalDecryptEngine(DecryptProperties props) {
+        this(props.getLocal().getMaxSessions(), props.getLocal().getPrefetchDepth(), props.getLocal().getPrefetchBytes());
+    }
+
+    public LocalDecryptEngine(int maxSessions, int prefetchDepth, int prefetchBytes) {
+        this.sessions = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                return size() > maxSessions;
+            }
+        };
+        this.prefetchDepth = Math.max(0, prefetchDepth);
+        this.prefetchBytes = Math.max(16, prefetchBytes);
+        if (this.prefetchDepth > 0) {
+            // 单线程 + 有界队列，满了直接丢（预算只是优化，丢了解密时现算）
+            this.prefetcher = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(1024), r -> {
+                Thread t = new Thread(r, "decrypt-prefetch");
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+        } else {
+            this.prefetcher = null;
+        }
+    }
+
+    // ===================== public API =====================
+
+    public DecryptResponse decrypt(DecryptClient.DecryptRequest req) {
+        DecryptResponse resp = new DecryptResponse();
+        resp.setMessageId(req.messageId);
+        resp.setUeId(req.ueId);
+
+        try {
+            int encAlg = parseAlg(req.encAlgo);
+            int intAlg = isBlank(req.intKey) || isBlank(req.intAlgo) ? -1 : parseAlg(req.intAlgo);
+            int dir = parseDirection(req.direction);
+            byte[] ct = parseHex(req.ciphertext);
+            byte[] mac = isBlank(req.mac) ? new byte[0] : parseHex(req.mac);
+            if (req.dataLength > 0 && req.dataLength < ct.length) {
+                ct = Arrays.copyOf(ct, req.dataLength);
+            }
+
+            Session s = session(req, encAlg, intAlg);
+            boolean nas = "NAS".equalsIgnoreCase(req.layer);
+
+            byte[] plain;
+            byte[] plainMac;
+            byte[] integrityInput;
+            synchronized (s) {
+                if (nas) {
+                    plain = s.apply(req.count, req.bearer, dir, ct);
+                    plainMac = mac;
+                    integrityInput = concat(new byte[]{(byte) req.count}, ct);
+                } else {
+                    // PDCP：MAC-I 跟数据一起加密
+                    byte[] all = s.apply(req.count, req.bearer, dir, concat(ct, mac));
+                    int n = all.length - mac.length;
+                    plain = Arrays.copyOf(all, n);
+                    plainMac = Arrays.copyOfRange(all, n, all.length);
+                    integrityInput = concat(new byte[]{(byte) ((req.count >>> 8) & 0x0F), (byte) req.count}, plain);
+                }
+
+                if (s.nia == null || plainMac.length != 4) {
+                    resp.setIntegrityStatus(INTEGRITY_SKIPPED);
+                } else {
+                    byte[] expected = s.nia.mac(req.count, req.bearer, dir, integrityInput, integrityInput.length * 8);
+                    resp.setIntegrityStatus(MessageDigest.isEqual(expected, plainMac) ? INTEGRITY_SUCCESS : INTEGRITY_FAILED);
+                }
+            }
+
+            resp.setPlainData(HEX.formatHex(plain));
+            resp.setPlainMac(HEX.formatHex(plainMac));
+            resp.setDecryptStatus(DECRYPT_SUCCESS);
+
+            if (prefetcher != null) {
+                schedulePrefetch(s, req.count, req.bearer, dir);
+            }
+        } catch (RuntimeException e) {
+            resp.setDecryptStatus(DECRYPT_FAILED);
+            resp.setErrorMsg(e.getMessage());
+        }
+        return resp;
+    }
+
+    /**
+     * 只做完整性校验，不碰 session 也不预取，线程安全（KeyTrialEngine 并行试候选用）。
+     * NAS 的 MAC 覆盖密文，不用解密；PDCP 的 MAC-I 跟数据一起加密，要先解出来再算。
+     * 返回 INTEGRITY_SUCCESS / INTEGRITY_FAILED；没有完整性密钥或 MAC 不是 4 字节返回 INTEGRITY_SKIPPED。
+     */
+    public static String verify(DecryptClient.DecryptRequest req) {
+        try {
+            if (isBlank(req.intKey) || isBlank(req.intAlgo) || isBlank(req.mac)) return INTEGRITY_SKIPPED;
+            int intAlg = parseAlg(req.intAlgo);
+            int dir = parseDirection(req.direction);
+            byte[] ct = parseHex(req.ciphertext);
+            byte[] mac = parseHex(req.mac);
+            if (mac.length != 4) return INTEGRITY_SKIPPED;
+            if (req.dataLength > 0 && req.dataLength < ct.length) {
+                ct = Arrays.copyOf(ct, req.dataLength);
+            }
+
+            byte[] integrityInput;
+            byte[] plainMac;
+            if ("NAS".equalsIgnoreCase(req.layer)) {
+                integrityInput = concat(new byte[]{(byte) req.count}, ct);
+                plainMac = mac;
+            } else {
+                int encAlg = parseAlg(req.encAlgo);
+                NeaCipher nea = NeaCipher.of(encAlg, encAlg == 0 ? null : parseKey(req.encKey));
+                byte[] all = concat(ct, mac);
+                all = nea.apply(req.count, req.bearer, dir, all, all.length * 8);
+                int n = all.length - 4;
+                plainMac = Arrays.copyOfRange(all, n, all.length);
+                integrityInput = concat(new byte[]{(byte) ((req.count >>> 8) & 0x0F), (byte) req.count},
+                        Arrays.copyOf(all, n));
+            }
+            NiaMac nia = NiaMac.of(intAlg, intAlg == 0 ? null : parseKey(req.intKey));
+            byte[] expected = nia.mac(req.count, req.bearer, dir, integrityInput, integrityInput.length * 8);
+            return MessageDigest.isEqual(expected, plainMac) ? INTEGRITY_SUCCESS : INTEGRITY_FAILED;
+        } catch (RuntimeException e) {
+            return INTEGRITY_FAILED;
+        }
+    }
+
+    /**
+     * 为预测到的 COUNT 预先生成密钥流（例如 COUNT 跟踪器已知下一条报文的 COUNT）。
+     * 只用到 req 里的 ueId/contextRef/layer/encKey/encAlgo/bearer/direction。
+     */
+    public void precompute(DecryptClient.DecryptRequest req, int fromCount, int n, int lengthBytes) {
+        int encAlg = parseAlg(req.encAlgo);
+        int intAlg = isBlank(req.intKey) || isBlank(req.intAlgo) ? -1 : parseAlg(req.intAlgo);
+        int dir = parseDirection(req.direction);
+        Session s = session(req, encAlg, intAlg);
+        synchronized (s) {
+            for (int i = 0; i < n; i++) {
+                s.precompute(fromCount + i, req.bearer, dir, lengthBytes);
+            }
+        }
+    }
+
+    /** UE 上下文失效/更新密钥时调用 */
+    public void evict(String ueId) {
+        synchronized (sessions) {
+            sessions.keySet().removeIf(k -> k.startsWith(ueId + "|"));
+        }
+    }
+
+    public int sessionCount() {
+        synchronized (sessions) {
+            return sessions.size();
+        }
+    }
+
+    // ===================== session =====================
+
+    private Session session(DecryptClient.DecryptRequest req, int encAlg, int intAlg) {
+        String ref = !isBlank(req.contextRef) ? req.contextRef : req.ueId;
+        String id = ref + "|" + (req.layer == null ? "" : req.layer.toUpperCase());
+        synchronized (sessions) {
+            Session s = sessions.get(id);
+            if (s == null || !s.matches(req.encKey, encAlg, req.intKey, intAlg)) {
+                s = new Session(req.encKey, encAlg, req.intKey, intAlg);
+                sessions.put(id, s);
+            }
+            return s;
+        }
+    }
+
+    private void schedulePrefetch(Session s, int count, int bearer, int dir) {
+        prefetcher.execute(() -> {
+            synchronized (s) {
+                for (int i = 1; i <= prefetchDepth; i++) {
+                    s.precompute(count + i, bearer, dir, prefetchBytes);
+                }
+            }
+        });
+    }
+
+    /** 一个 UE 一层的密码实例 + 预算密钥流，调用方对实例加锁后使用 */
+    private static final class Session {
+        final String encKeyHex;
+        final int encAlg;
+        final String intKeyHex;
+        final int intAlg;
+        final NeaCipher nea;
+        final NiaMac nia;
+
+        private final LinkedHashMap<Long, byte[]> keystreams = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > MAX_PRECOMPUTED_PER_SESSION;
+            }
+        };
+
+        Session(String encKeyHex, int encAlg, String intKeyHex, int intAlg) {
+            this.encKeyHex = encKeyHex;
+            this.encAlg = encAlg;
+            this.intKeyHex = intKeyHex;
+            this.intAlg = intAlg;
+            this.nea = NeaCipher.of(encAlg, encAlg == 0 ? null : parseKey(encKeyHex));
+            this.nia = intAlg < 0 ? null : NiaMac.of(intAlg, intAlg == 0 ? null : parseKey(intKeyHex));
+        }
+
+        boolean matches(String encKey, int encAlg, String intKey, int intAlg) {
+            return this.encAlg == encAlg && this.intAlg == intAlg
+                    && sameHex(this.encKeyHex, encKey) && sameHex(this.intKeyHex, intKey);
+        }
+
+        void precompute(int count, int bearer, int dir, int lengthBytes) {
+            long k = ksKey(count, bearer, dir);
+            byte[] have = keystreams.get(k);
+            if (have != null && have.length >= lengthBytes) return;
+            keystreams.put(k, nea.keystream(count, bearer, dir, lengthBytes * 8));
+        }
+
+        byte[] apply(int count, int bearer, int dir, byte[] data) {
+            byte[] ks = keystreams.remove(ksKey(count, bearer, dir));
+            if (ks == null || ks.length < data.length) {
+                return nea.apply(count, bearer, dir, data, data.length * 8);
+            }
+            return NeaCipher.xor(data, ks, data.length * 8);
+        }
+
+        private static long ksKey(int count, int bearer, int dir) {
+            return ((count & 0xFFFFFFFFL) << 6) | ((bearer & 0x1F) << 1) | (dir & 0x1);
+        }
+    }
+
+    // ===================== helpers =====================
+
+    /** "NEA2" / "NIA2" / "2" → 2 */
+    static int parseAlg(String s) {
+        if (isBlank(s)) throw new IllegalArgumentException("algorithm missing");
+        String v = s.trim();
+        char c = v.charAt(v.length() - 1);
+        if (c < '0' || c > '3') throw new IllegalArgumentException("unsupported algorithm: " + s);
+        return c - '0';
+    }
+
+    static int parseDirection(String s) {
+        if (s == null) throw new IllegalArgumentException("direction missing");
+        switch (s.trim().toUpperCase()) {
+            case "UL": case "0": return 0;
+            case "DL": case "1": return 1;
+            default: throw new IllegalArgumentException("unknown direction: " + s);
+        }
+    }
+
+    /**
+     * NEA/NIA 密钥：128 位。上下文里存的是完整 256 位 KDF 输出（HTTP 解密服务要的也是这个），
+     * 本地用的时候取低 128 位，即后 16 字节（TS 33.501 A.8）；已经是 16 字节的原样用。
+     */
+    private static byte[] parseKey(String s) {
+        byte[] k = parseHex(s);
+        if (k.length != 32) return k;
+        byte[] low = Arrays.copyOfRange(k, 16, 32);
+        Arrays.fill(k, (byte) 0);
+        return low;
+    }
+
+    private static byte[] parseHex(String s) {
+        if (s == null) throw new IllegalArgumentException("hex missing");
+        String v = s.trim();
+        if (v.startsWith("0x") || v.startsWith("0X")) v = v.substring(2);
+        v = v.replace(":", "").replace(" ", "");
+        return HEX.parseHex(v);
+    }
+
+    private static boolean sameHex(String a, String b) {
+        if (isBlank(a) || isBlank(b)) return isBlank(a) == isBlank(b);
+        return a.equalsIgnoreCase(b);
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] out = new byte[a.length + b.length];
+        System.arraycopy(a, 0, out, 0, a.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.trim().isEmpty();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.procedure.decrypt.engine;
+
+/** 128-NEA1：SNOW 3G f8 */
+final class Nea1 implements NeaCipher {
+
+    private final int[] k;
+    private final Snow3g snow = new Snow3g();
+    private final int[] iv = new int[4];
+
+    Nea1(byte[] key) {
+        this.k = Snow3g.keyWords(key);
+    }
+
+    @Override
+    public String name() {
+        return "NEA1";
+    }
+
+    @Override
+    public byte[] keystream(int count, int bearer, int direction, int lengthBits) {
+        int fresh = ((bearer & 0x1F) << 27) | ((direction & 0x1) << 26);
+        iv[3] = count;
+        iv[2] = fresh;
+        iv[1] = count;
+        iv[0] = fresh;
+        snow.init(k, iv);
+
+        int nBytes = (lengthBits + 7) >>> 3;
+        byte[] out = new byte[(nBytes + 3) & ~3];
+        for (int i = 0; i < out.length; i += 4) {
+            int z = snow.next();
+            out[i] = (byte) (z >>> 24);
+            out[i + 1] = (byte) (z >>> 16);
+            out[i + 2] = (byte) (z >>> 8);
+            out[i + 3] = (byte) z;
+        }
+        return out;
+    }
+}
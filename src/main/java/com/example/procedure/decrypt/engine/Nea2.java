@@ -0,0 +1,46 @@
+package com.example.procedure.decrypt.engine;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+
+/**
+ * 128-NEA2：AES-128 CTR，T1 = COUNT || BEARER || DIRECTION || 0^26 || 0^64。
+ * AES 的 key schedule 只在构造时做一次，之后每次只加密计数器块。
+ */
+final class Nea2 implements NeaCipher {
+
+    private final Cipher aes;
+
+    Nea2(byte[] key) {
+        this.aes = Nia2.aesEcb(key);
+    }
+
+    @Override
+    public String name() {
+        return "NEA2";
+    }
+
+    @Override
+    public byte[] keystream(int count, int bearer, int direction, int lengthBits) {
+        int nBlocks = Math.max(1, (lengthBits + 127) >>> 7);
+        byte[] ctr = new byte[nBlocks * 16];
+        long hi = ((count & 0xFFFFFFFFL) << 32) | ((long) (bearer & 0x1F) << 27) | ((long) (direction & 0x1) << 26);
+        for (int b = 0; b < nBlocks; b++) {
+            int off = b * 16;
+            putLong(ctr, off, hi);
+            putLong(ctr, off + 8, b); // 低 64 位计数，实际报文长度下不会进位到高 64 位
+        }
+        try {
+            return aes.doFinal(ctr);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-CTR keystream failed", e);
+        }
+    }
+
+    static void putLong(byte[] b, int off, long v) {
+        for (int i = 7; i >= 0; i--) {
+            b[off + i] = (byte) v;
+            v >>>= 8;
+        }
+    }
+}
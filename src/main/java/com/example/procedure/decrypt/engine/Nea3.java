@@ -0,0 +1,44 @@
+package com.example.procedure.decrypt.engine;
+
+/** 128-NEA3：ZUC（128-EEA3） */
+final class Nea3 implements NeaCipher {
+
+    private final byte[] key;
+    private final Zuc zuc = new Zuc();
+    private final byte[] iv = new byte[16];
+
+    Nea3(byte[] key) {
+        if (key == null || key.length != 16) {
+            throw new IllegalArgumentException("128-bit key required");
+        }
+        this.key = key.clone();
+    }
+
+    @Override
+    public String name() {
+        return "NEA3";
+    }
+
+    @Override
+    public byte[] keystream(int count, int bearer, int direction, int lengthBits) {
+        iv[0] = (byte) (count >>> 24);
+        iv[1] = (byte) (count >>> 16);
+        iv[2] = (byte) (count >>> 8);
+        iv[3] = (byte) count;
+        iv[4] = (byte) (((bearer & 0x1F) << 3) | ((direction & 0x1) << 2));
+        iv[5] = iv[6] = iv[7] = 0;
+        System.arraycopy(iv, 0, iv, 8, 8);
+        zuc.init(key, iv);
+
+        int words = (lengthBits + 31) >>> 5;
+        byte[] out = new byte[words * 4];
+        for (int i = 0; i < words; i++) {
+            int z = zuc.next();
+            out[4 * i] = (byte) (z >>> 24);
+            out[4 * i + 1] = (byte) (z >>> 16);
+            out[4 * i + 2] = (byte) (z >>> 8);
+            out[4 * i + 3] = (byte) z;
+        }
+        return out;
+    }
+}
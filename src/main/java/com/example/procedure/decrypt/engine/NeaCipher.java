@@ -0,0 +1,63 @@
+package com.example.procedure.decrypt.engine;
+
+/**
+ * 128-NEA 加密算法（TS 33.501 D.2 / TS 33.401 附录 B）。
+ *
+ * 一个实例绑定一把 KEY，可以对不同 COUNT/BEARER/DIRECTION 反复调用；
+ * 实例本身非线程安全，由调用方（LocalDecryptEngine 的 UE session）串行使用。
+ */
+public interface NeaCipher {
+
+    /** "NEA0".."NEA3" */
+    String name();
+
+    /**
+     * 生成 lengthBits 对应字节数的密钥流。
+     * 三种算法的密钥流都满足"长的是短的前缀"，所以预计算时按最大长度生成即可。
+     */
+    byte[] keystream(int count, int bearer, int direction, int lengthBits);
+
+    /** 加/解密：data 与密钥流异或，最后一个字节里 lengthBits 之外的位清零 */
+    default byte[] apply(int count, int bearer, int direction, byte[] data, int lengthBits) {
+        return xor(data, keystream(count, bearer, direction, lengthBits), lengthBits);
+    }
+
+    static byte[] xor(byte[] data, byte[] keystream, int lengthBits) {
+        int n = (lengthBits + 7) >>> 3;
+        byte[] out = new byte[n];
+        for (int i = 0; i < n; i++) {
+            out[i] = (byte) (data[i] ^ keystream[i]);
+        }
+        int tail = lengthBits & 7;
+        if (tail != 0) {
+            out[n - 1] &= (byte) (0xFF << (8 - tail));
+        }
+        return out;
+    }
+
+    /** algId：0..3 对应 NEA0..NEA3 */
+    static NeaCipher of(int algId, byte[] key) {
+        switch (algId) {
+            case 0: return Nea0.INSTANCE;
+            case 1: return new Nea1(key);
+            case 2: return new Nea2(key);
+            case 3: return new Nea3(key);
+            default: throw new IllegalArgumentException("unsupported NEA algorithm: " + algId);
+        }
+    }
+
+    /** 空加密 */
+    final class Nea0 implements NeaCipher {
+        static final Nea0 INSTANCE = new Nea0();
+
+        @Override
+        public String name() {
+            return "NEA0";
+        }
+
+        @Override
+        public byte[] keystream(int count, int bearer, int direction, int lengthBits) {
+            return new byte[(lengthBits + 7) >>> 3];
+        }
+    }
+}
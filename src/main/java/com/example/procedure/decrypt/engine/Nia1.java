@@ -0,0 +1,23 @@
+package com.example.procedure.decrypt.engine;
+
+/** 128-NIA1：SNOW 3G f9（UIA2），FRESH = BEARER || 0^27 */
+final class Nia1 implements NiaMac {
+
+    private final int[] k;
+    private final Snow3g snow = new Snow3g();
+
+    Nia1(byte[] key) {
+        this.k = Snow3g.keyWords(key);
+    }
+
+    @Override
+    public String name() {
+        return "NIA1";
+    }
+
+    @Override
+    public byte[] mac(int count, int bearer, int direction, byte[] message, int lengthBits) {
+        int fresh = (bearer & 0x1F) << 27;
+        return NiaMac.intToBytes(snow.f9(k, count, fresh, direction & 0x1, message, lengthBits));
+    }
+}
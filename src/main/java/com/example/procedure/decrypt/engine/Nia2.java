@@ -0,0 +1,97 @@
+package com.example.procedure.decrypt.engine;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+
+/**
+ * 128-NIA2：AES-128 CMAC（RFC 4493），M = COUNT || BEARER || DIRECTION || 0^26 || MESSAGE，
+ * 取 T 的前 32 bit。支持非整字节长度（按 bit 串补 10*）。
+ * 子密钥 K1/K2 在构造时算好。
+ */
+final class Nia2 implements NiaMac {
+
+    private final Cipher aes;
+    private final byte[] k1;
+    private final byte[] k2;
+
+    Nia2(byte[] key) {
+        this.aes = aesEcb(key);
+        byte[] l = encryptBlock(aes, new byte[16]);
+        this.k1 = dbl(l);
+        this.k2 = dbl(k1);
+    }
+
+    static Cipher aesEcb(byte[] key) {
+        if (key == null || key.length != 16) {
+            throw new IllegalArgumentException("128-bit key required");
+        }
+        try {
+            Cipher c = Cipher.getInstance("AES/ECB/NoPadding");
+            c.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"));
+            return c;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES not available", e);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "NIA2";
+    }
+
+    @Override
+    public byte[] mac(int count, int bearer, int direction, byte[] message, int lengthBits) {
+        int totalBits = 64 + lengthBits;
+        int nBlocks = Math.max(1, (totalBits + 127) >>> 7);
+        boolean complete = totalBits > 0 && (totalBits & 127) == 0;
+
+        byte[] m = new byte[nBlocks * 16];
+        long hi = ((count & 0xFFFFFFFFL) << 32) | ((long) (bearer & 0x1F) << 27) | ((long) (direction & 0x1) << 26);
+        Nea2.putLong(m, 0, hi);
+        int msgBytes = (lengthBits + 7) >>> 3;
+        System.arraycopy(message, 0, m, 8, msgBytes);
+        int tail = lengthBits & 7;
+        if (tail != 0) {
+            m[8 + msgBytes - 1] &= (byte) (0xFF << (8 - tail));
+        }
+
+        int lastOff = (nBlocks - 1) * 16;
+        if (complete) {
+            for (int i = 0; i < 16; i++) m[lastOff + i] ^= k1[i];
+        } else {
+            // 在第 totalBits 位补一个 1，后面本来就是 0
+            m[totalBits >>> 3] |= (byte) (0x80 >>> (totalBits & 7));
+            for (int i = 0; i < 16; i++) m[lastOff + i] ^= k2[i];
+        }
+
+        byte[] x = new byte[16];
+        for (int b = 0; b < nBlocks; b++) {
+            int off = b * 16;
+            for (int i = 0; i < 16; i++) x[i] ^= m[off + i];
+            x = encryptBlock(aes, x);
+        }
+        return new byte[]{x[0], x[1], x[2], x[3]};
+    }
+
+    private static byte[] encryptBlock(Cipher aes, byte[] in) {
+        try {
+            return aes.doFinal(in);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES block encrypt failed", e);
+        }
+    }
+
+    /** GF(2^128) 上乘 x（CMAC 子密钥生成） */
+    private static byte[] dbl(byte[] in) {
+        byte[] out = new byte[16];
+        int carry = 0;
+        for (int i = 15; i >= 0; i--) {
+            int v = in[i] & 0xFF;
+            out[i] = (byte) ((v << 1) | carry);
+            carry = v >>> 7;
+        }
+        if ((in[0] & 0x80) != 0) out[15] ^= (byte) 0x87;
+        return out;
+    }
+}
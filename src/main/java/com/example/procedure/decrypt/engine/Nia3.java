@@ -0,0 +1,57 @@
+package com.example.procedure.decrypt.engine;
+
+/** 128-NIA3：ZUC（128-EIA3） */
+final class Nia3 implements NiaMac {
+
+    private final byte[] key;
+    private final Zuc zuc = new Zuc();
+    private final byte[] iv = new byte[16];
+
+    Nia3(byte[] key) {
+        if (key == null || key.length != 16) {
+            throw new IllegalArgumentException("128-bit key required");
+        }
+        this.key = key.clone();
+    }
+
+    @Override
+    public String name() {
+        return "NIA3";
+    }
+
+    @Override
+    public byte[] mac(int count, int bearer, int direction, byte[] message, int lengthBits) {
+        iv[0] = (byte) (count >>> 24);
+        iv[1] = (byte) (count >>> 16);
+        iv[2] = (byte) (count >>> 8);
+        iv[3] = (byte) count;
+        iv[4] = (byte) ((bearer & 0x1F) << 3);
+        iv[5] = iv[6] = iv[7] = 0;
+        System.arraycopy(iv, 0, iv, 8, 8);
+        iv[8] ^= (byte) ((direction & 0x1) << 7);
+        iv[14] ^= (byte) ((direction & 0x1) << 7);
+        zuc.init(key, iv);
+
+        int words = ((lengthBits + 31) >>> 5) + 2;
+        int[] z = new int[words];
+        zuc.keystream(z, words);
+
+        int t = 0;
+        for (int i = 0; i < lengthBits; i++) {
+            if (((message[i >>> 3] >>> (7 - (i & 7))) & 1) != 0) {
+                t ^= word(z, i);
+            }
+        }
+        t ^= word(z, lengthBits);
+        t ^= z[words - 1];
+        return NiaMac.intToBytes(t);
+    }
+
+    /** 从密钥流第 bit 位开始取 32 bit */
+    private static int word(int[] z, int bit) {
+        int j = bit >>> 5;
+        int r = bit & 31;
+        if (r == 0) return z[j];
+        return (z[j] << r) | (z[j + 1] >>> (32 - r));
+    }
+}
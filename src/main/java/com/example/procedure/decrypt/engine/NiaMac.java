@@ -0,0 +1,44 @@
+package com.example.procedure.decrypt.engine;
+
+/**
+ * 128-NIA 完整性算法（TS 33.501 D.3 / TS 33.401 附录 B）。
+ * 输出 32 bit MAC；实例绑定一把 KEY，非线程安全。
+ */
+public interface NiaMac {
+
+    /** "NIA0".."NIA3" */
+    String name();
+
+    /** 对 message 的前 lengthBits 位计算 4 字节 MAC */
+    byte[] mac(int count, int bearer, int direction, byte[] message, int lengthBits);
+
+    /** algId：0..3 对应 NIA0..NIA3 */
+    static NiaMac of(int algId, byte[] key) {
+        switch (algId) {
+            case 0: return Nia0.INSTANCE;
+            case 1: return new Nia1(key);
+            case 2: return new Nia2(key);
+            case 3: return new Nia3(key);
+            default: throw new IllegalArgumentException("unsupported NIA algorithm: " + algId);
+        }
+    }
+
+    static byte[] intToBytes(int v) {
+        return new byte[]{(byte) (v >>> 24), (byte) (v >>> 16), (byte) (v >>> 8), (byte) v};
+    }
+
+    /** 空完整性：MAC 全 0 */
+    final class Nia0 implements NiaMac {
+        static final Nia0 INSTANCE = new Nia0();
+
+        @Override
+        public String name() {
+            return "NIA0";
+        }
+
+        @Override
+        public byte[] mac(int count, int bearer, int direction, byte[] message, int lengthBits) {
+            return new byte[4];
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.procedure.decrypt.engine;
+
+/**
+ * SNOW 3G 密钥流发生器（ETSI/SAGE UEA2&UIA2 Document 2）。
+ *
+ * 下标约定跟规范的参考 C 代码一致：k[0..3] / iv[0..3]，
+ * 128-NEA1/NIA1 里 CK 的最左 32 bit 放在 k[3]。
+ * 实例有状态、非线程安全，init 之后可以反复复用（换 IV 重新 init 即可）。
+ */
+public final class Snow3g {
+
+    // ===== S-box / MULα / DIVα 预计算成 32bit 表 =====
+    private static final int[] S1_T0 = new int[256], S1_T1 = new int[256], S1_T2 = new int[256], S1_T3 = new int[256];
+    private static final int[] S2_T0 = new int[256], S2_T1 = new int[256], S2_T2 = new int[256], S2_T3 = new int[256];
+    private static final int[] MUL_ALPHA = new int[256];
+    private static final int[] DIV_ALPHA = new int[256];
+
+    static {
+        int[] sr = rijndaelSbox();
+        int[] sq = dicksonSbox();
+        fillMixTables(sr, 0x1B, S1_T0, S1_T1, S1_T2, S1_T3);
+        fillMixTables(sq, 0x69, S2_T0, S2_T1, S2_T2, S2_T3);
+        for (int c = 0; c < 256; c++) {
+            MUL_ALPHA[c] = (mulxPow(c, 23, 0xA9) << 24) | (mulxPow(c, 245, 0xA9) << 16)
+                    | (mulxPow(c, 48, 0xA9) << 8) | mulxPow(c, 239, 0xA9);
+            DIV_ALPHA[c] = (mulxPow(c, 16, 0xA9) << 24) | (mulxPow(c, 39, 0xA9) << 16)
+                    | (mulxPow(c, 6, 0xA9) << 8) | mulxPow(c, 64, 0xA9);
+        }
+    }
+
+    private final int[] s = new int[16];
+    private int r1, r2, r3;
+
+    /** 初始化 LFSR/FSM，完成 32 轮 initialisation mode 和一次丢弃输出的时钟 */
+    public Snow3g init(int[] k, int[] iv) {
+        s[15] = k[3] ^ iv[0];
+        s[14] = k[2];
+        s[13] = k[1];
+        s[12] = k[0] ^ iv[1];
+        s[11] = ~k[3];
+        s[10] = ~k[2] ^ iv[2];
+        s[9]  = ~k[1] ^ iv[3];
+        s[8]  = ~k[0];
+        s[7]  = k[3];
+        s[6]  = k[2];
+        s[5]  = k[1];
+        s[4]  = k[0];
+        s[3]  = ~k[3];
+        s[2]  = ~k[2];
+        s[1]  = ~k[1];
+        s[0]  = ~k[0];
+        r1 = r2 = r3 = 0;
+
+        for (int i = 0; i < 32; i++) {
+            int f = clockFsm();
+            clockLfsr(f);
+        }
+        clockFsm();
+        clockLfsr(0);
+        return this;
+    }
+
+    /** 下一个 32bit 密钥流字 */
+    public int next() {
+        int z = clockFsm() ^ s[0];
+        clockLfsr(0);
+        return z;
+    }
+
+    /** 连续取 n 个字写进 out */
+    public void keystream(int[] out, int n) {
+        for (int i = 0; i < n; i++) out[i] = next();
+    }
+
+    /** 16 字节密钥 → k[0..3]，密钥最左 32 bit 放 k[3] */
+    public static int[] keyWords(byte[] key) {
+        if (key == null || key.length != 16) {
+            throw new IllegalArgumentException("128-bit key required");
+        }
+        int[] k = new int[4];
+        for (int i = 0; i < 4; i++) {
+            k[3 - i] = ((key[4 * i] & 0xFF) << 24) | ((key[4 * i + 1] & 0xFF) << 16)
+                    | ((key[4 * i + 2] & 0xFF) << 8) | (key[4 * i + 3] & 0xFF);
+        }
+        return k;
+    }
+
+    /**
+     * UIA2 f9：对 message 前 lengthBits 位算 32bit MAC-I。
+     * 128-NIA1 就是 FRESH = BEARER || 0^27 的 f9。
+     */
+    public int f9(int[] k, int count, int fresh, int direction, byte[] message, int lengthBits) {
+        init(k, new int[]{fresh ^ (direction << 15), count ^ (direction << 31), fresh, count});
+
+        long p = ((long) next() << 32) | (next() & 0xFFFFFFFFL);
+        long q = ((long) next() << 32) | (next() & 0xFFFFFFFFL);
+        int z5 = next();
+
+        int blocks = (lengthBits + 63) >>> 6;
+        long eval = 0;
+        for (int i = 0; i < blocks; i++) {
+            eval = mul64(eval ^ block64(message, i, lengthBits), p);
+        }
+        eval ^= lengthBits & 0xFFFFFFFFL;
+        eval = mul64(eval, q);
+        return (int) (eval >>> 32) ^ z5;
+    }
+
+    /** 第 i 个 64bit 块，超出 lengthBits 的位补 0 */
+    private static long block64(byte[] m, int i, int lengthBits) {
+        long v = 0;
+        int base = i * 8;
+        for (int j = 0; j < 8; j++) {
+            int idx = base + j;
+            v <<= 8;
+            if (idx < m.length) v |= m[idx] & 0xFF;
+        }
+        int remain = lengthBits - i * 64;
+        if (remain < 64) {
+            v &= -1L << (64 - remain);
+        }
+        return v;
+    }
+
+    /** GF(2^64) 乘法，约简多项式 0x1B */
+    private static long mul64(long v, long p) {
+        long r = 0;
+        for (int i = 0; i < 64; i++) {
+            if (((p >>> i) & 1L) != 0) r ^= v;
+            v = (v < 0) ? (v << 1) ^ 0x1BL : (v << 1);
+        }
+        return r;
+    }
+
+    private int clockFsm() {
+        int f = (s[15] + r1) ^ r2;
+        int r = r2 + (r3 ^ s[5]);
+        r3 = s2(r2);
+        r2 = s1(r1);
+        r1 = r;
+        return f;
+    }
+
+    /** initialisation mode 传 F，keystream mode 传 0 */
+    private void clockLfsr(int f) {
+        int s0 = s[0], s11 = s[11];
+        int v = (s0 << 8) ^ MUL_ALPHA[s0 >>> 24] ^ s[2] ^ (s11 >>> 8) ^ DIV_ALPHA[s11 & 0xFF] ^ f;
+        System.arraycopy(s, 1, s, 0, 15);
+        s[15] = v;
+    }
+
+    private static int s1(int w) {
+        return S1_T0[w >>> 24] ^ S1_T1[(w >>> 16) & 0xFF] ^ S1_T2[(w >>> 8) & 0xFF] ^ S1_T3[w & 0xFF];
+    }
+
+    private static int s2(int w) {
+        return S2_T0[w >>> 24] ^ S2_T1[(w >>> 16) & 0xFF] ^ S2_T2[(w >>> 8) & 0xFF] ^ S2_T3[w & 0xFF];
+    }
+
+    // ===================== table construction =====================
+
+    private static int mulx(int v, int c) {
+        return ((v & 0x80) != 0) ? ((v << 1) ^ c) & 0xFF : (v << 1) & 0xFF;
+    }
+
+    private static int mulxPow(int v, int i, int c) {
+        for (int n = 0; n < i; n++) v = mulx(v, c);
+        return v;
+    }
+
+    /** S1/S2 的 MixColumn 按输入字节拆成 4 张表 */
+    private static void fillMixTables(int[] box, int poly, int[] t0, int[] t1, int[] t2, int[] t3) {
+        for (int x = 0; x < 256; x++) {
+            int v = box[x];
+            int m = mulx(v, poly);
+            int mv = m ^ v;
+            t0[x] = (m << 24) | (mv << 16) | (v << 8) | v;
+            t1[x] = (v << 24) | (m << 16) | (mv << 8) | v;
+            t2[x] = (v << 24) | (v << 16) | (m << 8) | mv;
+            t3[x] = (mv << 24) | (v << 16) | (v << 8) | m;
+        }
+    }
+
+    /** GF(2^8) 乘法，不可约多项式 poly（含 x^8 位） */
+    private static int gmul(int a, int b, int poly) {
+        int r = 0;
+        while (b != 0) {
+            if ((b & 1) != 0) r ^= a;
+            a <<= 1;
+            if ((a & 0x100) != 0) a ^= poly;
+            b >>>= 1;
+        }
+        return r;
+    }
+
+    private static int gpow(int a, int e, int poly) {
+        int r = 1;
+        while (e > 0) {
+            if ((e & 1) != 0) r = gmul(r, a, poly);
+            a = gmul(a, a, poly);
+            e >>>= 1;
+        }
+        return r;
+    }
+
+    /** SR：AES S-box */
+    private static int[] rijndaelSbox() {
+        int[] box = new int[256];
+        for (int x = 0; x < 256; x++) {
+            int b = x == 0 ? 0 : gpow(x, 254, 0x11B);
+            int r = b ^ rotl8(b, 1) ^ rotl8(b, 2) ^ rotl8(b, 3) ^ rotl8(b, 4) ^ 0x63;
+            box[x] = r & 0xFF;
+        }
+        return box;
+    }
+
+    /** SQ：Dickson 多项式 g49 over GF(2^8)/(x^8+x^6+x^5+x^3+1)，再异或 0x25 */
+    private static int[] dicksonSbox() {
+        final int poly = 0x169;
+        final int[] exps = {1, 9, 13, 15, 33, 41, 45, 47, 49};
+        int[] box = new int[256];
+        for (int x = 0; x < 256; x++) {
+            int y = 0;
+            for (int e : exps) y ^= gpow(x, e, poly);
+            box[x] = (y ^ 0x25) & 0xFF;
+        }
+        return box;
+    }
+
+    private static int rotl8(int b, int n) {
+        return ((b << n) | (b >>> (8 - n))) & 0xFF;
+    }
+}
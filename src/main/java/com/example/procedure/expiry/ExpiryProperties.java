@@ -0,0 +1,34 @@
+package com.example.procedure.expiry;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "procedure.expiry")
+public class ExpiryProperties {
+
+    /** false：不自动关流程，还是只在下一条消息来时判断（老行为） */
+    private boolean enabled = true;
+
+    // 用墙钟还是报文时间：见 procedure.clock.mode（ClockProperties）
+
+    /** 时间轮：每格多少毫秒、多少格（取 2 的幂） */
+    private long tickMs = 100;
+    private int wheelSize = 512;
+
+    /** END 已见后最多再等多久收尾（和 ProcedureCloseDecider 的 IA 兜底一致） */
+    private long endSeenGraceMs = 5_000;
+
+    /** 多久没有新消息算挂死 */
+    private long idleTimeoutMs = 120_000;
+
+    /** 一个流程最长活多久（不管有没有消息） */
+    private long maxLifetimeMs = 30 * 60 * 1000L;
+
+    /** 到期但 end_Procedure 没成功（归档队列满）时，过多久再试 */
+    private long retryMs = 1_000;
+}
@@ -0,0 +1,131 @@
+package com.example.procedure.expiry;
+
+import java.util.function.Consumer;
+
+/**
+ * 哈希时间轮：wheelSize 个桶，每桶 tickMs，定时项按 deadline / tickMs 落桶，桶里是双向链表。
+ *
+ *  - schedule / cancel 都是 O(1)（挂链表 / 摘链表），不像 PriorityQueue 要 log n、remove 还要 O(n)；
+ *  - advance(now) 把指针从上次的位置拨到 now，沿途每个桶里 deadline 到了的触发，没到的（还要转几圈）留着；
+ *  - 时间是调用方给的：回放时传事件时间，在线时传墙钟，时间轮自己不看钟。
+ *
+ * 一次跳得比一整圈还远（回放时两个报文隔了几个小时）时，每个桶只扫一遍。
+ * 非线程安全，外面加锁（见 ProcedureExpiry）；onExpire 里不要再 schedule，先收集起来 advance 完再挂。
+ */
+public final class HashedTimingWheel<T> {
+
+    /** 一个定时项；cancel 后不会再触发 */
+    public static final class Timeout<T> {
+        private final T value;
+        private final long deadline;
+        private Timeout<T> prev, next;
+        private Bucket<T> bucket;
+
+        private Timeout(T value, long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+
+        public T value() {
+            return value;
+        }
+
+        public long deadline() {
+            return deadline;
+        }
+
+        public boolean isPending() {
+            return bucket != null;
+        }
+    }
+
+    private static final class Bucket<T> {
+        Timeout<T> head, tail;
+
+        void add(Timeout<T> t) {
+            t.bucket = this;
+            t.prev = tail;
+            if (tail == null) head = t; else tail.next = t;
+            tail = t;
+        }
+
+        void remove(Timeout<T> t) {
+            if (t.prev == null) head = t.next; else t.prev.next = t.next;
+            if (t.next == null) tail = t.prev; else t.next.prev = t.prev;
+            t.prev = t.next = null;
+            t.bucket = null;
+        }
+    }
+
+    private final long tickMs;
+    private final int mask;
+    private final Bucket<T>[] buckets;
+
+    /** 下一个要处理的 tick（绝对 tick 号 = 时间 / tickMs） */
+    private long currentTick = Long.MIN_VALUE;
+    /** 第一次 advance 之前挂上的最早 tick，第一次 advance 从这里开始扫 */
+    private long earliestBeforeStart = Long.MAX_VALUE;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(long tickMs, int wheelSize) {
+        if (tickMs <= 0) throw new IllegalArgumentException("tickMs must be > 0");
+        int n = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;   // 向上取 2 的幂
+        this.tickMs = tickMs;
+        this.mask = n - 1;
+        this.buckets = new Bucket[n];
+        for (int i = 0; i < n; i++) buckets[i] = new Bucket<>();
+    }
+
+    public Timeout<T> schedule(T value, long deadlineMs) {
+        Timeout<T> t = new Timeout<>(value, deadlineMs);
+        long tick = deadlineMs / tickMs;
+        // 已经过去的 deadline 放到下一个要处理的桶，下次 advance 马上触发
+        if (currentTick == Long.MIN_VALUE) earliestBeforeStart = Math.min(earliestBeforeStart, tick);
+        else if (tick < currentTick) tick = currentTick;
+        buckets[(int) (tick & mask)].add(t);
+        size++;
+        return t;
+    }
+
+    public void cancel(Timeout<T> t) {
+        if (t == null || t.bucket == null) return;
+        t.bucket.remove(t);
+        size--;
+    }
+
+    /** 把时间拨到 nowMs，deadline <= nowMs 的按桶顺序交给 onExpire；返回触发个数 */
+    public int advance(long nowMs, Consumer<Timeout<T>> onExpire) {
+        long target = nowMs / tickMs;
+        if (currentTick == Long.MIN_VALUE) currentTick = Math.min(target, earliestBeforeStart);
+        if (target < currentTick) return 0;           // 时间没往前走（事件时间乱序）
+
+        int fired = 0;
+        long span = Math.min(target - currentTick, mask);   // 超过一圈的只扫一圈
+        for (long i = 0; i <= span && size > 0; i++) {
+            Bucket<T> b = buckets[(int) ((currentTick + i) & mask)];
+            Timeout<T> t = b.head;
+            while (t != null) {
+                Timeout<T> next = t.next;
+                if (t.deadline <= nowMs) {
+                    b.remove(t);
+                    size--;
+                    fired++;
+                    onExpire.accept(t);
+                }
+                t = next;
+            }
+        }
+        // 当前 tick 的桶留着不算处理完：同一个 tick 里后面还可能有更晚的 deadline
+        currentTick = target;
+        return fired;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long tickMs() {
+        return tickMs;
+    }
+}
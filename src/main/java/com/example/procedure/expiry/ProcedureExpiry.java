@@ -0,0 +1,253 @@
+package com.example.procedure.expiry;
+
+import com.example.procedure.clock.ProcedureClock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 活跃流程的到期关闭：END 后的宽限期、空闲超时、最长存活，三个期限取最早的一个挂到时间轮上，
+ * 到了就自己调 end_Procedure（归档）。
+ *
+ * 以前 ProcedureCloseDecider 只在同一个流程来下一条消息时才判断，END 之后再没消息的 IA、
+ * 卡住的 XHO 会一直挂到 Redis TTL（1 小时）过期，而且永远不会归档；现在最多挂到策略规定的时间。
+ *
+ *  - 时间：procedure.clock.mode=wall 时后台线程每 tickMs 按墙钟拨一次；=event（回放）时没有线程，
+ *    EventTimeClock 每往前走一次回调 observe，拨到目前见过的最大时间戳。
+ *  - 每条消息都会 touch：空闲期限只会往后推，所以 touch 一般不动时间轮（到点时发现没到期再挂回去）；
+ *    只有期限提前（第一次见到 END）才摘下来重挂，都是 O(1)。
+ *  - ProManager_Service 的 add / update / end 负责 track / touch / forget。
+ */
+@Slf4j
+@Component
+public class ProcedureExpiry implements AutoCloseable {
+
+    public enum Reason { END_SEEN_GRACE, IDLE, MAX_LIFETIME }
+
+    /** 到期时怎么关（ProManager_Service）；返回 false 表示没关掉（比如归档队列满），过 retryMs 再试 */
+    public interface Closer {
+        boolean close(String ueId, String procedureId, Reason reason);
+    }
+
+    public record Stats(int tracked, long closedEndSeen, long closedIdle, long closedMaxLifetime, long retries) {}
+
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private final boolean enabled;
+    private final boolean eventTime;
+    private final long graceMs;
+    private final long idleMs;
+    private final long maxLifetimeMs;
+    private final long retryMs;
+    private final LongSupplier wallClock;
+
+    private final HashedTimingWheel<Entry> wheel;
+    private final Map<String, Entry> byId = new HashMap<>();
+    private long eventNow;
+
+    private Closer closer;
+    private ScheduledExecutorService exec;
+
+    private long closedEndSeen, closedIdle, closedMaxLifetime, retries;
+
+    @Autowired
+    public ProcedureExpiry(ExpiryProperties props, ProcedureClock clock) {
+        this(props.isEnabled(), clock.isEventTime(), props.getTickMs(), props.getWheelSize(),
+                props.getEndSeenGraceMs(), props.getIdleTimeoutMs(), props.getMaxLifetimeMs(), props.getRetryMs(),
+                clock::now);
+        // 回放：报文时间往前走一次，时间轮跟着拨一次
+        if (clock.isEventTime()) clock.addListener(this::observe);
+    }
+
+    /** 期限 <= 0 表示不启用这一条 */
+    public ProcedureExpiry(boolean enabled, boolean eventTime, long tickMs, int wheelSize,
+                           long graceMs, long idleMs, long maxLifetimeMs, long retryMs, LongSupplier wallClock) {
+        this.enabled = enabled;
+        this.eventTime = eventTime;
+        this.graceMs = graceMs;
+        this.idleMs = idleMs;
+        this.maxLifetimeMs = maxLifetimeMs;
+        this.retryMs = Math.max(1, retryMs);
+        this.wallClock = wallClock;
+        this.wheel = new HashedTimingWheel<>(tickMs, wheelSize);
+    }
+
+    /** ProManager_Service 构造时调；wall 模式起后台线程 */
+    public synchronized void start(Closer closer) {
+        this.closer = closer;
+        if (enabled && !eventTime && exec == null) {
+            exec = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "procedure-expiry");
+                t.setDaemon(true);
+                return t;
+            });
+            long tick = wheel.tickMs();
+            exec.scheduleAtFixedRate(() -> {
+                try {
+                    advance(wallClock.getAsLong());
+                } catch (RuntimeException e) {
+                    log.warn("Procedure expiry tick failed", e);
+                }
+            }, tick, tick, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isEventTime() {
+        return eventTime;
+    }
+
+    /** 当前时间：event 模式是见过的最大报文时间戳，否则墙钟 */
+    public synchronized long now() {
+        return eventTime ? eventNow : wallClock.getAsLong();
+    }
+
+    /** 回放：处理一条消息前调，时间戳往前走了就拨时间轮（乱序的旧时间戳忽略）；wall 模式什么都不做 */
+    public void observe(long eventMs) {
+        if (!enabled || !eventTime || eventMs <= 0) return;
+        synchronized (this) {
+            if (eventMs <= eventNow) return;
+            eventNow = eventMs;
+        }
+        advance(eventMs);
+    }
+
+    /** 新建流程 */
+    public void track(String ueId, String procedureId) {
+        if (!enabled) return;
+        synchronized (this) {
+            Entry e = byId.computeIfAbsent(procedureId, id -> new Entry(ueId, id, now()));
+            reschedule(e);
+        }
+    }
+
+    /**
+     * 流程来了新消息；endSeen 第一次为 true 时开始算宽限期。
+     * 没登记过的（重启从 Redis 恢复的）这时登记，存活期从现在算。
+     */
+    public void touch(String ueId, String procedureId, boolean endSeen) {
+        if (!enabled) return;
+        synchronized (this) {
+            long now = now();
+            Entry e = byId.get(procedureId);
+            if (e == null) {
+                e = new Entry(ueId, procedureId, now);
+                byId.put(procedureId, e);
+            }
+            e.lastSeenAt = now;
+            if (endSeen && e.endSeenAt == 0) e.endSeenAt = now;
+            // 期限变早了才重挂；变晚的到点再说
+            long d = deadline(e);
+            if (e.timeout == null || !e.timeout.isPending() || d < e.timeout.deadline()) reschedule(e);
+        }
+    }
+
+    /** 流程结束了（不管是谁结束的） */
+    public void forget(String procedureId) {
+        if (!enabled) return;
+        synchronized (this) {
+            Entry e = byId.remove(procedureId);
+            if (e != null) wheel.cancel(e.timeout);
+        }
+    }
+
+    /** 把时间拨到 nowMs，到期的流程逐个关掉；返回关掉的个数 */
+    public int advance(long nowMs) {
+        List<Entry> due = new ArrayList<>();
+        synchronized (this) {
+            List<Entry> fired = new ArrayList<>();
+            wheel.advance(nowMs, t -> fired.add(t.value()));
+            for (Entry e : fired) {
+                // 挂上之后又 touch 过（空闲期限往后推了）：挂回去
+                if (deadline(e) > nowMs) reschedule(e);
+                else due.add(e);
+            }
+        }
+
+        int closed = 0;
+        for (Entry e : due) {
+            Reason reason = reason(e, nowMs);
+            boolean ok;
+            try {
+                ok = closer == null || closer.close(e.ueId, e.procedureId, reason);
+            } catch (RuntimeException ex) {
+                log.warn("Failed to close expired procedure. ueId={}, procedureId={}", e.ueId, e.procedureId, ex);
+                ok = false;
+            }
+            synchronized (this) {
+                if (ok) {
+                    if (byId.remove(e.procedureId, e)) wheel.cancel(e.timeout);
+                    closed++;
+                    switch (reason) {
+                        case END_SEEN_GRACE -> closedEndSeen++;
+                        case IDLE -> closedIdle++;
+                        case MAX_LIFETIME -> closedMaxLifetime++;
+                    }
+                } else if (byId.get(e.procedureId) == e) {
+                    retries++;
+                    wheel.cancel(e.timeout);
+                    e.timeout = wheel.schedule(e, nowMs + retryMs);
+                }
+            }
+        }
+        return closed;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(byId.size(), closedEndSeen, closedIdle, closedMaxLifetime, retries);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (exec != null) {
+            exec.shutdownNow();
+            exec = null;
+        }
+    }
+
+    // ===================== internal =====================
+
+    private void reschedule(Entry e) {
+        wheel.cancel(e.timeout);
+        long d = deadline(e);
+        e.timeout = d == NEVER ? null : wheel.schedule(e, d);
+    }
+
+    private long deadline(Entry e) {
+        long d = NEVER;
+        if (maxLifetimeMs > 0) d = Math.min(d, e.activatedAt + maxLifetimeMs);
+        if (idleMs > 0) d = Math.min(d, e.lastSeenAt + idleMs);
+        if (graceMs > 0 && e.endSeenAt > 0) d = Math.min(d, e.endSeenAt + graceMs);
+        return d;
+    }
+
+    private Reason reason(Entry e, long now) {
+        if (graceMs > 0 && e.endSeenAt > 0 && e.endSeenAt + graceMs <= now) return Reason.END_SEEN_GRACE;
+        if (maxLifetimeMs > 0 && e.activatedAt + maxLifetimeMs <= now) return Reason.MAX_LIFETIME;
+        return Reason.IDLE;
+    }
+
+    private static final class Entry {
+        final String ueId;
+        final String procedureId;
+        final long activatedAt;
+        long lastSeenAt;
+        long endSeenAt;         // 0 = 还没见到 END
+        HashedTimingWheel.Timeout<Entry> timeout;
+
+        Entry(String ueId, String procedureId, long now) {
+            this.ueId = ueId;
+            this.procedureId = procedureId;
+            this.activatedAt = now;
+            this.lastSeenAt = now;
+        }
+    }
+}
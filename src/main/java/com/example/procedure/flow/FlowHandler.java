@@ -17,8 +17,8 @@ public interface FlowHandler {
     /** 归并阈值（例如 IA=35，XHO=35） */
     int mergeThreshold();
 
-    /** 从 activeList 中只挑本 type 的候选，返回 best（含 Score） */
-    ProcedureScoreResult chooseBest(List<Procedure> activeList, SignalingMessage msg, ScoreScorer scorer);
+    /** 从 activeList 中只挑本 type 的候选，返回 best（含 Score）；msgTs 是这条消息的时间（ProcedureClock） */
+    ProcedureScoreResult chooseBest(List<Procedure> activeList, SignalingMessage msg, long msgTs, ScoreScorer scorer);
 
     /** 归并/命中后如何更新流程上下文（keyMask/endSeen/phase推进/持久化/close） */
     void applyUpdate(String ueId, Procedure proc, Score score, SignalingMessage msg, long nowMs, FlowContext ctx);
@@ -2,14 +2,17 @@ package com.example.procedure.flow.impl;
 
 import com.example.procedure.flow.*;
 import com.example.procedure.model.*;
-import com.example.procedure.rule.GnBCuInternalHoKeyBits;
 import com.example.procedure.rule.GnBCuInternalHoPhases;
+import com.example.procedure.rule.MsgTypeCodes;
+import com.example.procedure.rule.ProcedureAutomaton;
 import com.example.procedure.util.ProcedureProgressUtil;
 
 import java.util.List;
 
 public class GnBCuInternalHoFlowHandler implements FlowHandler {
 
+    private static final ProcedureAutomaton AUTOMATON = ProcedureAutomaton.of(ProcedureTypeEnum.GNBCUINTERNAL_HANDOVER);
+
     private static final int CU_INTRA_MERGE_THRESHOLD = 20;
 
     @Override
@@ -30,17 +33,15 @@ public class GnBCuInternalHoFlowHandler implements FlowHandler {
 
     @Override
     public boolean isTrigger(SignalingMessage msg) {
-        String t = msg.getMsgType();
-        if (t == null) return false;
+        long row = AUTOMATON.row(MsgTypeCodes.of(msg));
 
-        if (GnBCuInternalHoPhases.isEndMessage(t)) return true;
+        if (ProcedureAutomaton.isEnd(row)) return true;
 
-        var loc = GnBCuInternalHoPhases.locate(t);
-        if (loc != null && loc.isPhaseStart()) {
-            return GnBCuInternalHoPhases.hasValidPayloadForPhaseStart(msg, loc.getPhaseIndex());
+        if (ProcedureAutomaton.located(row) && ProcedureAutomaton.isPhaseStart(row)) {
+            return GnBCuInternalHoPhases.hasValidPayloadForPhaseStart(msg, ProcedureAutomaton.phase(row));
         }
 
-        return GnBCuInternalHoKeyBits.bitForMsgType(t) != 0;
+        return ProcedureAutomaton.keyBit(row) != 0;
     }
 
     @Override
@@ -50,10 +51,10 @@ public class GnBCuInternalHoFlowHandler implements FlowHandler {
     }
 
     @Override
-    public ProcedureScoreResult chooseBest(List<Procedure> activeList, SignalingMessage msg, ScoreScorer scorer) {
+    public ProcedureScoreResult chooseBest(List<Procedure> activeList, SignalingMessage msg, long msgTs,
+                                           ScoreScorer scorer) {
         if (activeList == null || activeList.isEmpty()) return null;
 
-        long msgTs = System.currentTimeMillis();
         int best = Integer.MIN_VALUE;
         Procedure bestProc = null;
         Score bestScore = null;
@@ -76,13 +77,14 @@ public class GnBCuInternalHoFlowHandler implements FlowHandler {
     @Override
     public void applyUpdate(String ueId, Procedure proc, Score score, SignalingMessage msg, long nowMs, FlowContext ctx) {
         String msgType = msg.getMsgType();
+        long row = AUTOMATON.row(MsgTypeCodes.of(msg));
 
-        if (GnBCuInternalHoPhases.isEndMessage(msgType)) {
+        if (ProcedureAutomaton.isEnd(row)) {
             proc.setEndSeen(true);
             if (proc.getEndSeenAtMs() == 0L) proc.setEndSeenAtMs(nowMs);
         }
 
-        int bit = GnBCuInternalHoKeyBits.bitForMsgType(msgType);
+        int bit = ProcedureAutomaton.keyBit(row);
         if (bit != 0) proc.setKeyMask(proc.getKeyMask() | bit);
 
         ProcedureProgressUtil.advanceMonotonic(proc, score.getPhaseIndex(), score.getOrderIndex());
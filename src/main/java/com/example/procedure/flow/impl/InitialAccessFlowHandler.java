@@ -2,15 +2,17 @@ package com.example.procedure.flow.impl;
 
 import com.example.procedure.flow.*;
 import com.example.procedure.model.*;
-import com.example.procedure.rule.InitialAccessKeyBits;
 import com.example.procedure.rule.InitialAccessPhases;
-import com.example.procedure.rule.PhaseDef;
+import com.example.procedure.rule.MsgTypeCodes;
+import com.example.procedure.rule.ProcedureAutomaton;
 import com.example.procedure.util.ProcedureProgressUtil;
 
 import java.util.List;
 
 public class InitialAccessFlowHandler implements FlowHandler {
 
+    private static final ProcedureAutomaton AUTOMATON = ProcedureAutomaton.of(ProcedureTypeEnum.INITIAL_ACCESS);
+
     private static final int IA_MERGE_THRESHOLD = 35;
 
     @Override
@@ -31,17 +33,15 @@ public class InitialAccessFlowHandler implements FlowHandler {
     /** IA 触发器：end / phaseStart(valid) / keyBit */
     @Override
     public boolean isTrigger(SignalingMessage msg) {
-        String t = msg.getMsgType();
-        if (t == null) return false;
+        long row = AUTOMATON.row(MsgTypeCodes.of(msg));
 
-        if (InitialAccessPhases.isEndMessage(t)) return true;
+        if (ProcedureAutomaton.isEnd(row)) return true;
 
-        PhaseDef.PhaseLocation loc = InitialAccessPhases.locate(t);
-        if (loc != null && loc.isPhaseStart()) {
-            return InitialAccessPhases.hasValidPayloadForPhaseStart(msg, loc.getPhaseIndex());
+        if (ProcedureAutomaton.located(row) && ProcedureAutomaton.isPhaseStart(row)) {
+            return InitialAccessPhases.hasValidPayloadForPhaseStart(msg, ProcedureAutomaton.phase(row));
         }
 
-        return InitialAccessKeyBits.bitForMsgType(t) != 0;
+        return ProcedureAutomaton.keyBit(row) != 0;
     }
 
     /**
@@ -60,10 +60,10 @@ public class InitialAccessFlowHandler implements FlowHandler {
     }
 
     @Override
-    public ProcedureScoreResult chooseBest(List<Procedure> activeList, SignalingMessage msg, ScoreScorer scorer) {
+    public ProcedureScoreResult chooseBest(List<Procedure> activeList, SignalingMessage msg, long msgTs,
+                                           ScoreScorer scorer) {
         if (activeList == null || activeList.isEmpty()) return null;
 
-        long msgTs = System.currentTimeMillis();
         int best = Integer.MIN_VALUE;
         Procedure bestProc = null;
         Score bestScore = null;
@@ -83,15 +83,16 @@ public class InitialAccessFlowHandler implements FlowHandler {
     @Override
     public void applyUpdate(String ueId, Procedure proc, Score score, SignalingMessage msg, long nowMs, FlowContext ctx) {
         String msgType = msg.getMsgType();
+        long row = AUTOMATON.row(MsgTypeCodes.of(msg));
 
         // 1) END 只标记，不立刻结束
-        if (InitialAccessPhases.isEndMessage(msgType)) {
+        if (ProcedureAutomaton.isEnd(row)) {
             proc.setEndSeen(true);
             if (proc.getEndSeenAtMs() == 0L) proc.setEndSeenAtMs(nowMs);
         }
 
         // 2) keyMask
-        int bit = InitialAccessKeyBits.bitForMsgType(msgType);
+        int bit = ProcedureAutomaton.keyBit(row);
         if (bit != 0) proc.setKeyMask(proc.getKeyMask() | bit);
 
         // 3) 单调推进
@@ -116,8 +117,8 @@ public class InitialAccessFlowHandler implements FlowHandler {
     }
 
     private boolean hasSeenKeyMessage(Procedure proc, SignalingMessage msg) {
-        if (msg == null || msg.getMsgType() == null) return false;
-        int bit = InitialAccessKeyBits.bitForMsgType(msg.getMsgType());
+        if (msg == null) return false;
+        int bit = ProcedureAutomaton.keyBit(AUTOMATON.row(MsgTypeCodes.of(msg)));
         if (bit == 0) return false;
         return (proc.getKeyMask() & bit) != 0;
     }
@@ -2,8 +2,9 @@ package com.example.procedure.flow.impl;
 
 import com.example.procedure.flow.*;
 import com.example.procedure.model.*;
-import com.example.procedure.rule.N2HandoverKeyBits;
 import com.example.procedure.rule.N2HandoverPhases;
+import com.example.procedure.rule.MsgTypeCodes;
+import com.example.procedure.rule.ProcedureAutomaton;
 import com.example.procedure.util.ProcedureProgressUtil;
 
 import java.util.List;
@@ -11,6 +12,8 @@ import java.util.Locale;
 
 public class N2HandoverFlowHandler implements FlowHandler {
 
+    private static final ProcedureAutomaton AUTOMATON = ProcedureAutomaton.of(ProcedureTypeEnum.N2_HANDOVER);
+
     private static final int N2HO_MERGE_THRESHOLD = 35;
 
     @Override
@@ -31,17 +34,15 @@ public class N2HandoverFlowHandler implements FlowHandler {
 
     @Override
     public boolean isTrigger(SignalingMessage msg) {
-        String t = msg.getMsgType();
-        if (t == null) return false;
+        long row = AUTOMATON.row(MsgTypeCodes.of(msg));
 
-        if (N2HandoverPhases.isEndMessage(t)) return true;
+        if (ProcedureAutomaton.isEnd(row)) return true;
 
-        var loc = N2HandoverPhases.locate(t);
-        if (loc != null && loc.isPhaseStart()) {
-            return N2HandoverPhases.hasValidPayloadForPhaseStart(msg, loc.getPhaseIndex());
+        if (ProcedureAutomaton.located(row) && ProcedureAutomaton.isPhaseStart(row)) {
+            return N2HandoverPhases.hasValidPayloadForPhaseStart(msg, ProcedureAutomaton.phase(row));
         }
 
-        return N2HandoverKeyBits.bitForMsgType(t) != 0;
+        return ProcedureAutomaton.keyBit(row) != 0;
     }
 
     @Override
@@ -51,10 +52,10 @@ public class N2HandoverFlowHandler implements FlowHandler {
     }
 
     @Override
-    public ProcedureScoreResult chooseBest(List<Procedure> activeList, SignalingMessage msg, ScoreScorer scorer) {
+    public ProcedureScoreResult chooseBest(List<Procedure> activeList, SignalingMessage msg, long msgTs,
+                                           ScoreScorer scorer) {
         if (activeList == null || activeList.isEmpty()) return null;
 
-        long msgTs = System.currentTimeMillis(); // 若 msg 自带时间戳，建议改用 msg.getXXXTimestamp()
         int best = Integer.MIN_VALUE;
         Procedure bestProc = null;
         Score bestScore = null;
@@ -74,13 +75,14 @@ public class N2HandoverFlowHandler implements FlowHandler {
     @Override
     public void applyUpdate(String ueId, Procedure proc, Score score, SignalingMessage msg, long nowMs, FlowContext ctx) {
         String msgType = msg.getMsgType();
+        long row = AUTOMATON.row(MsgTypeCodes.of(msg));
 
-        if (N2HandoverPhases.isEndMessage(msgType)) {
+        if (ProcedureAutomaton.isEnd(row)) {
             proc.setEndSeen(true);
             if (proc.getEndSeenAtMs() == 0L) proc.setEndSeenAtMs(nowMs);
         }
 
-        int bit = N2HandoverKeyBits.bitForMsgType(msgType);
+        int bit = ProcedureAutomaton.keyBit(row);
         if (bit != 0) proc.setKeyMask(proc.getKeyMask() | bit);
 
         ProcedureProgressUtil.advanceMonotonic(proc, score.getPhaseIndex(), score.getOrderIndex());
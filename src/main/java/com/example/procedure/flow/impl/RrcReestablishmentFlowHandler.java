@@ -2,14 +2,17 @@ package com.example.procedure.flow.impl;
 
 import com.example.procedure.flow.*;
 import com.example.procedure.model.*;
-import com.example.procedure.rule.RrcReestablishmentKeyBits;
 import com.example.procedure.rule.RrcReestablishmentPhases;
+import com.example.procedure.rule.MsgTypeCodes;
+import com.example.procedure.rule.ProcedureAutomaton;
 import com.example.procedure.util.ProcedureProgressUtil;
 
 import java.util.List;
 
 public class RrcReestablishmentFlowHandler implements FlowHandler {
 
+    private static final ProcedureAutomaton AUTOMATON = ProcedureAutomaton.of(ProcedureTypeEnum.RRC_REESTABLISH);
+
     private static final int REEST_MERGE_THRESHOLD = 20;
 
     @Override
@@ -29,17 +32,15 @@ public class RrcReestablishmentFlowHandler implements FlowHandler {
 
     @Override
     public boolean isTrigger(SignalingMessage msg) {
-        String t = msg.getMsgType();
-        if (t == null) return false;
+        long row = AUTOMATON.row(MsgTypeCodes.of(msg));
 
-        if (RrcReestablishmentPhases.isEndMessage(t)) return true;
+        if (ProcedureAutomaton.isEnd(row)) return true;
 
-        var loc = RrcReestablishmentPhases.locate(t);
-        if (loc != null && loc.isPhaseStart()) {
-            return RrcReestablishmentPhases.hasValidPayloadForPhaseStart(msg, loc.getPhaseIndex());
+        if (ProcedureAutomaton.located(row) && ProcedureAutomaton.isPhaseStart(row)) {
+            return RrcReestablishmentPhases.hasValidPayloadForPhaseStart(msg, ProcedureAutomaton.phase(row));
         }
 
-        return RrcReestablishmentKeyBits.bitForMsgType(t) != 0;
+        return ProcedureAutomaton.keyBit(row) != 0;
     }
 
     @Override
@@ -51,10 +52,10 @@ public class RrcReestablishmentFlowHandler implements FlowHandler {
     @Override
     public ProcedureScoreResult chooseBest(List<Procedure> activeList,
                                            SignalingMessage msg,
+                                           long msgTs,
                                            ScoreScorer scorer) {
         if (activeList == null || activeList.isEmpty()) return null;
 
-        long msgTs = System.currentTimeMillis();
         int best = Integer.MIN_VALUE;
         Procedure bestProc = null;
         Score bestScore = null;
@@ -83,15 +84,16 @@ public class RrcReestablishmentFlowHandler implements FlowHandler {
                             FlowContext ctx) {
 
         String msgType = msg.getMsgType();
+        long row = AUTOMATON.row(MsgTypeCodes.of(msg));
 
-        if (RrcReestablishmentPhases.isEndMessage(msgType)) {
+        if (ProcedureAutomaton.isEnd(row)) {
             proc.setEndSeen(true);
             if (proc.getEndSeenAtMs() == 0L) {
                 proc.setEndSeenAtMs(nowMs);
             }
         }
 
-        int bit = RrcReestablishmentKeyBits.bitForMsgType(msgType);
+        int bit = ProcedureAutomaton.keyBit(row);
         if (bit != 0) {
             proc.setKeyMask(proc.getKeyMask() | bit);
         }
@@ -2,14 +2,17 @@ package com.example.procedure.flow.impl;
 
 import com.example.procedure.flow.*;
 import com.example.procedure.model.*;
-import com.example.procedure.rule.RrcStateTransferKeyBits;
 import com.example.procedure.rule.RrcStateTransferPhases;
+import com.example.procedure.rule.MsgTypeCodes;
+import com.example.procedure.rule.ProcedureAutomaton;
 import com.example.procedure.util.ProcedureProgressUtil;
 
 import java.util.List;
 
 public class RrcStateTransferFlowHandler implements FlowHandler {
 
+    private static final ProcedureAutomaton AUTOMATON = ProcedureAutomaton.of(ProcedureTypeEnum.RRCSTATE_TRANSFER);
+
     private static final int RRC_STATE_MERGE_THRESHOLD = 25;
 
     @Override
@@ -30,18 +33,17 @@ public class RrcStateTransferFlowHandler implements FlowHandler {
 
     @Override
     public boolean isTrigger(SignalingMessage msg) {
-        String t = msg.getMsgType();
-        if (t == null) return false;
+        long row = AUTOMATON.row(MsgTypeCodes.of(msg));
+
 
         // 注意：这里把 RRCRelease 也当作 end message，会触发
-        if (RrcStateTransferPhases.isEndMessage(t)) return true;
+        if (ProcedureAutomaton.isEnd(row)) return true;
 
-        var loc = RrcStateTransferPhases.locate(t);
-        if (loc != null && loc.isPhaseStart()) {
-            return RrcStateTransferPhases.hasValidPayloadForPhaseStart(msg, loc.getPhaseIndex());
+        if (ProcedureAutomaton.located(row) && ProcedureAutomaton.isPhaseStart(row)) {
+            return RrcStateTransferPhases.hasValidPayloadForPhaseStart(msg, ProcedureAutomaton.phase(row));
         }
 
-        return RrcStateTransferKeyBits.bitForMsgType(t) != 0;
+        return ProcedureAutomaton.keyBit(row) != 0;
     }
 
     @Override
@@ -52,10 +54,10 @@ public class RrcStateTransferFlowHandler implements FlowHandler {
     }
 
     @Override
-    public ProcedureScoreResult chooseBest(List<Procedure> activeList, SignalingMessage msg, ScoreScorer scorer) {
+    public ProcedureScoreResult chooseBest(List<Procedure> activeList, SignalingMessage msg, long msgTs,
+                                           ScoreScorer scorer) {
         if (activeList == null || activeList.isEmpty()) return null;
 
-        long msgTs = System.currentTimeMillis();
         int best = Integer.MIN_VALUE;
         Procedure bestProc = null;
         Score bestScore = null;
@@ -78,13 +80,14 @@ public class RrcStateTransferFlowHandler implements FlowHandler {
     @Override
     public void applyUpdate(String ueId, Procedure proc, Score score, SignalingMessage msg, long nowMs, FlowContext ctx) {
         String msgType = msg.getMsgType();
+        long row = AUTOMATON.row(MsgTypeCodes.of(msg));
 
-        if (RrcStateTransferPhases.isEndMessage(msgType)) {
+        if (ProcedureAutomaton.isEnd(row)) {
             proc.setEndSeen(true);
             if (proc.getEndSeenAtMs() == 0L) proc.setEndSeenAtMs(nowMs);
         }
 
-        int bit = RrcStateTransferKeyBits.bitForMsgType(msgType);
+        int bit = ProcedureAutomaton.keyBit(row);
         if (bit != 0) proc.setKeyMask(proc.getKeyMask() | bit);
 
         ProcedureProgressUtil.advanceMonotonic(proc, score.getPhaseIndex(), score.getOrderIndex());
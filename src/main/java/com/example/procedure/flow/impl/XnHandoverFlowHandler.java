@@ -4,13 +4,16 @@ import com.example.procedure.flow.*;
 import com.example.procedure.model.*;
 import com.example.procedure.rule.XnHandoverKeyBits;
 import com.example.procedure.rule.XnHandoverPhases;
+import com.example.procedure.rule.MsgTypeCodes;
+import com.example.procedure.rule.ProcedureAutomaton;
 import com.example.procedure.util.ProcedureProgressUtil;
 
 import java.util.List;
-import java.util.Locale;
 
 public class XnHandoverFlowHandler implements FlowHandler {
 
+    private static final ProcedureAutomaton AUTOMATON = ProcedureAutomaton.of(ProcedureTypeEnum.XN_HANDOVER);
+
     private static final int XHO_MERGE_THRESHOLD = 35;
 
     @Override
@@ -30,17 +33,15 @@ public class XnHandoverFlowHandler implements FlowHandler {
 
     @Override
     public boolean isTrigger(SignalingMessage msg) {
-        String t = msg.getMsgType();
-        if (t == null) return false;
+        long row = AUTOMATON.row(MsgTypeCodes.of(msg));
 
-        if (XnHandoverPhases.isEndMessage(t)) return true;
+        if (ProcedureAutomaton.isEnd(row)) return true;
 
-        var loc = XnHandoverPhases.locate(t);
-        if (loc != null && loc.isPhaseStart()) {
-            return XnHandoverPhases.hasValidPayloadForPhaseStart(msg, loc.getPhaseIndex());
+        if (ProcedureAutomaton.located(row) && ProcedureAutomaton.isPhaseStart(row)) {
+            return XnHandoverPhases.hasValidPayloadForPhaseStart(msg, ProcedureAutomaton.phase(row));
         }
 
-        return XnHandoverKeyBits.bitForMsgType(t) != 0;
+        return ProcedureAutomaton.keyBit(row) != 0;
     }
 
     @Override
@@ -50,10 +51,10 @@ public class XnHandoverFlowHandler implements FlowHandler {
     }
 
     @Override
-    public ProcedureScoreResult chooseBest(List<Procedure> activeList, SignalingMessage msg, ScoreScorer scorer) {
+    public ProcedureScoreResult chooseBest(List<Procedure> activeList, SignalingMessage msg, long msgTs,
+                                           ScoreScorer scorer) {
         if (activeList == null || activeList.isEmpty()) return null;
 
-        long msgTs = System.currentTimeMillis();
         int best = Integer.MIN_VALUE;
         Procedure bestProc = null;
         Score bestScore = null;
@@ -73,17 +74,18 @@ public class XnHandoverFlowHandler implements FlowHandler {
     @Override
     public void applyUpdate(String ueId, Procedure proc, Score score, SignalingMessage msg, long nowMs, FlowContext ctx) {
         String msgType = msg.getMsgType();
+        long row = AUTOMATON.row(MsgTypeCodes.of(msg));
 
-        if (XnHandoverPhases.isEndMessage(msgType)) {
+        if (ProcedureAutomaton.isEnd(row)) {
             proc.setEndSeen(true);
             if (proc.getEndSeenAtMs() == 0L) proc.setEndSeenAtMs(nowMs);
         }
 
         int bit;
-        if (isHandoverCommand(msgType)) {
+        if (ProcedureAutomaton.isHandoverCommand(row)) {
             bit = XnHandoverKeyBits.bitForHandoverCommandWithContext(proc.getKeyMask());
         } else {
-            bit = XnHandoverKeyBits.bitForMsgType(msgType);
+            bit = ProcedureAutomaton.keyBit(row);
         }
         if (bit != 0) proc.setKeyMask(proc.getKeyMask() | bit);
 
@@ -104,10 +106,4 @@ public class XnHandoverFlowHandler implements FlowHandler {
             ctx.proManagerService().end_Procedure(ueId, proc.getProcedureId());
         }
     }
-
-    private boolean isHandoverCommand(String msgType) {
-        if (msgType == null) return false;
-        String u = msgType.trim().toUpperCase(Locale.ROOT);
-        return u.equals("HANDOVER COMMAND") || u.equals("HANDOVERCOMMAND");
-    }
 }
@@ -0,0 +1,21 @@
+package com.example.procedure.id;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class IdConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(IdConfig.class);
+
+    @Bean
+    public IdGenerator idGenerator(IdProperties props) {
+        int node = props.getNode() >= 0 ? props.getNode() : IdGenerator.autoNode();
+        IdGenerator g = new IdGenerator(node, props.getBlockSize());
+        IdGenerator.setDefault(g);
+        log.info("Id generator: node={} (configured={}), blockSize={}", node, props.getNode(), props.getBlockSize());
+        return g;
+    }
+}
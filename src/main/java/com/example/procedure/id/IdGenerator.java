@@ -0,0 +1,135 @@
+package com.example.procedure.id;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 本地生成、按时间递增的 64 位 ID（替代流程 ID 的 Redis INCR + UUID 后缀、消息 ID 的全局 AtomicLong）：
+ *
+ *   [0][41 位 毫秒（从 2024-01-01 起）][10 位 节点][12 位 毫秒内序号]
+ *
+ *  - 每个线程一次从共享游标上领一段（blockSize 个）序号，之后在本线程里自己数，
+ *    多线程解析时不再每条消息都 CAS 同一个 AtomicLong。
+ *  - 游标只增不减：时钟回拨、或者一毫秒内领完 4096 个，就借用后面的毫秒，ID 仍然唯一递增。
+ *  - 一段领了太久没用完（线程很闲）就作废重领，免得 ID 里的时间比实际落后太多（每 64 个检查一次）。
+ *  - 字符串按需渲染：format 出 13 位 Crockford base32，定长，字典序 = 数值序。
+ */
+public final class IdGenerator {
+
+    /** 2024-01-01T00:00:00Z */
+    public static final long EPOCH_MS = 1_704_067_200_000L;
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQ_BITS = 12;
+    private static final long SEQ_MASK = (1L << SEQ_BITS) - 1;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+
+    /** 一段序号最多用多久（毫秒） */
+    private static final long MAX_BLOCK_AGE_MS = 1000;
+
+    private static final char[] BASE32 = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    private static volatile IdGenerator defaultInstance;
+
+    private final int node;
+    private final int blockSize;
+    private final LongSupplier clock;
+
+    /** (毫秒 - EPOCH) << SEQ_BITS | 序号：下一个还没被领走的位置 */
+    private final AtomicLong cursor = new AtomicLong();
+
+    /** 每个线程手里的一段：{next, end, 领取时的毫秒} */
+    private final ThreadLocal<long[]> blocks = ThreadLocal.withInitial(() -> new long[3]);
+
+    public IdGenerator(int node, int blockSize) {
+        this(node, blockSize, System::currentTimeMillis);
+    }
+
+    public IdGenerator(int node, int blockSize, LongSupplier clock) {
+        if (node < 0 || node > MAX_NODE) throw new IllegalArgumentException("id node out of range 0.." + MAX_NODE + ": " + node);
+        this.node = node;
+        this.blockSize = (int) Math.max(1, Math.min(blockSize, SEQ_MASK + 1));
+        this.clock = clock;
+    }
+
+    /** 非 Spring 创建的对象（解析链路上的 Consumer 等）用；IdConfig 启动时换成按配置建的那个 */
+    public static IdGenerator getDefault() {
+        IdGenerator g = defaultInstance;
+        if (g == null) {
+            synchronized (IdGenerator.class) {
+                if (defaultInstance == null) defaultInstance = new IdGenerator(autoNode(), 256);
+                g = defaultInstance;
+            }
+        }
+        return g;
+    }
+
+    public static void setDefault(IdGenerator g) {
+        defaultInstance = g;
+    }
+
+    public int node() {
+        return node;
+    }
+
+    public long next() {
+        long[] b = blocks.get();
+        // 段的年龄每 64 个才看一次时钟，热路径上基本只有一次自增
+        if (b[0] >= b[1] || ((b[0] & 63) == 0 && clock.getAsLong() - b[2] > MAX_BLOCK_AGE_MS)) {
+            reserve(b, clock.getAsLong());
+        }
+        long ts = b[0]++;
+        return (ts >>> SEQ_BITS) << (NODE_BITS + SEQ_BITS) | (long) node << SEQ_BITS | (ts & SEQ_MASK);
+    }
+
+    /** next() 再 format */
+    public String nextString() {
+        return format(next());
+    }
+
+    /** 13 位 Crockford base32（每位 5 bit，最高位只用 4 bit），定长所以字符串排序和数值一致 */
+    public static String format(long id) {
+        char[] c = new char[13];
+        for (int i = 12; i >= 0; i--) {
+            c[i] = BASE32[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(c);
+    }
+
+    public static long timestampMs(long id) {
+        return (id >>> (NODE_BITS + SEQ_BITS)) + EPOCH_MS;
+    }
+
+    public static int nodeOf(long id) {
+        return (int) ((id >>> SEQ_BITS) & MAX_NODE);
+    }
+
+    /** 没配节点号时：主机名 + 进程号散列出一个（同机多进程也尽量错开） */
+    public static int autoNode() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "localhost";
+        }
+        int h = (host + "/" + ManagementFactory.getRuntimeMXBean().getName()).hashCode();
+        return (h ^ (h >>> 16)) & MAX_NODE;
+    }
+
+    private void reserve(long[] b, long now) {
+        long floor = (now - EPOCH_MS) << SEQ_BITS;
+        while (true) {
+            long cur = cursor.get();
+            long base = Math.max(cur, floor);
+            if (cursor.compareAndSet(cur, base + blockSize)) {
+                b[0] = base;
+                b[1] = base + blockSize;
+                b[2] = now;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.procedure.id;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "id")
+public class IdProperties {
+
+    /** 节点号 0..1023，多实例部署时每个实例配不同的；-1 按主机名 + 进程号自动算 */
+    private int node = -1;
+
+    /** 每个线程一次领多少个序号 */
+    private int blockSize = 256;
+}
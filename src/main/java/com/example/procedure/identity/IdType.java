@@ -0,0 +1,35 @@
+package com.example.procedure.identity;
+
+/**
+ * UE 的各种标识。顺序就是可信度（越靠前越稳定）：同一条消息里带了好几个的时候，按这个顺序挑主簇。
+ *
+ * 默认存活时间是按 3GPP 里这些 ID 一般活多久估的，可以在 identity.ttl-ms 里按类型覆盖；
+ * 到期（或者 release）之后这个 ID 就和原来的 UE 断开，下次再见到当成新的（ID 复用）。
+ */
+public enum IdType {
+
+    /** SUPI / IMSI：锚点，簇里有它才能解析出 ueId */
+    SUPI(24 * 3_600_000L),
+    /** SUCI（scope = 归属 PLMN + routing indicator）：每次注册都会变，只在注册那一小段有用 */
+    SUCI(600_000L),
+    /** 5G-GUTI（scope = GUAMI）：AMF 分配，注册期间一直有效 */
+    GUTI_5G(24 * 3_600_000L),
+    /** 5G-S-TMSI / TMSI（scope = PLMN） */
+    TMSI_5G(24 * 3_600_000L),
+    /** AMF UE NGAP ID（scope = AMF） */
+    AMF_UE_NGAP_ID(3_600_000L),
+    /** RAN UE NGAP ID（scope = gNB） */
+    RAN_UE_NGAP_ID(3_600_000L),
+    /** C-RNTI（scope = 小区），RRC 释放后很快就会分给别的 UE */
+    C_RNTI(600_000L);
+
+    private final long defaultTtlMs;
+
+    IdType(long defaultTtlMs) {
+        this.defaultTtlMs = defaultTtlMs;
+    }
+
+    public long defaultTtlMs() {
+        return defaultTtlMs;
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.procedure.identity;
+
+import com.example.procedure.expiry.HashedTimingWheel;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * UE 标识关联图：并查集（disjoint-set），一个簇 = 一个 UE 目前用着的所有标识。
+ *
+ *  - link(now, keys)：同一条消息里同时出现的标识一定属于同一个 UE，并到一个簇里；
+ *    簇里有 SUPI 的，SUPI 就是簇的锚点（ueId），簇里任何一个标识都能解析出它；
+ *  - 查找带路径减半、合并按秩，resolve 基本是 O(1)（反阿克曼）；
+ *  - 每个标识有自己的存活期（IdType 默认值 / 配置覆盖），每次见到都续期；到期或 release 之后
+ *    这个标识从簇里摘掉，下次再见到就是一个新节点（ID 被别的 UE 复用的情况）。
+ *    过期走时间轮，续期只改 expireAt 不动时间轮，到点发现没到期再挂回去；
+ *  - 两个簇各有不同的锚点又被同一条消息连起来：说明低可信度的那个 ID 已经换主人了，
+ *    把它从老簇摘下来挂到新簇（不合并两个 UE），记一次 conflict；
+ *  - 没锚点的簇并进有锚点的簇时（或者簇刚拿到锚点），回调 Listener，调用方拿这些标识去放缓冲的消息。
+ *
+ * 锚点记在根上。SUPI 自己过期了锚点也不清：簇里别的标识还活着，就还是那个 UE。
+ * 非线程安全，外面加锁（见 UeIdentityCorrelator）。
+ */
+public final class IdentityGraph {
+
+    /** 这些标识刚刚能解析到 ueId 了（link 里同步回调） */
+    public interface Listener {
+        void onResolved(String ueId, List<IdentityKey> keys);
+    }
+
+    public record Stats(int keys, long unions, long conflicts, long released, long expired) {}
+
+    private final Map<IdentityKey, Node> byKey = new HashMap<>();
+    private final HashedTimingWheel<Node> wheel;
+    private final long[] ttlMs = new long[IdType.values().length];
+    private Listener listener;
+
+    private long unions, conflicts, released, expired;
+
+    /** ttlOverrides 里没有的类型用 IdType 的默认值；<= 0 表示不过期 */
+    public IdentityGraph(Map<IdType, Long> ttlOverrides, long tickMs, int wheelSize) {
+        Map<IdType, Long> ttl = new EnumMap<>(IdType.class);
+        if (ttlOverrides != null) ttl.putAll(ttlOverrides);
+        for (IdType t : IdType.values()) this.ttlMs[t.ordinal()] = ttl.getOrDefault(t, t.defaultTtlMs());
+        this.wheel = new HashedTimingWheel<>(tickMs, wheelSize);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 登记（续期）一条消息里的所有标识并合成一个簇；返回簇的 ueId，还没有锚点返回 null。
+     * 可信度最高的那个标识（IdType 顺序）所在的簇是主簇，冲突时以它为准。
+     */
+    public String link(long now, List<IdentityKey> keys) {
+        expire(now);
+        if (keys == null || keys.isEmpty()) return null;
+
+        int n = keys.size();
+        Node[] nodes = new Node[n];
+        int best = 0;
+        for (int i = 0; i < n; i++) {
+            nodes[i] = touch(keys.get(i), now);
+            if (keys.get(i).type().ordinal() < keys.get(best).type().ordinal()) best = i;
+        }
+
+        Node primary = find(nodes[best]);
+        List<Node> resolved = null;
+        for (int i = 0; i < n; i++) {
+            if (i == best) continue;
+            Node r = find(nodes[i]);
+            if (r == primary) continue;
+
+            if (r.anchor != null && primary.anchor != null && !r.anchor.equals(primary.anchor)) {
+                conflicts++;
+                // 一条消息里两个 SUPI：不知道信谁，这个不动
+                if (keys.get(i).type() == IdType.SUPI) continue;
+                // ID 换主人了：从老 UE 摘下来，当新的挂到主簇
+                detach(nodes[i]);
+                nodes[i] = touch(keys.get(i), now);
+                r = nodes[i];
+            }
+
+            // 合并后才有锚点的那一边，它的标识都是"刚解析出来的"
+            if ((primary.anchor == null) != (r.anchor == null)) {
+                if (resolved == null) resolved = new ArrayList<>();
+                resolved.addAll(primary.anchor == null ? primary.members : r.members);
+            }
+            primary = union(primary, r);
+        }
+
+        String ueId = primary.anchor;
+        if (resolved != null && ueId != null && listener != null) {
+            List<IdentityKey> resolvedKeys = new ArrayList<>(resolved.size());
+            for (Node x : resolved) resolvedKeys.add(x.key);
+            listener.onResolved(ueId, resolvedKeys);
+        }
+        return ueId;
+    }
+
+    /** 标识 -> ueId；不认识或者所在簇还没锚点返回 null */
+    public String resolve(IdentityKey key) {
+        Node node = byKey.get(key);
+        return node == null ? null : find(node).anchor;
+    }
+
+    /** 和 key 在同一个簇里、还活着的标识（UE 上下文释放时按它找同簇的 RAN ID；调试 / 测试也用） */
+    public List<IdentityKey> cluster(IdentityKey key) {
+        Node node = byKey.get(key);
+        if (node == null) return List.of();
+        List<IdentityKey> out = new ArrayList<>();
+        for (Node x : find(node).members) out.add(x.key);
+        return out;
+    }
+
+    /** 标识被显式释放（UEContextRelease / RRCRelease 之后）；返回之前是否登记过 */
+    public boolean release(IdentityKey key) {
+        Node node = byKey.get(key);
+        if (node == null) return false;
+        detach(node);
+        released++;
+        return true;
+    }
+
+    /** 把时间拨到 now，到期的标识摘掉；返回摘掉的个数 */
+    public int expire(long now) {
+        List<Node> fired = new ArrayList<>();
+        wheel.advance(now, t -> fired.add(t.value()));
+        int n = 0;
+        for (Node node : fired) {
+            if (node.dead) continue;
+            if (node.expireAt > now) {
+                // 挂上之后又见过，期限往后推了：挂回去
+                node.timeout = wheel.schedule(node, node.expireAt);
+                continue;
+            }
+            detach(node);
+            expired++;
+            n++;
+        }
+        return n;
+    }
+
+    public int size() {
+        return byKey.size();
+    }
+
+    public Stats stats() {
+        return new Stats(byKey.size(), unions, conflicts, released, expired);
+    }
+
+    // ===================== internal =====================
+
+    /** 找到就续期，没有就建一个单独的簇（SUPI 自己就是锚点） */
+    private Node touch(IdentityKey key, long now) {
+        long ttl = ttlMs[key.type().ordinal()];
+        Node node = byKey.get(key);
+        if (node == null) {
+            node = new Node(key);
+            if (key.type() == IdType.SUPI) node.anchor = key.value();
+            byKey.put(key, node);
+            if (ttl > 0) {
+                node.expireAt = now + ttl;
+                node.timeout = wheel.schedule(node, node.expireAt);
+            }
+            return node;
+        }
+        // 期限只会往后推，不动时间轮
+        if (ttl > 0) node.expireAt = Math.max(node.expireAt, now + ttl);
+        return node;
+    }
+
+    private void detach(Node node) {
+        byKey.remove(node.key, node);
+        wheel.cancel(node.timeout);
+        node.timeout = null;
+        node.dead = true;
+        // 节点本身留在树里当中间节点（别的节点的 parent 可能还指着它），只是不再算簇成员
+        find(node).members.remove(node);
+    }
+
+    /** 路径减半 */
+    private static Node find(Node n) {
+        while (n.parent != n) {
+            n.parent = n.parent.parent;
+            n = n.parent;
+        }
+        return n;
+    }
+
+    /** a、b 都是根；按秩合并，返回新根 */
+    private Node union(Node a, Node b) {
+        if (a.rank < b.rank) {
+            Node t = a;
+            a = b;
+            b = t;
+        }
+        b.parent = a;
+        if (a.rank == b.rank) a.rank++;
+        if (a.anchor == null) a.anchor = b.anchor;
+        a.members.addAll(b.members);
+        b.members = null;
+        b.anchor = null;
+        unions++;
+        return a;
+    }
+
+    private static final class Node {
+        final IdentityKey key;
+        Node parent = this;
+        int rank;
+        /** 只在根上有意义 */
+        String anchor;
+        List<Node> members = new ArrayList<>(2);
+
+        long expireAt;
+        HashedTimingWheel.Timeout<Node> timeout;
+        boolean dead;
+
+        Node(IdentityKey key) {
+            this.key = key;
+            members.add(this);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.procedure.identity;
+
+/**
+ * 一个带类型的标识。scope 是这个 ID 唯一的范围（RAN UE NGAP ID 按 gNB、C-RNTI 按小区）；
+ * "" 表示本身就全局唯一（SUPI、AMF UE NGAP ID），或者调用方确定只有一个范围（identity.single-cell）。
+ */
+public record IdentityKey(IdType type, String scope, String value) {
+
+    public IdentityKey {
+        if (type == null || value == null) throw new IllegalArgumentException("type and value are required");
+        if (scope == null) scope = "";
+    }
+
+    public static IdentityKey of(IdType type, String value) {
+        return new IdentityKey(type, "", value);
+    }
+
+    public static IdentityKey of(IdType type, String scope, String value) {
+        return new IdentityKey(type, scope, value);
+    }
+
+    @Override
+    public String toString() {
+        return scope.isEmpty() ? type + ":" + value : type + ":" + scope + "/" + value;
+    }
+}
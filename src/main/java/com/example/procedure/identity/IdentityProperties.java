@@ -0,0 +1,38 @@
+package com.example.procedure.identity;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "identity")
+public class IdentityProperties {
+
+    /** 补 ueId 用哪个实现：binder（UeIdBinder）/ correlator（UeIdentityCorrelator），见 UeBinder */
+    private String binder = "binder";
+
+    /** 按类型覆盖标识存活时间（identity.ttl-ms.C_RNTI=300000），没写的用 IdType 默认值；<= 0 不过期 */
+    private Map<IdType, Long> ttlMs = new EnumMap<>(IdType.class);
+
+    /** 过期时间轮 */
+    private long tickMs = 1_000;
+    private int wheelSize = 4096;
+
+    /** 等 ueId 的缓冲消息最多留多久 */
+    private long pendingTtlMs = 120_000;
+
+    /**
+     * 抓包里只有一个 gNB、一个小区：RAN UE NGAP ID / C-RNTI 不带 scope 也能用。
+     * 关着的时候 RAN UE NGAP ID 只在消息带 NR-CGI 时按 gNB 抽，C-RNTI 不抽（MAC 帧里没有小区 ID）。
+     */
+    private boolean singleCell = false;
+
+    /** gNB ID 的位数（22..32，gNB 配置里的 gnb_id_bit_length），NR Cell Identity 的高这么多位是 gNB ID */
+    private int gnbIdBits = 22;
+}
@@ -0,0 +1,25 @@
+package com.example.procedure.identity;
+
+import com.example.procedure.model.SignalingMessage;
+
+import java.util.function.Consumer;
+
+/**
+ * 给没带 ueId 的消息补 ueId：能补上的直接交给 downstream，补不上的先缓冲，等补上了再按到达顺序放出去。
+ *
+ * 两个实现，identity.binder 选一个（只建选中的那个 bean）：
+ *  - binder（默认）：UeIdBinder，RAN-UE-NGAP-ID / rnti-type 两个键，就近绑定，绑定关系有后端副本；
+ *  - correlator：UeIdentityCorrelator，所有标识进 IdentityGraph 做并查集关联，纯内存。
+ *
+ * 上游（ChainsInspectConsumer 之后）只认这个接口。
+ */
+public interface UeBinder extends AutoCloseable {
+
+    void handle(SignalingMessage msg, Consumer<SignalingMessage> downstream);
+
+    /** 各实现自己的统计 record（回放 / 排查时打出来看） */
+    Object stats();
+
+    @Override
+    default void close() {}
+}
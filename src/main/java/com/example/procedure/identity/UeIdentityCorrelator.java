@@ -0,0 +1,300 @@
+package com.example.procedure.identity;
+
+import com.example.procedure.clock.ProcedureClock;
+import com.example.procedure.model.MsgCode;
+import com.example.procedure.model.SignalingMessage;
+import com.example.procedure.parser.MacInfo;
+import com.example.procedure.parser.NasInfo;
+import com.example.procedure.parser.NgapInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * 给没带 ueId 的消息补 ueId（UeIdBinder 的升级版，接口一样：handle(msg, downstream)）。
+ *
+ * UeIdBinder 只认 RAN-UE-NGAP-ID 和 rnti-type 两个键、靠"就近"猜；这里把消息里所有能拿到的标识
+ * （SUPI、SUCI、5G-GUTI、5G-TMSI、RAN/AMF UE NGAP ID、C-RNTI）都丢进 IdentityGraph，同一条消息里出现的并成一个簇，
+ * 簇里有 SUPI 就能解析；解析不出来的先按簇缓冲，簇拿到 SUPI 的那一刻（Listener 回调）按到达顺序放出去。
+ *
+ * 标识什么时候失效：
+ *  - 存活期到了（IdType 默认 / identity.ttl-ms 覆盖）；
+ *  - UEContextReleaseComplete 之后这条消息里的 NGAP ID、RRCRelease 之后的 C-RNTI 立刻释放（下一个 UE 会复用）。
+ *
+ * scope：5G-TMSI 是 GUAMI 的 MCC+MNC，5G-GUTI 是整个 GUAMI，SUCI 是归属 MCC+MNC+routing indicator。
+ * RAN UE NGAP ID 只在一个 gNB 里唯一、C-RNTI 只在一个小区里唯一，不带范围连起来会把不同 gNB / 小区上同值的 UE 并到一起：
+ *  - RAN UE NGAP ID：scope 是 gNB ID，从同一条 NGAP 消息的 NR-CGI 里取（NCI 高 identity.gnb-id-bits 位）；
+ *    消息里没有 NR-CGI（下行、InitialContextSetup 这些）就不抽，这类消息靠同时带着的 AMF UE NGAP ID 连；
+ *  - C-RNTI：MAC 帧里没有小区 ID，不抽。
+ * 抓包确定只有一个 gNB、一个小区时打开 identity.single-cell，这两种 ID 都按 scope "" 抽（两种 ID 都用上）。
+ * PDU 会话 ID 只在一个 UE 里唯一（1..15），当不了跨 UE 的标识，不抽。
+ *
+ * identity.binder=correlator 时替代 UeIdBinder（见 UeBinder）。
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "identity", name = "binder", havingValue = "correlator")
+public class UeIdentityCorrelator implements UeBinder {
+
+    public record Stats(int keys, int pending, long unions, long conflicts, long released,
+                        long expiredKeys, long expiredPending, long dropped) {}
+
+    /** mac-nr.rnti-type 里 C-RNTI 的取值（Wireshark packet-mac-nr.h：C_RNTI = 3） */
+    private static final String RNTI_TYPE_C = "3";
+
+    private final IdentityGraph graph;
+    private final long pendingTtlMs;
+    private final boolean singleCell;
+    private final int gnbIdBits;
+    private final LongSupplier clock;
+
+    // ========= pending：按标识分桶 + 全局按时间排队（同 UeIdBinder） =========
+    private final Map<IdentityKey, ArrayDeque<PendingMsg>> pending = new HashMap<>();
+    private final ArrayDeque<PendingMsg> pendingByTime = new ArrayDeque<>();
+    private int pendingCount;
+    private long seq;
+
+    /** 当前这次 handle 的下游：Listener 在 link 里同步回调，要用它放缓冲的消息 */
+    private Consumer<SignalingMessage> downstream;
+
+    private long expiredPending, dropped;
+
+    @Autowired
+    public UeIdentityCorrelator(IdentityProperties props, ProcedureClock clock) {
+        this(props.getTtlMs(), props.getTickMs(), props.getWheelSize(), props.getPendingTtlMs(),
+                props.isSingleCell(), props.getGnbIdBits(), clock::now);
+    }
+
+    public UeIdentityCorrelator(Map<IdType, Long> ttlMs, long tickMs, int wheelSize, long pendingTtlMs,
+                                boolean singleCell, int gnbIdBits, LongSupplier clock) {
+        if (gnbIdBits < 22 || gnbIdBits > 32) {
+            throw new IllegalArgumentException("gNB ID is 22..32 bits (TS 38.413): " + gnbIdBits);
+        }
+        this.graph = new IdentityGraph(ttlMs, tickMs, wheelSize);
+        this.pendingTtlMs = pendingTtlMs;
+        this.singleCell = singleCell;
+        this.gnbIdBits = gnbIdBits;
+        this.clock = clock;
+        graph.setListener(this::flushResolved);
+    }
+
+    // ========= 入口：处理单条消息 =========
+    @Override
+    public synchronized void handle(SignalingMessage msg, Consumer<SignalingMessage> downstream) {
+        long now = clock.getAsLong();
+        expirePending(now);
+
+        List<IdentityKey> keys = extractKeys(msg);
+        String ueId;
+        this.downstream = downstream;
+        try {
+            ueId = graph.link(now, keys);
+        } finally {
+            this.downstream = null;
+        }
+
+        if (ueId == null) {
+            // 一个标识都没有：没法缓冲也没法关联，丢掉（同 UeIdBinder）
+            if (keys.isEmpty()) dropped++;
+            else buffer(keys.get(0), msg, now);
+            return;
+        }
+
+        msg.setUeId(ueId);
+        downstream.accept(msg);
+        releaseOnTeardown(msg, keys);
+    }
+
+    /** 某个标识现在解析到谁（没有返回 null） */
+    public synchronized String resolve(IdentityKey key) {
+        return graph.resolve(key);
+    }
+
+    @Override
+    public synchronized Stats stats() {
+        IdentityGraph.Stats g = graph.stats();
+        return new Stats(g.keys(), pendingCount, g.unions(), g.conflicts(), g.released(), g.expired(),
+                expiredPending, dropped);
+    }
+
+    // ========= 抽取标识 =========
+
+    /** 消息里能拿到的所有标识，可信度高的（IdType 顺序）在前 */
+    List<IdentityKey> extractKeys(SignalingMessage msg) {
+        List<IdentityKey> keys = new ArrayList<>(4);
+        if (msg == null) return keys;
+
+        String supi = normalize(msg.getUeId());
+        if (supi != null) keys.add(IdentityKey.of(IdType.SUPI, supi));
+
+        if (msg.getNasList() != null) {
+            for (NasInfo nas : msg.getNasList()) {
+                if (nas == null) continue;
+                String suci = normalize(nas.getSuciSchemeOutput());
+                if (suci != null) {
+                    String home = nullToEmpty(nas.getSuciMcc()) + "-" + nullToEmpty(nas.getSuciMnc())
+                            + "-" + nullToEmpty(nas.getSuciRoutingIndicator());
+                    keys.add(IdentityKey.of(IdType.SUCI, home, suci.toLowerCase(Locale.ROOT)));
+                }
+                String tmsi = normalize(nas.getTmsi());
+                if (tmsi == null) continue;
+                String plmn = nas.getGuamiMcc() == null ? "" : nas.getGuamiMcc() + "-" + nullToEmpty(nas.getGuamiMnc());
+                keys.add(IdentityKey.of(IdType.TMSI_5G, plmn, tmsi));
+                // 完整 GUAMI 都在才是 5G-GUTI（5G-S-TMSI 只有 set + pointer）
+                String region = normalize(nas.getAmfRegionId());
+                if (nas.getGuamiMcc() != null && region != null) {
+                    String guami = plmn + "-" + region + "-" + nullToEmpty(nas.getAmfSetId())
+                            + "-" + nullToEmpty(nas.getAmfPointer());
+                    keys.add(IdentityKey.of(IdType.GUTI_5G, guami, tmsi));
+                }
+            }
+        }
+
+        if (msg.getNgapInfoList() != null) {
+            for (NgapInfo ngap : msg.getNgapInfoList()) {
+                if (ngap == null) continue;
+                String amf = normalize(ngap.getAmfUeNgapId());
+                if (amf != null) keys.add(IdentityKey.of(IdType.AMF_UE_NGAP_ID, amf));
+                String ran = normalize(ngap.getRanUeNgapId());
+                String gnb = singleCell ? "" : gnbScope(ngap.getNrCellIdentity());
+                if (ran != null && gnb != null) keys.add(IdentityKey.of(IdType.RAN_UE_NGAP_ID, gnb, ran));
+            }
+        }
+
+        // 小区 ID 拿不到，只有单小区时才用 C-RNTI
+        MacInfo mac = msg.getMacInfo();
+        if (singleCell && mac != null && RNTI_TYPE_C.equals(normalize(mac.getRntiType()))) {
+            String rnti = normalize(mac.getRnti());
+            if (rnti != null) keys.add(IdentityKey.of(IdType.C_RNTI, rnti.toLowerCase(Locale.ROOT)));
+        }
+
+        keys.sort(Comparator.comparingInt(k -> k.type().ordinal()));
+        return keys;
+    }
+
+    // ========= 缓冲 / 放行 =========
+    private void buffer(IdentityKey key, SignalingMessage msg, long now) {
+        PendingMsg p = new PendingMsg(msg, now, seq++, key);
+        pending.computeIfAbsent(key, k -> new ArrayDeque<>(4)).addLast(p);
+        pendingByTime.addLast(p);
+        pendingCount++;
+    }
+
+    /** Listener：这些标识刚解析到 ueId，它们名下缓冲的消息按到达顺序放出去 */
+    private void flushResolved(String ueId, List<IdentityKey> keys) {
+        List<PendingMsg> out = null;
+        for (IdentityKey k : keys) {
+            ArrayDeque<PendingMsg> bucket = pending.remove(k);
+            if (bucket == null) continue;
+            if (out == null) out = new ArrayList<>();
+            out.addAll(bucket);
+        }
+        if (out == null) return;
+        // 一个簇里几个桶的消息交错到达，按序号排回去
+        if (out.size() > 1) out.sort(Comparator.comparingLong(p -> p.seq));
+        for (PendingMsg p : out) {
+            p.done = true;
+            pendingCount--;
+            p.msg.setUeId(ueId);
+            if (downstream != null) downstream.accept(p.msg);
+        }
+    }
+
+    /**
+     * 释放类消息下发之后，把这条消息里会被复用的标识摘掉。
+     * UEContextReleaseComplete 不一定带 NR-CGI，RAN UE NGAP ID 抽不出来：按 AMF UE NGAP ID 找到簇，簇里的 RAN ID 一起摘。
+     */
+    private void releaseOnTeardown(SignalingMessage msg, List<IdentityKey> keys) {
+        MsgCode type = MsgCode.byCode(msg.getMsgCode());
+        boolean ngapRelease = type == MsgCode.NGAP_UE_CONTEXT_RELEASE_COMPLETE;
+        boolean rrcRelease = type == MsgCode.RRC_RELEASE;
+        if (!ngapRelease && !rrcRelease) return;
+        List<IdentityKey> release = new ArrayList<>(keys.size());
+        for (IdentityKey k : keys) {
+            IdType t = k.type();
+            if (ngapRelease && t == IdType.AMF_UE_NGAP_ID) {
+                for (IdentityKey c : graph.cluster(k)) {
+                    if (c.type() == IdType.RAN_UE_NGAP_ID) release.add(c);
+                }
+                release.add(k);
+            } else if ((ngapRelease && t == IdType.RAN_UE_NGAP_ID) || (rrcRelease && t == IdType.C_RNTI)) {
+                release.add(k);
+            }
+        }
+        for (IdentityKey k : release) graph.release(k);
+    }
+
+    // ========= 过期：只看队首 =========
+    private void expirePending(long now) {
+        long expireBefore = now - pendingTtlMs;
+        PendingMsg p;
+        while ((p = pendingByTime.peekFirst()) != null && (p.done || p.ts < expireBefore)) {
+            pendingByTime.pollFirst();
+            if (p.done) continue;
+            ArrayDeque<PendingMsg> bucket = pending.get(p.key);
+            if (bucket != null) {
+                bucket.pollFirst();
+                if (bucket.isEmpty()) pending.remove(p.key);
+            }
+            pendingCount--;
+            expiredPending++;
+        }
+    }
+
+    /**
+     * NR Cell Identity -> "gnb-<gNB ID>"，解析不了返回 null。
+     * tshark 给的可能是 36 位的值（0x000066c01），也可能是 BIT STRING 原样的 5 字节（00:06:6c:01:0，低 4 位补的 0）。
+     */
+    public String gnbScope(String nci) {
+        String hex = normalize(nci);
+        if (hex == null) return null;
+        hex = hex.replace(":", "");
+        if (hex.startsWith("0x") || hex.startsWith("0X")) hex = hex.substring(2);
+        long v;
+        try {
+            v = Long.parseUnsignedLong(hex, 16);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (hex.length() == 10) v >>>= 4;
+        else if (hex.length() > 9) return null;
+        return "gnb-" + Long.toHexString(v >>> (36 - gnbIdBits));
+    }
+
+    // ========= utils =========
+    private static String normalize(String s) {
+        if (s == null) return null;
+        String x = s.trim();
+        return x.isEmpty() ? null : x;
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    private static final class PendingMsg {
+        final SignalingMessage msg;
+        final long ts;
+        final long seq;
+        final IdentityKey key;
+        boolean done;       // 已经随解析下发
+
+        PendingMsg(SignalingMessage msg, long ts, long seq, IdentityKey key) {
+            this.msg = msg;
+            this.ts = ts;
+            this.seq = seq;
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.procedure.keyderivation;
+
+/**
+ * 给任意 KeyDerivationProvider 套一层 DerivedKeyCache。
+ *
+ * 同一个 UE 的上下文在每条消息处理时都会重新推一遍 KAMF → NAS/RRC 密钥，
+ * 输入完全一样，命中缓存就不用再算 HMAC（JNI 时还省掉一次跨界调用）。
+ * function 编号直接用各推导的 FC 值。
+ */
+public final class CachingKeyDerivationProvider implements KeyDerivationProvider {
+
+    private final KeyDerivationProvider delegate;
+    private final DerivedKeyCache cache;
+
+    public CachingKeyDerivationProvider(KeyDerivationProvider delegate, DerivedKeyCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    public KeyDerivationProvider delegate() {
+        return delegate;
+    }
+
+    public DerivedKeyCache cache() {
+        return cache;
+    }
+
+    @Override
+    public String name() {
+        return delegate.name() + "+cache";
+    }
+
+    @Override
+    public String kseafFromKausf(String snn, String kausf) {
+        return cache.get(DerivedKeyCache.Key.of(0x6C, kausf, snn),
+                () -> delegate.kseafFromKausf(snn, kausf));
+    }
+
+    @Override
+    public String kamfFromKseaf(String supi, byte[] abba, String kseaf) {
+        return cache.get(DerivedKeyCache.Key.of(0x6D, kseaf, supi, abba),
+                () -> delegate.kamfFromKseaf(supi, abba, kseaf));
+    }
+
+    @Override
+    public String algorithmKeyDerivation(int algTypeDist, int algIdentity, String kamfOrKgnb) {
+        return cache.get(DerivedKeyCache.Key.of(0x69, kamfOrKgnb, algTypeDist, algIdentity),
+                () -> delegate.algorithmKeyDerivation(algTypeDist, algIdentity, kamfOrKgnb));
+    }
+
+    @Override
+    public String kgnbFromKamf(long uplinkNasCount, int accessTypeDist, String kamf) {
+        return cache.get(DerivedKeyCache.Key.of(0x6E, kamf, uplinkNasCount, accessTypeDist),
+                () -> delegate.kgnbFromKamf(uplinkNasCount, accessTypeDist, kamf));
+    }
+
+    @Override
+    public String nhFromKamf(String sync, String kamf) {
+        return cache.get(DerivedKeyCache.Key.of(0x6F, kamf, sync),
+                () -> delegate.nhFromKamf(sync, kamf));
+    }
+
+    @Override
+    public String kngRanStarFromKgnb(int pci, String arfcnDl, String nhOrKgnb) {
+        return cache.get(DerivedKeyCache.Key.of(0x70, nhOrKgnb, pci, arfcnDl),
+                () -> delegate.kngRanStarFromKgnb(pci, arfcnDl, nhOrKgnb));
+    }
+
+    @Override
+    public String kamfFromKamf(int direction, long count, String kamf) {
+        return cache.get(DerivedKeyCache.Key.of(0x72, kamf, direction, count),
+                () -> delegate.kamfFromKamf(direction, count, kamf));
+    }
+}
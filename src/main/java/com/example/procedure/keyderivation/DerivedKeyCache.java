@@ -0,0 +1,265 @@
+package com.example.procedure.keyderivation;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 推导结果缓存：key = (推导函数, 输入密钥, 其余参数)，value = 推导出的密钥。
+ *
+ *  - 容量上限：按分段 LRU 淘汰（每段一个 access-order LinkedHashMap，段内加锁）
+ *  - 过期：写入超过 ttl 的条目在下次访问/写入时清掉
+ *  - 淘汰/过期/清空时把缓存里持有的输入密钥和输出密钥字节清零
+ *
+ * 密钥在缓存里只以 byte[] 形式存在，命中时再格式化成 hex 返回。
+ */
+public final class DerivedKeyCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * @param maxEntries 总容量（平均分到各段）
+     * @param ttlMillis  条目存活时间，<=0 表示不按时间过期
+     */
+    public DerivedKeyCache(int maxEntries, long ttlMillis) {
+        int perSegment = Math.max(1, (maxEntries + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+        this.ttlNanos = ttlMillis <= 0 ? 0L : ttlMillis * 1_000_000L;
+    }
+
+    /**
+     * 命中直接返回；未命中调用 loader 推导并写入。
+     * loader 返回 null/空串不缓存（例如 JNI 推导失败）。
+     */
+    public String get(Key key, Supplier<String> loader) {
+        Segment seg = segmentFor(key);
+        long now = System.nanoTime();
+
+        String cached = seg.lookup(key, now);
+        if (cached != null) {
+            hits.increment();
+            key.wipe();
+            return cached;
+        }
+
+        misses.increment();
+        String derived = loader.get();
+        if (derived == null || derived.isEmpty()) {
+            key.wipe();
+            return derived;
+        }
+        seg.store(key, JavaKeyDerivationProvider.parseHex(derived), now);
+        return derived;
+    }
+
+    public void clear() {
+        for (Segment s : segments) s.clear();
+    }
+
+    public int size() {
+        int n = 0;
+        for (Segment s : segments) n += s.size();
+        return n;
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), size());
+    }
+
+    private Segment segmentFor(Key key) {
+        int h = key.hash;
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENTS - 1)];
+    }
+
+    // ===================== segment =====================
+
+    private final class Segment {
+        private final int capacity;
+        private final LinkedHashMap<Key, Entry> map;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.map = new LinkedHashMap<>(16, 0.75f, true);
+        }
+
+        /** 在锁里转成 hex：出了锁，条目随时可能被淘汰 / 过期清零 */
+        synchronized String lookup(Key key, long now) {
+            Entry e = map.get(key);
+            if (e == null) return null;
+            if (isExpired(e, now)) {
+                map.remove(key);
+                e.wipe();
+                expirations.increment();
+                return null;
+            }
+            return JavaKeyDerivationProvider.hex(e.value);
+        }
+
+        synchronized void store(Key key, byte[] value, long now) {
+            // 并发下两个线程同时 miss：先把旧条目拿掉再放新的。直接 put 的话 map 里留的是旧 key 对象，
+            // 旧 key 一清零这条就再也找不到了
+            Entry old = map.remove(key);
+            map.put(key, new Entry(key, value, now));
+            if (old != null) {
+                if (old.key != key) old.key.wipe();
+                Arrays.fill(old.value, (byte) 0);
+            }
+            purgeExpired(now);
+            while (map.size() > capacity) {
+                Iterator<Entry> it = map.values().iterator();
+                Entry eldest = it.next();
+                it.remove();
+                eldest.wipe();
+                evictions.increment();
+            }
+        }
+
+        private void purgeExpired(long now) {
+            if (ttlNanos == 0L) return;
+            // access-order 下队首不一定最老，这里按写入时间全段检查，段很小
+            for (Iterator<Entry> it = map.values().iterator(); it.hasNext(); ) {
+                Entry e = it.next();
+                if (isExpired(e, now)) {
+                    it.remove();
+                    e.wipe();
+                    expirations.increment();
+                }
+            }
+        }
+
+        synchronized void clear() {
+            for (Entry e : map.values()) e.wipe();
+            map.clear();
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+
+        private boolean isExpired(Entry e, long now) {
+            return ttlNanos != 0L && now - e.createdAtNanos > ttlNanos;
+        }
+    }
+
+    private static final class Entry {
+        final Key key;
+        final byte[] value;
+        final long createdAtNanos;
+
+        Entry(Key key, byte[] value, long createdAtNanos) {
+            this.key = key;
+            this.value = value;
+            this.createdAtNanos = createdAtNanos;
+        }
+
+        void wipe() {
+            key.wipe();
+            Arrays.fill(value, (byte) 0);
+        }
+    }
+
+    // ===================== key =====================
+
+    /**
+     * 缓存键：function + 输入密钥字节 + 参数编码。hash 在构造时算好，
+     * 清零后不再参与比较（只在离开缓存后清零）。
+     */
+    public static final class Key {
+        private final int function;
+        private final byte[] inputKey;
+        private final byte[] params;
+        private final int hash;
+
+        private Key(int function, byte[] inputKey, byte[] params) {
+            this.function = function;
+            this.inputKey = inputKey;
+            this.params = params;
+            int h = function;
+            h = 31 * h + Arrays.hashCode(inputKey);
+            h = 31 * h + Arrays.hashCode(params);
+            this.hash = h;
+        }
+
+        /**
+         * @param function 推导函数编号（用 KDF 的 FC 值即可）
+         * @param keyHex   输入密钥 hex
+         * @param params   其余参数：Integer / Long / String / byte[]
+         */
+        public static Key of(int function, String keyHex, Object... params) {
+            return new Key(function, JavaKeyDerivationProvider.parseHex(keyHex), encode(params));
+        }
+
+        private static byte[] encode(Object... params) {
+            int len = 0;
+            byte[][] parts = new byte[params.length][];
+            for (int i = 0; i < params.length; i++) {
+                Object p = params[i];
+                byte[] b;
+                if (p == null) {
+                    b = new byte[0];
+                } else if (p instanceof byte[] bytes) {
+                    b = bytes;
+                } else if (p instanceof String s) {
+                    b = s.getBytes(StandardCharsets.UTF_8);
+                } else if (p instanceof Number n) {
+                    long v = n.longValue();
+                    b = new byte[]{(byte) (v >>> 56), (byte) (v >>> 48), (byte) (v >>> 40), (byte) (v >>> 32),
+                            (byte) (v >>> 24), (byte) (v >>> 16), (byte) (v >>> 8), (byte) v};
+                } else {
+                    throw new IllegalArgumentException("unsupported key param: " + p.getClass());
+                }
+                parts[i] = b;
+                len += 2 + b.length;
+            }
+            byte[] out = new byte[len];
+            int off = 0;
+            for (byte[] b : parts) {
+                out[off++] = (byte) (b.length >>> 8);
+                out[off++] = (byte) b.length;
+                System.arraycopy(b, 0, out, off, b.length);
+                off += b.length;
+            }
+            return out;
+        }
+
+        void wipe() {
+            Arrays.fill(inputKey, (byte) 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key k)) return false;
+            return function == k.function && hash == k.hash
+                    && Arrays.equals(inputKey, k.inputKey)
+                    && Arrays.equals(params, k.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    public record Stats(long hits, long misses, long evictions, long expirations, int size) {
+        public double hitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.procedure.keyderivation;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.util.HexFormat;
+
+/**
+ * 纯 Java 的 TS 33.501 Annex A 密钥推导。
+ *
+ * KDF（TS 33.220 B.2）：S = FC || P0 || L0 || P1 || L1 ...，输出 HMAC-SHA-256(Key, S)。
+ * S 不单独拼数组，直接按字段喂给 Mac；Mac 每个线程缓存一个，推导一次只分配输出数组和 key spec。
+ */
+public final class JavaKeyDerivationProvider implements KeyDerivationProvider {
+
+    private static final String HMAC_SHA256 = "HmacSHA256";
+    private static final int KEY_LEN = 32;
+
+    private static final int FC_KSEAF        = 0x6C;
+    private static final int FC_KAMF         = 0x6D;
+    private static final int FC_ALG_KEY      = 0x69;
+    private static final int FC_KGNB         = 0x6E;
+    private static final int FC_NH           = 0x6F;
+    private static final int FC_KNG_RAN_STAR = 0x70;
+    private static final int FC_KAMF_PRIME   = 0x72;
+
+    private static final HexFormat HEX = HexFormat.of().withUpperCase();
+
+    private static final ThreadLocal<Mac> MAC_POOL = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance(HMAC_SHA256);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    });
+
+    @Override
+    public String name() {
+        return "java";
+    }
+
+    // ================= hex 接口（与 KeyDerivationNative 一致） =================
+
+    @Override
+    public String kseafFromKausf(String snn, String kausf) {
+        return hex(kseafFromKausf(snn, parseHex(kausf)));
+    }
+
+    @Override
+    public String kamfFromKseaf(String supi, byte[] abba, String kseaf) {
+        return hex(kamfFromKseaf(supi, abba, parseHex(kseaf)));
+    }
+
+    @Override
+    public String algorithmKeyDerivation(int algTypeDist, int algIdentity, String kamfOrKgnb) {
+        return hex(algorithmKey(algTypeDist, algIdentity, parseHex(kamfOrKgnb)));
+    }
+
+    @Override
+    public String kgnbFromKamf(long uplinkNasCount, int accessTypeDist, String kamf) {
+        return hex(kgnbFromKamf(uplinkNasCount, accessTypeDist, parseHex(kamf)));
+    }
+
+    @Override
+    public String nhFromKamf(String sync, String kamf) {
+        return hex(nhFromKamf(parseHex(sync), parseHex(kamf)));
+    }
+
+    @Override
+    public String kngRanStarFromKgnb(int pci, String arfcnDl, String nhOrKgnb) {
+        return hex(kngRanStar(pci, parseHex(arfcnDl), parseHex(nhOrKgnb)));
+    }
+
+    @Override
+    public String kamfFromKamf(int direction, long count, String kamf) {
+        return hex(kamfFromKamf(direction, count, parseHex(kamf)));
+    }
+
+    // ================= byte[] 接口 =================
+
+    public byte[] kseafFromKausf(String snn, byte[] kausf) {
+        Mac mac = begin(kausf, FC_KSEAF);
+        param(mac, snn.getBytes(StandardCharsets.UTF_8));
+        return finish(mac);
+    }
+
+    /** supi：IMSI 纯数字串（不带 "imsi-" 前缀），按字符串编码 */
+    public byte[] kamfFromKseaf(String supi, byte[] abba, byte[] kseaf) {
+        Mac mac = begin(kseaf, FC_KAMF);
+        param(mac, supi.getBytes(StandardCharsets.UTF_8));
+        param(mac, abba);
+        return finish(mac);
+    }
+
+    public byte[] algorithmKey(int algTypeDist, int algIdentity, byte[] kamfOrKgnb) {
+        Mac mac = begin(kamfOrKgnb, FC_ALG_KEY);
+        paramU8(mac, algTypeDist);
+        paramU8(mac, algIdentity);
+        return finish(mac);
+    }
+
+    public byte[] kgnbFromKamf(long uplinkNasCount, int accessTypeDist, byte[] kamf) {
+        Mac mac = begin(kamf, FC_KGNB);
+        paramU32(mac, uplinkNasCount);
+        paramU8(mac, accessTypeDist);
+        return finish(mac);
+    }
+
+    public byte[] nhFromKamf(byte[] sync, byte[] kamf) {
+        Mac mac = begin(kamf, FC_NH);
+        param(mac, sync);
+        return finish(mac);
+    }
+
+    /** arfcnDl：按调用方给的字节原样作为 P1（和 C++ 实现一致） */
+    public byte[] kngRanStar(int pci, byte[] arfcnDl, byte[] nhOrKgnb) {
+        Mac mac = begin(nhOrKgnb, FC_KNG_RAN_STAR);
+        paramU16(mac, pci);
+        param(mac, arfcnDl);
+        return finish(mac);
+    }
+
+    public byte[] kamfFromKamf(int direction, long count, byte[] kamf) {
+        Mac mac = begin(kamf, FC_KAMF_PRIME);
+        paramU8(mac, direction);
+        paramU32(mac, count);
+        return finish(mac);
+    }
+
+    // ================= KDF 内部 =================
+
+    private static Mac begin(byte[] key, int fc) {
+        if (key == null || key.length == 0) {
+            throw new IllegalArgumentException("KDF key is empty");
+        }
+        Mac mac = MAC_POOL.get();
+        try {
+            mac.init(new SecretKeySpec(key, HMAC_SHA256));
+        } catch (InvalidKeyException e) {
+            throw new IllegalArgumentException("invalid KDF key", e);
+        }
+        mac.update((byte) fc);
+        return mac;
+    }
+
+    private static void param(Mac mac, byte[] p) {
+        mac.update(p);
+        length(mac, p.length);
+    }
+
+    private static void paramU8(Mac mac, int v) {
+        mac.update((byte) v);
+        length(mac, 1);
+    }
+
+    private static void paramU16(Mac mac, int v) {
+        mac.update((byte) (v >>> 8));
+        mac.update((byte) v);
+        length(mac, 2);
+    }
+
+    private static void paramU32(Mac mac, long v) {
+        mac.update((byte) (v >>> 24));
+        mac.update((byte) (v >>> 16));
+        mac.update((byte) (v >>> 8));
+        mac.update((byte) v);
+        length(mac, 4);
+    }
+
+    private static void length(Mac mac, int len) {
+        mac.update((byte) (len >>> 8));
+        mac.update((byte) len);
+    }
+
+    private static byte[] finish(Mac mac) {
+        byte[] out = new byte[KEY_LEN];
+        try {
+            mac.doFinal(out, 0);
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        }
+        return out;
+    }
+
+    static byte[] parseHex(String hex) {
+        if (hex == null) throw new IllegalArgumentException("hex is null");
+        String s = hex.trim();
+        if (s.startsWith("0x") || s.startsWith("0X")) s = s.substring(2);
+        if (s.indexOf(':') >= 0 || s.indexOf(' ') >= 0) s = s.replace(":", "").replace(" ", "");
+        return HexFormat.of().parseHex(s);
+    }
+
+    static String hex(byte[] b) {
+        return HEX.formatHex(b);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.procedure.keyderivation;
+
+/**
+ * 原 JNI 实现的适配（libkey_derivation_jni_win）。
+ * KeyDerivationNative 在类初始化时加载 DLL，所以只有真正选中 JNI 时才会触发加载。
+ */
+public final class JniKeyDerivationProvider implements KeyDerivationProvider {
+
+    /**
+     * 探测 JNI 库能否加载（触发 KeyDerivationNative 的 static 块）。
+     * 加载失败返回 false，不向外抛 UnsatisfiedLinkError。
+     */
+    public static boolean isAvailable() {
+        try {
+            Class.forName(KeyDerivationNative.class.getName(), true,
+                    JniKeyDerivationProvider.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "jni";
+    }
+
+    @Override
+    public String kseafFromKausf(String snn, String kausf) {
+        return KeyDerivationNative.kseafFromKausf(snn, kausf);
+    }
+
+    @Override
+    public String kamfFromKseaf(String supi, byte[] abba, String kseaf) {
+        return KeyDerivationNative.kamfFromKseaf(supi, abba, kseaf);
+    }
+
+    @Override
+    public String algorithmKeyDerivation(int algTypeDist, int algIdentity, String kamfOrKgnb) {
+        return KeyDerivationNative.algorithmKeyDerivation(algTypeDist, algIdentity, kamfOrKgnb);
+    }
+
+    @Override
+    public String kgnbFromKamf(long uplinkNasCount, int accessTypeDist, String kamf) {
+        return KeyDerivationNative.kgnbFromKamf(uplinkNasCount, accessTypeDist, kamf);
+    }
+
+    @Override
+    public String nhFromKamf(String sync, String kamf) {
+        return KeyDerivationNative.nhFromKamf(sync, kamf);
+    }
+
+    @Override
+    public String kngRanStarFromKgnb(int pci, String arfcnDl, String nhOrKgnb) {
+        return KeyDerivationNative.kngRanStarFromKgnb(pci, arfcnDl, nhOrKgnb);
+    }
+
+    @Override
+    public String kamfFromKamf(int direction, long count, String kamf) {
+        return KeyDerivationNative.kamfFromKamf(direction, count, kamf);
+    }
+}
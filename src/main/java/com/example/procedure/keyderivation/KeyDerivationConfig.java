@@ -0,0 +1,46 @@
+package com.example.procedure.keyderivation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Locale;
+
+@Configuration
+public class KeyDerivationConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(KeyDerivationConfig.class);
+
+    @Bean
+    public KeyDerivationProvider keyDerivationProvider(KeyDerivationProperties props) {
+        KeyDerivationProvider provider = select(props.getProvider());
+
+        KeyDerivationProperties.Cache c = props.getCache();
+        if (c != null && c.isEnabled() && c.getMaxEntries() > 0) {
+            provider = new CachingKeyDerivationProvider(provider,
+                    new DerivedKeyCache(c.getMaxEntries(), c.getTtlMs()));
+        }
+        log.info("Key derivation provider: {} (configured={})", provider.name(), props.getProvider());
+        return new MeteredKeyDerivationProvider(provider);
+    }
+
+    static KeyDerivationProvider select(String configured) {
+        String mode = configured == null ? "java" : configured.trim().toLowerCase(Locale.ROOT);
+        switch (mode) {
+            case "jni":
+                if (!JniKeyDerivationProvider.isAvailable()) {
+                    throw new IllegalStateException("keyderivation.provider=jni but the JNI library cannot be loaded");
+                }
+                return new JniKeyDerivationProvider();
+            case "auto":
+                return JniKeyDerivationProvider.isAvailable()
+                        ? new JniKeyDerivationProvider()
+                        : new JavaKeyDerivationProvider();
+            case "java":
+                return new JavaKeyDerivationProvider();
+            default:
+                throw new IllegalArgumentException("unknown keyderivation.provider: " + configured);
+        }
+    }
+}
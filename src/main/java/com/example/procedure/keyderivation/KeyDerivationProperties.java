@@ -0,0 +1,29 @@
+package com.example.procedure.keyderivation;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "keyderivation")
+public class KeyDerivationProperties {
+
+    /** java / jni / auto（auto：JNI 能加载就用 JNI，否则 Java） */
+    private String provider = "java";
+
+    /** 推导结果缓存 */
+    private Cache cache = new Cache();
+
+    @Setter
+    @Getter
+    public static class Cache {
+        private boolean enabled = true;
+        /** 最多缓存多少条推导结果 */
+        private int maxEntries = 4096;
+        /** 条目存活时间（毫秒），<=0 不过期 */
+        private long ttlMs = 30 * 60 * 1000L;
+    }
+}
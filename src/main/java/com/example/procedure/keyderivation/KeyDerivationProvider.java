@@ -0,0 +1,53 @@
+package com.example.procedure.keyderivation;
+
+/**
+ * 5G 密钥推导（TS 33.501 Annex A，KDF = HMAC-SHA-256）的统一入口。
+ *
+ * 入参/出参沿用 KeyDerivationNative 的约定：密钥都是 hex 字符串，输出 256 bit。
+ * 具体实现由配置 keyderivation.provider 选择：
+ *  - java：纯 Java 实现（默认，Linux/Windows 都可用）
+ *  - jni ：原来的 libkey_derivation_jni_win
+ *  - auto：JNI 库能加载就用 JNI，否则退回 Java
+ */
+public interface KeyDerivationProvider {
+
+    // ===== algorithm type distinguisher（A.8）=====
+    int N_NAS_ENC_ALG = 0x01;
+    int N_NAS_INT_ALG = 0x02;
+    int N_RRC_ENC_ALG = 0x03;
+    int N_RRC_INT_ALG = 0x04;
+    int N_UP_ENC_ALG  = 0x05;
+    int N_UP_INT_ALG  = 0x06;
+
+    // ===== access type distinguisher（A.9）=====
+    int ACCESS_3GPP     = 0x01;
+    int ACCESS_NON_3GPP = 0x02;
+
+    // ===== KAMF' direction（A.13）=====
+    int DIRECTION_MOBILITY_REGISTRATION = 0x00;
+    int DIRECTION_N2_HANDOVER           = 0x01;
+
+    /** 实现名，日志/排查用 */
+    String name();
+
+    /** A.6：KSEAF = KDF(KAUSF, 0x6C, SNN) */
+    String kseafFromKausf(String snn, String kausf);
+
+    /** A.7：KAMF = KDF(KSEAF, 0x6D, SUPI, ABBA) */
+    String kamfFromKseaf(String supi, byte[] abba, String kseaf);
+
+    /** A.8：NAS/RRC/UP 算法密钥 = KDF(KAMF 或 KgNB, 0x69, typeDist, algId) */
+    String algorithmKeyDerivation(int algTypeDist, int algIdentity, String kamfOrKgnb);
+
+    /** A.9：KgNB = KDF(KAMF, 0x6E, UL NAS COUNT, accessTypeDist) */
+    String kgnbFromKamf(long uplinkNasCount, int accessTypeDist, String kamf);
+
+    /** A.10：NH = KDF(KAMF, 0x6F, SYNC-input) */
+    String nhFromKamf(String sync, String kamf);
+
+    /** A.11/A.12：KNG-RAN* = KDF(NH 或 KgNB, 0x70, PCI, ARFCN-DL) */
+    String kngRanStarFromKgnb(int pci, String arfcnDl, String nhOrKgnb);
+
+    /** A.13：KAMF' = KDF(KAMF, 0x72, DIRECTION, COUNT) */
+    String kamfFromKamf(int direction, long count, String kamf);
+}
@@ -0,0 +1,89 @@
+package com.example.procedure.keyderivation;
+
+import com.example.procedure.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 最外层套一个计时：每个推导函数一个 pipeline.keyderivation 计时器（缓存命中也算进去，
+ * 命中率看 pipeline.keyderivation.cache.*）。
+ */
+public final class MeteredKeyDerivationProvider implements KeyDerivationProvider {
+
+    private final KeyDerivationProvider delegate;
+
+    private final Timer kseaf;
+    private final Timer kamf;
+    private final Timer algorithmKey;
+    private final Timer kgnb;
+    private final Timer nh;
+    private final Timer kngRanStar;
+    private final Timer kamfHorizontal;
+
+    public MeteredKeyDerivationProvider(KeyDerivationProvider delegate) {
+        this.delegate = delegate;
+        String p = delegate.name();
+        this.kseaf = PipelineMetrics.keyDerivation(p, "kseaf");
+        this.kamf = PipelineMetrics.keyDerivation(p, "kamf");
+        this.algorithmKey = PipelineMetrics.keyDerivation(p, "algorithm-key");
+        this.kgnb = PipelineMetrics.keyDerivation(p, "kgnb");
+        this.nh = PipelineMetrics.keyDerivation(p, "nh");
+        this.kngRanStar = PipelineMetrics.keyDerivation(p, "kng-ran-star");
+        this.kamfHorizontal = PipelineMetrics.keyDerivation(p, "kamf-horizontal");
+    }
+
+    public KeyDerivationProvider delegate() {
+        return delegate;
+    }
+
+    @Override
+    public String name() {
+        return delegate.name();
+    }
+
+    @Override
+    public String kseafFromKausf(String snn, String kausf) {
+        return time(kseaf, () -> delegate.kseafFromKausf(snn, kausf));
+    }
+
+    @Override
+    public String kamfFromKseaf(String supi, byte[] abba, String kseaf) {
+        return time(kamf, () -> delegate.kamfFromKseaf(supi, abba, kseaf));
+    }
+
+    @Override
+    public String algorithmKeyDerivation(int algTypeDist, int algIdentity, String kamfOrKgnb) {
+        return time(algorithmKey, () -> delegate.algorithmKeyDerivation(algTypeDist, algIdentity, kamfOrKgnb));
+    }
+
+    @Override
+    public String kgnbFromKamf(long uplinkNasCount, int accessTypeDist, String kamf) {
+        return time(kgnb, () -> delegate.kgnbFromKamf(uplinkNasCount, accessTypeDist, kamf));
+    }
+
+    @Override
+    public String nhFromKamf(String sync, String kamf) {
+        return time(nh, () -> delegate.nhFromKamf(sync, kamf));
+    }
+
+    @Override
+    public String kngRanStarFromKgnb(int pci, String arfcnDl, String nhOrKgnb) {
+        return time(kngRanStar, () -> delegate.kngRanStarFromKgnb(pci, arfcnDl, nhOrKgnb));
+    }
+
+    @Override
+    public String kamfFromKamf(int direction, long count, String kamf) {
+        return time(kamfHorizontal, () -> delegate.kamfFromKamf(direction, count, kamf));
+    }
+
+    private static String time(Timer timer, Supplier<String> call) {
+        long t0 = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            timer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.procedure.metrics;
+
+import com.example.procedure.model.ProcedureTypeEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/**
+ * 热路径上的计时 / 计数，按阶段分（Prometheus 里 . 变 _，计时器带 _seconds）：
+ *
+ *  - pipeline.parse.*     tshark JSON 解析：包、链、字节、被协议过滤丢掉的包，每包耗时
+ *  - pipeline.bind.*      UeIdBinder：消息去向（直接有 ueId / 缓冲 / 没索引丢掉）、缓冲到绑上等了多久
+ *  - pipeline.process     MsgProcessing_Service.process 一条消息的总耗时
+ *  - pipeline.classify.*  流程识别耗时；每种流程命中 / 新建的次数；pipeline.procedure.closed 按流程、原因计关闭
+ *  - pipeline.decrypt     每次（没命中结果缓存的）解密，按 mode / 算法 / 结果分，带直方图
+ *  - pipeline.keyderivation  每次密钥推导（含缓存命中），按推导函数分
+ *  - pipeline.state       状态后端每个操作，按后端 / 操作分（Redis 命令级别的看 lettuce.command.*）
+ *
+ * 队列长度、缓存命中这类本来就有 stats() 的，不在热路径上加东西，见 PipelineMetricsConfig。
+ *
+ * 都注册在 Metrics.globalRegistry 上：Spring Boot 起来后会把自己的 registry（Prometheus）挂上去
+ * （management.metrics.use-global-registry，默认打开），离线回放 / 单测没挂任何 registry 时这些都是空操作。
+ * 带标签的按下标缓存，热路径上不拼 key、不查表。
+ */
+public final class PipelineMetrics {
+
+    private static final MeterRegistry REGISTRY = Metrics.globalRegistry;
+
+    private PipelineMetrics() {}
+
+    // ===================== parse =====================
+
+    public static final Counter PARSE_PACKETS = Counter.builder("pipeline.parse.packets")
+            .description("tshark JSON packets parsed").register(REGISTRY);
+    public static final Counter PARSE_CHAINS = Counter.builder("pipeline.parse.chains")
+            .description("layer chains produced (one per wanted layer)").register(REGISTRY);
+    public static final Counter PARSE_BYTES = Counter.builder("pipeline.parse.bytes")
+            .baseUnit(BaseUnits.BYTES).description("JSON bytes consumed").register(REGISTRY);
+    public static final Counter PARSE_DROPPED = Counter.builder("pipeline.parse.dropped")
+            .description("packets dropped by the frame.protocols filter").register(REGISTRY);
+    public static final Timer PARSE = Timer.builder("pipeline.parse")
+            .description("time to parse one packet").register(REGISTRY);
+
+    // ===================== bind =====================
+
+    public static final Counter BIND_RESOLVED = bindMessages("resolved");
+    public static final Counter BIND_BUFFERED = bindMessages("buffered");
+    public static final Counter BIND_UNINDEXED = bindMessages("unindexed");
+    /** 按 ProcedureClock 算（回放时是报文时间） */
+    public static final Timer BIND_WAIT = Timer.builder("pipeline.bind.wait")
+            .description("time a message waited in UeIdBinder before its ueId was known").register(REGISTRY);
+
+    private static Counter bindMessages(String outcome) {
+        return Counter.builder("pipeline.bind.messages").tag("outcome", outcome)
+                .description("messages entering UeIdBinder by outcome").register(REGISTRY);
+    }
+
+    // ===================== process / classify =====================
+
+    public static final Timer PROCESS = Timer.builder("pipeline.process")
+            .description("MsgProcessing_Service.process per message, including decryption and classification")
+            .register(REGISTRY);
+    public static final Timer CLASSIFY = Timer.builder("pipeline.classify")
+            .description("procedure classification per message").register(REGISTRY);
+
+    private static final ProcedureTypeEnum[] TYPES = ProcedureTypeEnum.values();
+    private static final Lazy<Counter> FLOW_HITS = new Lazy<>(TYPES.length, i -> flowCounter(TYPES[i], "hit"));
+    private static final Lazy<Counter> FLOW_CREATES = new Lazy<>(TYPES.length, i -> flowCounter(TYPES[i], "create"));
+
+    /** 消息归到了某个已有流程 */
+    public static void flowHit(ProcedureTypeEnum type) {
+        if (type != null) FLOW_HITS.get(type.ordinal()).increment();
+    }
+
+    /** 新建了一个流程 */
+    public static void flowCreated(ProcedureTypeEnum type) {
+        if (type != null) FLOW_CREATES.get(type.ordinal()).increment();
+    }
+
+    /** reason：flow（FlowHandler 判定结束）或 ProcedureExpiry.Reason 的名字 */
+    public static void procedureClosed(String typeCode, String reason) {
+        Counter.builder("pipeline.procedure.closed")
+                .tag("flow", typeCode == null ? "unknown" : typeCode)
+                .tag("reason", reason.toLowerCase(Locale.ROOT))
+                .description("procedures archived, by flow and reason").register(REGISTRY).increment();
+    }
+
+    private static Counter flowCounter(ProcedureTypeEnum type, String outcome) {
+        return Counter.builder("pipeline.classify.flow").tag("flow", type.getCode()).tag("outcome", outcome)
+                .description("classification outcomes per flow").register(REGISTRY);
+    }
+
+    // ===================== decrypt =====================
+
+    public enum DecryptOutcome { OK, INTEGRITY_FAILED, FAILED, ERROR }
+
+    private static final String[] ALGS = {"NEA0", "NEA1", "NEA2", "NEA3", "unknown"};
+    private static final DecryptOutcome[] OUTCOMES = DecryptOutcome.values();
+    /** 下标：(http ? 1 : 0) * 算法数 * 结果数 + 算法 * 结果数 + 结果 */
+    private static final Lazy<Timer> DECRYPT = new Lazy<>(2 * ALGS.length * OUTCOMES.length, i -> {
+        int outcome = i % OUTCOMES.length;
+        int alg = (i / OUTCOMES.length) % ALGS.length;
+        boolean http = i >= ALGS.length * OUTCOMES.length;
+        return Timer.builder("pipeline.decrypt")
+                .tag("mode", http ? "http" : "local")
+                .tag("alg", ALGS[alg])
+                .tag("outcome", OUTCOMES[outcome].name().toLowerCase(Locale.ROOT))
+                .publishPercentileHistogram()
+                .description("decryption latency (result-cache misses only)")
+                .register(REGISTRY);
+    });
+
+    /** encAlgo 是请求里的算法号（"2" / "0x02"）；认不出来的归到 unknown */
+    public static Timer decrypt(boolean http, String encAlgo, DecryptOutcome outcome) {
+        return DECRYPT.get(((http ? 1 : 0) * ALGS.length + algIndex(encAlgo)) * OUTCOMES.length + outcome.ordinal());
+    }
+
+    private static int algIndex(String s) {
+        if (s == null) return ALGS.length - 1;
+        String v = s.trim();
+        if (v.startsWith("0x") || v.startsWith("0X")) v = v.substring(2);
+        if (v.length() == 2 && v.charAt(0) == '0') v = v.substring(1);
+        if (v.length() != 1) return ALGS.length - 1;
+        int n = v.charAt(0) - '0';
+        return n >= 0 && n <= 3 ? n : ALGS.length - 1;
+    }
+
+    // ===================== key derivation / state =====================
+
+    /** function 用 TS 33.501 的 FC 名字（kamf / kgnb / algorithm-key ...），provider 是实现名 */
+    public static Timer keyDerivation(String provider, String function) {
+        return Timer.builder("pipeline.keyderivation").tag("provider", provider).tag("function", function)
+                .description("key derivation calls, cache hits included").register(REGISTRY);
+    }
+
+    public static Timer state(String backend, String op) {
+        return Timer.builder("pipeline.state").tag("backend", backend).tag("op", op)
+                .description("state backend operations").register(REGISTRY);
+    }
+
+    // ===================== internal =====================
+
+    /** 用到才注册（没出现过的标签组合不产生空序列） */
+    private static final class Lazy<M> {
+        private final AtomicReferenceArray<M> meters;
+        private final IntFunction<M> factory;
+
+        Lazy(int size, IntFunction<M> factory) {
+            this.meters = new AtomicReferenceArray<>(size);
+            this.factory = factory;
+        }
+
+        M get(int i) {
+            M m = meters.get(i);
+            if (m == null) {
+                // 并发时可能建两次：registry 按 id 去重，拿到的是同一个
+                m = factory.apply(i);
+                meters.set(i, m);
+            }
+            return m;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.procedure.metrics;
+
+import com.example.procedure.archive.ProcedureArchiveWriter;
+import com.example.procedure.decrypt.DecryptResultCache;
+import com.example.procedure.decrypt.DeferredDecryptQueue;
+import com.example.procedure.decrypt.KeyTrialEngine;
+import com.example.procedure.expiry.ProcedureExpiry;
+import com.example.procedure.keyderivation.CachingKeyDerivationProvider;
+import com.example.procedure.keyderivation.DerivedKeyCache;
+import com.example.procedure.keyderivation.KeyDerivationProvider;
+import com.example.procedure.keyderivation.MeteredKeyDerivationProvider;
+import com.example.procedure.rule.UeIdBinder;
+import com.example.procedure.service.UEContextService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 各组件本来就有 stats()（队列长度、缓存命中、过期数），抓取时读一次就行，热路径上什么都不加。
+ * 组件没起来（切片测试 / 被关掉）就不注册。
+ */
+@Configuration
+public class PipelineMetricsConfig {
+
+    @Bean
+    public MeterBinder ueIdBinderMetrics(ObjectProvider<UeIdBinder> binder) {
+        return registry -> binder.ifAvailable(b -> {
+            gauge(registry, "pipeline.bind.pending", b, x -> x.stats().pending());
+            gauge(registry, "pipeline.bind.bindings", b, x -> x.stats().ngapBindings(), "index", "ngap");
+            gauge(registry, "pipeline.bind.bindings", b, x -> x.stats().rntiBindings(), "index", "rnti");
+            counter(registry, "pipeline.bind.expired", b, x -> x.stats().expiredPending());
+            counter(registry, "pipeline.bind.backend", b, x -> x.stats().backendReads(), "op", "read");
+            counter(registry, "pipeline.bind.backend", b, x -> x.stats().backendWrites(), "op", "write");
+            counter(registry, "pipeline.bind.backend", b, x -> x.stats().droppedWrites(), "op", "dropped");
+        });
+    }
+
+    @Bean
+    public MeterBinder decryptMetrics(ObjectProvider<DecryptResultCache> resultCache,
+                                      ObjectProvider<DeferredDecryptQueue> deferred,
+                                      ObjectProvider<KeyTrialEngine> keyTrial) {
+        return registry -> {
+            resultCache.ifAvailable(c -> {
+                counter(registry, "pipeline.decrypt.cache", c, x -> x.stats().hits(), "result", "hit");
+                counter(registry, "pipeline.decrypt.cache", c, x -> x.stats().misses(), "result", "miss");
+                counter(registry, "pipeline.decrypt.cache.evictions", c, x -> x.stats().evictions());
+                gauge(registry, "pipeline.decrypt.cache.size", c, x -> x.stats().size());
+                gauge(registry, "pipeline.decrypt.cache.bytes", c, x -> x.stats().bytes());
+            });
+            deferred.ifAvailable(q -> {
+                counter(registry, "pipeline.decrypt.deferred", q, x -> x.stats().parked(), "event", "parked");
+                counter(registry, "pipeline.decrypt.deferred", q, x -> x.stats().flushed(), "event", "flushed");
+                counter(registry, "pipeline.decrypt.deferred", q, x -> x.stats().expired(), "event", "expired");
+                counter(registry, "pipeline.decrypt.deferred", q, x -> x.stats().overflowed(), "event", "overflowed");
+                gauge(registry, "pipeline.decrypt.deferred.pending", q, x -> x.stats().pending());
+            });
+            keyTrial.ifAvailable(k -> {
+                counter(registry, "pipeline.decrypt.keytrial.selections", k, x -> x.stats().selections());
+                counter(registry, "pipeline.decrypt.keytrial.trials", k, x -> x.stats().trials());
+                counter(registry, "pipeline.decrypt.keytrial.first.hits", k, x -> x.stats().winnerFirstHits());
+                counter(registry, "pipeline.decrypt.keytrial.nomatch", k, x -> x.stats().noMatch());
+            });
+        };
+    }
+
+    @Bean
+    public MeterBinder keyDerivationCacheMetrics(ObjectProvider<KeyDerivationProvider> provider) {
+        return registry -> provider.ifAvailable(p -> {
+            DerivedKeyCache cache = derivedKeyCache(p);
+            if (cache == null) return;
+            counter(registry, "pipeline.keyderivation.cache", cache, x -> x.stats().hits(), "result", "hit");
+            counter(registry, "pipeline.keyderivation.cache", cache, x -> x.stats().misses(), "result", "miss");
+            counter(registry, "pipeline.keyderivation.cache.evictions", cache, x -> x.stats().evictions());
+            counter(registry, "pipeline.keyderivation.cache.expirations", cache, x -> x.stats().expirations());
+            gauge(registry, "pipeline.keyderivation.cache.size", cache, x -> x.stats().size());
+        });
+    }
+
+    @Bean
+    public MeterBinder procedureMetrics(ObjectProvider<UEContextService> contexts,
+                                        ObjectProvider<ProcedureExpiry> expiry,
+                                        ObjectProvider<ProcedureArchiveWriter> archive) {
+        return registry -> {
+            contexts.ifAvailable(s -> {
+                if (s.cacheStats() == null) return;   // ue.context.cache 关掉了
+                counter(registry, "pipeline.context.cache", s, x -> x.cacheStats().hits(), "result", "hit");
+                counter(registry, "pipeline.context.cache", s, x -> x.cacheStats().misses(), "result", "miss");
+                counter(registry, "pipeline.context.cache.writes", s, x -> x.cacheStats().writes(), "result", "written");
+                counter(registry, "pipeline.context.cache.writes", s, x -> x.cacheStats().skippedWrites(), "result", "skipped");
+                gauge(registry, "pipeline.context.cache.size", s, x -> x.cacheStats().size());
+            });
+            // 关闭数按原因见 pipeline.procedure.closed
+            expiry.ifAvailable(e -> {
+                gauge(registry, "pipeline.procedure.tracked", e, x -> x.stats().tracked());
+                counter(registry, "pipeline.procedure.expiry.retries", e, x -> x.stats().retries());
+            });
+            archive.ifAvailable(a -> {
+                counter(registry, "pipeline.archive.records", a, x -> x.stats().appended(), "event", "appended");
+                counter(registry, "pipeline.archive.records", a, x -> x.stats().written(), "event", "written");
+                counter(registry, "pipeline.archive.records", a, x -> x.stats().rejected(), "event", "rejected");
+                counter(registry, "pipeline.archive.records", a, x -> x.stats().failed(), "event", "failed");
+                counter(registry, "pipeline.archive.syncs", a, x -> x.stats().syncs());
+                counter(registry, "pipeline.archive.segments", a, x -> x.stats().segments());
+                gauge(registry, "pipeline.archive.pending", a, x -> x.stats().pending());
+            });
+        };
+    }
+
+    /** 拆掉计时层，找到缓存层；没开 keyderivation.cache 返回 null */
+    private static DerivedKeyCache derivedKeyCache(KeyDerivationProvider p) {
+        if (p instanceof MeteredKeyDerivationProvider m) p = m.delegate();
+        return p instanceof CachingKeyDerivationProvider c ? c.cache() : null;
+    }
+
+    private static <T> void counter(MeterRegistry registry, String name, T obj, ToDoubleFunction<T> f, String... tags) {
+        FunctionCounter.builder(name, obj, f).tags(tags).register(registry);
+    }
+
+    private static <T> void gauge(MeterRegistry registry, String name, T obj, ToDoubleFunction<T> f, String... tags) {
+        Gauge.builder(name, obj, f).tags(tags).register(registry);
+    }
+}
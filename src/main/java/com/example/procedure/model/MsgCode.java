@@ -1,25 +1,287 @@
 package com.example.procedure.model;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 消息类型目录：解析时定一次 code，后面各级按 code 查数组，不再比字符串。
+ *
+ * 每一项：
+ *  - code：按协议分段（1xxx RRC / 2xxx NGAP / 3xxx NAS-MM / 4xxx SBI / 5xxx XnAP），老的 6 个保持原值；
+ *  - wire：抓包里的名字（tshark 的 nr-rrc.xxx_element / ngap.xxx_element / xnap.xxx_element 去掉前后缀，
+ *          NAS-MM 是 nas-5gs.mm.message_type 的取值，SBI 是服务操作名）；
+ *  - displayName：下发给 SignalingMessage.msgType 的写法，和 *Phases / *KeyBits / MessageCategoryClassifier
+ *          里登记的一致（IA 表是精确匹配，所以老的 6 个写法一个字都不能动）；
+ *  - carrier：只是个 NAS 搬运壳（ULInformationTransfer / DownlinkNASTransport ...），
+ *          同一帧里解析出里面的 NAS 消息时让位给 NAS（见 PacketParseContext.markMsgCode）。
+ *
+ * 同一个 displayName 可以对应多个 code（NGAP 和 XnAP 的 HandoverRequest、rrcResumeRequest 和 rrcResumeRequest1），
+ * 流程表只认 displayName，所以这几个在流程识别上是同一种消息。
+ */
 public enum MsgCode {
-    UNKNOWN(0),
+    UNKNOWN(0, null, null, null),
+
+    // === RRC（nr-rrc.<wire>_element）===
+    RRC_SETUP_COMPLETE(1001, Protocol.RRC, "rrcSetupComplete", "RRCSetupComplete"),
+    RRC_SECURITY_MODE_COMMAND(1002, Protocol.RRC, "securityModeCommand", "RRC SecurityModeCommand"),
+    RRC_SETUP_REQUEST(1003, Protocol.RRC, "rrcSetupRequest", "RRCSetupRequest"),
+    RRC_SETUP(1004, Protocol.RRC, "rrcSetup", "RRCSetup"),
+    RRC_REJECT(1005, Protocol.RRC, "rrcReject", "RRCReject"),
+    RRC_SECURITY_MODE_COMPLETE(1006, Protocol.RRC, "securityModeComplete", "RRC SecurityModeComplete"),
+    RRC_SECURITY_MODE_FAILURE(1007, Protocol.RRC, "securityModeFailure", "RRC SecurityModeFailure"),
+    RRC_RECONFIGURATION(1008, Protocol.RRC, "rrcReconfiguration", "RRCReconfiguration"),
+    RRC_RECONFIGURATION_COMPLETE(1009, Protocol.RRC, "rrcReconfigurationComplete", "RRCReconfigurationComplete"),
+    RRC_RELEASE(1010, Protocol.RRC, "rrcRelease", "RRCRelease"),
+    RRC_REESTABLISHMENT_REQUEST(1011, Protocol.RRC, "rrcReestablishmentRequest", "RRCReestablishmentRequest"),
+    RRC_REESTABLISHMENT(1012, Protocol.RRC, "rrcReestablishment", "RRCReestablishment"),
+    RRC_REESTABLISHMENT_COMPLETE(1013, Protocol.RRC, "rrcReestablishmentComplete", "RRCReestablishmentComplete"),
+    RRC_RESUME_REQUEST(1014, Protocol.RRC, "rrcResumeRequest", "RRCResumeRequest"),
+    RRC_RESUME_REQUEST_1(1015, Protocol.RRC, "rrcResumeRequest1", "RRCResumeRequest"),
+    RRC_RESUME(1016, Protocol.RRC, "rrcResume", "RRCResume"),
+    RRC_RESUME_COMPLETE(1017, Protocol.RRC, "rrcResumeComplete", "RRCResumeComplete"),
+    RRC_UE_CAPABILITY_ENQUIRY(1018, Protocol.RRC, "ueCapabilityEnquiry", "UECapabilityEnquiry"),
+    RRC_UE_CAPABILITY_INFORMATION(1019, Protocol.RRC, "ueCapabilityInformation", "UECapabilityInformation"),
+    RRC_MEASUREMENT_REPORT(1020, Protocol.RRC, "measurementReport", "MeasurementReport"),
+    RRC_MOBILITY_FROM_NR_COMMAND(1021, Protocol.RRC, "mobilityFromNRCommand", "MobilityFromNRCommand"),
+    RRC_UE_INFORMATION_REQUEST(1022, Protocol.RRC, "ueInformationRequest-r16", "UEInformationRequest"),
+    RRC_UE_INFORMATION_RESPONSE(1023, Protocol.RRC, "ueInformationResponse-r16", "UEInformationResponse"),
+    RRC_COUNTER_CHECK(1024, Protocol.RRC, "counterCheck", "CounterCheck"),
+    RRC_COUNTER_CHECK_RESPONSE(1025, Protocol.RRC, "counterCheckResponse", "CounterCheckResponse"),
+    RRC_SYSTEM_INFO_REQUEST(1026, Protocol.RRC, "rrcSystemInfoRequest", "RRCSystemInfoRequest"),
+    RRC_PAGING(1027, Protocol.RRC, "paging", "Paging"),
+    RRC_UL_INFORMATION_TRANSFER(1028, Protocol.RRC, "ulInformationTransfer", "ULInformationTransfer", true),
+    RRC_DL_INFORMATION_TRANSFER(1029, Protocol.RRC, "dlInformationTransfer", "DLInformationTransfer", true),
+
+    // === NGAP（ngap.<wire>_element）===
+    NGAP_INITIAL_UE_MESSAGE(2001, Protocol.NGAP, "InitialUEMessage", "Initial UE Message"),
+    NGAP_INITIAL_CONTEXT_SETUP_REQUEST(2002, Protocol.NGAP, "InitialContextSetupRequest", "Initial Context Setup Request"),
+    NGAP_INITIAL_CONTEXT_SETUP_RESPONSE(2003, Protocol.NGAP, "InitialContextSetupResponse", "Initial Context Setup Response"),
+    NGAP_INITIAL_CONTEXT_SETUP_FAILURE(2004, Protocol.NGAP, "InitialContextSetupFailure", "Initial Context Setup Failure"),
+    NGAP_DOWNLINK_NAS_TRANSPORT(2005, Protocol.NGAP, "DownlinkNASTransport", "Downlink NAS Transport", true),
+    NGAP_UPLINK_NAS_TRANSPORT(2006, Protocol.NGAP, "UplinkNASTransport", "Uplink NAS Transport", true),
+    NGAP_UE_CONTEXT_RELEASE_REQUEST(2007, Protocol.NGAP, "UEContextReleaseRequest", "UE Context Release Request"),
+    NGAP_UE_CONTEXT_RELEASE_COMMAND(2008, Protocol.NGAP, "UEContextReleaseCommand", "UE Context Release Command"),
+    NGAP_UE_CONTEXT_RELEASE_COMPLETE(2009, Protocol.NGAP, "UEContextReleaseComplete", "UE Context Release Complete"),
+    NGAP_UE_CONTEXT_MODIFICATION_REQUEST(2010, Protocol.NGAP, "UEContextModificationRequest", "UE Context Modification Request"),
+    NGAP_UE_CONTEXT_MODIFICATION_RESPONSE(2011, Protocol.NGAP, "UEContextModificationResponse", "UE Context Modification Response"),
+    NGAP_HANDOVER_REQUIRED(2012, Protocol.NGAP, "HandoverRequired", "Handover Required"),
+    NGAP_HANDOVER_COMMAND(2013, Protocol.NGAP, "HandoverCommand", "Handover Command"),
+    NGAP_HANDOVER_PREPARATION_FAILURE(2014, Protocol.NGAP, "HandoverPreparationFailure", "Handover Preparation Failure"),
+    NGAP_HANDOVER_REQUEST(2015, Protocol.NGAP, "HandoverRequest", "Handover Request"),
+    NGAP_HANDOVER_REQUEST_ACKNOWLEDGE(2016, Protocol.NGAP, "HandoverRequestAcknowledge", "Handover Request Acknowledge"),
+    NGAP_HANDOVER_FAILURE(2017, Protocol.NGAP, "HandoverFailure", "Handover Failure"),
+    NGAP_HANDOVER_NOTIFY(2018, Protocol.NGAP, "HandoverNotify", "Handover Notify"),
+    NGAP_HANDOVER_CANCEL(2019, Protocol.NGAP, "HandoverCancel", "Handover Cancel"),
+    NGAP_HANDOVER_CANCEL_ACKNOWLEDGE(2020, Protocol.NGAP, "HandoverCancelAcknowledge", "Handover Cancel Acknowledge"),
+    NGAP_PATH_SWITCH_REQUEST(2021, Protocol.NGAP, "PathSwitchRequest", "N2 Path Switch Request"),
+    NGAP_PATH_SWITCH_REQUEST_ACKNOWLEDGE(2022, Protocol.NGAP, "PathSwitchRequestAcknowledge", "N2 Path Switch Request Ack"),
+    NGAP_PATH_SWITCH_REQUEST_FAILURE(2023, Protocol.NGAP, "PathSwitchRequestFailure", "N2 Path Switch Request Failure"),
+    NGAP_UPLINK_RAN_STATUS_TRANSFER(2024, Protocol.NGAP, "UplinkRANStatusTransfer", "Uplink RAN Status Transfer"),
+    NGAP_DOWNLINK_RAN_STATUS_TRANSFER(2025, Protocol.NGAP, "DownlinkRANStatusTransfer", "Downlink RAN Status Transfer"),
+    NGAP_PDU_SESSION_RESOURCE_SETUP_REQUEST(2026, Protocol.NGAP, "PDUSessionResourceSetupRequest", "PDU Session Resource Setup Request"),
+    NGAP_PDU_SESSION_RESOURCE_SETUP_RESPONSE(2027, Protocol.NGAP, "PDUSessionResourceSetupResponse", "PDU Session Resource Setup Response"),
+    NGAP_PDU_SESSION_RESOURCE_RELEASE_COMMAND(2028, Protocol.NGAP, "PDUSessionResourceReleaseCommand", "PDU Session Resource Release Command"),
+    NGAP_PDU_SESSION_RESOURCE_RELEASE_RESPONSE(2029, Protocol.NGAP, "PDUSessionResourceReleaseResponse", "PDU Session Resource Release Response"),
+    NGAP_PDU_SESSION_RESOURCE_MODIFY_REQUEST(2030, Protocol.NGAP, "PDUSessionResourceModifyRequest", "PDU Session Resource Modify Request"),
+    NGAP_PDU_SESSION_RESOURCE_MODIFY_RESPONSE(2031, Protocol.NGAP, "PDUSessionResourceModifyResponse", "PDU Session Resource Modify Response"),
+    NGAP_PAGING(2032, Protocol.NGAP, "Paging", "NGAP Paging"),
+    NGAP_ERROR_INDICATION(2033, Protocol.NGAP, "ErrorIndication", "Error Indication"),
+    NGAP_NG_SETUP_REQUEST(2034, Protocol.NGAP, "NGSetupRequest", "NG Setup Request"),
+    NGAP_NG_SETUP_RESPONSE(2035, Protocol.NGAP, "NGSetupResponse", "NG Setup Response"),
 
-    // === RRC ===
-    RRC_SETUP_COMPLETE(1001),
-    RRC_SECURITY_MODE_COMMAND(1002),
+    // === NAS-MM（nas-5gs.mm.message_type，TS 24.501 表 9.7.1）===
+    NAS_SECURITY_MODE_COMMAND(3001, Protocol.NAS_MM, "0x5d", "NAS SecurityModeCommand"),
+    NAS_REGISTRATION_REQUEST(3002, Protocol.NAS_MM, "0x41", "Registration request"),
+    NAS_REGISTRATION_ACCEPT(3003, Protocol.NAS_MM, "0x42", "Registration accept"),
+    NAS_REGISTRATION_COMPLETE(3004, Protocol.NAS_MM, "0x43", "Registration Complete"),
+    NAS_REGISTRATION_REJECT(3005, Protocol.NAS_MM, "0x44", "Registration reject"),
+    NAS_DEREGISTRATION_REQUEST_UE_ORIG(3006, Protocol.NAS_MM, "0x45", "Deregistration request (UE originating)"),
+    NAS_DEREGISTRATION_ACCEPT_UE_ORIG(3007, Protocol.NAS_MM, "0x46", "Deregistration accept (UE originating)"),
+    NAS_DEREGISTRATION_REQUEST_UE_TERM(3008, Protocol.NAS_MM, "0x47", "Deregistration request (UE terminated)"),
+    NAS_DEREGISTRATION_ACCEPT_UE_TERM(3009, Protocol.NAS_MM, "0x48", "Deregistration accept (UE terminated)"),
+    NAS_SERVICE_REQUEST(3010, Protocol.NAS_MM, "0x4c", "Service request"),
+    NAS_SERVICE_REJECT(3011, Protocol.NAS_MM, "0x4d", "Service reject"),
+    NAS_SERVICE_ACCEPT(3012, Protocol.NAS_MM, "0x4e", "Service accept"),
+    NAS_CONFIGURATION_UPDATE_COMMAND(3013, Protocol.NAS_MM, "0x54", "Configuration update command"),
+    NAS_CONFIGURATION_UPDATE_COMPLETE(3014, Protocol.NAS_MM, "0x55", "Configuration update complete"),
+    NAS_AUTHENTICATION_REQUEST(3015, Protocol.NAS_MM, "0x56", "Authentication Request"),
+    NAS_AUTHENTICATION_RESPONSE(3016, Protocol.NAS_MM, "0x57", "Authentication Response"),
+    NAS_AUTHENTICATION_REJECT(3017, Protocol.NAS_MM, "0x58", "Authentication reject"),
+    NAS_AUTHENTICATION_FAILURE(3018, Protocol.NAS_MM, "0x59", "Authentication Failure"),
+    NAS_AUTHENTICATION_RESULT(3019, Protocol.NAS_MM, "0x5a", "Authentication result"),
+    NAS_IDENTITY_REQUEST(3020, Protocol.NAS_MM, "0x5b", "Identity Request"),
+    NAS_IDENTITY_RESPONSE(3021, Protocol.NAS_MM, "0x5c", "Identity Response"),
+    NAS_SECURITY_MODE_COMPLETE(3022, Protocol.NAS_MM, "0x5e", "NAS SecurityModeComplete"),
+    NAS_SECURITY_MODE_REJECT(3023, Protocol.NAS_MM, "0x5f", "NAS SecurityModeReject"),
+    NAS_5GMM_STATUS(3024, Protocol.NAS_MM, "0x64", "5GMM status"),
+    NAS_NOTIFICATION(3025, Protocol.NAS_MM, "0x65", "Notification"),
+    NAS_NOTIFICATION_RESPONSE(3026, Protocol.NAS_MM, "0x66", "Notification response"),
+    NAS_UL_NAS_TRANSPORT(3027, Protocol.NAS_MM, "0x67", "UL NAS transport"),
+    NAS_DL_NAS_TRANSPORT(3028, Protocol.NAS_MM, "0x68", "DL NAS transport"),
 
-    // === NGAP ===
-    NGAP_INITIAL_UE_MESSAGE(2001),
-    NGAP_INITIAL_CONTEXT_SETUP_REQUEST(2002),
+    // === SBI（N12 / N13 / N14 的服务操作）===
+    NUAR_AUTHENTICATE_RESPONSE(4001, Protocol.SBI, "Nausf_UEAuthentication_AuthenticateResponse",
+            "Nausf_UEAuthentication_Authenticate Response"),
+    NAUSF_AUTHENTICATE_REQUEST(4002, Protocol.SBI, "Nausf_UEAuthentication_AuthenticateRequest",
+            "Nausf_UEAuthentication_Authenticate Request"),
+    NUDM_AUTH_GET_REQUEST(4003, Protocol.SBI, "Nudm_UEAuthentication_GetRequest", "Nudm_UEAuthentication_Get Request"),
+    NUDM_AUTH_GET_RESPONSE(4004, Protocol.SBI, "Nudm_UEAuthentication_GetResponse", "Nudm_UEAuthentication_Get Response"),
+    // 拼写照 IA 阶段表（少个 h），那边是精确匹配
+    NUDM_RESULT_CONFIRMATION_REQUEST(4005, Protocol.SBI, "Nudm_UEAuthentication_ResultConfirmationRequest",
+            "Nudm_UEAutentication_ResultConfirmation Request"),
+    NUDM_RESULT_CONFIRMATION_RESPONSE(4006, Protocol.SBI, "Nudm_UEAuthentication_ResultConfirmationResponse",
+            "Nudm_UEAutentication_ResultConfirmation Response"),
+    NAMF_CREATE_UE_CONTEXT_REQUEST(4007, Protocol.SBI, "Namf_Communication_CreateUEContextRequest",
+            "Namf_Communication_CreateUEContext Request"),
+    NAMF_CREATE_UE_CONTEXT_RESPONSE(4008, Protocol.SBI, "Namf_Communication_CreateUEContextResponse",
+            "Namf_Communication_CreateUEContext Response"),
 
-    // === NAS ===
-    NAS_SECURITY_MODE_COMMAND(3001),
+    // === XnAP（xnap.<wire>_element）===
+    XNAP_HANDOVER_REQUEST(5001, Protocol.XNAP, "HandoverRequest", "Handover Request"),
+    XNAP_HANDOVER_REQUEST_ACKNOWLEDGE(5002, Protocol.XNAP, "HandoverRequestAcknowledge", "Handover Request Acknowledge"),
+    XNAP_HANDOVER_PREPARATION_FAILURE(5003, Protocol.XNAP, "HandoverPreparationFailure", "Handover Preparation Failure"),
+    XNAP_HANDOVER_CANCEL(5004, Protocol.XNAP, "HandoverCancel", "Handover Cancel"),
+    XNAP_SN_STATUS_TRANSFER(5005, Protocol.XNAP, "SNStatusTransfer", "SN Status Transfer"),
+    XNAP_UE_CONTEXT_RELEASE(5006, Protocol.XNAP, "UEContextRelease", "UE Context Release"),
+    XNAP_RETRIEVE_UE_CONTEXT_REQUEST(5007, Protocol.XNAP, "RetrieveUEContextRequest", "Retrieve UE Context Request"),
+    XNAP_RETRIEVE_UE_CONTEXT_RESPONSE(5008, Protocol.XNAP, "RetrieveUEContextResponse", "Retrieve UE Context Response"),
+    XNAP_RETRIEVE_UE_CONTEXT_FAILURE(5009, Protocol.XNAP, "RetrieveUEContextFailure", "Retrieve UE Context Failure"),
+    XNAP_HANDOVER_SUCCESS(5010, Protocol.XNAP, "HandoverSuccess", "Handover Success"),
+    XNAP_XN_U_ADDRESS_INDICATION(5011, Protocol.XNAP, "XnUAddressIndication", "Xn-U Address Indication");
 
-    // === NUAR (N12) ===
-    NUAR_AUTHENTICATE_RESPONSE(4001);
+    public enum Protocol { RRC, NGAP, NAS_MM, SBI, XNAP }
 
     public final int code;
+    private final Protocol protocol;
+    private final String wire;
+    private final String displayName;
+    private final boolean carrier;
+
+    MsgCode(int code, Protocol protocol, String wire, String displayName) {
+        this(code, protocol, wire, displayName, false);
+    }
 
-    MsgCode(int code) {
+    MsgCode(int code, Protocol protocol, String wire, String displayName, boolean carrier) {
         this.code = code;
+        this.protocol = protocol;
+        this.wire = wire;
+        this.displayName = displayName;
+        this.carrier = carrier;
+    }
+
+    public Protocol protocol() {
+        return protocol;
+    }
+
+    public String wire() {
+        return wire;
+    }
+
+    /** SignalingMessage.msgType 的写法；UNKNOWN 是 null */
+    public String displayName() {
+        return displayName;
+    }
+
+    public boolean isCarrier() {
+        return carrier;
+    }
+
+    // ===================== 查表 =====================
+
+    private static final MsgCode[] BY_CODE;
+    /** NAS-MM message_type 是一个字节，直接按值下标 */
+    private static final MsgCode[] NAS_MM = new MsgCode[256];
+    private static final Map<String, MsgCode> RRC = new HashMap<>();
+    private static final Map<String, MsgCode> NGAP = new HashMap<>();
+    private static final Map<String, MsgCode> XNAP = new HashMap<>();
+    private static final Map<String, MsgCode> SBI = new HashMap<>();
+    /** 任意写法（大写、去掉非字母数字）-> 第一个登记的 */
+    private static final Map<String, MsgCode> BY_NAME = new HashMap<>();
+
+    static {
+        int max = 0;
+        for (MsgCode c : values()) max = Math.max(max, c.code);
+        BY_CODE = new MsgCode[max + 1];
+        for (MsgCode c : values()) {
+            BY_CODE[c.code] = c;
+            if (c == UNKNOWN) continue;
+            switch (c.protocol) {
+                case RRC -> RRC.put(c.wire.toLowerCase(Locale.ROOT), c);
+                case NGAP -> NGAP.put(c.wire.toLowerCase(Locale.ROOT), c);
+                case XNAP -> XNAP.put(c.wire.toLowerCase(Locale.ROOT), c);
+                case SBI -> SBI.put(c.wire.toLowerCase(Locale.ROOT), c);
+                case NAS_MM -> NAS_MM[Integer.parseInt(c.wire.substring(2), 16)] = c;
+            }
+            BY_NAME.putIfAbsent(nameKey(c.displayName), c);
+            if (c.protocol != Protocol.NAS_MM) BY_NAME.putIfAbsent(nameKey(c.wire), c);
+        }
+    }
+
+    /** code -> 目录项；不认识的返回 UNKNOWN */
+    public static MsgCode byCode(int code) {
+        if (code <= 0 || code >= BY_CODE.length) return UNKNOWN;
+        MsgCode c = BY_CODE[code];
+        return c == null ? UNKNOWN : c;
+    }
+
+    /** nr-rrc 的消息名（rrcSetupComplete / securityModeCommand ...），大小写不敏感 */
+    public static MsgCode ofRrc(String wire) {
+        return lookup(RRC, wire);
+    }
+
+    /** ngap 的消息名（InitialUEMessage / HandoverRequired ...） */
+    public static MsgCode ofNgap(String wire) {
+        return lookup(NGAP, wire);
+    }
+
+    /** xnap 的消息名（HandoverRequest / SNStatusTransfer ...） */
+    public static MsgCode ofXnap(String wire) {
+        return lookup(XNAP, wire);
+    }
+
+    /** SBI 服务操作名（Nausf_UEAuthentication_AuthenticateResponse ...） */
+    public static MsgCode ofSbi(String wire) {
+        return lookup(SBI, wire);
+    }
+
+    /** nas-5gs.mm.message_type：tshark 给的是 "0x5d"，十进制也认 */
+    public static MsgCode ofNasMm(String value) {
+        if (value == null || value.isEmpty()) return UNKNOWN;
+        int v;
+        try {
+            v = value.startsWith("0x") || value.startsWith("0X")
+                    ? Integer.parseInt(value.substring(2), 16)
+                    : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return UNKNOWN;
+        }
+        if (v < 0 || v >= NAS_MM.length || NAS_MM[v] == null) return UNKNOWN;
+        return NAS_MM[v];
+    }
+
+    /**
+     * 不知道来源的 msgType 字符串（老解析器 / 测试里手写的）：大小写、空格、下划线都不管，
+     * displayName 和 wire 都认。同名的（NGAP / XnAP 的 HandoverRequest）取先登记的那个，displayName 一样所以不影响流程识别。
+     */
+    public static MsgCode ofName(String msgType) {
+        if (msgType == null) return UNKNOWN;
+        MsgCode c = BY_NAME.get(nameKey(msgType));
+        return c == null ? UNKNOWN : c;
+    }
+
+    private static MsgCode lookup(Map<String, MsgCode> table, String wire) {
+        if (wire == null) return UNKNOWN;
+        MsgCode c = table.get(wire.toLowerCase(Locale.ROOT));
+        return c == null ? UNKNOWN : c;
+    }
+
+    private static String nameKey(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (Character.isLetterOrDigit(ch)) sb.append(Character.toUpperCase(ch));
+        }
+        return sb.toString();
     }
 }
@@ -12,6 +12,9 @@ public class Procedure {
     private String lastMessageType;
     private String activateTime;
     private String lastUpdateTime;
+    /** 上面两个时间的 epoch ms（打分直接用，不再每次解析时间串）；0 = 老数据里没有 */
+    private long activateMs;
+    private long lastUpdateMs;
     private int messageNum;
     private String endTime;
 
@@ -1,6 +1,8 @@
 package com.example.procedure.model;
 
+import com.example.procedure.id.IdGenerator;
 import com.example.procedure.parser.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
 import java.util.List;
@@ -12,6 +14,11 @@ import java.util.List;
 public class SignalingMessage {
 
     private String msgId;
+
+    /** 数字形式的消息 ID（IdGenerator）：解析链路只设这个，msgId 字符串等第一次 getMsgId 才拼 */
+    @JsonIgnore
+    private long msgIdNum;
+
     /** UE 统一标识（你已经在前面做完 SUPI/C-RNTI 关联后得到的 ueId） */
     private String ueId;
 
@@ -27,6 +34,13 @@ public class SignalingMessage {
     /** 统一后的消息类型（建议你自己枚举/映射，比如 RRC_SETUP_REQUEST 等） */
     private String msgType;
 
+    /**
+     * MsgCode 目录里的 code：流式解析时直接填好；没填的（老解析器 / 手写的消息）第一次 getMsgCode 按 msgType 查一次目录。
+     * -1 = 查过了，目录里没有
+     */
+    @JsonIgnore
+    private int msgCode;
+
     /** 时间戳，用于排序和超时判断 */
     private long timestamp;
 
@@ -59,6 +73,26 @@ public class SignalingMessage {
     /** 解密相关的 MAC（可存服务返回的 mac 或者本次校验使用的 mac） */
     private String decryptMacHex;
 
+    public void setMsgType(String msgType) {
+        this.msgType = msgType;
+        this.msgCode = 0;
+    }
+
+    /** 目录里的 code，不认识是 0（MsgCode.UNKNOWN） */
+    public int getMsgCode() {
+        if (msgCode == 0) {
+            msgCode = msgType == null ? -1 : MsgCode.ofName(msgType).code;
+            if (msgCode == 0) msgCode = -1;
+        }
+        return Math.max(msgCode, 0);
+    }
+
+    public String getMsgId() {
+        if (msgId == null && msgIdNum != 0) {
+            msgId = "MSG-" + IdGenerator.format(msgIdNum);
+        }
+        return msgId;
+    }
 
 
 }
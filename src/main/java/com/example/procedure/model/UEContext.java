@@ -30,5 +30,27 @@ public class UEContext implements Serializable {
     private String kRrcEnc;
     private String kRrcInt;
 
-
+    /** 拷贝一份（字段都是 String，浅拷贝即可），近端缓存交出去的都是副本 */
+    public UEContext copy() {
+        UEContext c = new UEContext();
+        c.ueId = ueId;
+        c.supi = supi;
+        c.amfUeNgapId = amfUeNgapId;
+        c.ranUeNgapId = ranUeNgapId;
+        c.crnti = crnti;
+        c.cellId = cellId;
+        c.nasCipherAlg = nasCipherAlg;
+        c.nasIntAlg = nasIntAlg;
+        c.rrcIntAlg = rrcIntAlg;
+        c.rrcCipherAlg = rrcCipherAlg;
+        c.attachState = attachState;
+        c.kSeaf = kSeaf;
+        c.kAmf = kAmf;
+        c.securityKeyHex = securityKeyHex;
+        c.kNasEnc = kNasEnc;
+        c.kNasInt = kNasInt;
+        c.kRrcEnc = kRrcEnc;
+        c.kRrcInt = kRrcInt;
+        return c;
+    }
 }
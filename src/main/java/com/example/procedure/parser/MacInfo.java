@@ -10,6 +10,7 @@ import java.util.Map;
  * 目前只关心：
  *  - mac-nr.rnti
  *  - mac-nr.rnti-type
+ *  - mac-nr.ulsch.lcid / mac-nr.dlsch.lcid（第一个 SRB/DRB 逻辑信道，用于推 PDCP 的 BEARER）
  * 后面要加 HARQ id、direction 等字段都可以在这里扩展。
  */
 @Data
@@ -23,10 +24,28 @@ public class MacInfo {
     /** RNTI 类型，对应 mac-nr.rnti-type */
     private String rntiType;
 
+    /**
+     * 承载数据的逻辑信道号（1..32）。一个 MAC PDU 里可能有多个 subPDU（BSR/PHR/padding 等 MAC CE），
+     * 只记第一个落在 SRB/DRB 范围内的 LCID。
+     */
+    private Integer lcid;
+
     /** 记录每个命中字段的 JSON 路径，方便回溯 */
     private Map<String, String> fieldPaths = new LinkedHashMap<>();
 
     public void putFieldPath(String fieldKey, String path) {
         this.fieldPaths.put(fieldKey, path);
     }
+
+    /** 收到一个 subPDU 的 LCID（十进制或 0x 十六进制字符串） */
+    public void offerLcid(String value) {
+        if (lcid != null || value == null) return;
+        String v = value.trim();
+        try {
+            int id = (v.startsWith("0x") || v.startsWith("0X")) ? Integer.parseInt(v.substring(2), 16) : Integer.parseInt(v);
+            if (id >= 1 && id <= 32) lcid = id;
+        } catch (NumberFormatException ignore) {
+            // 非数字就忽略
+        }
+    }
 }
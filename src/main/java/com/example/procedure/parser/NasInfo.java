@@ -67,6 +67,29 @@ public class NasInfo {
     /** 3gpp.tmsi */
     private String tmsi;
 
+    // ---- 5G-GUTI 里 GUAMI 剩下的部分（5G-S-TMSI 没有 region） ----
+    /** nas-5gs.amf_region_id */
+    private String amfRegionId;
+
+    /** nas-5gs.amf_set_id */
+    private String amfSetId;
+
+    /** nas-5gs.amf_pointer */
+    private String amfPointer;
+
+    // ---- SUCI（注册请求里的 5GS mobile identity） ----
+    /** e212.5gsmobid.mcc（归属网络） */
+    private String suciMcc;
+
+    /** e212.5gsmobid.mnc */
+    private String suciMnc;
+
+    /** nas-5gs.mm.suci.routing_indicator */
+    private String suciRoutingIndicator;
+
+    /** nas-5gs.mm.suci.scheme_output；null-scheme 时是 nas-5gs.mm.suci.msin */
+    private String suciSchemeOutput;
+
     /** nas-5gs.mm.5gs_reg_type */
     private String regType5gs;
 
@@ -30,6 +30,15 @@ public class NgapInfo {
     /** ⭐ RAN UE NGAP ID */
     private String ranUeNgapId;
 
+    /** ⭐ AMF UE NGAP ID（AMF 分配，InitialContextSetup 之后的 NGAP 消息都带） */
+    private String amfUeNgapId;
+
+    /**
+     * NR-CGI 里的 NR Cell Identity（UserLocationInformation，InitialUEMessage / UplinkNASTransport 等上行消息带），
+     * 36 位，高位是 gNB ID。原样存 tshark 给的值（0x... 或者带冒号的字节串）。
+     */
+    private String nrCellIdentity;
+
     private String direction;
 
 
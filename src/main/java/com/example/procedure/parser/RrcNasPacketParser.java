@@ -168,26 +168,28 @@ public class RrcNasPacketParser {
         }
 
         // ---- 2) 阶段处理：真正的业务逻辑交给各阶段的 handle ----
+        // -x 输出里 *_raw 是数组，数组元素没有字段名；各 handle 都按字段名 switch，这里直接跳过
+        boolean anonymousScalar = fieldName == null && node.isValueNode();
 
         // ⭐ 新增：先处理 MAC
-        if (ctx.inMac()) {
+        if (!anonymousScalar && ctx.inMac()) {
             handleMacNode(fieldName, node, ctx);
         }
 
         // ⭐ 新增：PDCP 阶段
-        if (ctx.inPdcp()) {
+        if (!anonymousScalar && ctx.inPdcp()) {
             handlePdcpNode(fieldName, node, ctx);
         }
 
-        if (ctx.inNgap()) {
+        if (!anonymousScalar && ctx.inNgap()) {
             handleNgapNode(fieldName, node, ctx);  // ⭐ 新增
         }
 
-        if (ctx.inRrc()) {
+        if (!anonymousScalar && ctx.inRrc()) {
             handleRrcNode(fieldName, node, ctx);
         }
 
-        if (ctx.inNas()) {
+        if (!anonymousScalar && ctx.inNas()) {
             handleNasNode(fieldName, node, ctx);
         }
 
@@ -371,6 +373,18 @@ public class RrcNasPacketParser {
                     ngap.putFieldPath("ngap.RAN_UE_NGAP_ID", pathStr);
                     break;
 
+                // ⭐ AMF UE NGAP ID
+                case "ngap.AMF_UE_NGAP_ID":
+                    ngap.setAmfUeNgapId(value);
+                    ngap.putFieldPath("ngap.AMF_UE_NGAP_ID", pathStr);
+                    break;
+
+                // ⭐ NR Cell Identity（UserLocationInformation 里的 NR-CGI，高位是 gNB ID）
+                case "ngap.nRCellIdentity":
+                    ngap.setNrCellIdentity(value);
+                    ngap.putFieldPath("ngap.nRCellIdentity", pathStr);
+                    break;
+
                 default:
                     break;
             }
@@ -536,7 +550,7 @@ public class RrcNasPacketParser {
     /**
      * MAC 阶段的所有逻辑都写在这里：
      *  - currentMac = ctx.ensureMacInfo();
-     *  - 目前只关心 mac-nr.rnti / mac-nr.rnti-type 两个字段。
+     *  - 关心 mac-nr.rnti / mac-nr.rnti-type，以及 UL/DL-SCH subPDU 的 LCID。
      */
     private static void handleMacNode(String fieldName, JsonNode node, PacketParseContext ctx) {
         MacInfo mac = ctx.ensureMacInfo();
@@ -563,6 +577,12 @@ public class RrcNasPacketParser {
                     mac.putFieldPath("mac-nr.rnti-type", pathStr);
                     break;
 
+                case "mac-nr.ulsch.lcid":
+                case "mac-nr.dlsch.lcid":
+                    mac.offerLcid(value);
+                    mac.putFieldPath(fieldName, pathStr);
+                    break;
+
                 default:
                     break;
             }
@@ -817,6 +837,42 @@ public class RrcNasPacketParser {
                     nas.putFieldPath("nas-5gs.mm.5gs_reg_type", pathStr);
                     break;
 
+                case "nas-5gs.amf_region_id":
+                    nas.setAmfRegionId(value);
+                    nas.putFieldPath("nas-5gs.amf_region_id", pathStr);
+                    break;
+
+                case "nas-5gs.amf_set_id":
+                    nas.setAmfSetId(value);
+                    nas.putFieldPath("nas-5gs.amf_set_id", pathStr);
+                    break;
+
+                case "nas-5gs.amf_pointer":
+                    nas.setAmfPointer(value);
+                    nas.putFieldPath("nas-5gs.amf_pointer", pathStr);
+                    break;
+
+                case "e212.5gsmobid.mcc":
+                    nas.setSuciMcc(value);
+                    nas.putFieldPath("e212.5gsmobid.mcc", pathStr);
+                    break;
+
+                case "e212.5gsmobid.mnc":
+                    nas.setSuciMnc(value);
+                    nas.putFieldPath("e212.5gsmobid.mnc", pathStr);
+                    break;
+
+                case "nas-5gs.mm.suci.routing_indicator":
+                    nas.setSuciRoutingIndicator(value);
+                    nas.putFieldPath("nas-5gs.mm.suci.routing_indicator", pathStr);
+                    break;
+
+                case "nas-5gs.mm.suci.scheme_output":
+                case "nas-5gs.mm.suci.msin":
+                    nas.setSuciSchemeOutput(value);
+                    nas.putFieldPath(fieldName, pathStr);
+                    break;
+
                 // 你原来已有的其它字段也可以继续放这里
                 default:
                     break;
@@ -7,6 +7,8 @@ import com.example.procedure.initial_acess.NgapInitialUeMessagePayload;
 import com.example.procedure.model.SignalingMessage;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -181,6 +183,13 @@ public class InitialAccessPhases {
         return END_MESSAGES.contains(msgType);
     }
 
+    /** 阶段表和结束表里的所有 msgType，ProcedureAutomaton 启动时按这些预编译 */
+    static Set<String> messageTypes() {
+        Set<String> out = new LinkedHashSet<>(END_MESSAGES);
+        for (PhaseDef phase : PHASES) out.addAll(Arrays.asList(phase.getMessages()));
+        return out;
+    }
+
     public static boolean hasValidPayloadForPhaseStart(SignalingMessage msg, int phaseIndex) {
         String msgType = msg.getMsgType();
 
@@ -1,6 +1,7 @@
 package com.example.procedure.rule;
 
 import com.example.procedure.model.MessageCategory;
+import com.example.procedure.model.MsgCode;
 import com.example.procedure.model.SignalingMessage;
 import org.springframework.stereotype.Service;
 
@@ -13,6 +14,7 @@ import java.util.Set;
  *  - NON_PROCEDURE：和流程无关
  *
  * 注意：这里的字符串要和 SignalingMessage.msgType 完全一致。
+ * 目录（MsgCode）里认识的消息启动时按这两张表算好分类，按 code 查数组；目录外的 msgType 才比字符串。
  */
 @Service
 public class MessageCategoryClassifier {
@@ -64,11 +66,25 @@ public class MessageCategoryClassifier {
             "RRC SecurityModeFailure"
     );
 
+    /** MsgCode.ordinal() -> 分类 */
+    private static final MessageCategory[] BY_MSG_CODE = new MessageCategory[MsgCode.values().length];
+
+    static {
+        for (MsgCode c : MsgCode.values()) BY_MSG_CODE[c.ordinal()] = classify(c.displayName());
+    }
+
     public MessageCategory classify(SignalingMessage msg) {
         if (msg == null) {
             return MessageCategory.NON_PROCEDURE;
         }
-        String type = msg.getMsgType();
+        int code = msg.getMsgCode();
+        if (code != 0) {
+            return BY_MSG_CODE[MsgCode.byCode(code).ordinal()];
+        }
+        return classify(msg.getMsgType());
+    }
+
+    private static MessageCategory classify(String type) {
         if (type == null) {
             return MessageCategory.NON_PROCEDURE;
         }
@@ -0,0 +1,86 @@
+package com.example.procedure.rule;
+
+import com.example.procedure.model.MsgCode;
+import com.example.procedure.model.SignalingMessage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * msgType 字符串 -> 紧凑的 int 编号（从 1 开始，0 = 没有 / 不认识）。
+ *
+ * 按原样的字符串编号，不做 normalize：各个 *Phases / *KeyBits 的 normalize 规则不一样，
+ * 同一个原始串在每张表里查出来的结果是确定的，ProcedureAutomaton 按编号把结果缓存成数组。
+ * 第一次见到的串现场分配编号（解析器输出的 msgType 就那么几十种），之后一次 HashMap 查找。
+ *
+ * MsgCode 目录里的 displayName 启动时先登记，of(SignalingMessage) 对解析器已经定了 code 的消息直接查数组，
+ * 一次字符串哈希都不做；没 code 的才退回按字符串。
+ */
+@Slf4j
+public final class MsgTypeCodes {
+
+    public static final int UNKNOWN = 0;
+
+    /** 编号上限：正常不会到，到了说明 msgType 里混进了不该有的东西（比如带了变量），后面的都当 UNKNOWN */
+    static final int MAX_CODES = 1 << 16;
+
+    private static final ConcurrentHashMap<String, Integer> CODES = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[256];
+    private static volatile int count = 1;
+    private static boolean warned;
+
+    /** MsgCode.ordinal() -> 它 displayName 的编号 */
+    private static final int[] BY_MSG_CODE;
+
+    static {
+        MsgCode[] all = MsgCode.values();
+        BY_MSG_CODE = new int[all.length];
+        for (MsgCode c : all) BY_MSG_CODE[c.ordinal()] = of(c.displayName());
+    }
+
+    private MsgTypeCodes() {}
+
+    public static int of(String msgType) {
+        if (msgType == null) return UNKNOWN;
+        Integer c = CODES.get(msgType);
+        return c != null ? c : intern(msgType);
+    }
+
+    /** 消息的编号：目录认识的（解析时定的 / 按 msgType 查到的）走数组，否则按原始 msgType 串 */
+    public static int of(SignalingMessage msg) {
+        if (msg == null) return UNKNOWN;
+        int code = msg.getMsgCode();
+        return code != 0 ? BY_MSG_CODE[MsgCode.byCode(code).ordinal()] : of(msg.getMsgType());
+    }
+
+    public static int forCode(MsgCode code) {
+        return BY_MSG_CODE[code.ordinal()];
+    }
+
+    /** 编号对应的原始串；0 或越界返回 null */
+    public static String name(int code) {
+        return code > 0 && code < count ? names[code] : null;
+    }
+
+    /** 已分配的编号个数 + 1（= 最大编号 + 1） */
+    public static int size() {
+        return count;
+    }
+
+    private static synchronized int intern(String msgType) {
+        Integer c = CODES.get(msgType);
+        if (c != null) return c;
+        int code = count;
+        if (code >= MAX_CODES) {
+            if (!warned) log.warn("Too many distinct msgType values, new ones are treated as unknown: {}", msgType);
+            warned = true;
+            return UNKNOWN;
+        }
+        if (code == names.length) names = Arrays.copyOf(names, code * 2);
+        names[code] = msgType;
+        count = code + 1;           // 先放名字再发布编号：拿到编号的一定查得到名字
+        CODES.put(msgType, code);
+        return code;
+    }
+}
@@ -81,6 +81,11 @@ public final class N2HandoverPhases {
         m.put(normalize(msgType), loc);
     }
 
+    /** 表里登记过的 msgType（标准化后的），ProcedureAutomaton 启动时按这些预编译 */
+    static Set<String> messageTypes() {
+        return LOCATIONS.keySet();
+    }
+
     public static PhaseDef.PhaseLocation locate(String msgType) {
         if (msgType == null) return null;
         return LOCATIONS.get(normalize(msgType));
@@ -0,0 +1,171 @@
+package com.example.procedure.rule;
+
+import com.example.procedure.model.ProcedureTypeEnum;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * 一种流程的"编译后"阶段表：msgType 编号（MsgTypeCodes）-> 一个 long，里面装着
+ * 阶段号、阶段内序号、phaseStart / key / end 标志和关键位。
+ *
+ * 以前每条消息、每个候选流程都要走一遍 *Phases.locate（线性 indexOf 或者 regex normalize）、
+ * isEndMessage、*KeyBits.bitForMsgType，全是字符串操作；现在一次数组下标。
+ *
+ * 表的内容仍然以 *Phases / *KeyBits 为准：启动时把各表登记过的 msgType 逐个喂给原来的函数，
+ * 结果存成数组；运行中第一次见到的 msgType（大小写 / 空格写法不一样的）拿到编号后再现算一行补上。
+ * 所以结果和直接调原函数完全一样，只是每种写法只算一次。
+ */
+public final class ProcedureAutomaton {
+
+    private static final long F_LOCATED = 1;
+    private static final long F_PHASE_START = 1 << 1;
+    private static final long F_KEY = 1 << 2;
+    private static final long F_END = 1 << 3;
+    /** XHO：HANDOVER COMMAND 出现两次，关键位要看 keyMask 定 */
+    private static final long F_HO_COMMAND = 1 << 4;
+
+    private static final ProcedureAutomaton[] BY_TYPE = new ProcedureAutomaton[ProcedureTypeEnum.values().length];
+
+    static {
+        register(ProcedureTypeEnum.INITIAL_ACCESS, InitialAccessPhases.messageTypes(),
+                InitialAccessPhases::locate, InitialAccessPhases::isEndMessage, InitialAccessKeyBits::bitForMsgType,
+                t -> false);
+        register(ProcedureTypeEnum.XN_HANDOVER, XnHandoverPhases.messageTypes(),
+                XnHandoverPhases::locate, XnHandoverPhases::isEndMessage, XnHandoverKeyBits::bitForMsgType,
+                ProcedureAutomaton::isHandoverCommand);
+        register(ProcedureTypeEnum.N2_HANDOVER, N2HandoverPhases.messageTypes(),
+                N2HandoverPhases::locate, N2HandoverPhases::isEndMessage, N2HandoverKeyBits::bitForMsgType,
+                t -> false);
+        register(ProcedureTypeEnum.RRC_REESTABLISH, RrcReestablishmentPhases.messageTypes(),
+                RrcReestablishmentPhases::locate, RrcReestablishmentPhases::isEndMessage,
+                RrcReestablishmentKeyBits::bitForMsgType, t -> false);
+        register(ProcedureTypeEnum.RRCSTATE_TRANSFER, RrcStateTransferPhases.messageTypes(),
+                RrcStateTransferPhases::locate, RrcStateTransferPhases::isEndMessage,
+                RrcStateTransferKeyBits::bitForMsgType, t -> false);
+        register(ProcedureTypeEnum.GNBCUINTERNAL_HANDOVER, GnBCuInternalHoPhases.messageTypes(),
+                GnBCuInternalHoPhases::locate, GnBCuInternalHoPhases::isEndMessage,
+                GnBCuInternalHoKeyBits::bitForMsgType, t -> false);
+    }
+
+    /** 没有阶段表的流程类型（UNKNOWN / SR）返回 null */
+    public static ProcedureAutomaton of(ProcedureTypeEnum type) {
+        return type == null ? null : BY_TYPE[type.ordinal()];
+    }
+
+    private final ProcedureTypeEnum type;
+    private final Function<String, PhaseDef.PhaseLocation> locate;
+    private final Predicate<String> isEnd;
+    private final ToIntFunction<String> keyBit;
+    private final Predicate<String> hoCommand;
+
+    /** 下标 = msgType 编号；只增长，整个数组替换发布 */
+    private volatile long[] rows = new long[1];
+
+    private ProcedureAutomaton(ProcedureTypeEnum type,
+                               Function<String, PhaseDef.PhaseLocation> locate,
+                               Predicate<String> isEnd,
+                               ToIntFunction<String> keyBit,
+                               Predicate<String> hoCommand) {
+        this.type = type;
+        this.locate = locate;
+        this.isEnd = isEnd;
+        this.keyBit = keyBit;
+        this.hoCommand = hoCommand;
+    }
+
+    private static void register(ProcedureTypeEnum type, Collection<String> vocabulary,
+                                 Function<String, PhaseDef.PhaseLocation> locate, Predicate<String> isEnd,
+                                 ToIntFunction<String> keyBit, Predicate<String> hoCommand) {
+        for (String t : vocabulary) MsgTypeCodes.of(t);
+        ProcedureAutomaton a = new ProcedureAutomaton(type, locate, isEnd, keyBit, hoCommand);
+        a.compile(MsgTypeCodes.size() - 1);
+        BY_TYPE[type.ordinal()] = a;
+    }
+
+    public ProcedureTypeEnum type() {
+        return type;
+    }
+
+    /** 某个 msgType 编号在这张表里的那一行；0（没有 msgType）是全 0 */
+    public long row(int code) {
+        long[] r = rows;
+        if (code < r.length) return r[code];
+        return code <= 0 ? 0 : compile(code);
+    }
+
+    // ===================== 行里的字段 =====================
+
+    /** 在阶段表里（有阶段号）；不在的 phase/order 没有意义 */
+    public static boolean located(long row) {
+        return (row & F_LOCATED) != 0;
+    }
+
+    public static int phase(long row) {
+        return (int) (row >>> 8) & 0xFF;
+    }
+
+    public static int order(long row) {
+        return (int) (row >>> 16) & 0xFF;
+    }
+
+    public static boolean isPhaseStart(long row) {
+        return (row & F_PHASE_START) != 0;
+    }
+
+    public static boolean isKey(long row) {
+        return (row & F_KEY) != 0;
+    }
+
+    public static boolean isEnd(long row) {
+        return (row & F_END) != 0;
+    }
+
+    public static boolean isHandoverCommand(long row) {
+        return (row & F_HO_COMMAND) != 0;
+    }
+
+    /** *KeyBits.bitForMsgType 的结果（HANDOVER COMMAND 是第一次的那一位） */
+    public static int keyBit(long row) {
+        return (int) (row >>> 32);
+    }
+
+    // ===================== internal =====================
+
+    /** 把 rows 补到至少 code（以及这之前新分配的所有编号），返回 code 那一行 */
+    private synchronized long compile(int code) {
+        long[] r = rows;
+        if (code < r.length) return r[code];
+        int size = Math.max(code + 1, MsgTypeCodes.size());
+        long[] grown = Arrays.copyOf(r, size);
+        for (int c = r.length; c < size; c++) grown[c] = compileRow(MsgTypeCodes.name(c));
+        rows = grown;
+        return grown[code];
+    }
+
+    private long compileRow(String msgType) {
+        if (msgType == null) return 0;
+        long row = 0;
+        PhaseDef.PhaseLocation loc = locate.apply(msgType);
+        if (loc != null) {
+            row |= F_LOCATED;
+            if (loc.isPhaseStart()) row |= F_PHASE_START;
+            if (loc.isKey()) row |= F_KEY;
+            row |= (long) (loc.getPhaseIndex() & 0xFF) << 8;
+            row |= (long) (loc.getOrderIndex() & 0xFF) << 16;
+        }
+        if (isEnd.test(msgType)) row |= F_END;
+        if (hoCommand.test(msgType)) row |= F_HO_COMMAND;
+        row |= (keyBit.applyAsInt(msgType) & 0xFFFFFFFFL) << 32;
+        return row;
+    }
+
+    private static boolean isHandoverCommand(String msgType) {
+        String u = msgType.trim().toUpperCase(Locale.ROOT);
+        return u.equals("HANDOVER COMMAND") || u.equals("HANDOVERCOMMAND");
+    }
+}
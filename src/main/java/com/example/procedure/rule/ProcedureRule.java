@@ -6,7 +6,7 @@ import com.example.procedure.model.Score;
 import com.example.procedure.model.SignalingMessage;
 import lombok.Getter;
 
-import java.util.*;
+import java.util.List;
 
 @Getter
 public class ProcedureRule {
@@ -22,8 +22,23 @@ public class ProcedureRule {
         this.maxIdleMillis = maxIdleMillis;
     }
 
+    /** IA / XHO 的规则是无状态的，共用一份；其他流程没有规则返回 null */
+    private static final ProcedureRule IA_RULE = new ProcedureRule(ProcedureTypeEnum.INITIAL_ACCESS, 60_000L);
+    private static final ProcedureRule XHO_RULE = new ProcedureRule(ProcedureTypeEnum.XN_HANDOVER, 60_000L);
+
+    public static ProcedureRule forType(ProcedureTypeEnum type) {
+        if (type == ProcedureTypeEnum.INITIAL_ACCESS) return IA_RULE;
+        if (type == ProcedureTypeEnum.XN_HANDOVER) return XHO_RULE;
+        return null;
+    }
+
+    /** 同 score(proc, code)，现查 msgType 编号 */
+    public Score scoreForProcedure(Procedure proc, SignalingMessage msg) {
+        return score(proc, MsgTypeCodes.of(msg));
+    }
+
     /**
-     * 为当前流程计算这条信令的“归属得分”
+     * 为当前流程计算这条信令的“归属得分”（msgCode 见 MsgTypeCodes，调用方每条消息算一次）
      *
      *  - 对 INITIAL_ACCESS 使用：lastPhaseIndex + lastOrderIndex + InitialAccessPhases
      *  - 对其他流程，先用 canFollow 简单返回 100 / -100
@@ -32,86 +47,68 @@ public class ProcedureRule {
      *  1) 如果当前信令是同一阶段的“下一条” => 高分（100）
      *  2) 否则，如果是“下一阶段的起始关键信令” => 较高分（80）
      *  3) 否则 => 负分（-100）
+     *
+     * 阶段表都在 ProcedureAutomaton 里编译好了，这里只有数组下标和整数运算。
      */
-    public Score scoreForProcedure(Procedure proc, SignalingMessage msg) {
-        String msgType = msg.getMsgType();
+    public Score score(Procedure proc, int msgCode) {
         Score score = new Score(-100, -1, -1);
 
-        if (msgType == null) {
-            score.setScore(-100);
-            return score;
-        }
-
-        // 1) 根据流程类型选择 locate/isEnd
-        PhaseDef.PhaseLocation loc;
-        boolean isEnd;
-
-        if (type == ProcedureTypeEnum.INITIAL_ACCESS) {
-            loc = InitialAccessPhases.locate(msgType);
-            isEnd = InitialAccessPhases.isEndMessage(msgType);
-        } else if (type == ProcedureTypeEnum.XN_HANDOVER) {
-            loc = XnHandoverPhases.locate(msgType);
-            isEnd = XnHandoverPhases.isEndMessage(msgType);
-        } else {
-            // 其他流程暂不打规则分
-            score.setScore(-100);
+        // 1) 根据流程类型选择编译好的阶段表；其他流程暂不打规则分
+        ProcedureAutomaton automaton = ProcedureAutomaton.of(type);
+        if (msgCode == MsgTypeCodes.UNKNOWN || automaton == null
+                || (type != ProcedureTypeEnum.INITIAL_ACCESS && type != ProcedureTypeEnum.XN_HANDOVER)) {
             return score;
         }
+        long row = automaton.row(msgCode);
+        boolean isEnd = ProcedureAutomaton.isEnd(row);
 
         // 2) END 可能不在 phases 里：给一个“可归并但不推进”的基础分
-        if (loc == null) {
+        if (!ProcedureAutomaton.located(row)) {
             if (isEnd) {
                 score.setScore(30);
                 score.setPhaseIndex(proc.getLastPhaseIndex());
                 score.setOrderIndex(proc.getLastOrderIndex());
-                return score;
             }
-            score.setScore(-100);
             return score;
         }
 
+        boolean phaseStart = ProcedureAutomaton.isPhaseStart(row);
+        boolean hoCommand = ProcedureAutomaton.isHandoverCommand(row);
+
         // 3) 计算 base 分
         int s = 30; // 属于该流程的基础分
 
         // IA 用 loc.isKey；XHO 你 phases 里未设置 isKey（可能默认 false），因此对 XHO 我们改用 keyBits 加权
         if (type == ProcedureTypeEnum.INITIAL_ACCESS) {
-            if (loc.isKey()) s += 20;
-            if (loc.isPhaseStart()) s += 5;
-        } else if (type == ProcedureTypeEnum.XN_HANDOVER) {
+            if (ProcedureAutomaton.isKey(row)) s += 20;
+            if (phaseStart) s += 5;
+        } else {
             // XHO：每条主要消息都可视为 phaseStart，所以 phaseStart 加分仍然有效
-            if (loc.isPhaseStart()) s += 8;
+            if (phaseStart) s += 8;
 
-            // XHO：关键消息用 KeyBits 来判定
-            int bit = XnHandoverKeyBits.bitForMsgType(msgType);
-            if (isHandoverCommand(msgType)) {
-                // HO COMMAND 两次：这里用当前 keyMask 决定本次算第几次（用于加权/后续 phase 修正）
-                bit = XnHandoverKeyBits.bitForHandoverCommandWithContext(proc.getKeyMask());
-            }
-            if (bit != 0) s += 20;
+            // XHO：关键消息用 KeyBits 来判定；HO COMMAND 两次都有 bit
+            if (hoCommand || ProcedureAutomaton.keyBit(row) != 0) s += 20;
         }
 
         // 4) 乱序/顺序偏好（IA 轻量；XHO 更严格）
         int lastPhase = proc.getLastPhaseIndex();
         int lastOrder = proc.getLastOrderIndex();
-        int msgPhase = loc.getPhaseIndex();
-        int msgOrder = loc.getOrderIndex();
+        int msgPhase = ProcedureAutomaton.phase(row);
+        int msgOrder = ProcedureAutomaton.order(row);
 
         // XHO 特殊：HANDOVER COMMAND 的第二次出现要“修正 phase”
-        if (type == ProcedureTypeEnum.XN_HANDOVER && isHandoverCommand(msgType)) {
+        if (hoCommand) {
             // 如果已经见过第一次 HO_COMMAND，则本次应落到 “第二次 HO_COMMAND 的 phase”
             // 你的 XnHandoverPhases 里第二次 HO_COMMAND 是 PH_UU_HO_COMMAND_2
-            if ((proc.getKeyMask() & XnHandoverKeyBits.BIT_UU_HO_COMMAND_1) != 0) {
-                msgPhase = XnHandoverPhases.PH_UU_HO_COMMAND_2;
-                msgOrder = 0;
-            } else {
-                msgPhase = XnHandoverPhases.PH_UU_HO_COMMAND_1;
-                msgOrder = 0;
-            }
+            msgPhase = (proc.getKeyMask() & XnHandoverKeyBits.BIT_UU_HO_COMMAND_1) != 0
+                    ? XnHandoverPhases.PH_UU_HO_COMMAND_2
+                    : XnHandoverPhases.PH_UU_HO_COMMAND_1;
+            msgOrder = 0;
         }
 
         if (lastPhase < 0) {
             // 还没开始：phaseStart 强加分
-            s += loc.isPhaseStart() ? 20 : 5;
+            s += phaseStart ? 20 : 5;
         } else {
             int d = msgPhase - lastPhase;
 
@@ -147,13 +144,6 @@ public class ProcedureRule {
         return score;
     }
 
-    private boolean isHandoverCommand(String msgType) {
-        if (msgType == null) return false;
-        String u = msgType.trim().toUpperCase(Locale.ROOT);
-        return u.equals("HANDOVER COMMAND") || u.equals("HANDOVERCOMMAND");
-    }
-
-
     /** 下标是否合法 */
     private boolean isValidPhaseIndex(int index, List<PhaseDef> phases) {
         return index >= 0 && index < phases.size();
@@ -1,64 +1,155 @@
 package com.example.procedure.rule;
 
+import com.example.procedure.clock.ProcedureClock;
+import com.example.procedure.identity.UeBinder;
+import com.example.procedure.metrics.PipelineMetrics;
 import com.example.procedure.model.SignalingMessage;
 import com.example.procedure.parser.MacInfo;
 import com.example.procedure.parser.NgapInfo;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import com.example.procedure.state.StateBackend;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
-
-
+import java.util.function.LongSupplier;
+
+/**
+ * 给没带 ueId 的消息补 ueId：按 RAN-UE-NGAP-ID / MAC rnti-type 和 ueId 绑定，绑上之前的消息先缓冲。
+ *
+ * 每条消息都要过这里，所以热路径上不碰状态后端（state.backend.mode，默认 Redis）：
+ *  - 绑定关系以本地为准（正反两个方向都有），启动时从后端读回一次；之后本地查不到就是没绑定；
+ *  - 后端只是异步副本（后台线程批量写，Redis 是一个 pipeline），给重启恢复用；
+ *  - readThrough（多实例 / 恢复失败时）才会在本地没有时问后端，问过没有的记进否定缓存，短时间内不再问；
+ *  - 缓冲消息和绑定关系都按进来的顺序排队，过期只从队首弹，不再每条消息扫一遍所有桶。
+ *
+ * handle 是 synchronized 的：本地状态都是普通集合，单线程消费时锁没有竞争。
+ * identity.binder=binder（默认）时才建这个 bean，另一个实现见 UeIdentityCorrelator。
+ */
+@Slf4j
 @Service
-public class UeIdBinder {
+@ConditionalOnProperty(prefix = "identity", name = "binder", havingValue = "binder", matchIfMissing = true)
+public class UeIdBinder implements UeBinder {
 
-    // ========= Redis key 前缀 =========
+    // ========= 映射 key 前缀（和以前的 Redis key 一样） =========
     private static final String MAP_RAN_UE_KEY_PREFIX         = "ue:map:ran:";         // ngapId -> ueId
     private static final String MAP_RNTI_TYPE_UE_KEY_PREFIX   = "ue:map:rntiType:";    // rntiType -> ueId
 
     // 反向索引：ueId -> ngapId / rntiType（用于判断是否已绑定）
     private static final String UE_IDX_PREFIX = "ue:idx:ue:"; // ue:idx:ue:<ueId>:ran / :rntiType
 
-    private static final Duration REDIS_TTL   = Duration.ofHours(1);
-
-    // pending 缓冲最大等待时间（防止内存增长）
-    private static final Duration PENDING_TTL = Duration.ofSeconds(120); // 调试可改大 / 或加开关
+    public record Stats(int ngapBindings, int rntiBindings, int pending, long expiredPending,
+                        long backendReads, long backendWrites, long droppedWrites) {}
 
-    private final StringRedisTemplate redisTemplate;
-
-    public UeIdBinder(StringRedisTemplate redisTemplate) {
-        this.redisTemplate = redisTemplate;
-    }
+    private final StateBackend.Mappings mappings;   // null = 完全不用后端
+    private final long pendingTtlMs;
+    private final long bindingTtlMs;
+    private final long negativeTtlMs;
+    private final LongSupplier clock;
+    private boolean readThrough;
 
-    // ========= pending：按索引分桶 =========
-    private final Map<String, List<PendingMsg>> pendingByNgapId = new ConcurrentHashMap<>();
-    private final Map<String, List<PendingMsg>> pendingByRntiType = new ConcurrentHashMap<>();
+    // ========= pending：按索引分桶 + 全局按时间排队 =========
+    private final Map<String, ArrayDeque<PendingMsg>> pendingByNgapId = new HashMap<>();
+    private final Map<String, ArrayDeque<PendingMsg>> pendingByRntiType = new HashMap<>();
+    /** 所有缓冲消息按进来的顺序（= 时间顺序）；已经下发的打个标记，弹到时跳过 */
+    private final ArrayDeque<PendingMsg> pendingByTime = new ArrayDeque<>();
+    private int pendingCount;
 
     // ========= 未绑定索引队列（就近原则） =========
-    private final Deque<String> unboundNgapIds = new ConcurrentLinkedDeque<>();
-    private final Deque<String> unboundRntiTypes = new ConcurrentLinkedDeque<>();
+    private final Deque<String> unboundNgapIds = new ArrayDeque<>();
+    private final Deque<String> unboundRntiTypes = new ArrayDeque<>();
 
     // 防重复入队
-    private final Set<String> queuedNgapIds = ConcurrentHashMap.newKeySet();
-    private final Set<String> queuedRntiTypes = ConcurrentHashMap.newKeySet();
+    private final Set<String> queuedNgapIds = new HashSet<>();
+    private final Set<String> queuedRntiTypes = new HashSet<>();
 
     // ========= 未完成绑定的 UE 队列（支持 ueId 先到） =========
-    private final Deque<String> ueWaitNgap = new ConcurrentLinkedDeque<>();
-    private final Deque<String> ueWaitRntiType = new ConcurrentLinkedDeque<>();
-    private final Set<String> queuedUeWaitNgap = ConcurrentHashMap.newKeySet();
-    private final Set<String> queuedUeWaitRnti = ConcurrentHashMap.newKeySet();
+    private final Deque<String> ueWaitNgap = new ArrayDeque<>();
+    private final Deque<String> ueWaitRntiType = new ArrayDeque<>();
+    private final Set<String> queuedUeWaitNgap = new HashSet<>();
+    private final Set<String> queuedUeWaitRnti = new HashSet<>();
+
+    // ========= 绑定关系（以本地为准） =========
+    private final Map<String, Binding> ngapToUe = new HashMap<>();
+    private final Map<String, Binding> rntiTypeToUe = new HashMap<>();
+    private final Map<String, Binding> ueToNgap = new HashMap<>();
+    private final Map<String, Binding> ueToRntiType = new HashMap<>();
+    /** 按绑定时间排队，过了 bindingTtlMs 从队首弹 */
+    private final ArrayDeque<Binding> bindingsByTime = new ArrayDeque<>();
+
+    /** 否定缓存（只在 readThrough 时用）：映射 key -> 到期时间，问过后端也没有的 */
+    private final LinkedHashMap<String, Long> negative;
+
+    // ========= 后端异步副本 =========
+    private final boolean replicate;
+    private final int maxPendingWrites;
+    private List<String[]> writes = new ArrayList<>();      // {key, value}，锁 writes 自己
+    private final Object writesLock = new Object();
+    private ScheduledExecutorService exec;
+
+    private long expiredPending, backendReads, backendWrites, droppedWrites;
+
+    @Autowired
+    public UeIdBinder(StateBackend stateBackend, UeIdBinderProperties props, ProcedureClock clock) {
+        this(stateBackend.mappings(), props.getPendingTtlMs(), props.getBindingTtlMs(), props.isReadThrough(),
+                props.getNegativeTtlMs(), props.getNegativeMaxEntries(),
+                props.isReplicate() ? props.getFlushIntervalMs() : -1, props.getMaxPendingWrites(),
+                clock::now);
+        if (props.isRecoverOnStart()) {
+            try {
+                int n = recover();
+                log.info("Recovered {} ue id bindings from {} state backend", n, stateBackend.name());
+            } catch (RuntimeException e) {
+                // 没恢复成功本地就不是全量了：查不到时还得问后端
+                log.warn("Failed to recover ue id bindings from {} state backend, falling back to read-through",
+                        stateBackend.name(), e);
+                readThrough = true;
+            }
+        }
+    }
 
-    // ========= 本地 cache（加速 lookup） =========
-    private final Map<String, String> ngapToUeCache = new ConcurrentHashMap<>();
-    private final Map<String, String> rntiTypeToUeCache = new ConcurrentHashMap<>();
+    /**
+     * mappings 为 null 时完全不碰后端；flushIntervalMs < 0 不写副本，= 0 不起线程（只在 flush() 时写）。
+     */
+    public UeIdBinder(StateBackend.Mappings mappings, long pendingTtlMs, long bindingTtlMs, boolean readThrough,
+                      long negativeTtlMs, int negativeMaxEntries, long flushIntervalMs, int maxPendingWrites,
+                      LongSupplier clock) {
+        this.mappings = mappings;
+        this.pendingTtlMs = pendingTtlMs;
+        this.bindingTtlMs = bindingTtlMs;
+        this.readThrough = readThrough && mappings != null;
+        this.negativeTtlMs = negativeTtlMs;
+        this.clock = clock;
+        int maxNegative = Math.max(1, negativeMaxEntries);
+        this.negative = new LinkedHashMap<>(256, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxNegative;
+            }
+        };
+        this.replicate = mappings != null && flushIntervalMs >= 0;
+        this.maxPendingWrites = Math.max(1, maxPendingWrites);
+        if (replicate && flushIntervalMs > 0) {
+            exec = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ue-binder-replicator");
+                t.setDaemon(true);
+                return t;
+            });
+            exec.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
 
     // ========= 入口：处理单条消息 =========
-    public void handle(SignalingMessage msg, Consumer<SignalingMessage> downstream) {
-        cleanupExpiredPending();
+    @Override
+    public synchronized void handle(SignalingMessage msg, Consumer<SignalingMessage> downstream) {
+        long now = clock.getAsLong();
+        expirePending(now);
+        expireBindings(now);
 
         String ueId = normalize(msg.getUeId());
         String ngapId = extractRanUeNgapId(msg);
@@ -70,11 +161,12 @@ public class UeIdBinder {
 
         // 2) 仍不能确定 ueId => 缓冲（不进入 downstream）
         if (isEmpty(ueId)) {
-            buffer(msg, ngapId, rntiType);
+            buffer(msg, ngapId, rntiType, now, downstream);
             return;
         }
 
         // 3) 能确定 ueId：先把当前消息补上 ueId
+        PipelineMetrics.BIND_RESOLVED.increment();
         msg.setUeId(ueId);
 
         // 4) 确保这个 ueId 进入 “等待绑定队列”（分别等待 ngap / rnti）
@@ -83,16 +175,16 @@ public class UeIdBinder {
         // 5) 绑定 ngapId（强绑定优先：消息自带 ngapId）
         boolean boundNgapNow = false;
         if (!isEmpty(ngapId) && isNgapUnbound(ngapId) && isUeNgapUnbound(ueId)) {
-            bindNgapIdToUe(ngapId, ueId);
-            flushNgapPending(ngapId, ueId, downstream);
+            bindNgapIdToUe(ngapId, ueId, now);
+            flushNgapPending(ngapId, ueId, now, downstream);
             boundNgapNow = true;
         }
 
         // 6) 绑定 rntiType（强绑定优先：消息自带 rntiType）
         boolean boundRntiNow = false;
         if (!isEmpty(rntiType) && isRntiTypeUnbound(rntiType) && isUeRntiUnbound(ueId)) {
-            bindRntiTypeToUe(rntiType, ueId);
-            flushRntiPending(rntiType, ueId, downstream);
+            bindRntiTypeToUe(rntiType, ueId, now);
+            flushRntiPending(rntiType, ueId, now, downstream);
             boundRntiNow = true;
         }
 
@@ -101,16 +193,16 @@ public class UeIdBinder {
         if (!boundNgapNow && isUeNgapUnbound(ueId)) {
             String candidateNgap = pollFirstReallyUnboundNgap();
             if (candidateNgap != null) {
-                bindNgapIdToUe(candidateNgap, ueId);
-                flushNgapPending(candidateNgap, ueId, downstream);
+                bindNgapIdToUe(candidateNgap, ueId, now);
+                flushNgapPending(candidateNgap, ueId, now, downstream);
             }
         }
 
         if (!boundRntiNow && isUeRntiUnbound(ueId)) {
             String candidateRnti = pollFirstReallyUnboundRntiType();
             if (candidateRnti != null) {
-                bindRntiTypeToUe(candidateRnti, ueId);
-                flushRntiPending(candidateRnti, ueId, downstream);
+                bindRntiTypeToUe(candidateRnti, ueId, now);
+                flushRntiPending(candidateRnti, ueId, now, downstream);
             }
         }
 
@@ -118,44 +210,109 @@ public class UeIdBinder {
         downstream.accept(msg);
     }
 
-    // ========= 缓冲：ueId 未确定时 =========
-    private void buffer(SignalingMessage msg, String ngapId, String rntiType) {
-        long now = System.currentTimeMillis();
+    /** 启动恢复：把后端里两类映射装进本地（存活期从现在算）；返回条数 */
+    public synchronized int recover() {
+        if (mappings == null) return 0;
+        long now = clock.getAsLong();
+        int n = 0;
+        n += recoverPrefix(MAP_RAN_UE_KEY_PREFIX, true, now);
+        n += recoverPrefix(MAP_RNTI_TYPE_UE_KEY_PREFIX, false, now);
+        return n;
+    }
 
+    /** 把攒着的绑定写后端（后台线程定时调；测试 / 关闭时也可以直接调），返回写了几个 key */
+    public int flush() {
+        List<String[]> batch;
+        synchronized (writesLock) {
+            if (writes.isEmpty()) return 0;
+            batch = writes;
+            writes = new ArrayList<>();
+        }
+        try {
+            Map<String, String> entries = new LinkedHashMap<>(batch.size() * 2);
+            for (String[] w : batch) entries.put(w[0], w[1]);
+            mappings.putAll(entries, bindingTtlMs);
+        } catch (RuntimeException e) {
+            // 放回去下次再写（超过上限的丢掉）
+            synchronized (writesLock) {
+                List<String[]> merged = new ArrayList<>(batch);
+                merged.addAll(writes);
+                while (merged.size() > maxPendingWrites) {
+                    merged.remove(merged.size() - 1);
+                    droppedWrites++;
+                }
+                writes = merged;
+            }
+            throw e;
+        }
+        synchronized (writesLock) {
+            backendWrites += batch.size();
+        }
+        return batch.size();
+    }
+
+    @Override
+    public synchronized Stats stats() {
+        synchronized (writesLock) {
+            return new Stats(ngapToUe.size(), rntiTypeToUe.size(), pendingCount, expiredPending,
+                    backendReads, backendWrites, droppedWrites);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (exec != null) {
+            exec.shutdownNow();
+            exec = null;
+        }
+        if (replicate) flushQuietly();
+    }
+
+    // ========= 缓冲：ueId 未确定时 =========
+    private void buffer(SignalingMessage msg, String ngapId, String rntiType, long now,
+                        Consumer<SignalingMessage> downstream) {
         // 优先按 ngapId 缓冲（更稳定）
         if (!isEmpty(ngapId)) {
-            pendingByNgapId.computeIfAbsent(ngapId, k -> Collections.synchronizedList(new ArrayList<>()))
-                    .add(new PendingMsg(msg, now));
+            PipelineMetrics.BIND_BUFFERED.increment();
+            addPending(pendingByNgapId, ngapId, msg, now);
             enqueueNgapOnce(ngapId);
 
-            // 如果 ueId 先到：ngapId 后到，就近绑定到等待 ngap 的 ue
-            tryBindIncomingNgapToWaitingUe(ngapId);
+            // 如果 ueId 先到：ngapId 后到，就近绑定到等待 ngap 的 ue（连刚缓冲的这条一起放出去）
+            tryBindIncomingNgapToWaitingUe(ngapId, now, downstream);
             return;
         }
 
         if (!isEmpty(rntiType)) {
-            pendingByRntiType.computeIfAbsent(rntiType, k -> Collections.synchronizedList(new ArrayList<>()))
-                    .add(new PendingMsg(msg, now));
+            PipelineMetrics.BIND_BUFFERED.increment();
+            addPending(pendingByRntiType, rntiType, msg, now);
             enqueueRntiOnce(rntiType);
 
-            // 如果 ueId 先到：rntiType 后到，就近绑定到等待 rnti 的 ue
-            tryBindIncomingRntiToWaitingUe(rntiType);
+            // 如果 ueId 先到：rntiType 后到，就近绑定到等待 rnti 的 ue（连刚缓冲的这条一起放出去）
+            tryBindIncomingRntiToWaitingUe(rntiType, now, downstream);
             return;
         }
 
         // 两个索引都没有：无法缓冲就近绑定，建议直接丢弃或打日志（这里默认丢弃）
+        PipelineMetrics.BIND_UNINDEXED.increment();
+    }
+
+    private void addPending(Map<String, ArrayDeque<PendingMsg>> byKey, String key, SignalingMessage msg, long now) {
+        PendingMsg p = new PendingMsg(msg, now, byKey, key);
+        byKey.computeIfAbsent(key, k -> new ArrayDeque<>(4)).addLast(p);
+        pendingByTime.addLast(p);
+        pendingCount++;
     }
 
     // ========= ueId 先到：索引后到的反向绑定 =========
-    private void tryBindIncomingNgapToWaitingUe(String ngapId) {
+    private void tryBindIncomingNgapToWaitingUe(String ngapId, long now, Consumer<SignalingMessage> downstream) {
         if (isEmpty(ngapId) || !isNgapUnbound(ngapId)) return;
 
         while (true) {
             String ueId = ueWaitNgap.peekFirst();
             if (ueId == null) return;
 
-            // 若该 ueId 已经绑定了 ngap，就跳过
-            if (!isUeNgapUnbound(ueId)) {
+            // 若该 ueId 已经绑定了 ngap（或绑过、已不在等待集合里的旧条目），就跳过
+            if (!queuedUeWaitNgap.contains(ueId) || !isUeNgapUnbound(ueId)) {
                 ueWaitNgap.pollFirst();
                 queuedUeWaitNgap.remove(ueId);
                 continue;
@@ -164,19 +321,20 @@ public class UeIdBinder {
             // 绑定
             ueWaitNgap.pollFirst();
             queuedUeWaitNgap.remove(ueId);
-            bindNgapIdToUe(ngapId, ueId);
+            bindNgapIdToUe(ngapId, ueId, now);
+            flushNgapPending(ngapId, ueId, now, downstream);
             break;
         }
     }
 
-    private void tryBindIncomingRntiToWaitingUe(String rntiType) {
+    private void tryBindIncomingRntiToWaitingUe(String rntiType, long now, Consumer<SignalingMessage> downstream) {
         if (isEmpty(rntiType) || !isRntiTypeUnbound(rntiType)) return;
 
         while (true) {
             String ueId = ueWaitRntiType.peekFirst();
             if (ueId == null) return;
 
-            if (!isUeRntiUnbound(ueId)) {
+            if (!queuedUeWaitRnti.contains(ueId) || !isUeRntiUnbound(ueId)) {
                 ueWaitRntiType.pollFirst();
                 queuedUeWaitRnti.remove(ueId);
                 continue;
@@ -184,7 +342,8 @@ public class UeIdBinder {
 
             ueWaitRntiType.pollFirst();
             queuedUeWaitRnti.remove(ueId);
-            bindRntiTypeToUe(rntiType, ueId);
+            bindRntiTypeToUe(rntiType, ueId, now);
+            flushRntiPending(rntiType, ueId, now, downstream);
             break;
         }
     }
@@ -201,122 +360,134 @@ public class UeIdBinder {
         }
     }
 
-    // ========= flush：把 pending 消息补 ueId 再下发 =========
-    private void flushNgapPending(String ngapId, String ueId, Consumer<SignalingMessage> downstream) {
-        List<PendingMsg> list = pendingByNgapId.remove(ngapId);
-        if (list == null || list.isEmpty()) return;
-
-        list.sort(Comparator.comparingLong(p -> p.ts));
-        for (PendingMsg p : list) {
-            p.msg.setUeId(ueId);
-            downstream.accept(p.msg);
-        }
-
+    // ========= flush：把 pending 消息补 ueId 再下发（桶里本来就是时间顺序） =========
+    private void flushNgapPending(String ngapId, String ueId, long now, Consumer<SignalingMessage> downstream) {
+        flushPending(pendingByNgapId.remove(ngapId), ueId, now, downstream);
         queuedNgapIds.remove(ngapId);
     }
 
-    private void flushRntiPending(String rntiType, String ueId, Consumer<SignalingMessage> downstream) {
-        List<PendingMsg> list = pendingByRntiType.remove(rntiType);
-        if (list == null || list.isEmpty()) return;
+    private void flushRntiPending(String rntiType, String ueId, long now, Consumer<SignalingMessage> downstream) {
+        flushPending(pendingByRntiType.remove(rntiType), ueId, now, downstream);
+        queuedRntiTypes.remove(rntiType);
+    }
 
-        list.sort(Comparator.comparingLong(p -> p.ts));
+    private void flushPending(ArrayDeque<PendingMsg> list, String ueId, long now, Consumer<SignalingMessage> downstream) {
+        if (list == null) return;
         for (PendingMsg p : list) {
+            p.done = true;
+            pendingCount--;
+            PipelineMetrics.BIND_WAIT.record(Math.max(0, now - p.ts), TimeUnit.MILLISECONDS);
             p.msg.setUeId(ueId);
             downstream.accept(p.msg);
         }
-
-        queuedRntiTypes.remove(rntiType);
     }
 
-    // ========= bind：写 Redis + cache + 反向索引 =========
-    private void bindNgapIdToUe(String ngapId, String ueId) {
+    // ========= bind：本地正反索引 + 异步写后端 =========
+    private void bindNgapIdToUe(String ngapId, String ueId, long now) {
         if (isEmpty(ngapId) || isEmpty(ueId)) return;
 
-        ngapToUeCache.put(ngapId, ueId);
-
-        redisTemplate.opsForValue().set(redisKeyForRanMap(ngapId), ueId, REDIS_TTL);
-        redisTemplate.opsForValue().set(redisKeyForUeRanIdx(ueId), ngapId, REDIS_TTL);
+        install(true, ngapId, ueId, now);
+        enqueueWrite(redisKeyForRanMap(ngapId), ueId);
+        enqueueWrite(redisKeyForUeRanIdx(ueId), ngapId);
 
         queuedNgapIds.remove(ngapId);
         // 该 UE 不再等待 ngap
         queuedUeWaitNgap.remove(ueId);
     }
 
-    private void bindRntiTypeToUe(String rntiType, String ueId) {
+    private void bindRntiTypeToUe(String rntiType, String ueId, long now) {
         if (isEmpty(rntiType) || isEmpty(ueId)) return;
 
-        rntiTypeToUeCache.put(rntiType, ueId);
-
-        redisTemplate.opsForValue().set(redisKeyForRntiTypeMap(rntiType), ueId, REDIS_TTL);
-        redisTemplate.opsForValue().set(redisKeyForUeRntiIdx(ueId), rntiType, REDIS_TTL);
+        install(false, rntiType, ueId, now);
+        enqueueWrite(redisKeyForRntiTypeMap(rntiType), ueId);
+        enqueueWrite(redisKeyForUeRntiIdx(ueId), rntiType);
 
         queuedRntiTypes.remove(rntiType);
         // 该 UE 不再等待 rnti
         queuedUeWaitRnti.remove(ueId);
     }
 
-    // ========= lookup：优先 cache，其次 Redis =========
+    private void install(boolean ngap, String id, String ueId, long now) {
+        Binding b = new Binding(ngap, id, ueId, now);
+        (ngap ? ngapToUe : rntiTypeToUe).put(id, b);
+        (ngap ? ueToNgap : ueToRntiType).put(ueId, b);
+        bindingsByTime.addLast(b);
+        if (readThrough && !negative.isEmpty()) {
+            negative.remove(ngap ? redisKeyForRanMap(id) : redisKeyForRntiTypeMap(id));
+            negative.remove(ngap ? redisKeyForUeRanIdx(ueId) : redisKeyForUeRntiIdx(ueId));
+        }
+    }
+
+    // ========= lookup：本地为准，readThrough 时才问后端 =========
     private String lookupUeIdByNgapId(String ngapId) {
         if (isEmpty(ngapId)) return null;
+        Binding b = ngapToUe.get(ngapId);
+        if (b != null) return b.ueId;
 
-        String v = ngapToUeCache.get(ngapId);
-        if (!isEmpty(v)) return v;
-
-        v = redisTemplate.opsForValue().get(redisKeyForRanMap(ngapId));
-        if (!isEmpty(v)) ngapToUeCache.put(ngapId, v);
-        return normalize(v);
+        String v = remoteGet(redisKeyForRanMap(ngapId));
+        if (v != null) install(true, ngapId, v, clock.getAsLong());
+        return v;
     }
 
     private String lookupUeIdByRntiType(String rntiType) {
         if (isEmpty(rntiType)) return null;
+        Binding b = rntiTypeToUe.get(rntiType);
+        if (b != null) return b.ueId;
 
-        String v = rntiTypeToUeCache.get(rntiType);
-        if (!isEmpty(v)) return v;
-
-        v = redisTemplate.opsForValue().get(redisKeyForRntiTypeMap(rntiType));
-        if (!isEmpty(v)) rntiTypeToUeCache.put(rntiType, v);
-        return normalize(v);
+        String v = remoteGet(redisKeyForRntiTypeMap(rntiType));
+        if (v != null) install(false, rntiType, v, clock.getAsLong());
+        return v;
     }
 
-    // ========= “是否已绑定”判定（关键：用反向索引判断 ueId） =========
+    // ========= “是否已绑定”判定（用反向索引判断 ueId） =========
     private boolean isUeNgapUnbound(String ueId) {
         if (isEmpty(ueId)) return false;
-        String v = redisTemplate.opsForValue().get(redisKeyForUeRanIdx(ueId));
-        return isEmpty(v);
+        if (ueToNgap.containsKey(ueId)) return false;
+
+        String ngapId = remoteGet(redisKeyForUeRanIdx(ueId));
+        if (ngapId == null) return true;
+        install(true, ngapId, ueId, clock.getAsLong());
+        return false;
     }
 
     private boolean isUeRntiUnbound(String ueId) {
         if (isEmpty(ueId)) return false;
-        String v = redisTemplate.opsForValue().get(redisKeyForUeRntiIdx(ueId));
-        return isEmpty(v);
+        if (ueToRntiType.containsKey(ueId)) return false;
+
+        String rntiType = remoteGet(redisKeyForUeRntiIdx(ueId));
+        if (rntiType == null) return true;
+        install(false, rntiType, ueId, clock.getAsLong());
+        return false;
     }
 
     private boolean isNgapUnbound(String ngapId) {
         if (isEmpty(ngapId)) return false;
-
-        String c = ngapToUeCache.get(ngapId);
-        if (!isEmpty(c)) return false;
-
-        String v = redisTemplate.opsForValue().get(redisKeyForRanMap(ngapId));
-        if (!isEmpty(v)) {
-            ngapToUeCache.put(ngapId, v);
-            return false;
-        }
-        return true;
+        return lookupUeIdByNgapId(ngapId) == null;
     }
 
     private boolean isRntiTypeUnbound(String rntiType) {
         if (isEmpty(rntiType)) return false;
+        return lookupUeIdByRntiType(rntiType) == null;
+    }
 
-        String c = rntiTypeToUeCache.get(rntiType);
-        if (!isEmpty(c)) return false;
-
-        String v = redisTemplate.opsForValue().get(redisKeyForRntiTypeMap(rntiType));
-        if (!isEmpty(v)) {
-            rntiTypeToUeCache.put(rntiType, v);
-            return false;
+    /** readThrough 时本地没有才来：先看否定缓存，问过没有的 negativeTtlMs 内直接返回 null */
+    private String remoteGet(String key) {
+        if (!readThrough) return null;
+        long now = clock.getAsLong();
+        Long until = negative.get(key);
+        if (until != null && until > now) return null;
+
+        backendReads++;
+        String v;
+        try {
+            v = normalize(mappings.get(key));
+        } catch (RuntimeException e) {
+            log.debug("State backend read failed for {}", key, e);
+            v = null;
         }
-        return true;
+        if (v == null) negative.put(key, now + negativeTtlMs);
+        else negative.remove(key);
+        return v;
     }
 
     // ========= “就近队首”获取：跳过已绑定的脏数据 =========
@@ -352,29 +523,67 @@ public class UeIdBinder {
         }
     }
 
-    // ========= pending 清理 =========
-    private void cleanupExpiredPending() {
-        long now = System.currentTimeMillis();
-        long expireBefore = now - PENDING_TTL.toMillis();
-        cleanupMap(pendingByNgapId, expireBefore);
-        cleanupMap(pendingByRntiType, expireBefore);
+    // ========= 过期：都只看队首 =========
+    private void expirePending(long now) {
+        long expireBefore = now - pendingTtlMs;
+        PendingMsg p;
+        while ((p = pendingByTime.peekFirst()) != null && (p.done || p.ts < expireBefore)) {
+            pendingByTime.pollFirst();
+            if (p.done) continue;
+            // 桶里也是时间顺序，过期的一定在桶头
+            ArrayDeque<PendingMsg> bucket = p.bucketMap.get(p.key);
+            if (bucket != null) {
+                bucket.pollFirst();
+                if (bucket.isEmpty()) p.bucketMap.remove(p.key);
+            }
+            pendingCount--;
+            expiredPending++;
+        }
     }
 
-    private void cleanupMap(Map<String, List<PendingMsg>> map, long expireBefore) {
-        for (Iterator<Map.Entry<String, List<PendingMsg>>> it = map.entrySet().iterator(); it.hasNext(); ) {
-            Map.Entry<String, List<PendingMsg>> e = it.next();
-            List<PendingMsg> list = e.getValue();
-            if (list == null || list.isEmpty()) {
-                it.remove();
-                continue;
-            }
-            synchronized (list) {
-                list.removeIf(p -> p.ts < expireBefore);
+    private void expireBindings(long now) {
+        if (bindingTtlMs <= 0) return;
+        long expireBefore = now - bindingTtlMs;
+        Binding b;
+        while ((b = bindingsByTime.peekFirst()) != null && b.boundAt < expireBefore) {
+            bindingsByTime.pollFirst();
+            // 已经被新的绑定顶掉的不动
+            (b.ngap ? ngapToUe : rntiTypeToUe).remove(b.id, b);
+            (b.ngap ? ueToNgap : ueToRntiType).remove(b.ueId, b);
+        }
+    }
+
+    // ========= 后端副本 =========
+    private void enqueueWrite(String key, String value) {
+        if (!replicate) return;
+        synchronized (writesLock) {
+            if (writes.size() >= maxPendingWrites) {
+                droppedWrites++;
+                return;
             }
-            if (list.isEmpty()) it.remove();
+            writes.add(new String[]{key, value});
         }
     }
 
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Failed to replicate ue id bindings to state backend", e);
+        }
+    }
+
+    private int recoverPrefix(String prefix, boolean ngap, long now) {
+        int[] n = {0};
+        mappings.forEach(prefix, (key, value) -> {
+            String ueId = normalize(value);
+            if (ueId == null) return;
+            install(ngap, key.substring(prefix.length()), ueId, now);
+            n[0]++;
+        });
+        return n[0];
+    }
+
     // ========= 抽取字段（你按你真实结构微调） =========
     private String extractRanUeNgapId(SignalingMessage msg) {
         if (msg == null) return null;
@@ -424,9 +633,29 @@ public class UeIdBinder {
     private static class PendingMsg {
         final SignalingMessage msg;
         final long ts;
-        PendingMsg(SignalingMessage msg, long ts) {
+        final Map<String, ArrayDeque<PendingMsg>> bucketMap;
+        final String key;
+        boolean done;       // 已经随绑定下发
+
+        PendingMsg(SignalingMessage msg, long ts, Map<String, ArrayDeque<PendingMsg>> bucketMap, String key) {
             this.msg = msg;
             this.ts = ts;
+            this.bucketMap = bucketMap;
+            this.key = key;
+        }
+    }
+
+    private static final class Binding {
+        final boolean ngap;         // true: ngapId，false: rntiType
+        final String id;
+        final String ueId;
+        final long boundAt;
+
+        Binding(boolean ngap, String id, String ueId, long boundAt) {
+            this.ngap = ngap;
+            this.id = id;
+            this.ueId = ueId;
+            this.boundAt = boundAt;
         }
     }
 }
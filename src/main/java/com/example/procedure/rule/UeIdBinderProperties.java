@@ -0,0 +1,35 @@
+package com.example.procedure.rule;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "ue-binder")
+public class UeIdBinderProperties {
+
+    /** 等 ueId 的缓冲消息最多留多久 */
+    private long pendingTtlMs = 120_000;
+
+    /** 绑定关系存活时间（和 Redis key 的 TTL 一样，从绑定时算） */
+    private long bindingTtlMs = 3_600_000;
+
+    /** 启动时从 Redis 读回绑定关系；读成功后本地就是全量，查不到就是没绑定，不再问 Redis */
+    private boolean recoverOnStart = true;
+
+    /**
+     * 本地查不到时再问一次 Redis（多实例共享绑定时用）。恢复失败也会自动打开。
+     * 问过没有的 ID 记进否定缓存，negativeTtlMs 内不再问。
+     */
+    private boolean readThrough = false;
+    private long negativeTtlMs = 1_000;
+    private int negativeMaxEntries = 100_000;
+
+    /** 绑定关系异步写 Redis（只给重启恢复用）；false 完全不写 */
+    private boolean replicate = true;
+    private long flushIntervalMs = 50;
+    private int maxPendingWrites = 100_000;
+}
@@ -111,6 +111,11 @@ public final class XnHandoverPhases {
         m.put(normalize(msgType), loc);
     }
 
+    /** 表里登记过的 msgType（标准化后的），ProcedureAutomaton 启动时按这些预编译 */
+    static Set<String> messageTypes() {
+        return LOCATIONS.keySet();
+    }
+
     /**
      * locate：返回 msgType 对应的阶段位置；找不到返回 null
      */
@@ -1,16 +1,20 @@
 package com.example.procedure.service;
 
+import com.example.procedure.clock.ProcedureClock;
 import com.example.procedure.flow.*;
+import com.example.procedure.metrics.PipelineMetrics;
 import com.example.procedure.model.*;
+import com.example.procedure.rule.MsgTypeCodes;
 import com.example.procedure.rule.ProcedureCloseDecider;
 import com.example.procedure.rule.ProcedureRule;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @RequiredArgsConstructor
@@ -18,6 +22,7 @@ public class ProClassify_Service {
 
     private final ProManager_Service proManagerService;
     private final FlowRegistry flowRegistry;
+    private final ProcedureClock clock;
 
     private static final DateTimeFormatter FORMATTER =
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
@@ -29,25 +34,39 @@ public class ProClassify_Service {
      * 对一条信令做流程识别 & 更新流程上下文
      */
     public ProcedureMatchResult handleMessage(SignalingMessage msg) {
+        long t0 = System.nanoTime();
+        ProcedureMatchResult r = classify(msg);
+        PipelineMetrics.CLASSIFY.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+        if (r.getStatus() == 0) {
+            if (r.isNewProcedure()) PipelineMetrics.flowCreated(r.getProcedureType());
+            else PipelineMetrics.flowHit(r.getProcedureType());
+        }
+        return r;
+    }
+
+    private ProcedureMatchResult classify(SignalingMessage msg) {
         if (msg == null || msg.getUeId() == null) {
             return ProcedureMatchResult.error("msg or ueId is null");
         }
 
         String ueId = msg.getUeId();
         String msgType = msg.getMsgType();
-        long nowMs = System.currentTimeMillis();
+        // 这条消息的时间：在线是墙钟；回放（procedure.clock.mode=event）是报文时间戳，
+        // 时钟往前走时到期的流程先被关掉，再参与匹配
+        long nowMs = clock.observe(msg.getTimestamp());
 
         List<Procedure> activeList = proManagerService.listActiveProcedures(ueId);
         FlowContext ctx = new FlowContext(proManagerService, new ProcedureCloseDecider());
 
-        // 把你现有 scoreProcedure 作为 scorer 注入
-        ScoreScorer scorer = this::scoreProcedure;
+        // 解析器已经给了 MsgCode 的直接查数组；打分时全是数组下标（见 ProcedureAutomaton）
+        int msgCode = MsgTypeCodes.of(msg);
+        ScoreScorer scorer = (p, ts, m) -> scoreProcedure(p, ts, m, msgCode);
 
         // ===== A) 触发器优先通道：按 registry 顺序匹配（IA 优先于 XHO）=====
         for (FlowHandler h : flowRegistry.handlers()) {
             if (!h.isTrigger(msg)) continue;
 
-            ProcedureScoreResult best = h.chooseBest(activeList, msg, scorer);
+            ProcedureScoreResult best = h.chooseBest(activeList, msg, nowMs, scorer);
 
             if (best != null && best.getScore() != null && best.getScore().getScore() >= h.mergeThreshold()) {
                 h.applyUpdate(ueId, best.getProcedure(), best.getScore(), msg, nowMs, ctx);
@@ -78,7 +97,7 @@ public class ProClassify_Service {
         }
 
         // ===== C) 通用 best：所有 active 竞争 =====
-        ProcedureScoreResult bestAll = chooseBestAll(activeList, msg, scorer);
+        ProcedureScoreResult bestAll = chooseBestAll(activeList, msg, nowMs, scorer);
         if (bestAll == null) {
             var created = proManagerService.add_ActProcedure(ueId, ProcedureTypeEnum.UNKNOWN, msgType);
             if (created == null || (int) created.getOrDefault("status", 1) != 0) {
@@ -111,8 +130,8 @@ public class ProClassify_Service {
 
     }
 
-    private ProcedureScoreResult chooseBestAll(List<Procedure> activeList, SignalingMessage msg, ScoreScorer scorer) {
-        long msgTs = System.currentTimeMillis();
+    private ProcedureScoreResult chooseBestAll(List<Procedure> activeList, SignalingMessage msg, long msgTs,
+                                               ScoreScorer scorer) {
         int best = Integer.MIN_VALUE;
         Procedure bestProc = null;
         Score bestScore = null;
@@ -129,20 +148,17 @@ public class ProClassify_Service {
         return new ProcedureScoreResult(bestProc, bestScore);
     }
 
-    private Score scoreProcedure(Procedure proc, long msgTs, SignalingMessage msg) {
+    private Score scoreProcedure(Procedure proc, long msgTs, SignalingMessage msg, int msgCode) {
         ProcedureTypeEnum typeEnum = ProcedureTypeEnum.fromCode(proc.getProcedureTypeCode());
 
-        ProcedureRule rule = null;
-        // 让 IA / XHO 都走 rule（你后续会在 ProcedureRule 里补 XHO 的 scoreForProcedure）
-        if (typeEnum == ProcedureTypeEnum.INITIAL_ACCESS || typeEnum == ProcedureTypeEnum.XN_HANDOVER) {
-            rule = new ProcedureRule(typeEnum, 60_000L);
-        }
+        // 让 IA / XHO 都走 rule（共用的无状态实例，其他类型为 null）
+        ProcedureRule rule = ProcedureRule.forType(typeEnum);
 
         int score = 0;
         Score score1 = new Score(0, -1, -1);
 
         if (rule != null) {
-            Score score2 = rule.scoreForProcedure(proc, msg);
+            Score score2 = rule.score(proc, msgCode);
             score1.setScore(score2.getScore());
             score1.setPhaseIndex(score2.getPhaseIndex());
             score1.setOrderIndex(score2.getOrderIndex());
@@ -151,7 +167,9 @@ public class ProClassify_Service {
             if (typeEnum == ProcedureTypeEnum.UNKNOWN) score += 5;
         }
 
-        long lastUpdateMillis = parseTimeMillis(proc.getLastUpdateTime());
+        long lastUpdateMillis = proc.getLastUpdateMs() != 0L
+                ? proc.getLastUpdateMs()
+                : parseTimeMillis(proc.getLastUpdateTime());     // 升级前建的流程没有 ms 字段
         long diff = Math.abs(msgTs - lastUpdateMillis);
 
         if (diff <= 1_000L) score += 10;
@@ -181,8 +199,9 @@ public class ProClassify_Service {
     private long parseTimeMillis(String timeStr) {
         if (timeStr == null) return 0L;
         try {
+            // 时间串是按本地时区写的（ProManager_Service），不能当 UTC 解析
             LocalDateTime dt = LocalDateTime.parse(timeStr, FORMATTER);
-            return dt.toInstant(ZoneOffset.UTC).toEpochMilli();
+            return dt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
         } catch (Exception e) {
             return 0L;
         }
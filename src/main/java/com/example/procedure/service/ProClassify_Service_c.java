@@ -47,7 +47,7 @@ public class ProClassify_Service_c {
         for (FlowHandler h : flowRegistry.handlers()) {
             if (!h.isTrigger(msg)) continue;
 
-            ProcedureScoreResult best = h.chooseBest(activeList, msg, scorer);
+            ProcedureScoreResult best = h.chooseBest(activeList, msg, nowMs, scorer);
 
             if (best != null && best.getScore() != null && best.getScore().getScore() >= h.mergeThreshold()) {
                 h.applyUpdate(ueId, best.getProcedure(), best.getScore(), msg, nowMs, ctx);
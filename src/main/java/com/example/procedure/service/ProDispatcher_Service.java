@@ -25,7 +25,7 @@ public class ProDispatcher_Service {
                          String procedureId,
                          String procedureType){
         // DEMO：目前先只打一个日志，确认调度信息是否正确
-        log.info("Dispatch msg. ueId={}, msgType={}, category={}, procedureType={}, procedureId={}",
+        log.debug("Dispatch msg. ueId={}, msgType={}, category={}, procedureType={}, procedureId={}",
                 msg.getUeId(), msg.getMsgType(), category, procedureType, procedureId);
 
         // 仅作为示例：对 IA 流程驱动信令，顺带更新一下 UE 上下文
@@ -1,81 +1,59 @@
 package com.example.procedure.service;
 
+import com.example.procedure.archive.ProcedureArchiveWriter;
+import com.example.procedure.clock.ProcedureClock;
+import com.example.procedure.expiry.ProcedureExpiry;
+import com.example.procedure.id.IdGenerator;
+import com.example.procedure.metrics.PipelineMetrics;
 import com.example.procedure.model.Procedure;
 import com.example.procedure.model.ProcedureTypeEnum;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
+import com.example.procedure.store.ProcedureStore;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessException;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
+/**
+ * 活跃流程管理：建、改、结束归档。数据放哪（内存为主 / Redis 为主）由 ProcedureStore 决定，
+ * 见 procedure.store.mode。没等到下一条消息就该收尾的流程（END 宽限期、空闲、超龄）由 ProcedureExpiry 到点来关。
+ */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class ProManager_Service {
 
-    /** Redis 中流程 Hash 的 TTL（秒），这里是 1 小时 */
-    private static final long REDIS_TTL_SECONDS = 3600L;
-
-    /** 归档文件（JSONL），一行一个流程记录 */
-    private static final String ARCHIVE_FILE = "data/procedure_history.jsonl";
-
     /** 时间格式 */
     private static final DateTimeFormatter FORMATTER =
             DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
-    /** Redis key 前缀（可统一管理） */
-    private static final String PREFIX_PROCEDURE_HASH = "procedure:hash:";
-    private static final String PREFIX_UE_SET = "procedure:set:ue:";
-    private static final String PREFIX_SEQ = "procedure:seq:";
-
-    private final StringRedisTemplate redisTemplate;
-    private final ObjectMapper objectMapper;
-
-    // -------------------- Redis key helper --------------------
-    private String redisKeyForProcedure(String procedureId) {
-        return PREFIX_PROCEDURE_HASH + procedureId;
-    }
-
-    private String redisKeyForUeSet(String ueId) {
-        return PREFIX_UE_SET + ueId;
+    private final ProcedureStore store;
+    private final IdGenerator idGenerator;
+    private final ProcedureArchiveWriter archiveWriter;
+    private final ProcedureExpiry expiry;
+    /** 流程的 activate / lastUpdate / end 时间：在线墙钟，回放报文时间 */
+    private final ProcedureClock clock;
+
+    public ProManager_Service(ProcedureStore store, IdGenerator idGenerator,
+                              ProcedureArchiveWriter archiveWriter, ProcedureExpiry expiry, ProcedureClock clock) {
+        this.store = store;
+        this.idGenerator = idGenerator;
+        this.archiveWriter = archiveWriter;
+        this.expiry = expiry;
+        this.clock = clock;
+        expiry.start(this::expire);
     }
 
-    private String redisKeyForSeq(String ueId, String code) {
-        return PREFIX_SEQ + ueId + ":" + code;
-    }
     // -------------------- ID 生成 --------------------
 
     /**
-     * 生成唯一的 procedureId： ueId-code-seq-random6
+     * 生成唯一的 procedureId： ueId-code-id（id 是本地生成的 13 位时间序 ID，见 IdGenerator）
      */
     private String gen_ProcedureId(String ueId, String code) {
-        String seqKey = redisKeyForSeq(ueId, code);
-
-        Long seq = redisTemplate.opsForValue().increment(seqKey);
-        if (seq == null) {
-            // 理论上不会为 null，保险起见兜底
-            seq = 1L;
-        }
-        // 序列过期时间为 7 天
-        redisTemplate.expire(seqKey, 7, TimeUnit.DAYS);
-        // 截取 UUID 去掉 '-' 后的前 6 个字符，作为随机后缀
-        String random = UUID.randomUUID()
-                .toString()
-                .replace("-", "")
-                .substring(0, 6);
-
-        return ueId + "-" + code + "-" + seq + "-" + random;
-
+        return ueId + "-" + code + "-" + idGenerator.nextString();
     }
 
     // -------------------- 对外接口：活跃流程管理 --------------------
@@ -86,8 +64,10 @@ public class ProManager_Service {
     public Map<String, Object> add_ActProcedure(String ueId,
                                                 ProcedureTypeEnum typeEnum,
                                                 String msgType) {
+        long nowMs = clock.now();
+        String now = format(nowMs);
+
         String procedureId = gen_ProcedureId(ueId, typeEnum.getCode());
-        String now = LocalDateTime.now().format(FORMATTER);
 
         Procedure procedure = new Procedure();
         procedure.setProcedureId(procedureId);
@@ -100,39 +80,21 @@ public class ProManager_Service {
         procedure.setLastMessageType(msgType);
         procedure.setActivateTime(now);
         procedure.setLastUpdateTime(now);
+        procedure.setActivateMs(nowMs);
+        procedure.setLastUpdateMs(nowMs);
         procedure.setMessageNum(1);
         // add_ActProcedure 里删掉这两行（或设置为 -1）
         procedure.setLastPhaseIndex(-1);
         procedure.setLastOrderIndex(-1);
 
-
         try {
-            // Procedure -> Map<String, Object>
-            Map<String, Object> mapObj = objectMapper.convertValue(procedure, Map.class);
-
-            // ⚡ 强制把所有 value 转成 String
-            Map<String, String> mapStr = mapObj.entrySet()
-                    .stream()
-                    .collect(Collectors.toMap(
-                            Map.Entry::getKey,
-                            e -> String.valueOf(e.getValue()),
-                            (v1, v2) -> v1   // key 冲突时保留第一个
-                    ));
-
-            String procKey = redisKeyForProcedure(procedureId);
-            String ueKey = redisKeyForUeSet(ueId);
-
-            // 写入流程 Hash
-            redisTemplate.opsForHash().putAll(procKey, mapStr);
-            redisTemplate.expire(procKey, REDIS_TTL_SECONDS, TimeUnit.SECONDS);
-            // 将流程 ID 加入 UE 的 Set
-            redisTemplate.opsForSet().add(ueKey, procedureId);
-            redisTemplate.expire(ueKey, REDIS_TTL_SECONDS, TimeUnit.SECONDS);
+            store.add(procedure);
         } catch (IllegalArgumentException | DataAccessException e) {
             log.error("Failed to add active procedure. ueId={}, code={}, msgType={}",
                     ueId, typeEnum.getCode(), msgType, e);
             return Map.of("status", 1, "msg", e.getMessage());
         }
+        expiry.track(ueId, procedureId);
 
         return Map.of(
                 "status", 0,
@@ -158,23 +120,7 @@ public class ProManager_Service {
      * 方便后续“流程判别”模块使用
      */
     public List<Procedure> listActiveProcedures(String ueId) {
-        Set<String> procedureIds = redisTemplate.opsForSet().members(redisKeyForUeSet(ueId));
-        if (procedureIds == null || procedureIds.isEmpty()) {
-            return Collections.emptyList();
-        }
-
-        List<Procedure> result = new ArrayList<>();
-        for (String pid : procedureIds) {
-            Map<Object, Object> data =
-                    redisTemplate.opsForHash().entries(redisKeyForProcedure(pid));
-            if (data == null || data.isEmpty()) {
-                continue;
-            }
-            // Redis Hash -> Procedure
-            Procedure p = objectMapper.convertValue(data, Procedure.class);
-            result.add(p);
-        }
-        return result;
+        return store.list(ueId);
     }
 
     /**
@@ -186,30 +132,7 @@ public class ProManager_Service {
                                                    int lastPhaseIndex,
                                                    int lastOrderIndex
     ) {
-        String key = redisKeyForProcedure(procedureId);
-        Boolean exists = redisTemplate.hasKey(key);
-        if (exists == null || !exists) {
-            return Map.of("status", 1, "msg", "procedure not found");
-        }
-
-        String now = LocalDateTime.now().format(FORMATTER);
-        // 更新 Hash 字段
-        redisTemplate.opsForHash().put(key, "lastMessageType", msgType);
-        redisTemplate.opsForHash().put(key, "lastUpdateTime", now);
-        // 这里一定要转成 String，因为 StringRedisTemplate 的 hashValueSerializer 是 StringRedisSerializer
-        redisTemplate.opsForHash().put(key, "lastPhaseIndex", String.valueOf(lastPhaseIndex));
-        redisTemplate.opsForHash().put(key, "lastOrderIndex", String.valueOf(lastOrderIndex));
-        redisTemplate.opsForHash().increment(key, "messageNum", 1);
-
-        // 刷新流程本身和 UE 集合的 TTL（滑动过期）
-        redisTemplate.expire(key, REDIS_TTL_SECONDS, TimeUnit.SECONDS);
-        redisTemplate.expire(redisKeyForUeSet(ueId), REDIS_TTL_SECONDS, TimeUnit.SECONDS);
-
-
-        return Map.of(
-                "status", 0,
-                "procedureId", procedureId,
-                "lastUpdateTime", now);
+        return update(ueId, procedureId, msgType, lastPhaseIndex, lastOrderIndex, null, 0L, 0);
     }
 
     public Map<String, Object> update_ActProcedureEx(String ueId,
@@ -220,59 +143,56 @@ public class ProManager_Service {
                                                      boolean endSeen,
                                                      long endSeenAtMs,
                                                      int keyMask) {
-        String key = redisKeyForProcedure(procedureId);
-        Boolean exists = redisTemplate.hasKey(key);
-        if (exists == null || !exists) {
+        return update(ueId, procedureId, msgType, lastPhaseIndex, lastOrderIndex, endSeen, endSeenAtMs, keyMask);
+    }
+
+    /** endSeen 为 null 时不动乱序结束控制的三个字段（update_ActProcedure） */
+    private Map<String, Object> update(String ueId, String procedureId, String msgType,
+                                       int lastPhaseIndex, int lastOrderIndex,
+                                       Boolean endSeen, long endSeenAtMs, int keyMask) {
+        long nowMs = clock.now();
+        String now = format(nowMs);
+        boolean updated = store.update(ueId, procedureId, new ProcedureStore.Update(msgType, now, nowMs,
+                lastPhaseIndex, lastOrderIndex, endSeen, endSeenAtMs, keyMask));
+        if (!updated) {
             return Map.of("status", 1, "msg", "procedure not found");
         }
-
-        String now = LocalDateTime.now().format(FORMATTER);
-
-        redisTemplate.opsForHash().put(key, "lastMessageType", msgType);
-        redisTemplate.opsForHash().put(key, "lastUpdateTime", now);
-        redisTemplate.opsForHash().put(key, "lastPhaseIndex", String.valueOf(lastPhaseIndex));
-        redisTemplate.opsForHash().put(key, "lastOrderIndex", String.valueOf(lastOrderIndex));
-        redisTemplate.opsForHash().increment(key, "messageNum", 1);
-
-        // ===== 新增字段持久化（乱序结束控制）=====
-        redisTemplate.opsForHash().put(key, "endSeen", String.valueOf(endSeen));
-        redisTemplate.opsForHash().put(key, "endSeenAtMs", String.valueOf(endSeenAtMs));
-        redisTemplate.opsForHash().put(key, "keyMask", String.valueOf(keyMask));
-
-        redisTemplate.expire(key, REDIS_TTL_SECONDS, TimeUnit.SECONDS);
-        redisTemplate.expire(redisKeyForUeSet(ueId), REDIS_TTL_SECONDS, TimeUnit.SECONDS);
-
+        expiry.touch(ueId, procedureId, Boolean.TRUE.equals(endSeen));
         return Map.of("status", 0, "procedureId", procedureId, "lastUpdateTime", now);
     }
 
 
     /**
-     * 结束流程（归档到文件，并从 Redis 删除）
+     * 结束流程（归档到文件，并从活跃流程里删除）
      */
     public Map<String, Object> end_Procedure(String ueId, String procedureId) {
-        String key = redisKeyForProcedure(procedureId);
-        Map<Object, Object> procedureMap = redisTemplate.opsForHash().entries(key);
-        if (procedureMap == null || procedureMap.isEmpty()) {
+        return close(ueId, procedureId, "flow");
+    }
+
+    /** reason 只用来打指标：flow = FlowHandler 判定结束，其它是 ProcedureExpiry.Reason */
+    private Map<String, Object> close(String ueId, String procedureId, String reason) {
+        Procedure procedure = store.get(ueId, procedureId);
+        if (procedure == null) {
+            expiry.forget(procedureId);
             return Map.of("status", 1, "msg", "procedure not found");
         }
-        // Map -> Procedure
-        Procedure procedure = objectMapper.convertValue(procedureMap, Procedure.class);
-        procedure.setEndTime(LocalDateTime.now().format(FORMATTER));
-
-        // 确保归档目录存在
-        ensureArchiveDirExists();
-
-        // 写 JSONL 文件
-        try (FileWriter writer = new FileWriter(ARCHIVE_FILE, true)) {
-            writer.write(objectMapper.writeValueAsString(procedure));
-            writer.write("\n");
-        } catch (IOException e) {
-            log.error("Failed to archive procedure. ueId={}, procedureId={}", ueId, procedureId, e);
-            return Map.of("status", 1, "msg", e.getMessage());
+        // 先删再归档：消息线程的 end_Procedure 和到期线程的 expire 可能同时关同一个流程，只有真删掉的那个归档
+        if (!store.remove(ueId, procedureId)) {
+            expiry.forget(procedureId);
+            return Map.of("status", 1, "msg", "procedure not found");
+        }
+        procedure.setEndTime(format(clock.now()));
+
+        // 交给后台归档线程（JSONL 段文件），这里不碰文件
+        if (!archiveWriter.append(procedure)) {
+            // 队列满了：放回活跃表，下次结束 / 到期时再归档（放回之前这一小段里来的更新会找不到流程）
+            procedure.setEndTime(null);
+            store.add(procedure);
+            log.warn("Archive queue full, procedure kept active. ueId={}, procedureId={}", ueId, procedureId);
+            return Map.of("status", 1, "msg", "archive queue full");
         }
-        // 从 Redis 中删除流程 & UE 的 Set 中移除
-        redisTemplate.delete(key);
-        redisTemplate.opsForSet().remove(redisKeyForUeSet(ueId), procedureId);
+        expiry.forget(procedureId);
+        PipelineMetrics.procedureClosed(procedure.getProcedureTypeCode(), reason);
 
         return Map.of(
                 "status", 0,
@@ -281,18 +201,19 @@ public class ProManager_Service {
         );
     }
 
-    // -------------------- 内部辅助方法 --------------------
+    /** epoch ms -> "yyyy-MM-dd HH:mm:ss"（本地时区），和 ms 字段是同一个时间 */
+    private static String format(long ms) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(ms), ZoneId.systemDefault()).format(FORMATTER);
+    }
 
-    private void ensureArchiveDirExists() {
-        File file = new File(ARCHIVE_FILE);
-        File parent = file.getParentFile();
-        if (parent != null && !parent.exists()) {
-            boolean ok = parent.mkdirs();
-            if (!ok) {
-                log.warn("Failed to create archive directory: {}", parent.getAbsolutePath());
-            }
+    /** ProcedureExpiry 到期回调：和正常结束一样归档；已经不在了也算关掉，归档队列满了下次再试 */
+    private boolean expire(String ueId, String procedureId, ProcedureExpiry.Reason reason) {
+        Map<String, Object> r = close(ueId, procedureId, reason.name());
+        if (Integer.valueOf(0).equals(r.get("status"))) {
+            log.debug("Procedure closed by expiry. ueId={}, procedureId={}, reason={}", ueId, procedureId, reason);
+            return true;
         }
+        return "procedure not found".equals(r.get("msg"));
     }
 
-
 }
@@ -1,37 +1,85 @@
 package com.example.procedure.service;
 
-import com.example.procedure.keyderivation.KeyDerivationNative;
+import com.example.procedure.codec.UEContextCodec;
+import com.example.procedure.decrypt.DeferredDecryptQueue;
+import com.example.procedure.decrypt.KeyTrialEngine;
+import com.example.procedure.keyderivation.KeyDerivationProvider;
 import com.example.procedure.parser.*;
+import com.example.procedure.model.MsgCode;
 import com.example.procedure.model.SignalingMessage;
 import com.example.procedure.model.UEContext;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import com.example.procedure.state.StateBackend;
+import com.example.procedure.uecontext.UEContextCache;
+import com.example.procedure.uecontext.UEContextCacheProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 @Service
 public class UEContextService {
-    private static final String UE_CTX_KEY_PREFIX      = "ue:ctx:";
+    private static final Logger log = LoggerFactory.getLogger(UEContextService.class);
+
     private static final String MAP_AMF_UE_KEY_PREFIX  = "ue:map:amf:";
     private static final String MAP_RAN_UE_KEY_PREFIX  = "ue:map:ran:";
     private static final String MAP_CRNTI_KEY_PREFIX   = "ue:map:crnti:"; // 示例：加 cellId 再拼 crnti
 
     private static final Duration TTL = Duration.ofHours(1); // DEMO：先给 1 小时
 
-    private final StringRedisTemplate redisTemplate;
-    private final ObjectMapper objectMapper;
+    /** updateOnInitialAccess 会写 UE 上下文（密钥/算法/标识）的 6 类消息 */
+    private static final Set<MsgCode> CONTEXT_UPDATING_TYPES = EnumSet.of(
+            MsgCode.RRC_SETUP_COMPLETE,
+            MsgCode.NGAP_INITIAL_UE_MESSAGE,
+            MsgCode.NUAR_AUTHENTICATE_RESPONSE,
+            MsgCode.NAS_SECURITY_MODE_COMMAND,
+            MsgCode.NGAP_INITIAL_CONTEXT_SETUP_REQUEST,
+            MsgCode.RRC_SECURITY_MODE_COMMAND
+    );
+
+    /** 上下文 / RAN ID 映射存在哪由 state.backend.mode 决定；value 一律是 UEContextCodec 编码 */
+    private final StateBackend.Contexts contexts;
+    private final StateBackend.Mappings mappings;
+    private final KeyDerivationProvider keyDerivation;
+    private final DeferredDecryptQueue deferredDecryptQueue;
+    private final KeyTrialEngine keyTrialEngine;
+
+    /** 近端缓存；uecontext.cache.enabled=false 时为 null，读写直接打后端 */
+    private final UEContextCache cache;
+    /** 多节点失效通知的 channel；null 表示不发 */
+    private final String invalidationChannel;
+    /** 本节点标识，失效消息里带上，收到自己发的就忽略 */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public UEContextService(StateBackend stateBackend,
+                            KeyDerivationProvider keyDerivation,
+                            DeferredDecryptQueue deferredDecryptQueue,
+                            KeyTrialEngine keyTrialEngine,
+                            UEContextCacheProperties cacheProps) {
+        this.contexts = stateBackend.contexts();
+        this.mappings = stateBackend.mappings();
+        this.keyDerivation = keyDerivation;
+        this.deferredDecryptQueue = deferredDecryptQueue;
+        this.keyTrialEngine = keyTrialEngine;
+        this.cache = cacheProps.isEnabled()
+                ? new UEContextCache(cacheProps.getMaxEntries(), TTL.toMillis(), System::currentTimeMillis)
+                : null;
+        this.invalidationChannel = cacheProps.isEnabled() && "pubsub".equalsIgnoreCase(cacheProps.getInvalidation())
+                ? cacheProps.getChannel() : null;
+    }
 
-    public UEContextService(StringRedisTemplate redisTemplate,
-                            ObjectMapper objectMapper) {
-        this.redisTemplate = redisTemplate;
-        this.objectMapper = objectMapper;
+    /** 这类消息本身就是密钥来源，不能等密钥（否则会互相等死） */
+    public static boolean updatesContext(SignalingMessage msg) {
+        return msg != null && CONTEXT_UPDATING_TYPES.contains(MsgCode.byCode(msg.getMsgCode()));
     }
 
-    private String redisKeyForCtx(String ueId) {
-        return UE_CTX_KEY_PREFIX + ueId;
+    public static boolean updatesContext(String msgType) {
+        return CONTEXT_UPDATING_TYPES.contains(MsgCode.ofName(msgType));
     }
 
     private String redisKeyForAmfMap(String amfUeId) {
@@ -47,23 +95,51 @@ public class UEContextService {
     }
 
     public UEContext getContext(String ueId){
-        Map<Object, Object> map = redisTemplate.opsForHash().entries(redisKeyForCtx(ueId));
-        if (map == null || map.isEmpty()) {
-            return null;
-        }
-        return objectMapper.convertValue(map, UEContext.class);
+        return cache != null ? cache.get(ueId, contexts::get, UEContextCodec::decode)
+                : decodeOrNull(contexts.get(ueId));
     }
 
     public void saveContext(UEContext ctx){
-        try{
-            Map<String, String> map = objectMapper.convertValue(ctx, Map.class);
-            redisTemplate.opsForHash().putAll(redisKeyForCtx(ctx.getUeId()), map);
-            redisTemplate.expire(redisKeyForCtx(ctx.getUeId()), TTL);
-        }catch (IllegalArgumentException e){
-            throw new RuntimeException("Failed to serialize UEContext", e);
+        saveEncoded(ctx);
+        // 记下这一代密钥（切换/重鉴权后旧代还要留着试），再放出之前因为缺密钥停住的加密消息
+        keyTrialEngine.observe(ctx);
+        deferredDecryptQueue.onContextSaved(ctx);
+    }
+
+    /** 整个上下文一个 value，连存活期一起写；内容没变就只续存活期 */
+    private void saveEncoded(UEContext ctx) {
+        byte[] value = UEContextCodec.encode(ctx);
+        UEContextCache.Delta d = cache == null ? null : cache.saveEncoded(ctx, value);
+        if (d != null && d.isEmpty()) return;
+        try {
+            if (d == null || d.full() || !contexts.touch(ctx.getUeId(), TTL.toMillis())) {
+                contexts.put(ctx.getUeId(), value, TTL.toMillis());
+            }
+            if (invalidationChannel != null) {
+                contexts.publish(invalidationChannel, nodeId + "|" + ctx.getUeId());
+            }
+        } catch (RuntimeException e) {
+            if (cache != null) cache.invalidate(ctx.getUeId());
+            throw e;
         }
     }
 
+    private static UEContext decodeOrNull(byte[] value) {
+        return value == null ? null : UEContextCodec.decode(value);
+    }
+
+    /** 别的节点写了某个 UE（pub/sub 失效消息 "nodeId|ueId"），丢掉本地缓存 */
+    public void onInvalidation(String message) {
+        if (cache == null || message == null) return;
+        int bar = message.indexOf('|');
+        if (bar < 0 || message.startsWith(nodeId + "|")) return;
+        cache.invalidate(message.substring(bar + 1));
+    }
+
+    public UEContextCache.Stats cacheStats() {
+        return cache == null ? null : cache.stats();
+    }
+
     public UEContext getOrCreate(String ueId) {
         UEContext ctx = getContext(ueId);
         if (ctx == null) {
@@ -79,7 +155,7 @@ public class UEContextService {
     /**
      * 根据单条信令消息更新 UE 上下文。
      *
-     * 约定 msgType（和你前面 parseAndMerge 改名保持一致）：
+     * 约定 msgType（按 MsgCode 目录认，解析器给的 code 或者下面这些写法都行）：
      *  1) "RRCSetupComplete"
      *  2) "Initial UE Message"
      *  3) "Nausf_UEAuthentication_Authenticate Response"
@@ -98,10 +174,10 @@ public class UEContextService {
         // 如果 UEContext 里有 procedureId / lastProcedureId 字段，也可以顺便记一下
         // ctx.setLastProcedureId(procedureId);
 
-        String type = msg.getMsgType();
+        MsgCode type = MsgCode.byCode(msg.getMsgCode());
 
         // 1) RRCSetupComplete：保存 C-RNTI
-        if ("RRCSetupComplete".equals(type)) {
+        if (type == MsgCode.RRC_SETUP_COMPLETE) {
             MacInfo mac = msg.getMacInfo();
             if (mac != null) {
                 String crnti = mac.getRnti();
@@ -110,13 +186,13 @@ public class UEContextService {
                     // attachState 也可以顺便推进一下
                     ctx.setAttachState("RRC_SETUP_COMPLETE");
                     // TODO: 如果以后有小区 ID，可以在这里做 cellId+crnti 反查映射
-                    // redisTemplate.opsForValue().set(redisKeyForCrntiMap(cellId, crnti), ueId, TTL);
+                    // mappings.putAll(Map.of(redisKeyForCrntiMap(cellId, crnti), ueId), TTL.toMillis());
                 }
             }
         }
 
         // 2) Initial UE Message：保存 RAN_UE_NGAP_ID
-        else if ("Initial UE Message".equals(type)) {
+        else if (type == MsgCode.NGAP_INITIAL_UE_MESSAGE) {
             NgapInfo ngap = pickNAGPSecurityMode(msg.getNgapInfoList());
             if (ngap != null) {
                 String ranUeNgapId = ngap.getRanUeNgapId();
@@ -124,15 +200,13 @@ public class UEContextService {
                     ctx.setRanUeNgapId(ranUeNgapId);
                     ctx.setAttachState("NGAP_INITIAL_UE_MESSAGE");
                     // 反查映射（RAN_UE_NGAP_ID -> ueId）也可以建起来，后面通过 N2 消息找 UE
-                    redisTemplate.opsForValue().set(
-                            redisKeyForRanMap(ranUeNgapId), ueId, TTL
-                    );
+                    mappings.putAll(Map.of(redisKeyForRanMap(ranUeNgapId), ueId), TTL.toMillis());
                 }
             }
         }
 
         // 3) Nausf_UEAuthentication_Authenticate Response：保存 KSEAF
-        else if ("Nausf_UEAuthentication_Authenticate Response".equals(type)) {
+        else if (type == MsgCode.NUAR_AUTHENTICATE_RESPONSE) {
             NUARInfo nuar = msg.getNuarInfo();
             if (nuar != null) {
                 String kseaf = nuar.getKseafHex();
@@ -155,7 +229,7 @@ public class UEContextService {
                 // 推导 KAMF：supi 用 imsi（001010...）
                 if ((imsi != null && !imsi.isEmpty()) && (kseaf != null && !kseaf.isEmpty())) {
                     byte[] abba = new byte[]{0x00, 0x00};
-                    String kamf = KeyDerivationNative.kamfFromKseaf(imsi, abba, kseaf);
+                    String kamf = keyDerivation.kamfFromKseaf(imsi, abba, kseaf);
                     if (kamf != null && !kamf.isEmpty()) {
                         ctx.setKAmf(kamf);
                     }
@@ -165,7 +239,7 @@ public class UEContextService {
         }
 
         // 4) NAS SecurityModeCommand：保存 NAS 加密/完整性算法
-        else if ("NAS SecurityModeCommand".equals(type)) {
+        else if (type == MsgCode.NAS_SECURITY_MODE_COMMAND) {
             NasInfo smcNas = pickNasSecurityMode(msg.getNasList());
             if (smcNas != null) {
 
@@ -198,23 +272,23 @@ public class UEContextService {
                 }
 
                 // 3) 解析并映射 algorithm_identity
-                int encNo = parseAlgNo123(nasEncAlgStr); // 1/2/3
-                int intNo = parseAlgNo123(nasIntAlgStr); // 1/2/3
-
-                int encAlgIdentity = mapAlgIdentity(encNo); // NEA*_NIA*
-                int intAlgIdentity = mapAlgIdentity(intNo); // NEA*_NIA*
+                int encNo = parseAlgNo123(nasEncAlgStr); // 0/1/2/3，认不出 -1
+                int intNo = parseAlgNo123(nasIntAlgStr); // 0/1/2/3，认不出 -1
+                if (encNo < 0 || intNo < 0) {
+                    log.warn("unknown NAS algorithm, ueId={}, enc={}, int={}", ctx.getUeId(), nasEncAlgStr, nasIntAlgStr);
+                }
 
                 // 4) 推导 NAS ENC key：N_NAS_ENC_ALG = 0x01
-                String kNasEnc = KeyDerivationNative.algorithmKeyDerivation(
-                        0x01,
-                        encAlgIdentity,
+                String kNasEnc = encNo < 0 ? null : keyDerivation.algorithmKeyDerivation(
+                        KeyDerivationProvider.N_NAS_ENC_ALG,
+                        mapAlgIdentity(encNo), // NEA*_NIA*
                         kamf
                 );
 
                 // 5) 推导 NAS INT key：N_NAS_INT_ALG = 0x02
-                String kNasInt = KeyDerivationNative.algorithmKeyDerivation(
-                        0x02,
-                        intAlgIdentity,
+                String kNasInt = intNo < 0 ? null : keyDerivation.algorithmKeyDerivation(
+                        KeyDerivationProvider.N_NAS_INT_ALG,
+                        mapAlgIdentity(intNo),
                         kamf
                 );
 
@@ -230,7 +304,7 @@ public class UEContextService {
         }
 
         // 5) Initial Context Setup Request：保存 NGAP SecurityKey（KgNB）
-        else if ("Initial Context Setup Request".equals(type)) {
+        else if (type == MsgCode.NGAP_INITIAL_CONTEXT_SETUP_REQUEST) {
             NgapInfo ngap = pickNAGPSecurityMode(msg.getNgapInfoList());
             if (ngap != null) {
                 String securityKeyHex = ngap.getSecurityKeyHex();
@@ -242,7 +316,7 @@ public class UEContextService {
         }
 
         // 6) RRC SecurityModeCommand：保存 RRC 层完整性/加密算法 + 推导 RRC ENC/INT KEY（用 KGNB）
-        else if ("RRC SecurityModeCommand".equals(type)) {
+        else if (type == MsgCode.RRC_SECURITY_MODE_COMMAND) {
             RrcInfo rrc = msg.getRrcInfo();
             if (rrc != null) {
                 String integrityAlgStr = rrc.getIntegrityProtAlgorithm(); // "1"/"2"/"3"
@@ -274,23 +348,23 @@ public class UEContextService {
                 }
 
                 // 2) 解析并映射 algorithm_identity（各用各的编号）
-                int encNo = parseAlgNo123(cipherAlgStr);       // 1/2/3
-                int intNo = parseAlgNo123(integrityAlgStr);    // 1/2/3
-
-                int encAlgIdentity = mapAlgIdentity(encNo);    // NEA*_NIA*
-                int intAlgIdentity = mapAlgIdentity(intNo);
+                int encNo = parseAlgNo123(cipherAlgStr);       // 0/1/2/3，认不出 -1
+                int intNo = parseAlgNo123(integrityAlgStr);    // 0/1/2/3，认不出 -1
+                if (encNo < 0 || intNo < 0) {
+                    log.warn("unknown RRC algorithm, ueId={}, enc={}, int={}", ctx.getUeId(), cipherAlgStr, integrityAlgStr);
+                }
 
                 // 3) 推导 RRC ENC key：N_RRC_ENC_ALG = 0x03
-                String kRrcEnc = KeyDerivationNative.algorithmKeyDerivation(
-                        0x03,
-                        encAlgIdentity,
+                String kRrcEnc = encNo < 0 ? null : keyDerivation.algorithmKeyDerivation(
+                        KeyDerivationProvider.N_RRC_ENC_ALG,
+                        mapAlgIdentity(encNo),  // NEA*_NIA*
                         kgnb
                 );
 
                 // 4) 推导 RRC INT key：N_RRC_INT_ALG = 0x04
-                String kRrcInt = KeyDerivationNative.algorithmKeyDerivation(
-                        0x04,
-                        intAlgIdentity,
+                String kRrcInt = intNo < 0 ? null : keyDerivation.algorithmKeyDerivation(
+                        KeyDerivationProvider.N_RRC_INT_ALG,
+                        mapAlgIdentity(intNo),
                         kgnb
                 );
 
@@ -310,18 +384,23 @@ public class UEContextService {
         saveContext(ctx);
     }
 
-    private int parseAlgNo123(String s) {
-        if (s == null || s.isEmpty()) return 1;
+    /**
+     * 算法号 "0".."3"（也接受 "0x02"）。认不出来返回 -1，不再默认成 1：
+     * 拿错算法推出来的密钥解出来全是乱码，还不如不推、让后面明确失败。
+     */
+    static int parseAlgNo123(String s) {
+        if (s == null || s.isBlank()) return -1;
         try {
-            int v = Integer.parseInt(s.trim());
-            return (v >= 1 && v <= 3) ? v : 1;
+            String v = s.trim();
+            int x = (v.startsWith("0x") || v.startsWith("0X")) ? Integer.parseInt(v.substring(2), 16) : Integer.parseInt(v);
+            return (x >= 0 && x <= 3) ? x : -1;
         } catch (NumberFormatException e) {
-            return 1;
+            return -1;
         }
     }
-
     private int mapAlgIdentity(int algNo) {
         switch (algNo) {
+            case 0: return 0x00; // NEA0_NIA0（空算法，密钥用不上，照样推出来保持上下文完整）
             case 2: return 0x02; // NEA2_NIA2
             case 3: return 0x03; // NEA3_NIA3
             case 1:
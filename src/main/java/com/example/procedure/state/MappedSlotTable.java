@@ -0,0 +1,314 @@
+package com.example.procedure.state;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiConsumer;
+
+/**
+ * 内存映射文件上的定长槽位哈希表：key（UTF-8 串）-> value（字节），带过期时间。
+ *
+ * 文件布局：64 字节文件头（魔数、版本、槽位大小、槽位数、已用数）+ capacity 个 slotSize 字节的槽位。
+ * 一个槽位：[状态 1][key 哈希 4][key 长 2][value 长 4][过期时刻 8][key][value]，放不下就拒绝（IllegalArgumentException）。
+ *
+ *  - 线性探测，删除用 backward-shift（后面同一探测链上的往前挪），没有墓碑，探测链不会越用越长；
+ *  - 数据全在映射区里，堆上只有这个对象本身，几百万条也不给 GC 添负担；
+ *  - 映射区的写进程崩溃也不丢（页缓存归操作系统），掉电要靠 sync() 刷盘；
+ *  - 超过 2GB 的表分成多段映射，槽位不跨段。
+ *
+ * 所有操作一把锁（synchronized）：每次都是几次内存访问，比锁本身还便宜。
+ */
+public final class MappedSlotTable implements AutoCloseable {
+
+    private static final int MAGIC = 0x534C5431;   // "SLT1"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER = 64;
+    private static final int OFF_USED = 16;
+
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+
+    /** 槽位头：状态、哈希、key 长、value 长、过期时刻 */
+    private static final int S_HASH = 1;
+    private static final int S_KEY_LEN = 5;
+    private static final int S_VALUE_LEN = 7;
+    private static final int S_EXPIRE = 11;
+    public static final int SLOT_HEADER = 19;
+
+    /** 每段映射最多 1GB */
+    private static final long MAX_CHUNK = 1L << 30;
+
+    /** 填到这个比例先清过期的，还是满就拒绝写 */
+    private static final double MAX_FILL = 0.9;
+
+    private final Path path;
+    private final int slotSize;
+    private final int capacity;
+    private final int mask;
+    private final int slotsPerChunk;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer[] chunks;
+    /** 挪槽位用的缓冲，锁内复用 */
+    private final byte[] scratch;
+    private int used;
+
+    /**
+     * 打开（没有就新建）一张表。已有文件的槽位大小 / 槽位数和参数不一致时拒绝打开，免得按错的布局读写。
+     * capacity 向上取 2 的幂。
+     */
+    public MappedSlotTable(Path path, int slotSize, int capacity) {
+        if (slotSize <= SLOT_HEADER + 1) throw new IllegalArgumentException("slotSize too small: " + slotSize);
+        this.path = path;
+        this.slotSize = slotSize;
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = this.capacity - 1;
+        this.slotsPerChunk = (int) Math.min(this.capacity, MAX_CHUNK / slotSize);
+        this.scratch = new byte[slotSize];
+        try {
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            boolean fresh = !Files.exists(path) || Files.size(path) == 0;
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_HEADER);
+            if (fresh) {
+                header.putInt(0, MAGIC);
+                header.putInt(4, VERSION);
+                header.putInt(8, slotSize);
+                header.putInt(12, this.capacity);
+                header.putInt(OFF_USED, 0);
+            } else {
+                checkHeader();
+            }
+            int n = (this.capacity + slotsPerChunk - 1) / slotsPerChunk;
+            chunks = new MappedByteBuffer[n];
+            for (int i = 0; i < n; i++) {
+                long pos = FILE_HEADER + (long) i * slotsPerChunk * slotSize;
+                long len = (long) Math.min(slotsPerChunk, this.capacity - i * slotsPerChunk) * slotSize;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, pos, len);
+            }
+            used = header.getInt(OFF_USED);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to open state table " + path, e);
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int slotSize() {
+        return slotSize;
+    }
+
+    /** key + value 最多能放多少字节 */
+    public int maxEntryBytes() {
+        return slotSize - SLOT_HEADER;
+    }
+
+    public synchronized int size() {
+        return used;
+    }
+
+    /** 没有或已过期（顺手删掉）返回 null */
+    public synchronized byte[] get(String key, long now) {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        int slot = find(k, hash(k));
+        if (slot < 0) return null;
+        if (expired(slot, now)) {
+            delete(slot);
+            return null;
+        }
+        MappedByteBuffer b = chunk(slot);
+        int off = offset(slot);
+        byte[] v = new byte[b.getInt(off + S_VALUE_LEN)];
+        b.get(off + SLOT_HEADER + k.length, v, 0, v.length);
+        return v;
+    }
+
+    /** expireAtMs <= 0 不过期；放不下（key + value 超过槽位）抛 IllegalArgumentException，表满抛 IllegalStateException */
+    public synchronized void put(String key, byte[] value, long expireAtMs, long now) {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        if (k.length + value.length > maxEntryBytes()) {
+            throw new IllegalArgumentException("entry of " + (k.length + value.length) + " bytes does not fit a "
+                    + slotSize + "-byte slot in " + path.getFileName() + ": " + key);
+        }
+        int h = hash(k);
+        int slot = find(k, h);
+        if (slot < 0) {
+            if (used + 1 > capacity * MAX_FILL) {
+                sweepExpired(now);
+                if (used + 1 > capacity * MAX_FILL) throw new IllegalStateException("state table full: " + path);
+            }
+            slot = h & mask;
+            while (state(slot) != EMPTY) slot = (slot + 1) & mask;
+            setUsed(used + 1);
+        }
+        MappedByteBuffer b = chunk(slot);
+        int off = offset(slot);
+        b.putInt(off + S_HASH, h);
+        b.putShort(off + S_KEY_LEN, (short) k.length);
+        b.putInt(off + S_VALUE_LEN, value.length);
+        b.putLong(off + S_EXPIRE, expireAtMs);
+        b.put(off + SLOT_HEADER, k);
+        b.put(off + SLOT_HEADER + k.length, value);
+        b.put(off, USED);   // 状态最后写
+    }
+
+    /** 只改过期时刻；不存在或已过期返回 false */
+    public synchronized boolean touch(String key, long expireAtMs, long now) {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        int slot = find(k, hash(k));
+        if (slot < 0) return false;
+        if (expired(slot, now)) {
+            delete(slot);
+            return false;
+        }
+        chunk(slot).putLong(offset(slot) + S_EXPIRE, expireAtMs);
+        return true;
+    }
+
+    public synchronized boolean remove(String key) {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        int slot = find(k, hash(k));
+        if (slot < 0) return false;
+        delete(slot);
+        return true;
+    }
+
+    /** 遍历所有没过期的（全表扫描，启动恢复 / 测试用） */
+    public synchronized void forEach(long now, BiConsumer<String, byte[]> action) {
+        for (int slot = 0; slot < capacity; slot++) {
+            if (state(slot) != USED || expired(slot, now)) continue;
+            MappedByteBuffer b = chunk(slot);
+            int off = offset(slot);
+            byte[] k = new byte[b.getShort(off + S_KEY_LEN)];
+            byte[] v = new byte[b.getInt(off + S_VALUE_LEN)];
+            b.get(off + SLOT_HEADER, k, 0, k.length);
+            b.get(off + SLOT_HEADER + k.length, v, 0, v.length);
+            action.accept(new String(k, StandardCharsets.UTF_8), v);
+        }
+    }
+
+    /** 删掉所有过期的，返回条数 */
+    public synchronized int sweepExpired(long now) {
+        int n = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            // 删掉之后后面的会挪到这个位置上，原地再看一次
+            while (state(slot) == USED && expired(slot, now)) {
+                delete(slot);
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /** 刷盘（掉电也不丢）；MappedByteBuffer.force */
+    public synchronized void sync() {
+        for (MappedByteBuffer c : chunks) c.force();
+        header.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        sync();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ===================== internal =====================
+
+    private void checkHeader() {
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IllegalStateException("not a state table (or unsupported version): " + path);
+        }
+        int fileSlot = header.getInt(8), fileCapacity = header.getInt(12);
+        if (fileSlot != slotSize || fileCapacity != capacity) {
+            throw new IllegalStateException(path + " was created with slotSize=" + fileSlot + ", capacity=" + fileCapacity
+                    + " but configured slotSize=" + slotSize + ", capacity=" + capacity);
+        }
+    }
+
+    /** key 所在的槽位，没有返回 -1 */
+    private int find(byte[] k, int h) {
+        int slot = h & mask;
+        for (int probes = 0; probes < capacity; probes++) {
+            if (state(slot) == EMPTY) return -1;
+            if (keyEquals(slot, k, h)) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(int slot, byte[] k, int h) {
+        MappedByteBuffer b = chunk(slot);
+        int off = offset(slot);
+        if (b.getInt(off + S_HASH) != h || b.getShort(off + S_KEY_LEN) != k.length) return false;
+        int base = off + SLOT_HEADER;
+        for (int i = 0; i < k.length; i++) {
+            if (b.get(base + i) != k[i]) return false;
+        }
+        return true;
+    }
+
+    /** backward-shift 删除：把后面探测链上"可以往前挪"的依次挪进空位 */
+    private void delete(int slot) {
+        int hole = slot;
+        int j = slot;
+        while (true) {
+            j = (j + 1) & mask;
+            if (state(j) == EMPTY) break;
+            int home = chunk(j).getInt(offset(j) + S_HASH) & mask;
+            // home 在 (hole, j] 里（环上）的不能挪到 hole 前面去
+            boolean stays = hole <= j ? (hole < home && home <= j) : (hole < home || home <= j);
+            if (stays) continue;
+            copy(j, hole);
+            hole = j;
+        }
+        chunk(hole).put(offset(hole), EMPTY);
+        setUsed(used - 1);
+    }
+
+    private void copy(int from, int to) {
+        MappedByteBuffer src = chunk(from);
+        int so = offset(from);
+        int len = SLOT_HEADER + src.getShort(so + S_KEY_LEN) + src.getInt(so + S_VALUE_LEN);
+        src.get(so, scratch, 0, len);
+        chunk(to).put(offset(to), scratch, 0, len);
+    }
+
+    private boolean expired(int slot, long now) {
+        long at = chunk(slot).getLong(offset(slot) + S_EXPIRE);
+        return at > 0 && now >= at;
+    }
+
+    private byte state(int slot) {
+        return chunk(slot).get(offset(slot));
+    }
+
+    private MappedByteBuffer chunk(int slot) {
+        return chunks[slot / slotsPerChunk];
+    }
+
+    private int offset(int slot) {
+        return (slot % slotsPerChunk) * slotSize;
+    }
+
+    private void setUsed(int n) {
+        used = n;
+        header.putInt(OFF_USED, n);
+    }
+
+    private static int hash(byte[] k) {
+        int h = 0x811C9DC5;
+        for (byte b : k) h = (h ^ b) * 0x01000193;
+        return h ^ (h >>> 16);
+    }
+}
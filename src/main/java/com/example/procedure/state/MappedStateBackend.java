@@ -0,0 +1,171 @@
+package com.example.procedure.state;
+
+import com.example.procedure.store.MappedProcedureStore;
+import com.example.procedure.store.ProcedureStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * state.backend.mode=mmap：每类数据一个内存映射文件（dir 下 contexts / mappings / procedures / sequences.slt），
+ * 数据不在堆上，进程重启后原样读回来，不需要 Redis。
+ *
+ * 进程崩溃不丢（页缓存还在），掉电只丢最近 syncIntervalMs 里的改动；syncIntervalMs <= 0 不定时刷，只在 close 时刷。
+ */
+public class MappedStateBackend implements StateBackend {
+
+    private static final Logger log = LoggerFactory.getLogger(MappedStateBackend.class);
+
+    private final LongSupplier clock;
+    private final MappedSlotTable contextTable;
+    private final MappedSlotTable mappingTable;
+    private final MappedSlotTable procedureTable;
+    private final MappedSlotTable sequenceTable;
+    private final MappedProcedureStore procedures;
+    private final ScheduledExecutorService syncer;
+
+    private final Contexts contextsView = new Contexts() {
+        @Override
+        public byte[] get(String ueId) {
+            return contextTable.get(ueId, clock.getAsLong());
+        }
+
+        @Override
+        public void put(String ueId, byte[] value, long ttlMs) {
+            long now = clock.getAsLong();
+            contextTable.put(ueId, value, expireAt(now, ttlMs), now);
+        }
+
+        @Override
+        public boolean touch(String ueId, long ttlMs) {
+            long now = clock.getAsLong();
+            return contextTable.touch(ueId, expireAt(now, ttlMs), now);
+        }
+
+        @Override
+        public void remove(String ueId) {
+            contextTable.remove(ueId);
+        }
+    };
+
+    private final Mappings mappingsView = new Mappings() {
+        @Override
+        public String get(String key) {
+            byte[] v = mappingTable.get(key, clock.getAsLong());
+            return v == null ? null : new String(v, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void putAll(Map<String, String> entries, long ttlMs) {
+            long now = clock.getAsLong();
+            long expireAt = expireAt(now, ttlMs);
+            entries.forEach((k, v) -> mappingTable.put(k, v.getBytes(StandardCharsets.UTF_8), expireAt, now));
+        }
+
+        @Override
+        public void remove(String key) {
+            mappingTable.remove(key);
+        }
+
+        @Override
+        public void forEach(String prefix, BiConsumer<String, String> action) {
+            mappingTable.forEach(clock.getAsLong(), (k, v) -> {
+                if (k.startsWith(prefix)) action.accept(k, new String(v, StandardCharsets.UTF_8));
+            });
+        }
+    };
+
+    private final Sequences sequencesView = this::nextSequence;
+
+    public MappedStateBackend(StateBackendProperties.Mmap cfg, LongSupplier clock) {
+        this.clock = clock;
+        Path dir = Path.of(cfg.getDir());
+        this.contextTable = new MappedSlotTable(dir.resolve("contexts.slt"), cfg.getContextSlotBytes(), cfg.getContextCapacity());
+        this.mappingTable = new MappedSlotTable(dir.resolve("mappings.slt"), cfg.getMappingSlotBytes(), cfg.getMappingCapacity());
+        this.procedureTable = new MappedSlotTable(dir.resolve("procedures.slt"), cfg.getProcedureSlotBytes(), cfg.getProcedureCapacity());
+        this.sequenceTable = new MappedSlotTable(dir.resolve("sequences.slt"), 64, cfg.getSequenceCapacity());
+        this.procedures = new MappedProcedureStore(procedureTable, clock);
+
+        if (cfg.getSyncIntervalMs() > 0) {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "state-mmap-sync");
+                t.setDaemon(true);
+                return t;
+            });
+            syncer.scheduleWithFixedDelay(this::sync, cfg.getSyncIntervalMs(), cfg.getSyncIntervalMs(), TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+        log.info("State backend: mmap at {} ({} contexts, {} mappings, {} UEs with procedures)",
+                dir.toAbsolutePath(), contextTable.size(), mappingTable.size(), procedureTable.size());
+    }
+
+    @Override
+    public String name() {
+        return "mmap";
+    }
+
+    @Override
+    public Contexts contexts() {
+        return contextsView;
+    }
+
+    @Override
+    public Mappings mappings() {
+        return mappingsView;
+    }
+
+    @Override
+    public Sequences sequences() {
+        return sequencesView;
+    }
+
+    @Override
+    public ProcedureStore procedures() {
+        return procedures;
+    }
+
+    /** 全部刷盘 */
+    public void sync() {
+        try {
+            contextTable.sync();
+            mappingTable.sync();
+            procedureTable.sync();
+            sequenceTable.sync();
+        } catch (RuntimeException e) {
+            log.warn("State backend: mmap sync failed: {}", e.toString());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (syncer != null) syncer.shutdownNow();
+        contextTable.close();
+        mappingTable.close();
+        procedureTable.close();
+        sequenceTable.close();
+    }
+
+    /** 序列号存 8 字节大端 long，不过期 */
+    private long nextSequence(String name) {
+        synchronized (sequenceTable) {
+            byte[] cur = sequenceTable.get(name, 0);
+            long next = (cur == null ? 0 : ByteBuffer.wrap(cur).getLong()) + 1;
+            sequenceTable.put(name, ByteBuffer.allocate(Long.BYTES).putLong(next).array(), 0, 0);
+            return next;
+        }
+    }
+
+    private static long expireAt(long now, long ttlMs) {
+        return ttlMs <= 0 ? 0 : now + ttlMs;
+    }
+}
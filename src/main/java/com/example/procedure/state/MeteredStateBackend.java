@@ -0,0 +1,211 @@
+package com.example.procedure.state;
+
+import com.example.procedure.metrics.PipelineMetrics;
+import com.example.procedure.model.Procedure;
+import com.example.procedure.store.ProcedureStore;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 给任意 StateBackend 每个操作套一个 pipeline.state{backend, op} 计时器。
+ * redis 时这就是每次往返的耗时（pipeline 算一次）；命令级别的另有 lettuce.command.*。
+ */
+public class MeteredStateBackend implements StateBackend {
+
+    private final StateBackend delegate;
+    private final Contexts contexts;
+    private final Mappings mappings;
+    private final Sequences sequences;
+    private final ProcedureStore procedures;
+
+    public MeteredStateBackend(StateBackend delegate) {
+        this.delegate = delegate;
+        String b = delegate.name();
+        this.contexts = new MeteredContexts(delegate.contexts(), b);
+        this.mappings = new MeteredMappings(delegate.mappings(), b);
+        Sequences seq = delegate.sequences();
+        Timer incr = PipelineMetrics.state(b, "sequence.incr");
+        this.sequences = name -> {
+            long t0 = System.nanoTime();
+            try {
+                return seq.incrementAndGet(name);
+            } finally {
+                incr.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+            }
+        };
+        this.procedures = new MeteredProcedures(delegate.procedures(), b);
+    }
+
+    public StateBackend delegate() {
+        return delegate;
+    }
+
+    @Override
+    public String name() {
+        return delegate.name();
+    }
+
+    @Override
+    public Contexts contexts() {
+        return contexts;
+    }
+
+    @Override
+    public Mappings mappings() {
+        return mappings;
+    }
+
+    @Override
+    public Sequences sequences() {
+        return sequences;
+    }
+
+    @Override
+    public ProcedureStore procedures() {
+        return procedures;
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private static <T> T time(Timer timer, Supplier<T> call) {
+        long t0 = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            timer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static void time(Timer timer, Runnable call) {
+        long t0 = System.nanoTime();
+        try {
+            call.run();
+        } finally {
+            timer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static final class MeteredContexts implements Contexts {
+        private final Contexts d;
+        private final Timer get, put, touch, remove, publish;
+
+        MeteredContexts(Contexts d, String b) {
+            this.d = d;
+            this.get = PipelineMetrics.state(b, "context.get");
+            this.put = PipelineMetrics.state(b, "context.put");
+            this.touch = PipelineMetrics.state(b, "context.touch");
+            this.remove = PipelineMetrics.state(b, "context.remove");
+            this.publish = PipelineMetrics.state(b, "context.publish");
+        }
+
+        @Override
+        public byte[] get(String ueId) {
+            return time(get, () -> d.get(ueId));
+        }
+
+        @Override
+        public void put(String ueId, byte[] value, long ttlMs) {
+            time(put, () -> d.put(ueId, value, ttlMs));
+        }
+
+        @Override
+        public boolean touch(String ueId, long ttlMs) {
+            return time(touch, () -> d.touch(ueId, ttlMs));
+        }
+
+        @Override
+        public void remove(String ueId) {
+            time(remove, () -> d.remove(ueId));
+        }
+
+        @Override
+        public void publish(String channel, String message) {
+            time(publish, () -> d.publish(channel, message));
+        }
+    }
+
+    private static final class MeteredMappings implements Mappings {
+        private final Mappings d;
+        private final Timer get, putAll, remove, scan;
+
+        MeteredMappings(Mappings d, String b) {
+            this.d = d;
+            this.get = PipelineMetrics.state(b, "mapping.get");
+            this.putAll = PipelineMetrics.state(b, "mapping.putAll");
+            this.remove = PipelineMetrics.state(b, "mapping.remove");
+            this.scan = PipelineMetrics.state(b, "mapping.scan");
+        }
+
+        @Override
+        public String get(String key) {
+            return time(get, () -> d.get(key));
+        }
+
+        @Override
+        public void putAll(Map<String, String> entries, long ttlMs) {
+            time(putAll, () -> d.putAll(entries, ttlMs));
+        }
+
+        @Override
+        public void remove(String key) {
+            time(remove, () -> d.remove(key));
+        }
+
+        @Override
+        public void forEach(String prefix, BiConsumer<String, String> action) {
+            time(scan, () -> d.forEach(prefix, action));
+        }
+    }
+
+    private static final class MeteredProcedures implements ProcedureStore {
+        private final ProcedureStore d;
+        private final Timer add, list, get, update, remove;
+
+        MeteredProcedures(ProcedureStore d, String b) {
+            this.d = d;
+            this.add = PipelineMetrics.state(b, "procedure.add");
+            this.list = PipelineMetrics.state(b, "procedure.list");
+            this.get = PipelineMetrics.state(b, "procedure.get");
+            this.update = PipelineMetrics.state(b, "procedure.update");
+            this.remove = PipelineMetrics.state(b, "procedure.remove");
+        }
+
+        @Override
+        public void add(Procedure p) {
+            time(add, () -> d.add(p));
+        }
+
+        @Override
+        public List<Procedure> list(String ueId) {
+            return time(list, () -> d.list(ueId));
+        }
+
+        @Override
+        public Procedure get(String ueId, String procedureId) {
+            return time(get, () -> d.get(ueId, procedureId));
+        }
+
+        @Override
+        public boolean update(String ueId, String procedureId, Update u) {
+            return time(update, () -> d.update(ueId, procedureId, u));
+        }
+
+        @Override
+        public boolean remove(String ueId, String procedureId) {
+            return time(remove, () -> d.remove(ueId, procedureId));
+        }
+
+        /** 生命周期归 backend 管（close 时一起关），这里不转发 */
+        @Override
+        public void close() {
+        }
+    }
+}
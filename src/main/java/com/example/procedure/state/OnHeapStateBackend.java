@@ -0,0 +1,142 @@
+package com.example.procedure.state;
+
+import com.example.procedure.store.InMemoryProcedureStore;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * state.backend.mode=heap：全放本进程的 ConcurrentHashMap，单机 / 离线回放用。
+ * 过期是懒的：读到过期的当没有并顺手删掉，不起后台线程；流程直接用 InMemoryProcedureStore（不带副本）。
+ */
+public class OnHeapStateBackend implements StateBackend {
+
+    private final LongSupplier clock;
+    private final Table<byte[]> contexts = new Table<>();
+    private final Table<String> mappings = new Table<>();
+    private final Map<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+    private final InMemoryProcedureStore procedures = new InMemoryProcedureStore(null);
+
+    private final Contexts contextsView = new Contexts() {
+        @Override
+        public byte[] get(String ueId) {
+            return contexts.get(ueId, clock.getAsLong());
+        }
+
+        @Override
+        public void put(String ueId, byte[] value, long ttlMs) {
+            contexts.put(ueId, value.clone(), expireAt(ttlMs));
+        }
+
+        @Override
+        public boolean touch(String ueId, long ttlMs) {
+            return contexts.touch(ueId, clock.getAsLong(), expireAt(ttlMs));
+        }
+
+        @Override
+        public void remove(String ueId) {
+            contexts.map.remove(ueId);
+        }
+    };
+
+    private final Mappings mappingsView = new Mappings() {
+        @Override
+        public String get(String key) {
+            return mappings.get(key, clock.getAsLong());
+        }
+
+        @Override
+        public void putAll(Map<String, String> entries, long ttlMs) {
+            long expireAt = expireAt(ttlMs);
+            entries.forEach((k, v) -> mappings.put(k, v, expireAt));
+        }
+
+        @Override
+        public void remove(String key) {
+            mappings.map.remove(key);
+        }
+
+        @Override
+        public void forEach(String prefix, BiConsumer<String, String> action) {
+            long now = clock.getAsLong();
+            mappings.map.forEach((k, e) -> {
+                if (k.startsWith(prefix) && !e.expired(now)) action.accept(k, e.value);
+            });
+        }
+    };
+
+    private final Sequences sequencesView =
+            name -> sequences.computeIfAbsent(name, k -> new AtomicLong()).incrementAndGet();
+
+    public OnHeapStateBackend(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public String name() {
+        return "heap";
+    }
+
+    @Override
+    public Contexts contexts() {
+        return contextsView;
+    }
+
+    @Override
+    public Mappings mappings() {
+        return mappingsView;
+    }
+
+    @Override
+    public Sequences sequences() {
+        return sequencesView;
+    }
+
+    @Override
+    public InMemoryProcedureStore procedures() {
+        return procedures;
+    }
+
+    @Override
+    public void close() {
+        procedures.close();
+    }
+
+    private long expireAt(long ttlMs) {
+        return ttlMs <= 0 ? Long.MAX_VALUE : clock.getAsLong() + ttlMs;
+    }
+
+    // ===================== internal =====================
+
+    private record Entry<V>(V value, long expireAt) {
+        boolean expired(long now) {
+            return now >= expireAt;
+        }
+    }
+
+    private static final class Table<V> {
+        final Map<String, Entry<V>> map = new ConcurrentHashMap<>();
+
+        V get(String key, long now) {
+            Entry<V> e = map.get(key);
+            if (e == null) return null;
+            if (e.expired(now)) {
+                map.remove(key, e);
+                return null;
+            }
+            return e.value;
+        }
+
+        void put(String key, V value, long expireAt) {
+            map.put(key, new Entry<>(value, expireAt));
+        }
+
+        boolean touch(String key, long now, long expireAt) {
+            Entry<V> e = map.computeIfPresent(key, (k, cur) -> cur.expired(now) ? null : new Entry<>(cur.value, expireAt));
+            return e != null;
+        }
+    }
+}
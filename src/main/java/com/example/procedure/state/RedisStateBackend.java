@@ -0,0 +1,256 @@
+package com.example.procedure.state;
+
+import com.example.procedure.codec.StateStorageProperties;
+import com.example.procedure.codec.UEContextCodec;
+import com.example.procedure.model.UEContext;
+import com.example.procedure.store.ProcedureStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * state.backend.mode=redis：原来散在 UEContextService / UeIdBinder 里的 Redis 读写收到这里，key 格式不变。
+ *
+ *  - 上下文：state.storage.format=binary 时 ue:ctxb:&lt;ueId&gt; 一个二进制 value（SET PX），读不到且 migrate 打开时
+ *    从老 hash（ue:ctx:&lt;ueId&gt;）转过来；format=hash 时还是写老 hash：lua/ue_context_put_hash.lua 在服务端
+ *    和现有字段比对，只 HSET 变了的、HDEL 没了的，再续 TTL（原子，一次往返）。
+ *  - 映射：一个 key 一个字符串 value，putAll 一个 pipeline，forEach 走 SCAN + MGET。
+ *  - 序列号：INCR seq:&lt;name&gt;。
+ *  - 流程：外面按 procedure.store.* 建好传进来（ProcedureStoreConfig.create），这里只负责关。
+ */
+public class RedisStateBackend implements StateBackend {
+
+    private static final String UE_CTX_KEY_PREFIX     = "ue:ctx:";
+    private static final String UE_CTX_BIN_KEY_PREFIX = "ue:ctxb:";
+    private static final String SEQ_KEY_PREFIX        = "seq:";
+
+    private static final RedisScript<Long> PUT_HASH_SCRIPT = script("lua/ue_context_put_hash.lua");
+
+    private final StringRedisTemplate redis;
+    private final ObjectMapper objectMapper;
+    private final boolean binary;
+    private final boolean migrate;
+    private final ProcedureStore procedures;
+
+    private final Contexts contextsView = new Contexts() {
+        @Override
+        public byte[] get(String ueId) {
+            return binary ? loadBinary(ueId) : encodeOrNull(fromHash(loadHash(ueId)));
+        }
+
+        @Override
+        public void put(String ueId, byte[] value, long ttlMs) {
+            if (binary) {
+                byte[] key = bytes(UE_CTX_BIN_KEY_PREFIX + ueId);
+                redis.execute((RedisCallback<Object>) conn ->
+                        conn.stringCommands().set(key, value, expiration(ttlMs), RedisStringCommands.SetOption.upsert()));
+                return;
+            }
+            // 老 hash：脚本在服务端和现有字段比，只 HSET 变了的、HDEL 没了的（不再 DEL 整个重写）
+            Map<String, String> fields = toHash(UEContextCodec.decode(value));
+            Object[] args = new Object[1 + fields.size() * 2];
+            int i = 0;
+            args[i++] = String.valueOf(ttlMs);
+            for (Map.Entry<String, String> f : fields.entrySet()) {
+                args[i++] = f.getKey();
+                args[i++] = f.getValue();
+            }
+            redis.execute(PUT_HASH_SCRIPT, List.of(UE_CTX_KEY_PREFIX + ueId), args);
+        }
+
+        @Override
+        public boolean touch(String ueId, long ttlMs) {
+            String key = (binary ? UE_CTX_BIN_KEY_PREFIX : UE_CTX_KEY_PREFIX) + ueId;
+            Boolean ok = ttlMs > 0 ? redis.expire(key, Duration.ofMillis(ttlMs)) : redis.persist(key);
+            return Boolean.TRUE.equals(ok) || (ttlMs <= 0 && Boolean.TRUE.equals(redis.hasKey(key)));
+        }
+
+        @Override
+        public void remove(String ueId) {
+            redis.delete(List.of(UE_CTX_BIN_KEY_PREFIX + ueId, UE_CTX_KEY_PREFIX + ueId));
+        }
+
+        @Override
+        public void publish(String channel, String message) {
+            redis.convertAndSend(channel, message);
+        }
+    };
+
+    private final Mappings mappingsView = new Mappings() {
+        @Override
+        public String get(String key) {
+            return redis.opsForValue().get(key);
+        }
+
+        @Override
+        public void putAll(Map<String, String> entries, long ttlMs) {
+            if (entries.isEmpty()) return;
+            Expiration exp = expiration(ttlMs);
+            redis.executePipelined((RedisCallback<Object>) conn -> {
+                StringRedisConnection c = (StringRedisConnection) conn;
+                entries.forEach((k, v) -> c.set(k, v, exp, RedisStringCommands.SetOption.upsert()));
+                return null;
+            });
+        }
+
+        @Override
+        public void remove(String key) {
+            redis.delete(key);
+        }
+
+        @Override
+        public void forEach(String prefix, BiConsumer<String, String> action) {
+            List<String> keys = new ArrayList<>();
+            ScanOptions opts = ScanOptions.scanOptions().match(prefix + "*").count(1000).build();
+            try (Cursor<String> cursor = redis.scan(opts)) {
+                cursor.forEachRemaining(keys::add);
+            }
+            for (int from = 0; from < keys.size(); from += 500) {
+                List<String> chunk = keys.subList(from, Math.min(keys.size(), from + 500));
+                List<String> values = redis.opsForValue().multiGet(chunk);
+                if (values == null) continue;
+                for (int i = 0; i < chunk.size(); i++) {
+                    if (values.get(i) != null) action.accept(chunk.get(i), values.get(i));
+                }
+            }
+        }
+    };
+
+    private final Sequences sequencesView = new Sequences() {
+        @Override
+        public long incrementAndGet(String name) {
+            Long v = redis.opsForValue().increment(SEQ_KEY_PREFIX + name);
+            if (v == null) throw new IllegalStateException("INCR returned nothing for " + name);
+            return v;
+        }
+    };
+
+    public RedisStateBackend(StringRedisTemplate redis, ObjectMapper objectMapper,
+                             StateStorageProperties storageProps, ProcedureStore procedures) {
+        this.redis = redis;
+        this.objectMapper = objectMapper;
+        this.binary = storageProps.isBinary();
+        this.migrate = storageProps.isMigrate();
+        this.procedures = procedures;
+    }
+
+    @Override
+    public String name() {
+        return "redis";
+    }
+
+    @Override
+    public Contexts contexts() {
+        return contextsView;
+    }
+
+    @Override
+    public Mappings mappings() {
+        return mappingsView;
+    }
+
+    @Override
+    public Sequences sequences() {
+        return sequencesView;
+    }
+
+    @Override
+    public ProcedureStore procedures() {
+        return procedures;
+    }
+
+    @Override
+    public void close() {
+        if (procedures != null) procedures.close();
+    }
+
+    // ===================== 上下文 =====================
+
+    /** 读二进制 value；没有的话（migrate 打开时）从老 hash 转过来 */
+    private byte[] loadBinary(String ueId) {
+        byte[] key = bytes(UE_CTX_BIN_KEY_PREFIX + ueId);
+        byte[] value = redis.execute((RedisCallback<byte[]>) conn -> conn.stringCommands().get(key));
+        if (value != null || !migrate) return value;
+
+        UEContext legacy = fromHash(loadHash(ueId));
+        if (legacy == null) return null;
+        byte[] encoded = UEContextCodec.encode(legacy);
+        Long ttl = redis.getExpire(UE_CTX_KEY_PREFIX + ueId);
+        Expiration exp = ttl != null && ttl > 0 ? Expiration.seconds(ttl) : Expiration.persistent();
+        redis.executePipelined((RedisCallback<Object>) conn -> {
+            conn.stringCommands().set(key, encoded, exp, RedisStringCommands.SetOption.upsert());
+            conn.keyCommands().del(bytes(UE_CTX_KEY_PREFIX + ueId));
+            return null;
+        });
+        return encoded;
+    }
+
+    private Map<String, String> loadHash(String ueId) {
+        Map<Object, Object> map = redis.opsForHash().entries(UE_CTX_KEY_PREFIX + ueId);
+        if (map == null || map.isEmpty()) return null;
+        Map<String, String> out = new LinkedHashMap<>(map.size() * 2);
+        map.forEach((k, v) -> out.put(String.valueOf(k), v == null ? null : String.valueOf(v)));
+        return out;
+    }
+
+    private UEContext fromHash(Map<String, String> map) {
+        if (map == null || map.isEmpty()) return null;
+        return objectMapper.convertValue(map, UEContext.class);
+    }
+
+    /** 字段名沿用 Jackson 的命名（和之前 putAll 的 hash 兼容），null 字段不写 */
+    @SuppressWarnings("unchecked")
+    private Map<String, String> toHash(UEContext ctx) {
+        Map<String, Object> map;
+        try {
+            map = objectMapper.convertValue(ctx, Map.class);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Failed to serialize UEContext", e);
+        }
+        Map<String, String> out = new LinkedHashMap<>(map.size() * 2);
+        map.forEach((k, v) -> {
+            if (v != null) out.put(k, String.valueOf(v));
+        });
+        return out;
+    }
+
+    private static byte[] encodeOrNull(UEContext ctx) {
+        return ctx == null ? null : UEContextCodec.encode(ctx);
+    }
+
+    /** 启动时读一次脚本文本（同 RedisProcedureStore） */
+    private static RedisScript<Long> script(String path) {
+        try {
+            String text = new ClassPathResource(path).getContentAsString(StandardCharsets.UTF_8);
+            return new DefaultRedisScript<>(text, Long.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot load " + path, e);
+        }
+    }
+
+    private static Expiration expiration(long ttlMs) {
+        return ttlMs > 0 ? Expiration.milliseconds(ttlMs) : Expiration.persistent();
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.procedure.state;
+
+import com.example.procedure.store.ProcedureStore;
+
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * 有状态数据放在哪（state.backend.mode）：
+ *  - redis：老的部署方式，多实例共享（RedisStateBackend）
+ *  - heap ：全在本进程的 Map 里，单机 / 离线回放，最快，重启就没了（OnHeapStateBackend）
+ *  - mmap ：内存映射文件里的定长槽位，不占堆、重启还在（MappedStateBackend）
+ *
+ * 四类数据：UE 上下文（UEContextCodec 编码）、活跃流程（ProcedureStore）、标识映射（key -> ueId）、序列号。
+ * 上层（UEContextService / UeIdBinder / ProManager_Service）只认这几个接口，key 前缀和 TTL 还是各自定。
+ *
+ * 存活期 ttlMs <= 0 表示不过期；heap / mmap 按构造时给的时钟算过期（回放时跟着报文时间走），redis 按服务端时间。
+ */
+public interface StateBackend extends AutoCloseable {
+
+    /** 日志 / 指标里用的名字 */
+    String name();
+
+    Contexts contexts();
+
+    Mappings mappings();
+
+    Sequences sequences();
+
+    /** 活跃流程；生命周期归 backend 管，close 时一起关 */
+    ProcedureStore procedures();
+
+    @Override
+    default void close() {
+    }
+
+    /** ueId -> UEContextCodec.encode 的结果 */
+    interface Contexts {
+
+        /** 没有或已过期返回 null */
+        byte[] get(String ueId);
+
+        void put(String ueId, byte[] value, long ttlMs);
+
+        /** 内容没变，只续存活期；不存在返回 false */
+        boolean touch(String ueId, long ttlMs);
+
+        void remove(String ueId);
+
+        /** 多节点共用一个后端时通知别的节点丢掉近端缓存；单机的实现什么都不用做 */
+        default void publish(String channel, String message) {
+        }
+    }
+
+    /** 字符串 key -> 字符串 value（标识映射：ue:map:ran:&lt;id&gt; -> ueId 这类） */
+    interface Mappings {
+
+        /** 没有或已过期返回 null */
+        String get(String key);
+
+        /** 一批一起写（redis 是一个 pipeline），同一个 key 以后面的为准 */
+        void putAll(Map<String, String> entries, long ttlMs);
+
+        void remove(String key);
+
+        /** 前缀下所有没过期的（启动恢复用，会扫全表） */
+        void forEach(String prefix, BiConsumer<String, String> action);
+    }
+
+    /** 单调递增的计数器，从 1 开始 */
+    interface Sequences {
+
+        long incrementAndGet(String name);
+    }
+}
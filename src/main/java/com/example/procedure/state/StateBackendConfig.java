@@ -0,0 +1,47 @@
+package com.example.procedure.state;
+
+import com.example.procedure.clock.ProcedureClock;
+import com.example.procedure.codec.StateStorageProperties;
+import com.example.procedure.store.ProcedureStoreConfig;
+import com.example.procedure.store.ProcedureStoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Locale;
+
+@Configuration
+public class StateBackendConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(StateBackendConfig.class);
+
+    /** 外面套一层计时（pipeline.state），上层拿到的都是这一层 */
+    @Bean(destroyMethod = "close")
+    public StateBackend stateBackend(StateBackendProperties props, ProcedureClock clock,
+                                     StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                                     StateStorageProperties storageProps, ProcedureStoreProperties procedureProps) {
+        return new MeteredStateBackend(create(props, clock, redisTemplate, objectMapper, storageProps, procedureProps));
+    }
+
+    private static StateBackend create(StateBackendProperties props, ProcedureClock clock,
+                                       StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                                       StateStorageProperties storageProps, ProcedureStoreProperties procedureProps) {
+        String mode = props.getMode() == null ? "redis" : props.getMode().trim().toLowerCase(Locale.ROOT);
+        switch (mode) {
+            case "redis":
+                log.info("State backend: redis");
+                return new RedisStateBackend(redisTemplate, objectMapper, storageProps,
+                        ProcedureStoreConfig.create(procedureProps, redisTemplate, objectMapper, storageProps));
+            case "heap":
+                log.info("State backend: heap (nothing survives a restart)");
+                return new OnHeapStateBackend(clock::now);
+            case "mmap":
+                return new MappedStateBackend(props.getMmap(), clock::now);
+            default:
+                throw new IllegalArgumentException("unknown state.backend.mode: " + props.getMode());
+        }
+    }
+}
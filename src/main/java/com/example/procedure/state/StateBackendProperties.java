@@ -0,0 +1,49 @@
+package com.example.procedure.state;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "state.backend")
+public class StateBackendProperties {
+
+    /**
+     * redis：UE 上下文 / 标识映射 / 流程都放 Redis（默认，老的部署方式；流程的存法还是看 procedure.store.*）
+     * heap ：全在进程内，不连 Redis，重启就没了
+     * mmap ：内存映射文件，不连 Redis，重启还在（见 state.backend.mmap.*）
+     */
+    private String mode = "redis";
+
+    private Mmap mmap = new Mmap();
+
+    @Setter
+    @Getter
+    public static class Mmap {
+
+        /** 放映射文件的目录 */
+        private String dir = "data/state";
+
+        /**
+         * 槽位大小 / 个数：文件大小 = 大小 × 个数（稀疏文件，没写过的页不占盘），建好以后改这两个值要先删掉旧文件。
+         * 上下文最坏情况（字段全填、7 个密钥都是 256 位且只能存字符串）编码后约 650 字节，连 key 和槽头留 1/3 余量
+         */
+        private int contextSlotBytes = 1024;
+        private int contextCapacity = 1 << 20;
+
+        private int mappingSlotBytes = 128;
+        private int mappingCapacity = 1 << 20;
+
+        /** 一个 UE 所有活跃流程一个槽位 */
+        private int procedureSlotBytes = 2048;
+        private int procedureCapacity = 1 << 18;
+
+        private int sequenceCapacity = 1024;
+
+        /** 定时刷盘间隔（毫秒），<= 0 只在关闭时刷 */
+        private long syncIntervalMs = 1000;
+    }
+}
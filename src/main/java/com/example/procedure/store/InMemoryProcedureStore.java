@@ -0,0 +1,229 @@
+package com.example.procedure.store;
+
+import com.example.procedure.model.Procedure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内为主的流程存储（procedure.store.mode=memory）。
+ *
+ *  - 每个 UE 一个小数组放活跃流程（通常就 1~3 个），字段拆成 int/long/boolean 存，
+ *    字符串只存引用（类型名/时间串都是共享的），list 时才拼成 Procedure 副本。
+ *    ProClassify 每条消息开头的 listActiveProcedures 不再走 SMEMBERS + HGETALL + convertValue。
+ *  - replicator 不为 null 时每次改动只记一下"谁脏了"（删除记墓碑），后台线程定期把最新状态写 Redis（见 ProcedureReplicator）；
+ *    为 null 就完全不碰 Redis（离线批处理）。
+ */
+public class InMemoryProcedureStore implements ProcedureStore {
+
+    public record Stats(int ues, long procedures) {}
+
+    private final Map<String, UeProcedures> byUe = new ConcurrentHashMap<>();
+    private final ProcedureReplicator replicator;
+
+    public InMemoryProcedureStore(ProcedureReplicator replicator) {
+        this.replicator = replicator;
+        if (replicator != null) replicator.start(this::get);
+    }
+
+    @Override
+    public void add(Procedure p) {
+        byUe.compute(p.getUeId(), (k, u) -> {
+            if (u == null) u = new UeProcedures();
+            synchronized (u) {
+                u.add(Slot.of(p));
+            }
+            return u;
+        });
+        dirty(p.getUeId(), p.getProcedureId());
+    }
+
+    @Override
+    public List<Procedure> list(String ueId) {
+        UeProcedures u = byUe.get(ueId);
+        if (u == null) return Collections.emptyList();
+        synchronized (u) {
+            if (u.size == 0) return Collections.emptyList();
+            List<Procedure> out = new ArrayList<>(u.size);
+            for (int i = 0; i < u.size; i++) out.add(u.slots[i].toProcedure(ueId));
+            return out;
+        }
+    }
+
+    @Override
+    public Procedure get(String ueId, String procedureId) {
+        UeProcedures u = byUe.get(ueId);
+        if (u == null) return null;
+        synchronized (u) {
+            Slot s = u.find(procedureId);
+            return s == null ? null : s.toProcedure(ueId);
+        }
+    }
+
+    @Override
+    public boolean update(String ueId, String procedureId, Update upd) {
+        UeProcedures u = byUe.get(ueId);
+        if (u == null) return false;
+        synchronized (u) {
+            Slot s = u.find(procedureId);
+            if (s == null) return false;
+            s.lastMessageType = upd.msgType();
+            s.lastUpdateTime = upd.now();
+            s.lastUpdateMs = upd.nowMs();
+            s.lastPhaseIndex = upd.lastPhaseIndex();
+            s.lastOrderIndex = upd.lastOrderIndex();
+            s.messageNum++;
+            if (upd.endSeen() != null) {
+                s.endSeen = upd.endSeen();
+                s.endSeenAtMs = upd.endSeenAtMs();
+                s.keyMask = upd.keyMask();
+            }
+        }
+        dirty(ueId, procedureId);
+        return true;
+    }
+
+    @Override
+    public boolean remove(String ueId, String procedureId) {
+        boolean[] removed = new boolean[1];
+        byUe.computeIfPresent(ueId, (k, u) -> {
+            synchronized (u) {
+                removed[0] = u.remove(procedureId);
+                return u.size == 0 ? null : u;
+            }
+        });
+        if (removed[0] && replicator != null) replicator.markRemoved(ueId, procedureId);
+        return removed[0];
+    }
+
+    /** 恢复用：把 Redis 里读回来的流程放进来（已存在的 id 跳过），不再回写 Redis */
+    public void load(String ueId, List<Procedure> procedures) {
+        byUe.compute(ueId, (k, u) -> {
+            if (u == null) u = new UeProcedures();
+            synchronized (u) {
+                for (Procedure p : procedures) {
+                    if (p.getProcedureId() != null && u.find(p.getProcedureId()) == null) u.add(Slot.of(p));
+                }
+                return u.size == 0 ? null : u;
+            }
+        });
+    }
+
+    public Stats stats() {
+        long n = 0;
+        for (UeProcedures u : byUe.values()) {
+            synchronized (u) {
+                n += u.size;
+            }
+        }
+        return new Stats(byUe.size(), n);
+    }
+
+    @Override
+    public void close() {
+        if (replicator != null) replicator.close();
+    }
+
+    private void dirty(String ueId, String procedureId) {
+        if (replicator != null) replicator.markDirty(ueId, procedureId);
+    }
+
+    // ===================== internal =====================
+
+    /** 一个 UE 的活跃流程 */
+    private static final class UeProcedures {
+        Slot[] slots = new Slot[2];
+        int size;
+
+        void add(Slot s) {
+            if (size == slots.length) {
+                Slot[] n = new Slot[size * 2];
+                System.arraycopy(slots, 0, n, 0, size);
+                slots = n;
+            }
+            slots[size++] = s;
+        }
+
+        Slot find(String procedureId) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i].procedureId.equals(procedureId)) return slots[i];
+            }
+            return null;
+        }
+
+        boolean remove(String procedureId) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i].procedureId.equals(procedureId)) {
+                    // 保持创建顺序，list 的结果稳定
+                    System.arraycopy(slots, i + 1, slots, i, size - i - 1);
+                    slots[--size] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** 一个活跃流程，字段和 Procedure 一一对应（ueId 在外层） */
+    private static final class Slot {
+        String procedureId;
+        String procedureType;
+        String procedureTypeCode;
+        String lastMessageType;
+        String activateTime;
+        String lastUpdateTime;
+        long activateMs;
+        long lastUpdateMs;
+        String endTime;
+        int messageNum;
+        int lastPhaseIndex;
+        int lastOrderIndex;
+        boolean endSeen;
+        long endSeenAtMs;
+        int keyMask;
+
+        static Slot of(Procedure p) {
+            Slot s = new Slot();
+            s.procedureId = p.getProcedureId();
+            s.procedureType = p.getProcedureType();
+            s.procedureTypeCode = p.getProcedureTypeCode();
+            s.lastMessageType = p.getLastMessageType();
+            s.activateTime = p.getActivateTime();
+            s.lastUpdateTime = p.getLastUpdateTime();
+            s.activateMs = p.getActivateMs();
+            s.lastUpdateMs = p.getLastUpdateMs();
+            s.endTime = p.getEndTime();
+            s.messageNum = p.getMessageNum();
+            s.lastPhaseIndex = p.getLastPhaseIndex();
+            s.lastOrderIndex = p.getLastOrderIndex();
+            s.endSeen = p.isEndSeen();
+            s.endSeenAtMs = p.getEndSeenAtMs();
+            s.keyMask = p.getKeyMask();
+            return s;
+        }
+
+        Procedure toProcedure(String ueId) {
+            Procedure p = new Procedure();
+            p.setProcedureId(procedureId);
+            p.setUeId(ueId);
+            p.setProcedureType(procedureType);
+            p.setProcedureTypeCode(procedureTypeCode);
+            p.setLastMessageType(lastMessageType);
+            p.setActivateTime(activateTime);
+            p.setLastUpdateTime(lastUpdateTime);
+            p.setActivateMs(activateMs);
+            p.setLastUpdateMs(lastUpdateMs);
+            p.setEndTime(endTime);
+            p.setMessageNum(messageNum);
+            p.setLastPhaseIndex(lastPhaseIndex);
+            p.setLastOrderIndex(lastOrderIndex);
+            p.setEndSeen(endSeen);
+            p.setEndSeenAtMs(endSeenAtMs);
+            p.setKeyMask(keyMask);
+            return p;
+        }
+    }
+}
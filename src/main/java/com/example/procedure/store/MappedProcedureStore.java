@@ -0,0 +1,120 @@
+package com.example.procedure.store;
+
+import com.example.procedure.codec.ProcedureCodec;
+import com.example.procedure.model.Procedure;
+import com.example.procedure.state.MappedSlotTable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * state.backend.mode=mmap 时的流程存储：一个 UE 的活跃流程编码成一段字节放进 MappedSlotTable 的一个槽位，
+ * 格式 [个数 2][长度 2][ProcedureCodec 编码]...；每次改动整段重写（一个 UE 通常就 1~3 个流程，几百字节）。
+ *
+ * 存活期和 RedisProcedureStore 一样是一小时、写一次续一次，进程挂掉重启后流程还在。
+ * 一个 UE 的流程多到槽位放不下时 add 抛 IllegalArgumentException，槽位大小见 state.backend.mmap.procedure-slot-bytes。
+ */
+public class MappedProcedureStore implements ProcedureStore {
+
+    private static final long TTL_MS = RedisProcedureStore.REDIS_TTL_SECONDS * 1000L;
+
+    private final MappedSlotTable table;
+    private final LongSupplier clock;
+
+    public MappedProcedureStore(MappedSlotTable table, LongSupplier clock) {
+        this.table = table;
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized void add(Procedure p) {
+        List<Procedure> all = load(p.getUeId());
+        all.add(p);
+        save(p.getUeId(), all);
+    }
+
+    @Override
+    public synchronized List<Procedure> list(String ueId) {
+        List<Procedure> all = load(ueId);
+        return all.isEmpty() ? Collections.emptyList() : all;
+    }
+
+    @Override
+    public synchronized Procedure get(String ueId, String procedureId) {
+        for (Procedure p : load(ueId)) {
+            if (procedureId.equals(p.getProcedureId())) return p;
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized boolean update(String ueId, String procedureId, Update u) {
+        List<Procedure> all = load(ueId);
+        for (Procedure p : all) {
+            if (!procedureId.equals(p.getProcedureId())) continue;
+            p.setLastMessageType(u.msgType());
+            p.setLastUpdateTime(u.now());
+            p.setLastUpdateMs(u.nowMs());
+            p.setLastPhaseIndex(u.lastPhaseIndex());
+            p.setLastOrderIndex(u.lastOrderIndex());
+            p.setMessageNum(p.getMessageNum() + 1);
+            if (u.endSeen() != null) {
+                p.setEndSeen(u.endSeen());
+                p.setEndSeenAtMs(u.endSeenAtMs());
+                p.setKeyMask(u.keyMask());
+            }
+            save(ueId, all);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized boolean remove(String ueId, String procedureId) {
+        List<Procedure> all = load(ueId);
+        if (!all.removeIf(p -> procedureId.equals(p.getProcedureId()))) return false;
+        save(ueId, all);
+        return true;
+    }
+
+    // ===================== internal =====================
+
+    private List<Procedure> load(String ueId) {
+        byte[] blob = table.get(ueId, clock.getAsLong());
+        List<Procedure> out = new ArrayList<>(4);
+        if (blob == null) return out;
+        ByteBuffer b = ByteBuffer.wrap(blob);
+        int n = b.getShort() & 0xFFFF;
+        for (int i = 0; i < n; i++) {
+            byte[] one = new byte[b.getShort() & 0xFFFF];
+            b.get(one);
+            out.add(ProcedureCodec.decode(one));
+        }
+        return out;
+    }
+
+    private void save(String ueId, List<Procedure> all) {
+        if (all.isEmpty()) {
+            table.remove(ueId);
+            return;
+        }
+        List<byte[]> encoded = new ArrayList<>(all.size());
+        int len = 2;
+        for (Procedure p : all) {
+            byte[] e = ProcedureCodec.encode(p);
+            encoded.add(e);
+            len += 2 + e.length;
+        }
+        ByteBuffer b = ByteBuffer.allocate(len);
+        b.putShort((short) all.size());
+        for (byte[] e : encoded) {
+            b.putShort((short) e.length);
+            b.put(e);
+        }
+        long now = clock.getAsLong();
+        table.put(ueId, b.array(), now + TTL_MS, now);
+    }
+}
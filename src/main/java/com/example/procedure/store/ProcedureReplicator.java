@@ -0,0 +1,191 @@
+package com.example.procedure.store;
+
+import com.example.procedure.model.Procedure;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * InMemoryProcedureStore 到 Redis 的异步副本。
+ *
+ *  - 处理线程只调 markDirty / markRemoved 记一下 procedureId，不碰 Redis；同一个流程在两次刷新之间改多少次都只写一次。
+ *  - 后台线程每 flushIntervalMs 取一批（最多 batchSize 个，删除优先）按内存里的最新状态整条写过去，
+ *    内存里已经没有的（结束了）就删掉，一批一个 pipeline。
+ *  - 脏表满了（maxPending，Redis 长时间不可用）新的改动直接丢并计数，不能反过来拖住消息处理。
+ *    丢的只能是新建 / 更新：Redis 里的那份旧一点或者没有，重启后少恢复几个流程。
+ *  - 删除（墓碑）单独放，从来不丢：丢了的话 Redis 里那条会一直留到 TTL，重启时把已经结束的流程当活的恢复回来。
+ *    墓碑只有 procedureId + ueId，数量跟着结束的流程走；一个流程的改动还没写就结束了，它那格直接变成墓碑。
+ *  - 写失败的那批放回去下次再试（墓碑照样不丢）。
+ */
+@Slf4j
+public class ProcedureReplicator implements AutoCloseable {
+
+    /** 副本写到哪儿（RedisProcedureStore）；removals 里每项是 {ueId, procedureId} */
+    public interface Target {
+        void replicate(List<Procedure> upserts, List<String[]> removals);
+    }
+
+    public record Stats(long marked, long upserts, long removals, long dropped, long failures, int pending) {}
+
+    private final Target target;
+    private final long flushIntervalMs;
+    private final int maxPending;
+    private final int batchSize;
+
+    /** procedureId -> ueId，按第一次变脏的顺序；受 maxPending 限制 */
+    private final LinkedHashMap<String, String> dirty = new LinkedHashMap<>();
+    /** 墓碑：procedureId -> ueId，不受 maxPending 限制 */
+    private final LinkedHashMap<String, String> removed = new LinkedHashMap<>();
+    private BiFunction<String, String, Procedure> source;
+    private ScheduledExecutorService exec;
+
+    private long marked, upserts, removals, dropped, failures;
+    private boolean failing;
+
+    /** flushIntervalMs <= 0：不起后台线程，只在 flush() / close() 时写 */
+    public ProcedureReplicator(Target target, long flushIntervalMs, int maxPending, int batchSize) {
+        this.target = target;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxPending = Math.max(1, maxPending);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /** source(ueId, procedureId)：取内存里的当前状态，没有了返回 null */
+    synchronized void start(BiFunction<String, String, Procedure> source) {
+        this.source = source;
+        if (flushIntervalMs > 0 && exec == null) {
+            exec = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "procedure-replicator");
+                t.setDaemon(true);
+                return t;
+            });
+            exec.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void markDirty(String ueId, String procedureId) {
+        if (dirty.containsKey(procedureId)) return;
+        // 删了又加回来（归档队列满时 close 会放回去）：占墓碑那格，不算新的
+        if (removed.remove(procedureId) == null && dirty.size() >= maxPending) {
+            dropped++;
+            return;
+        }
+        dirty.put(procedureId, ueId);
+        marked++;
+    }
+
+    /** 流程从内存里删掉了：记墓碑，不管脏表满没满 */
+    public synchronized void markRemoved(String ueId, String procedureId) {
+        dirty.remove(procedureId);
+        if (removed.put(procedureId, ueId) == null) marked++;
+    }
+
+    /** 把当前脏的全部写完（分批），返回写了多少个流程 */
+    public int flush() {
+        int total = 0;
+        while (true) {
+            List<Pending> batch = take();
+            if (batch.isEmpty()) return total;
+
+            List<Procedure> up = new ArrayList<>(batch.size());
+            List<String[]> rm = new ArrayList<>();
+            for (Pending e : batch) {
+                Procedure p = source.apply(e.ueId(), e.procedureId());
+                if (p != null) up.add(p);
+                else rm.add(new String[]{e.ueId(), e.procedureId()});
+            }
+            try {
+                target.replicate(up, rm);
+            } catch (RuntimeException ex) {
+                putBack(batch);
+                synchronized (this) {
+                    failures++;
+                    if (!failing) log.warn("Procedure replication to Redis failed, will retry: {}", ex.toString());
+                    failing = true;
+                }
+                return total;
+            }
+            synchronized (this) {
+                upserts += up.size();
+                removals += rm.size();
+                if (failing) log.info("Procedure replication to Redis recovered");
+                failing = false;
+            }
+            total += batch.size();
+        }
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(marked, upserts, removals, dropped, failures, dirty.size() + removed.size());
+    }
+
+    /** 停机：停后台线程，把剩下的写完 */
+    @Override
+    public void close() {
+        ScheduledExecutorService e;
+        synchronized (this) {
+            e = exec;
+            exec = null;
+        }
+        if (e != null) {
+            e.shutdown();
+            try {
+                e.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (source != null) flush();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            log.warn("Procedure replication flush failed", ex);
+        }
+    }
+
+    /** 取出来的一项；tombstone 记着它是从哪张表来的，放回去时回原处 */
+    private record Pending(String procedureId, String ueId, boolean tombstone) {}
+
+    /** 先取墓碑再取脏表 */
+    private synchronized List<Pending> take() {
+        List<Pending> out = new ArrayList<>(Math.min(batchSize, removed.size() + dirty.size()));
+        drain(removed, true, out);
+        drain(dirty, false, out);
+        return out;
+    }
+
+    private void drain(Map<String, String> from, boolean tombstone, List<Pending> out) {
+        Iterator<Map.Entry<String, String>> it = from.entrySet().iterator();
+        while (it.hasNext() && out.size() < batchSize) {
+            Map.Entry<String, String> e = it.next();
+            out.add(new Pending(e.getKey(), e.getValue(), tombstone));
+            it.remove();
+        }
+    }
+
+    private synchronized void putBack(List<Pending> batch) {
+        for (Pending e : batch) {
+            if (e.tombstone()) {
+                // 写失败期间又加回来了的就不用删了，markDirty 那边已经记上
+                if (!dirty.containsKey(e.procedureId())) removed.putIfAbsent(e.procedureId(), e.ueId());
+            } else if (removed.containsKey(e.procedureId())) {
+                // 写失败期间结束了：墓碑已经记着
+            } else if (dirty.size() >= maxPending) {
+                dropped++;
+            } else {
+                dirty.putIfAbsent(e.procedureId(), e.ueId());
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.procedure.store;
+
+import com.example.procedure.model.Procedure;
+
+import java.util.List;
+
+/**
+ * 活跃流程的存储。ProManager_Service 只管流程语义（建、改、结束归档），数据放哪由实现决定：
+ *  - InMemoryProcedureStore：进程内为主，Redis 只是异步副本（也可以完全不用 Redis）
+ *  - RedisProcedureStore   ：Redis 为主，每个操作一次往返（老的部署方式）
+ *  - MappedProcedureStore  ：内存映射文件（state.backend.mode=mmap），不用 Redis、重启还在
+ *
+ * list / get 返回的都是副本，调用方随便改，要落库得再调 update。
+ */
+public interface ProcedureStore extends AutoCloseable {
+
+    /** 一次消息带来的流程更新；now / nowMs 是同一个时间；endSeen 为 null 表示不动乱序结束控制的三个字段 */
+    record Update(String msgType, String now, long nowMs, int lastPhaseIndex, int lastOrderIndex,
+                  Boolean endSeen, long endSeenAtMs, int keyMask) {}
+
+    /** 新建流程，procedureId 等字段调用方已经填好 */
+    void add(Procedure p);
+
+    /** 某 UE 的活跃流程，没有返回空列表 */
+    List<Procedure> list(String ueId);
+
+    /** 不存在返回 null */
+    Procedure get(String ueId, String procedureId);
+
+    /** 刷字段、messageNum + 1；流程不存在返回 false */
+    boolean update(String ueId, String procedureId, Update u);
+
+    /**
+     * 删掉流程；返回这次调用是不是真删掉了（不存在 / 被别的线程先删了返回 false）。
+     * 消息线程结束流程和到期线程关流程可能同时删同一个，只有返回 true 的那个去归档。
+     */
+    boolean remove(String ueId, String procedureId);
+
+    /** 停机时调用：有没写完的副本在这里刷掉 */
+    @Override
+    default void close() {
+    }
+}
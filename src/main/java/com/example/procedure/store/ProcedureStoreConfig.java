@@ -0,0 +1,59 @@
+package com.example.procedure.store;
+
+import com.example.procedure.codec.StateStorageProperties;
+import com.example.procedure.state.StateBackend;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Locale;
+
+@Configuration
+public class ProcedureStoreConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcedureStoreConfig.class);
+
+    /** 流程存储跟着 state.backend 走，关闭也归 backend 管 */
+    @Bean(destroyMethod = "")
+    public ProcedureStore procedureStore(StateBackend stateBackend) {
+        return stateBackend.procedures();
+    }
+
+    /** state.backend.mode=redis 时按 procedure.store.* 建流程存储（见 StateBackendConfig） */
+    public static ProcedureStore create(ProcedureStoreProperties props, StringRedisTemplate redisTemplate,
+                                        ObjectMapper objectMapper, StateStorageProperties storageProps) {
+        String mode = props.getMode() == null ? "memory" : props.getMode().trim().toLowerCase(Locale.ROOT);
+        switch (mode) {
+            case "redis":
+                log.info("Procedure store: redis");
+                return new RedisProcedureStore(redisTemplate, objectMapper, storageProps);
+            case "memory":
+                break;
+            default:
+                throw new IllegalArgumentException("unknown procedure.store.mode: " + props.getMode());
+        }
+
+        if (!props.isReplicate()) {
+            log.info("Procedure store: memory (no Redis)");
+            return new InMemoryProcedureStore(null);
+        }
+        RedisProcedureStore redis = new RedisProcedureStore(redisTemplate, objectMapper, storageProps);
+        InMemoryProcedureStore store = new InMemoryProcedureStore(new ProcedureReplicator(redis,
+                props.getFlushIntervalMs(), props.getMaxPending(), props.getBatchSize()));
+        if (props.isRecoverOnStart()) {
+            try {
+                int n = redis.recover(store::load);
+                log.info("Procedure store: memory, replicated to Redis, recovered {} active procedures", n);
+            } catch (RuntimeException e) {
+                // Redis 不可用不影响启动，副本等它恢复后再补
+                log.warn("Procedure store: recovery from Redis failed, starting empty: {}", e.toString());
+            }
+        } else {
+            log.info("Procedure store: memory, replicated to Redis");
+        }
+        return store;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.procedure.store;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "procedure.store")
+public class ProcedureStoreProperties {
+
+    /**
+     * memory：活跃流程以进程内为准（默认），Redis 只做异步副本/重启恢复
+     * redis ：Redis 为主，每个操作都读写 Redis（多实例共享流程状态时用）
+     */
+    private String mode = "memory";
+
+    /** memory 模式下是否异步写 Redis；false 完全不碰 Redis（离线批处理） */
+    private boolean replicate = true;
+
+    /** memory 模式启动时从 Redis 读回活跃流程 */
+    private boolean recoverOnStart = true;
+
+    /** 副本刷新间隔（毫秒） */
+    private long flushIntervalMs = 100;
+
+    /** 待写副本上限（流程数），满了丢弃并计数 */
+    private int maxPending = 200_000;
+
+    /** 一个 pipeline 最多写多少个流程 */
+    private int batchSize = 500;
+}
@@ -0,0 +1,326 @@
+package com.example.procedure.store;
+
+import com.example.procedure.codec.ProcedureCodec;
+import com.example.procedure.codec.StateStorageProperties;
+import com.example.procedure.model.Procedure;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Redis 为主的流程存储（procedure.store.mode=redis），也是 InMemoryProcedureStore 的副本目标。
+ *
+ * 更新是服务端脚本，一次往返（原来 update_ActProcedureEx 要 hasKey + 7 次 HSET + HINCRBY + 2 次 EXPIRE），
+ * 新建和删除是一个 pipeline，list 是 SMEMBERS + 一个 pipeline 取各流程（两次往返）。
+ * 脚本见 resources/lua/，只碰 KEYS 里声明的 key；EVALSHA 由 Spring 的 ScriptExecutor 发，NOSCRIPT 时自动退回 EVAL。
+ * 只支持单实例 / 哨兵：更新脚本的两个 KEYS（流程 key、UE 集合 key）没有 hash tag，Cluster 下不在同一个 slot，会报 CROSSSLOT。
+ */
+public class RedisProcedureStore implements ProcedureStore, ProcedureReplicator.Target {
+
+    /** Redis 中流程的 TTL（秒），这里是 1 小时 */
+    public static final long REDIS_TTL_SECONDS = 3600L;
+
+    /** Redis key 前缀（可统一管理） */
+    private static final String PREFIX_PROCEDURE_HASH = "procedure:hash:";
+    private static final String PREFIX_PROCEDURE_BIN = "procedure:bin:";   // 二进制存法（ProcedureCodec）
+    private static final String PREFIX_UE_SET = "procedure:set:ue:";
+
+    private static final RedisScript<Long> UPDATE_HASH_SCRIPT = script("lua/procedure_update_hash.lua", Long.class);
+    private static final RedisScript<Long> UPDATE_BIN_SCRIPT = script("lua/procedure_update_bin.lua", Long.class);
+
+    /** 脚本参数里有二进制编码：byte[] 原样传，其它按字符串 */
+    private static final RedisSerializer<Object> RAW = new RawSerializer();
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final StateStorageProperties storageProps;
+
+    public RedisProcedureStore(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                               StateStorageProperties storageProps) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.storageProps = storageProps;
+    }
+
+    // -------------------- Redis key helper --------------------
+    private String redisKeyForProcedure(String procedureId) {
+        return PREFIX_PROCEDURE_HASH + procedureId;
+    }
+
+    private String redisKeyForProcedureBin(String procedureId) {
+        return PREFIX_PROCEDURE_BIN + procedureId;
+    }
+
+    private String redisKeyForUeSet(String ueId) {
+        return PREFIX_UE_SET + ueId;
+    }
+
+    // -------------------- ProcedureStore --------------------
+
+    /** 写流程 + 挂到 UE 集合，一个 pipeline */
+    @Override
+    public void add(Procedure p) {
+        replicate(List.of(p), List.of());
+    }
+
+    /**
+     * 先 SMEMBERS 拿 id，再一个 pipeline 逐个取 value。
+     * 不在脚本里拼 key：Redis 要求脚本碰的 key 都从 KEYS 传进来，现拼的不算数。
+     */
+    @Override
+    public List<Procedure> list(String ueId) {
+        boolean bin = storageProps.isBinary();
+        Set<String> members = redisTemplate.opsForSet().members(redisKeyForUeSet(ueId));
+        if (members == null || members.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> ids = new ArrayList<>(members);
+        // RAW：二进制 value 原样拿回来（hash 的 map 走模板自己的 hash 序列化器，是 String）
+        List<Object> values = redisTemplate.executePipelined((RedisCallback<Object>) conn -> {
+            for (String pid : ids) {
+                if (bin) {
+                    conn.stringCommands().get(bytes(redisKeyForProcedureBin(pid)));
+                } else {
+                    conn.hashCommands().hGetAll(bytes(redisKeyForProcedure(pid)));
+                }
+            }
+            return null;
+        }, RAW);
+
+        List<Procedure> result = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            String pid = ids.get(i);
+            Object value = i < values.size() ? values.get(i) : null;
+            if (bin) {
+                if (value instanceof byte[] v) {
+                    result.add(ProcedureCodec.decode(v));
+                } else if (storageProps.isMigrate()) {
+                    // 没有二进制 value 的从老 hash 转过来
+                    Procedure legacy = migrateFromHash(pid);
+                    if (legacy != null) result.add(legacy);
+                }
+                continue;
+            }
+            Map<?, ?> raw = (Map<?, ?>) value;
+            if (raw == null || raw.isEmpty()) {
+                continue;
+            }
+            Map<String, String> data = new HashMap<>(raw.size() * 2);
+            raw.forEach((k, v) -> data.put(String.valueOf(k), String.valueOf(v)));
+            // Redis Hash -> Procedure
+            result.add(objectMapper.convertValue(data, Procedure.class));
+        }
+        return result;
+    }
+
+    @Override
+    public Procedure get(String ueId, String procedureId) {
+        if (storageProps.isBinary()) {
+            return readBinary(procedureId);
+        }
+        Map<Object, Object> procedureMap = redisTemplate.opsForHash().entries(redisKeyForProcedure(procedureId));
+        if (procedureMap == null || procedureMap.isEmpty()) {
+            return null;
+        }
+        // Map -> Procedure
+        return objectMapper.convertValue(procedureMap, Procedure.class);
+    }
+
+    @Override
+    public boolean update(String ueId, String procedureId, Update u) {
+        Long updated;
+        if (storageProps.isBinary()) {
+            byte[] patch = ProcedureCodec.patch(u.msgType(), u.now(), u.nowMs(), u.lastPhaseIndex(), u.lastOrderIndex(),
+                    u.endSeen(), u.endSeenAtMs(), u.keyMask());
+            List<String> keys = List.of(redisKeyForProcedureBin(procedureId), redisKeyForUeSet(ueId));
+            updated = eval(UPDATE_BIN_SCRIPT, keys,
+                    REDIS_TTL_SECONDS, patch, ProcedureCodec.MESSAGE_NUM);
+            if ((updated == null || updated == 0L) && storageProps.isMigrate() && migrateFromHash(procedureId) != null) {
+                // 老 hash 还没转：转成二进制后再改一次（只有升级后第一次碰到时多这几步）
+                updated = eval(UPDATE_BIN_SCRIPT, keys,
+                        REDIS_TTL_SECONDS, patch, ProcedureCodec.MESSAGE_NUM);
+            }
+        } else {
+            // 这里一定要转成 String，因为 StringRedisTemplate 的 hashValueSerializer 是 StringRedisSerializer
+            List<Object> args = new ArrayList<>(List.of(REDIS_TTL_SECONDS,
+                    "lastMessageType", u.msgType(),
+                    "lastUpdateTime", u.now(),
+                    "lastUpdateMs", String.valueOf(u.nowMs()),
+                    "lastPhaseIndex", String.valueOf(u.lastPhaseIndex()),
+                    "lastOrderIndex", String.valueOf(u.lastOrderIndex())));
+            if (u.endSeen() != null) {
+                // ===== 乱序结束控制字段 =====
+                args.addAll(List.of("endSeen", String.valueOf(u.endSeen()),
+                        "endSeenAtMs", String.valueOf(u.endSeenAtMs()),
+                        "keyMask", String.valueOf(u.keyMask())));
+            }
+            updated = eval(UPDATE_HASH_SCRIPT,
+                    List.of(redisKeyForProcedure(procedureId), redisKeyForUeSet(ueId)), args.toArray());
+        }
+        return updated != null && updated != 0L;
+    }
+
+    /** 从 Redis 中删除流程 & UE 的 Set 中移除（一个 pipeline）；DEL 删掉了 key 才算这次删的 */
+    @Override
+    public boolean remove(String ueId, String procedureId) {
+        String key = storageProps.isBinary() ? redisKeyForProcedureBin(procedureId) : redisKeyForProcedure(procedureId);
+        List<Object> r = redisTemplate.executePipelined((RedisCallback<Object>) conn -> {
+            StringRedisConnection c = (StringRedisConnection) conn;
+            c.del(key);
+            c.sRem(redisKeyForUeSet(ueId), procedureId);
+            return null;
+        });
+        return !r.isEmpty() && r.get(0) instanceof Long n && n > 0;
+    }
+
+    // -------------------- 副本 / 恢复（InMemoryProcedureStore 也用） --------------------
+
+    /** 整条覆盖写（新建 / 内存副本），删掉已结束的；一个 pipeline */
+    @Override
+    public void replicate(List<Procedure> upserts, List<String[]> removals) {
+        boolean bin = storageProps.isBinary();
+        redisTemplate.executePipelined((RedisCallback<Object>) conn -> {
+            StringRedisConnection c = (StringRedisConnection) conn;
+            for (Procedure p : upserts) {
+                String ueKey = redisKeyForUeSet(p.getUeId());
+                if (bin) {
+                    conn.stringCommands().set(bytes(redisKeyForProcedureBin(p.getProcedureId())), ProcedureCodec.encode(p),
+                            Expiration.seconds(REDIS_TTL_SECONDS), RedisStringCommands.SetOption.upsert());
+                } else {
+                    String key = redisKeyForProcedure(p.getProcedureId());
+                    c.hMSet(key, toHash(p));
+                    c.expire(key, REDIS_TTL_SECONDS);
+                }
+                c.sAdd(ueKey, p.getProcedureId());
+                c.expire(ueKey, REDIS_TTL_SECONDS);
+            }
+            for (String[] r : removals) {
+                c.del(bin ? redisKeyForProcedureBin(r[1]) : redisKeyForProcedure(r[1]));
+                c.sRem(redisKeyForUeSet(r[0]), r[1]);
+            }
+            return null;
+        });
+    }
+
+    /** 启动恢复：SCAN 所有 UE 集合，逐个 UE 读出活跃流程交给 sink，返回读到的流程数 */
+    public int recover(BiConsumer<String, List<Procedure>> sink) {
+        List<String> ueIds = new ArrayList<>();
+        ScanOptions opts = ScanOptions.scanOptions().match(PREFIX_UE_SET + "*").count(1000).build();
+        try (Cursor<String> cursor = redisTemplate.scan(opts)) {
+            cursor.forEachRemaining(k -> ueIds.add(k.substring(PREFIX_UE_SET.length())));
+        }
+        int n = 0;
+        for (String ueId : ueIds) {
+            List<Procedure> l = list(ueId);
+            if (!l.isEmpty()) {
+                sink.accept(ueId, l);
+                n += l.size();
+            }
+        }
+        return n;
+    }
+
+    // -------------------- 内部辅助方法 --------------------
+
+    /** Procedure -> hash 字段，⚡ 强制把所有 value 转成 String（和老写法一致，null 也写成 "null"） */
+    @SuppressWarnings("unchecked")
+    private Map<String, String> toHash(Procedure p) {
+        Map<String, Object> mapObj = objectMapper.convertValue(p, Map.class);
+        Map<String, String> m = new HashMap<>(mapObj.size() * 2);
+        mapObj.forEach((k, v) -> m.put(k, String.valueOf(v)));
+        return m;
+    }
+
+    private Procedure readBinary(String procedureId) {
+        List<Procedure> l = readBinary(List.of(procedureId));
+        return l.isEmpty() ? null : l.get(0);
+    }
+
+    /** 一次 MGET 取一批；没有二进制 value 的（migrate 打开时）从老 hash 转过来 */
+    private List<Procedure> readBinary(List<String> procedureIds) {
+        byte[][] keys = new byte[procedureIds.size()][];
+        for (int i = 0; i < keys.length; i++) keys[i] = bytes(redisKeyForProcedureBin(procedureIds.get(i)));
+        List<byte[]> values = redisTemplate.execute((RedisCallback<List<byte[]>>) conn -> conn.stringCommands().mGet(keys));
+
+        List<Procedure> result = new ArrayList<>(procedureIds.size());
+        for (int i = 0; i < keys.length; i++) {
+            byte[] v = values == null ? null : values.get(i);
+            if (v != null) {
+                result.add(ProcedureCodec.decode(v));
+            } else if (storageProps.isMigrate()) {
+                Procedure legacy = migrateFromHash(procedureIds.get(i));
+                if (legacy != null) result.add(legacy);
+            }
+        }
+        return result;
+    }
+
+    private Procedure migrateFromHash(String procedureId) {
+        String hashKey = redisKeyForProcedure(procedureId);
+        Map<Object, Object> data = redisTemplate.opsForHash().entries(hashKey);
+        if (data == null || data.isEmpty()) {
+            return null;
+        }
+        Procedure p = objectMapper.convertValue(data, Procedure.class);
+        byte[] key = bytes(redisKeyForProcedureBin(p.getProcedureId()));
+        byte[] value = ProcedureCodec.encode(p);
+        redisTemplate.execute((RedisCallback<Object>) conn -> conn.stringCommands().set(key, value,
+                Expiration.seconds(REDIS_TTL_SECONDS), RedisStringCommands.SetOption.upsert()));
+        redisTemplate.delete(hashKey);
+        return p;
+    }
+
+    /** 跑脚本：参数走 RAW；结果是整数/数组时 RAW 不会把元素转成别的类型（数组元素是 byte[]） */
+    @SuppressWarnings("unchecked")
+    private <T> T eval(RedisScript<T> script, List<String> keys, Object... args) {
+        return redisTemplate.execute(script, RAW, (RedisSerializer<T>) (RedisSerializer<?>) RAW, keys, args);
+    }
+
+    /** 启动时读一次脚本文本（setLocation 每次取 SHA 都要检查资源是否被改过，热路径上不划算） */
+    private static <T> RedisScript<T> script(String path, Class<T> resultType) {
+        try {
+            String text = new ClassPathResource(path).getContentAsString(StandardCharsets.UTF_8);
+            return new DefaultRedisScript<>(text, resultType);
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot load " + path, e);
+        }
+    }
+
+    private static final class RawSerializer implements RedisSerializer<Object> {
+        @Override
+        public byte[] serialize(Object o) throws SerializationException {
+            if (o == null) return null;
+            return o instanceof byte[] b ? b : bytes(String.valueOf(o));
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) throws SerializationException {
+            return bytes;
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.procedure.streaming.layers;
 
+import com.example.procedure.id.IdGenerator;
 import com.example.procedure.model.SignalingMessage;
 import com.example.procedure.streaming.parser.RrcNasParseResult;
 import com.example.procedure.parser.MacInfo;
@@ -9,17 +10,20 @@ import com.example.procedure.parser.PdcpInfo;
 import com.example.procedure.parser.RrcInfo;
 
 import java.util.List;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 public final class ChainsInspectConsumer implements Consumer<List<RrcNasParseResult>> {
 
-    private static final AtomicLong SEQ = new AtomicLong(0);
-
     private final Consumer<SignalingMessage> onMessage;
+    private final IdGenerator ids;
 
     public ChainsInspectConsumer(Consumer<SignalingMessage> onMessage) {
+        this(onMessage, IdGenerator.getDefault());
+    }
+
+    public ChainsInspectConsumer(Consumer<SignalingMessage> onMessage, IdGenerator ids) {
         this.onMessage = onMessage;
+        this.ids = ids;
     }
 
     @Override
@@ -29,8 +33,8 @@ public final class ChainsInspectConsumer implements Consumer<List<RrcNasParseRes
         for (RrcNasParseResult chain : chains) {
             SignalingMessage msg = buildMessage(chain);
             if (msg != null) {
-                long id = SEQ.incrementAndGet();
-                msg.setMsgId("MSG-" + id);
+                // 线程本地领号，"MSG-xxx" 字符串用到时才拼
+                msg.setMsgIdNum(ids.next());
                 onMessage.accept(msg);
                 // 你想 dump 或者传上层就行
             }
@@ -50,12 +54,9 @@ public final class ChainsInspectConsumer implements Consumer<List<RrcNasParseRes
         msg.setIface(chain.getIface());              // ✅ 解析时已填：Uu / N2 / N12
         msg.setDirection(chain.getDirection());      // ✅ 解析时已填：UL / DL
 
-        // msgType：两种方式任选其一
-        // A) 解析时已规范化 msgType（推荐）
+        // msgType：解析时已经定了 msgCode，这里按目录给出规范写法；code 一起带下去，后面按 code 查表
         msg.setMsgType(RrcNasParseResult.normalizedMsgType(chain.getMsgCode()));
-
-        // B) 解析时只填了 msgCode，这里映射成规范化 msgType
-        // msg.setMsgType(MsgTypeNameTable.nameOf(chain.getMsgCode()));
+        msg.setMsgCode(chain.getMsgCode());
 
         msg.setUeId(chain.getUeId());                // ✅ NUAR 有就有，没有就 null
 
@@ -1,5 +1,6 @@
 package com.example.procedure.streaming.layers;
 
+import com.example.procedure.metrics.PipelineMetrics;
 import com.example.procedure.model.MsgCode;
 import com.example.procedure.parser.*;
 import com.example.procedure.streaming.index.ChainIndex;
@@ -14,6 +15,7 @@ import com.fasterxml.jackson.core.JsonToken;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 public final class LayersSelectiveParser {
@@ -44,13 +46,23 @@ public final class LayersSelectiveParser {
             }
 
             long packetIndex = 0;
+            long lastOffset = p.currentLocation().getByteOffset();
             while (p.nextToken() != JsonToken.END_ARRAY) {
                 if (p.currentToken() != JsonToken.START_OBJECT) {
                     p.skipChildren();
                     continue;
                 }
 
+                long t0 = System.nanoTime();
                 List<RrcNasParseResult> chains = parseOnePacketObject(p, packetIndex, wantedFields, enabledRawLayers);
+                // 指标只算解析本身，不含下游 onPacket
+                PipelineMetrics.PARSE.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+                long offset = p.currentLocation().getByteOffset();
+                PipelineMetrics.PARSE_BYTES.increment(offset - lastOffset);
+                lastOffset = offset;
+                PipelineMetrics.PARSE_PACKETS.increment();
+                PipelineMetrics.PARSE_CHAINS.increment(chains.size());
+
                 onPacket.accept(chains);
                 packetIndex++;
             }
@@ -142,6 +154,7 @@ public final class LayersSelectiveParser {
                         } else if (isUuMacNr(frame.protoList) && onlyMacAndRlcAfterMac(frame.protoList)) {
                             dropPacket = true;
                         }
+                        if (dropPacket) PipelineMetrics.PARSE_DROPPED.increment();
                     }
                 }
                 continue;
@@ -635,11 +648,7 @@ public final class LayersSelectiveParser {
                 ngap.setMsgName(msgName);
                 ngap.putFieldPath("msgType", ctx.pathString() + "/" + fieldName);
 
-                if ("InitialUEMessage".equalsIgnoreCase(msgName)) {
-                    ctx.markMsgCode(MsgCode.NGAP_INITIAL_UE_MESSAGE.code);
-                } else if ("InitialContextSetupRequest".equalsIgnoreCase(msgName)) {
-                    ctx.markMsgCode(MsgCode.NGAP_INITIAL_CONTEXT_SETUP_REQUEST.code);
-                }
+                ctx.markMsgCode(MsgCode.ofNgap(msgName));
 
                 String dir = null;
                 switch (msgName) {
@@ -669,12 +678,8 @@ public final class LayersSelectiveParser {
                 String msgName = fieldName.substring("nr-rrc.".length(), fieldName.length()
                         - "_element".length());
                 rrc.setMsgName(msgName);
-                // ✅ 在这里顺手打 msgCode
-                if ("rrcSetupComplete".equalsIgnoreCase(msgName)) {
-                    ctx.markMsgCode(MsgCode.RRC_SETUP_COMPLETE.code);
-                } else if ("securityModeCommand".equalsIgnoreCase(msgName)) {
-                    ctx.markMsgCode(MsgCode.RRC_SECURITY_MODE_COMMAND.code);
-                }
+                // ✅ 在这里顺手打 msgCode（目录里查，不认识的是 UNKNOWN，不打）
+                ctx.markMsgCode(MsgCode.ofRrc(msgName));
                 rrc.putFieldPath("msgType", ctx.pathString() + "/" + fieldName);
             }
         }
@@ -767,6 +772,11 @@ public final class LayersSelectiveParser {
                 mac.setRntiType(value);
                 mac.putFieldPath("mac-nr.rnti-type", pathStr);
                 break;
+            case "mac-nr.ulsch.lcid":
+            case "mac-nr.dlsch.lcid":
+                mac.offerLcid(value);
+                mac.putFieldPath(fieldName, pathStr);
+                break;
             default:
                 break;
         }
@@ -855,6 +865,14 @@ public final class LayersSelectiveParser {
                 ngap.setRanUeNgapId(value);
                 ngap.putFieldPath("ngap.RAN_UE_NGAP_ID", pathStr);
                 break;
+            case "ngap.AMF_UE_NGAP_ID":
+                ngap.setAmfUeNgapId(value);
+                ngap.putFieldPath("ngap.AMF_UE_NGAP_ID", pathStr);
+                break;
+            case "ngap.nRCellIdentity":
+                ngap.setNrCellIdentity(value);
+                ngap.putFieldPath("ngap.nRCellIdentity", pathStr);
+                break;
             default:
                 break;
         }
@@ -941,9 +959,7 @@ public final class LayersSelectiveParser {
             case "nas-5gs.mm.message_type":
                 nas.setMmMessageType(value);
                 nas.putFieldPath("nas-5gs.mm.message_type", pathStr);
-                if ("0x5d".equalsIgnoreCase(value)) {
-                    ctx.markMsgCode(MsgCode.NAS_SECURITY_MODE_COMMAND.code);
-                }
+                ctx.markMsgCode(MsgCode.ofNasMm(value));
                 break;
 
             case "nas-5gs.mm.nas_sec_algo_enc":
@@ -976,6 +992,42 @@ public final class LayersSelectiveParser {
                 nas.putFieldPath("nas-5gs.mm.5gs_reg_type", pathStr);
                 break;
 
+            case "nas-5gs.amf_region_id":
+                nas.setAmfRegionId(value);
+                nas.putFieldPath("nas-5gs.amf_region_id", pathStr);
+                break;
+
+            case "nas-5gs.amf_set_id":
+                nas.setAmfSetId(value);
+                nas.putFieldPath("nas-5gs.amf_set_id", pathStr);
+                break;
+
+            case "nas-5gs.amf_pointer":
+                nas.setAmfPointer(value);
+                nas.putFieldPath("nas-5gs.amf_pointer", pathStr);
+                break;
+
+            case "e212.5gsmobid.mcc":
+                nas.setSuciMcc(value);
+                nas.putFieldPath("e212.5gsmobid.mcc", pathStr);
+                break;
+
+            case "e212.5gsmobid.mnc":
+                nas.setSuciMnc(value);
+                nas.putFieldPath("e212.5gsmobid.mnc", pathStr);
+                break;
+
+            case "nas-5gs.mm.suci.routing_indicator":
+                nas.setSuciRoutingIndicator(value);
+                nas.putFieldPath("nas-5gs.mm.suci.routing_indicator", pathStr);
+                break;
+
+            case "nas-5gs.mm.suci.scheme_output":
+            case "nas-5gs.mm.suci.msin":
+                nas.setSuciSchemeOutput(value);
+                nas.putFieldPath(fieldName, pathStr);
+                break;
+
             case "nas-5gs.epd":
                 st.epd = value;
                 break;
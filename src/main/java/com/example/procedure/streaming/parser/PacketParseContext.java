@@ -254,7 +254,7 @@ public final class PacketParseContext {
 
         NUARInfo nuar = ensureNuarInfo();
         nuar.setMsgName("Nausf_UEAuthentication_AuthenticateResponse");
-        markMsgCode(MsgCode.NUAR_AUTHENTICATE_RESPONSE.code);
+        markMsgCode(MsgCode.NUAR_AUTHENTICATE_RESPONSE);
         nuar.setKseafHex(kseaf);
         nuar.setSupi(supi);
 
@@ -316,13 +316,22 @@ public final class PacketParseContext {
         result.setEncrypted(true);
     }
 
+    /**
+     * 一帧只定一个 code：先到先得（RRCSetupComplete 里捎带的 Registration request 还是算 RRCSetupComplete）；
+     * 例外是纯搬运壳（UL/DLInformationTransfer、Up/DownlinkNASTransport），里面的 NAS 消息能认出来就换成 NAS 的。
+     */
     public void markMsgCode(int code) {
         if (code <= 0) return;
-        if (result.getMsgCode() == 0) {
+        int cur = result.getMsgCode();
+        if (cur == 0 || (MsgCode.byCode(cur).isCarrier() && !MsgCode.byCode(code).isCarrier())) {
             result.setMsgCode(code);
         }
     }
 
+    public void markMsgCode(MsgCode code) {
+        markMsgCode(code.code);
+    }
+
 
 
 }
@@ -1,5 +1,6 @@
 package com.example.procedure.streaming.parser;
 
+import com.example.procedure.model.MsgCode;
 import com.example.procedure.parser.*;
 import com.example.procedure.streaming.index.ChainIndex;
 import com.example.procedure.streaming.index.MsgNode;
@@ -72,17 +73,9 @@ public class RrcNasParseResult {
         return out;
     }
 
+    /** code -> SignalingMessage.msgType 的写法（MsgCode 目录）；不认识的返回 null */
     public static String normalizedMsgType(int code) {
-        // 你固定 code 的定义：示例按我之前给的
-        switch (code) {
-            case 1001: return "RRCSetupComplete";
-            case 1002: return "RRC SecurityModeCommand";
-            case 2001: return "Initial UE Message";
-            case 2002: return "Initial Context Setup Request";
-            case 3001: return "NAS SecurityModeCommand";
-            case 4001: return "Nausf_UEAuthentication_Authenticate Response";
-            default: return null;
-        }
+        return MsgCode.byCode(code).displayName();
     }
 
 
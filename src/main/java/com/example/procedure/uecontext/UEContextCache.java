@@ -0,0 +1,129 @@
+package com.example.procedure.uecontext;
+
+import com.example.procedure.model.UEContext;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * UEContext 的进程内近端缓存（挡在 state 后端的上下文前面）。
+ *
+ *  - 读：命中直接给副本，不走后端读 + 解码；后端里没有的 UE 也缓存"不存在"，
+ *        没建上下文的 UE 每条消息都查一次后端的情况就没了。
+ *  - 写：write-through。每个条目记着上次落库时的编码，saveEncoded 时整段比对，
+ *        一样就不写；TTL 也不是每次都续，过了 1/4 才续一次。
+ *        （format=hash 的逐字段差量在 Redis 服务端做，见 RedisStateBackend）
+ *  - 过期：本地条目跟着后端的 TTL 走，后端那边过期了本地也不再认。
+ *
+ * 本类只管内存里的数据和要不要写，后端读写由 UEContextService 做。
+ */
+public class UEContextCache {
+
+    /** 一次 save 要对后端做什么：full=true 整个 value 重写，否则最多续个 TTL */
+    public record Delta(boolean full, boolean refreshTtl) {
+        public boolean isEmpty() {
+            return !full && !refreshTtl;
+        }
+    }
+
+    public record Stats(long hits, long misses, long writes, long skippedWrites, int size) {}
+
+    private final long ttlMs;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries;
+
+    private long hits, misses, writes, skippedWrites;
+
+    public UEContextCache(int maxEntries, long ttlMs, LongSupplier clock) {
+        int max = Math.max(1, maxEntries);
+        this.ttlMs = ttlMs;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > max;
+            }
+        };
+    }
+
+    /**
+     * 取上下文副本；本地没有（或已过期）时调 loader 读后端，decode 转成对象后缓存。
+     * 后端里也没有（loader 返回 null）就返回 null，同样会缓存。
+     */
+    public <T> UEContext get(String ueId, Function<String, T> loader, Function<T, UEContext> decode) {
+        long now = clock.getAsLong();
+        synchronized (this) {
+            Entry e = entries.get(ueId);
+            if (e != null && now < e.expireAt) {
+                hits++;
+                return e.value == null ? null : e.value.copy();
+            }
+            misses++;
+        }
+
+        // 读后端不占锁
+        T raw = loader.apply(ueId);
+        UEContext ctx = raw == null ? null : decode.apply(raw);
+        synchronized (this) {
+            Entry cur = entries.get(ueId);
+            // 读的这段时间里本地已经写过了：以本地为准
+            if (cur == null || now >= cur.expireAt) {
+                // 从后端读来的不知道 key 还剩多少 TTL：不留编码（下次 save 整个写一次），
+                // 本地也只认 1/4 TTL，免得后端那边已经过期了本地还当它在
+                entries.put(ueId, new Entry(ctx == null ? null : ctx.copy(), null, now, now + ttlMs / 4));
+            } else {
+                return cur.value == null ? null : cur.value.copy();
+            }
+        }
+        return ctx;
+    }
+
+    /**
+     * 记录一次 save：编码结果和上次落库的一样就不用写（最多续 TTL），否则整个 value 重写。
+     * 本地条目更新成这次的值，调用方按 Delta 写后端。
+     */
+    public synchronized Delta saveEncoded(UEContext ctx, byte[] encoded) {
+        long now = clock.getAsLong();
+        Entry e = entries.get(ctx.getUeId());
+        Delta d;
+        if (e == null || e.persisted == null || now >= e.expireAt || !Arrays.equals(e.persisted, encoded)) {
+            d = new Delta(true, true);
+        } else {
+            d = new Delta(false, now - e.ttlRefreshedAt > ttlMs / 4);
+        }
+        long refreshedAt = d.refreshTtl() ? now : e.ttlRefreshedAt;
+        entries.put(ctx.getUeId(), new Entry(ctx.copy(), encoded, refreshedAt, refreshedAt + ttlMs));
+        if (d.isEmpty()) skippedWrites++; else writes++;
+        return d;
+    }
+
+    /** 后端写失败、或别的节点改了这个 UE 时调用：本地那份不可信了，丢掉下次重新读 */
+    public synchronized void invalidate(String ueId) {
+        entries.remove(ueId);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, writes, skippedWrites, entries.size());
+    }
+
+    private static final class Entry {
+        final UEContext value;                 // null 表示后端里没有
+        final byte[] persisted;                // 上次落库的编码；null = 不确定后端里的状态
+        final long ttlRefreshedAt;
+        final long expireAt;
+
+        Entry(UEContext value, byte[] persisted, long ttlRefreshedAt, long expireAt) {
+            this.value = value;
+            this.persisted = persisted;
+            this.ttlRefreshedAt = ttlRefreshedAt;
+            this.expireAt = expireAt;
+        }
+    }
+}
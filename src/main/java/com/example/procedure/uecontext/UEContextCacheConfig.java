@@ -0,0 +1,32 @@
+package com.example.procedure.uecontext;
+
+import com.example.procedure.service.UEContextService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * uecontext.cache.invalidation=pubsub 时订阅失效 channel：
+ * 别的节点写了哪个 UE，本节点就丢掉那个 UE 的近端缓存。
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "uecontext.cache", name = "invalidation", havingValue = "pubsub")
+public class UEContextCacheConfig {
+
+    @Bean
+    public RedisMessageListenerContainer ueContextInvalidationListener(RedisConnectionFactory factory,
+                                                                       UEContextCacheProperties props,
+                                                                       UEContextService ueContextService) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(factory);
+        container.addMessageListener(
+                (message, pattern) -> ueContextService.onInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(props.getChannel()));
+        return container;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.procedure.uecontext;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Setter
+@Getter
+@Component
+@ConfigurationProperties(prefix = "uecontext.cache")
+public class UEContextCacheProperties {
+
+    /** 关掉就退回每次 HGETALL / 整个 hash putAll */
+    private boolean enabled = true;
+
+    /** 最多缓存多少个 UE（LRU） */
+    private int maxEntries = 50_000;
+
+    /**
+     * 多节点共享同一个 Redis 时的失效通知：
+     *  none  ：单节点（默认），本进程就是唯一写者
+     *  pubsub：写完往 channel 发一条 "nodeId|ueId"，其它节点收到就丢掉本地那份
+     */
+    private String invalidation = "none";
+
+    private String channel = "ue:ctx:invalidate";
+}
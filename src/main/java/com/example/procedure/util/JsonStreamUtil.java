@@ -0,0 +1,33 @@
+package com.example.procedure.util;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 流式 JSON 输入的小工具。
+ *
+ * tshark 加载插件时会先往 stdout 打一行提示（例如 "P5GR-NR dissector loaded successfully!"），
+ * 然后才是 -T json 的数组。这里把流定位到第一个 '[' / '{'，不读整个文件。
+ */
+public final class JsonStreamUtil {
+
+    private JsonStreamUtil() {}
+
+    /**
+     * 跳过 JSON 开头之前的杂项输出，返回定位到 '[' 或 '{' 的流。
+     * 找不到就返回已读到末尾的流，由调用方的 JSON 解析器报错。
+     */
+    public static InputStream skipToJsonStart(InputStream in) throws IOException {
+        BufferedInputStream bin = (in instanceof BufferedInputStream b) ? b : new BufferedInputStream(in, 64 * 1024);
+        while (true) {
+            bin.mark(1);
+            int c = bin.read();
+            if (c < 0) return bin;
+            if (c == '[' || c == '{') {
+                bin.reset();
+                return bin;
+            }
+        }
+    }
+}
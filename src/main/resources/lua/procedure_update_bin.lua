@@ -0,0 +1,73 @@
+-- 更新流程（二进制存法）：在服务端改 ProcedureCodec 的 value，一次往返
+-- KEYS[1] 流程 key   KEYS[2] UE 集合 key
+-- ARGV[1] TTL(秒)   ARGV[2] 要覆盖的字段（同样的编码，不带版本字节）   ARGV[3] 要 +1 的字段序号（messageNum）
+-- 返回 1；流程不存在返回 0
+-- 格式见 BinaryFields：[版本] { [tag varint] [值] }*，tag = 序号 << 3 | 线型
+local v = redis.call('GET', KEYS[1])
+if not v then return 0 end
+
+local function varint(s, pos)
+  local n, mul = 0, 1
+  while true do
+    local b = string.byte(s, pos)
+    if not b then error('truncated varint') end
+    pos = pos + 1
+    if b < 128 then return n + b * mul, pos end
+    n = n + (b - 128) * mul
+    mul = mul * 128
+  end
+end
+
+local function enc(n)
+  local t = {}
+  while n >= 128 do
+    t[#t + 1] = string.char(n % 128 + 128)
+    n = math.floor(n / 128)
+  end
+  t[#t + 1] = string.char(n)
+  return table.concat(t)
+end
+
+-- 拆字段：{序号, 起点, 值起点, 终点(不含)}
+local function fields(s, pos)
+  local out = {}
+  while pos <= #s do
+    local start = pos
+    local tag
+    tag, pos = varint(s, pos)
+    local wire, at = tag % 8, pos
+    if wire == 0 or wire == 3 then
+      local _
+      _, pos = varint(s, pos)
+    elseif wire == 1 or wire == 2 then
+      local n
+      n, pos = varint(s, pos)
+      pos = pos + n
+    else
+      error('unknown wire type ' .. wire)
+    end
+    out[#out + 1] = {math.floor(tag / 8), start, at, pos}
+  end
+  return out
+end
+
+local patch, inc = ARGV[2], tonumber(ARGV[3])
+local override = {}
+for _, f in ipairs(fields(patch, 1)) do override[f[1]] = true end
+
+local parts, count = {string.sub(v, 1, 1)}, 0
+for _, f in ipairs(fields(v, 2)) do
+  if f[1] == inc then
+    local z = varint(v, f[3])
+    count = (z % 2 == 0) and z / 2 or -(z + 1) / 2
+  elseif not override[f[1]] then
+    parts[#parts + 1] = string.sub(v, f[2], f[4] - 1)
+  end
+end
+parts[#parts + 1] = patch
+-- messageNum 非负，zigzag 就是 2n
+parts[#parts + 1] = enc(inc * 8) .. enc((count + 1) * 2)
+
+redis.call('SET', KEYS[1], table.concat(parts), 'EX', ARGV[1])
+redis.call('EXPIRE', KEYS[2], ARGV[1])
+return 1
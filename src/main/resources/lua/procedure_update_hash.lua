@@ -0,0 +1,12 @@
+-- 更新流程（hash 存法）：存在检查 + HSET + messageNum 自增 + 两个 TTL，一次往返
+-- KEYS[1] 流程 key   KEYS[2] UE 集合 key
+-- ARGV[1] TTL(秒)   ARGV[2..] 字段/值成对
+-- 返回 1；流程不存在返回 0
+if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end
+local args = {}
+for i = 2, #ARGV do args[#args + 1] = ARGV[i] end
+if #args > 0 then redis.call('HSET', KEYS[1], unpack(args)) end
+redis.call('HINCRBY', KEYS[1], 'messageNum', 1)
+redis.call('EXPIRE', KEYS[1], ARGV[1])
+redis.call('EXPIRE', KEYS[2], ARGV[1])
+return 1
@@ -0,0 +1,26 @@
+-- 写 UE 上下文（老 hash 存法）：服务端比对，只 HSET 变了的字段、HDEL 没了的字段，再续 TTL；一次往返、原子
+-- KEYS[1] ue:ctx:<ueId>
+-- ARGV[1] TTL(毫秒，<=0 不过期)   ARGV[2..] 这次的完整字段/值成对（不含 null）
+-- 返回改动的字段数
+local want = {}
+for i = 2, #ARGV, 2 do want[ARGV[i]] = ARGV[i + 1] end
+local have = redis.call('HGETALL', KEYS[1])
+local del = {}
+for i = 1, #have, 2 do
+  local f = have[i]
+  if want[f] == nil then
+    del[#del + 1] = f
+  elseif want[f] == have[i + 1] then
+    want[f] = nil
+  end
+end
+if #del > 0 then redis.call('HDEL', KEYS[1], unpack(del)) end
+local set = {}
+for f, v in pairs(want) do
+  set[#set + 1] = f
+  set[#set + 1] = v
+end
+if #set > 0 then redis.call('HSET', KEYS[1], unpack(set)) end
+local ttl = tonumber(ARGV[1])
+if ttl > 0 then redis.call('PEXPIRE', KEYS[1], ttl) else redis.call('PERSIST', KEYS[1]) end
+return #set / 2 + #del
@@ -0,0 +1,110 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.decrypt.AsyncDecryptClient;
+import com.example.procedure.decrypt.DecryptClient;
+import com.example.procedure.decrypt.DecryptResponse;
+import com.example.procedure.decrypt.engine.NeaCipher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncDecryptClientTest {
+
+    private static final HexFormat HEX = HexFormat.of();
+    private static final String K_ENC = "d3c5d592327fb11c4035c6680af8c6d1";
+
+    @Test
+    void responsesComeBackInRequestOrder() throws Exception {
+        try (DecryptStandInServer server = new DecryptStandInServer(0)) {
+            AsyncDecryptClient client = new AsyncDecryptClient(new ObjectMapper(), 8, 2000, 5000, false);
+            List<String> plains = new ArrayList<>();
+            List<DecryptClient.DecryptRequest> reqs = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                String plain = String.format("7e00%04x", i);
+                plains.add(plain);
+                reqs.add(req("MSG-" + i, i, plain));
+            }
+
+            List<DecryptResponse> out = client.decryptAll(server.url(), reqs).join();
+            for (int i = 0; i < reqs.size(); i++) {
+                assertEquals(plains.get(i), out.get(i).getPlainData());
+                assertEquals("MSG-" + i, out.get(i).getMessageId());
+            }
+            assertEquals(20, server.singleCalls.get());
+        }
+    }
+
+    @Test
+    void inFlightIsBounded() throws Exception {
+        try (DecryptStandInServer server = new DecryptStandInServer(30)) {
+            AsyncDecryptClient client = new AsyncDecryptClient(new ObjectMapper(), 3, 2000, 5000, false);
+            List<DecryptClient.DecryptRequest> reqs = new ArrayList<>();
+            for (int i = 0; i < 12; i++) reqs.add(req("MSG-" + i, i, "0102"));
+
+            client.decryptAll(server.url(), reqs).join();
+            assertTrue(server.maxConcurrent.get() <= 3, "max concurrent=" + server.maxConcurrent.get());
+            assertEquals(3, client.availablePermits());
+        }
+    }
+
+    @Test
+    void batchSendsOneRequest() throws Exception {
+        try (DecryptStandInServer server = new DecryptStandInServer(0)) {
+            AsyncDecryptClient client = new AsyncDecryptClient(new ObjectMapper(), 8, 2000, 5000, true);
+            List<DecryptClient.DecryptRequest> reqs = List.of(req("MSG-1", 1, "aa"), req("MSG-2", 2, "bbcc"));
+
+            List<DecryptResponse> out = client.decryptAll(server.url(), reqs).join();
+            assertEquals("aa", out.get(0).getPlainData());
+            assertEquals("bbcc", out.get(1).getPlainData());
+            assertEquals(1, server.batchCalls.get());
+            assertEquals(0, server.singleCalls.get());
+        }
+    }
+
+    @Test
+    void unreachableServiceYieldsNullSlots() {
+        AsyncDecryptClient client = new AsyncDecryptClient(new ObjectMapper(), 2, 500, 500, false);
+        List<DecryptResponse> out = client.decryptAll("http://127.0.0.1:1/decrypt",
+                List.of(req("MSG-1", 1, "aa"), req("MSG-2", 2, "bb"))).join();
+        assertNull(out.get(0));
+        assertNull(out.get(1));
+    }
+
+    @Test
+    void badUrlFailsWithoutLeakingPermits() {
+        AsyncDecryptClient client = new AsyncDecryptClient(new ObjectMapper(), 2, 500, 500, false);
+        for (String url : List.of("not a url", "ftp://127.0.0.1/decrypt", "")) {
+            List<DecryptResponse> out = client.decryptAll(url, List.of(req("MSG-1", 1, "aa"), req("MSG-2", 2, "bb")))
+                    .join();
+            assertNull(out.get(0));
+            assertNull(out.get(1));
+        }
+        // 许可一个都没少：坏 URL 之后还能照常发满
+        assertEquals(2, client.availablePermits());
+    }
+
+    private static DecryptClient.DecryptRequest req(String msgId, int count, String plainHex) {
+        byte[] plain = HEX.parseHex(plainHex);
+        byte[] ct = NeaCipher.of(2, HEX.parseHex(K_ENC)).apply(count, 1, 0, plain, plain.length * 8);
+        DecryptClient.DecryptRequest r = new DecryptClient.DecryptRequest();
+        r.messageId = msgId;
+        r.ueId = "UE-1";
+        r.contextRef = "UE-1";
+        r.layer = "NAS";
+        r.encKey = K_ENC;
+        r.encAlgo = "NEA2";
+        r.count = count;
+        r.bearer = 1;
+        r.direction = "UL";
+        r.ciphertext = HEX.formatHex(ct);
+        r.mac = "00000000";
+        return r;
+    }
+}
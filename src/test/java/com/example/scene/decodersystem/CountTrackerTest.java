@@ -0,0 +1,114 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.decrypt.CountTracker;
+import com.example.procedure.parser.MacInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountTrackerTest {
+
+    private static final String UE = "UE-1";
+    private static final String KEY = "k1";
+    private final CountTracker tracker = new CountTracker(100);
+
+    /** 模拟一条按序的 NAS 流：每次取第一候选并确认 */
+    private int nextNas(int sqn) {
+        int c = tracker.candidates(UE, CountTracker.LAYER_NAS, 0, 0, KEY, sqn, CountTracker.NAS_SQN_BITS).get(0).count();
+        tracker.confirm(UE, CountTracker.LAYER_NAS, 0, 0, KEY, c);
+        return c;
+    }
+
+    @Test
+    void nasSqnWrapAdvancesOverflow() {
+        for (int i = 0; i < 600; i++) {
+            assertEquals(i, nextNas(i & 0xFF));
+        }
+    }
+
+    @Test
+    void outOfOrderAroundWrapKeepsOldOverflow() {
+        for (int i = 0; i <= 254; i++) nextNas(i);
+        assertEquals(256 + 1, nextNas(1));     // 已回绕
+        assertEquals(255, nextNas(255));       // 回绕前的迟到报文
+        assertEquals(256, nextNas(0));
+        assertEquals(258, nextNas(2));
+    }
+
+    @Test
+    void retransmissionsKeepTheReference() {
+        for (int i = 0; i < 10; i++) nextNas(i);
+        assertEquals(5, nextNas(5));
+        assertEquals(10, nextNas(10));
+    }
+
+    @Test
+    void uesAreBoundedLeastRecentlyUsedFirst() {
+        CountTracker small = new CountTracker(16);
+        for (int i = 0; i < 40; i++) {
+            small.confirm("UE-" + i, CountTracker.LAYER_NAS, 0, 0, KEY, 7);
+            // UE-0 一直在用，不会被挤掉
+            assertTrue(small.hasReference("UE-0", CountTracker.LAYER_NAS, 0, 0, KEY));
+        }
+        assertEquals(16, small.size());
+        assertFalse(small.hasReference("UE-1", CountTracker.LAYER_NAS, 0, 0, KEY));
+        assertTrue(small.hasReference("UE-39", CountTracker.LAYER_NAS, 0, 0, KEY));
+    }
+
+    @Test
+    void referenceOnlyAfterConfirmUnderTheSameKey() {
+        assertFalse(tracker.hasReference(UE, CountTracker.LAYER_NAS, 0, 0, KEY));
+        tracker.candidates(UE, CountTracker.LAYER_NAS, 0, 0, KEY, 0, CountTracker.NAS_SQN_BITS);
+        assertFalse(tracker.hasReference(UE, CountTracker.LAYER_NAS, 0, 0, KEY));
+        nextNas(0);
+        assertTrue(tracker.hasReference(UE, CountTracker.LAYER_NAS, 0, 0, KEY));
+        assertFalse(tracker.hasReference(UE, CountTracker.LAYER_NAS, 0, 0, "k2"));
+        assertFalse(tracker.hasReference(UE, CountTracker.LAYER_NAS, 1, 0, KEY));
+    }
+
+    @Test
+    void newKeyRestartsCount() {
+        for (int i = 0; i < 300; i++) nextNas(i & 0xFF);
+        int c = tracker.candidates(UE, CountTracker.LAYER_NAS, 0, 0, "k2", 0, CountTracker.NAS_SQN_BITS).get(0).count();
+        assertEquals(0, c);
+    }
+
+    @Test
+    void candidatesAreRankedAndDistinct() {
+        List<CountTracker.Candidate> first =
+                tracker.candidates(UE, CountTracker.LAYER_PDCP, 1, 0, KEY, 7, CountTracker.PDCP_SRB_SN_BITS);
+        assertEquals(7, first.get(0).count());
+        assertEquals(4096 + 7, first.get(1).count());
+        assertTrue(first.get(0).confidence() > first.get(1).confidence());
+
+        tracker.confirm(UE, CountTracker.LAYER_PDCP, 1, 0, KEY, 3 * 4096 + 100);
+        List<CountTracker.Candidate> next =
+                tracker.candidates(UE, CountTracker.LAYER_PDCP, 1, 0, KEY, 101, CountTracker.PDCP_SRB_SN_BITS);
+        assertEquals(3 * 4096 + 101, next.get(0).count());
+        assertEquals(4 * 4096 + 101, next.get(1).count());
+        assertEquals(2 * 4096 + 101, next.get(2).count());
+    }
+
+    @Test
+    void streamsAreSeparatedByDirectionAndBearer() {
+        tracker.confirm(UE, CountTracker.LAYER_PDCP, 0, 0, KEY, 5000);
+        assertEquals(5, tracker.candidates(UE, CountTracker.LAYER_PDCP, 1, 0, KEY, 5, 12).get(0).count());
+        assertEquals(5, tracker.candidates(UE, CountTracker.LAYER_PDCP, 0, 1, KEY, 5, 12).get(0).count());
+        assertEquals(4096 + 5, tracker.candidates(UE, CountTracker.LAYER_PDCP, 0, 0, KEY, 5, 12).get(0).count());
+    }
+
+    @Test
+    void bearerFromLogicalChannel() {
+        MacInfo mac = new MacInfo();
+        mac.offerLcid("0x3f");   // padding，不是数据信道
+        mac.offerLcid("52");     // MAC CE
+        mac.offerLcid("2");      // SRB2
+        mac.offerLcid("1");
+        assertEquals(1, CountTracker.pdcpBearer(mac));
+        assertEquals(0, CountTracker.pdcpBearer(new MacInfo()));
+    }
+}
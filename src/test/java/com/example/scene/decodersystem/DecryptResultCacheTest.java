@@ -0,0 +1,99 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.decrypt.DecryptClient;
+import com.example.procedure.decrypt.DecryptResponse;
+import com.example.procedure.decrypt.DecryptResultCache;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecryptResultCacheTest {
+
+    @Test
+    void retransmissionHitsWithNewMessageId() {
+        DecryptResultCache cache = new DecryptResultCache(true, 100, 0);
+        cache.put(req("MSG-1", 5, "a1b2c3", "11223344"), ok("7e0041"));
+
+        // 同一个 PDU 的重传：msgId 不同，hex 写法不同（0x / 大写）
+        DecryptResponse hit = cache.get(req("MSG-2", 5, "0xA1B2C3", "11223344"));
+        assertNotNull(hit);
+        assertEquals("7e0041", hit.getPlainData());
+        assertEquals("MSG-2", hit.getMessageId());
+
+        assertNull(cache.get(req("MSG-3", 6, "a1b2c3", "11223344")));   // COUNT 不同
+        assertNull(cache.get(req("MSG-4", 5, "a1b2c3", "11223345")));   // MAC 不同
+
+        DecryptResultCache.Stats st = cache.stats();
+        assertEquals(1, st.hits());
+        assertEquals(2, st.misses());
+        assertTrue(st.bytes() > 0);
+    }
+
+    @Test
+    void hasVerifiedSkipsIntegrityFailuresAndLeavesStatsAlone() {
+        DecryptResultCache cache = new DecryptResultCache(true, 100, 0);
+        cache.put(req("MSG-1", 5, "a1b2c3", "11223344"), ok("7e0041"));
+        DecryptResponse badMac = ok("7e0042");
+        badMac.setIntegrityStatus("INTEGRITY_FAILED");
+        cache.put(req("MSG-2", 6, "a1b2c3", "11223344"), badMac);
+
+        assertTrue(cache.hasVerified(req("MSG-3", 5, "A1B2C3", "11223344")));
+        assertFalse(cache.hasVerified(req("MSG-4", 6, "a1b2c3", "11223344")));   // 解了但 MAC 不对：候选照样要试
+        assertFalse(cache.hasVerified(req("MSG-5", 7, "a1b2c3", "11223344")));
+        assertEquals(0, cache.stats().hits() + cache.stats().misses());
+        assertFalse(new DecryptResultCache(false, 100, 0).hasVerified(req("MSG-6", 5, "a1b2c3", "11223344")));
+    }
+
+    @Test
+    void failuresAreNotCached() {
+        DecryptResultCache cache = new DecryptResultCache(true, 100, 0);
+        DecryptResponse fail = new DecryptResponse();
+        fail.setDecryptStatus("DECRYPT_FAILED");
+        cache.put(req("MSG-1", 1, "aa", "00000000"), fail);
+        cache.put(req("MSG-1", 1, "aa", "00000000"), null);
+        assertEquals(0, cache.stats().size());
+    }
+
+    @Test
+    void boundedByEntriesAndBytes() {
+        DecryptResultCache byCount = new DecryptResultCache(true, 10, 0);
+        DecryptResultCache byBytes = new DecryptResultCache(true, 1000, 2000);
+        for (int i = 0; i < 100; i++) {
+            byCount.put(req("MSG-" + i, i, "aa", "00000000"), ok("00".repeat(50)));
+            byBytes.put(req("MSG-" + i, i, "aa", "00000000"), ok("00".repeat(50)));
+        }
+        assertEquals(10, byCount.stats().size());
+        assertEquals(90, byCount.stats().evictions());
+        assertTrue(byBytes.stats().bytes() <= 2000);
+    }
+
+    private static DecryptResponse ok(String plain) {
+        DecryptResponse r = new DecryptResponse();
+        r.setDecryptStatus("DECRYPT_SUCCESS");
+        r.setIntegrityStatus("INTEGRITY_SUCCESS");
+        r.setPlainData(plain);
+        r.setPlainMac("11223344");
+        return r;
+    }
+
+    private static DecryptClient.DecryptRequest req(String msgId, int count, String ct, String mac) {
+        DecryptClient.DecryptRequest r = new DecryptClient.DecryptRequest();
+        r.messageId = msgId;
+        r.ueId = "UE-1";
+        r.layer = "NAS";
+        r.encKey = "d3c5d592327fb11c4035c6680af8c6d1";
+        r.intKey = "2bd6459f82c5b300952c49104881ff48";
+        r.encAlgo = "NEA2";
+        r.intAlgo = "NIA2";
+        r.count = count;
+        r.bearer = 1;
+        r.direction = "UL";
+        r.ciphertext = ct;
+        r.mac = mac;
+        return r;
+    }
+}
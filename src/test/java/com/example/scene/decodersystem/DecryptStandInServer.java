@@ -0,0 +1,96 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.decrypt.DecryptClient;
+import com.example.procedure.decrypt.DecryptResponse;
+import com.example.procedure.decrypt.LocalDecryptEngine;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的本地解密服务替身：POST /decrypt 和 /decrypt/batch，
+ * 内部直接用 LocalDecryptEngine 计算，接口形状与 127.0.0.1:8004 的服务一致。
+ */
+class DecryptStandInServer implements AutoCloseable {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final LocalDecryptEngine engine = new LocalDecryptEngine(100, 0, 256);
+    private final HttpServer server;
+    private final long delayMs;
+
+    final AtomicInteger singleCalls = new AtomicInteger();
+    final AtomicInteger batchCalls = new AtomicInteger();
+    final AtomicInteger concurrent = new AtomicInteger();
+    final AtomicInteger maxConcurrent = new AtomicInteger();
+
+    DecryptStandInServer(long delayMs) throws IOException {
+        this.delayMs = delayMs;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(16));
+        server.createContext("/decrypt", this::single);
+        server.createContext("/decrypt/batch", this::batch);
+        server.start();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/decrypt";
+    }
+
+    private void single(HttpExchange ex) throws IOException {
+        enter();
+        try {
+            singleCalls.incrementAndGet();
+            DecryptClient.DecryptRequest req = mapper.readValue(ex.getRequestBody(), DecryptClient.DecryptRequest.class);
+            reply(ex, mapper.writeValueAsBytes(engine.decrypt(req)));
+        } finally {
+            concurrent.decrementAndGet();
+        }
+    }
+
+    private void batch(HttpExchange ex) throws IOException {
+        enter();
+        try {
+            batchCalls.incrementAndGet();
+            List<DecryptClient.DecryptRequest> reqs =
+                    mapper.readValue(ex.getRequestBody(), new TypeReference<List<DecryptClient.DecryptRequest>>() {});
+            List<DecryptResponse> out = new ArrayList<>();
+            for (DecryptClient.DecryptRequest r : reqs) out.add(engine.decrypt(r));
+            reply(ex, mapper.writeValueAsBytes(out));
+        } finally {
+            concurrent.decrementAndGet();
+        }
+    }
+
+    private void enter() {
+        maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+        if (delayMs > 0) {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void reply(HttpExchange ex, byte[] body) throws IOException {
+        ex.getResponseHeaders().add("Content-Type", "application/json");
+        ex.sendResponseHeaders(200, body.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
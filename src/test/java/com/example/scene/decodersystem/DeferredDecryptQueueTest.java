@@ -0,0 +1,115 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.decrypt.CountTracker;
+import com.example.procedure.decrypt.DeferredDecryptQueue;
+import com.example.procedure.model.SignalingMessage;
+import com.example.procedure.model.UEContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeferredDecryptQueueTest {
+
+    private final AtomicLong now = new AtomicLong(1_000);
+
+    private DeferredDecryptQueue queue(int maxPerUe, int maxTotal, long maxAgeMs) {
+        return new DeferredDecryptQueue(true, maxPerUe, maxTotal, maxAgeMs, now::get);
+    }
+
+    private static SignalingMessage msg(String ueId, String id) {
+        SignalingMessage m = new SignalingMessage();
+        m.setUeId(ueId);
+        m.setMsgId(id);
+        return m;
+    }
+
+    private static UEContext ctx(String ueId, String kNasEnc, String kRrcEnc) {
+        UEContext c = new UEContext();
+        c.setUeId(ueId);
+        c.setKNasEnc(kNasEnc);
+        c.setKRrcEnc(kRrcEnc);
+        return c;
+    }
+
+    private static List<String> ids(List<DeferredDecryptQueue.Released> rs) {
+        return rs.stream().map(r -> r.msg().getMsgId()).toList();
+    }
+
+    @Test
+    void heldUntilMatchingKeyThenFlushedInCountOrder() {
+        DeferredDecryptQueue q = queue(16, 100, 0);
+        String nas = CountTracker.LAYER_NAS;
+        q.park(msg("UE-1", "ul-2"), nas, 0, 2, CountTracker.NAS_SQN_BITS);
+        q.park(msg("UE-1", "dl-0"), nas, 1, 0, CountTracker.NAS_SQN_BITS);
+        q.park(msg("UE-1", "ul-1"), nas, 0, 1, CountTracker.NAS_SQN_BITS);
+        q.park(msg("UE-1", "pdcp"), CountTracker.LAYER_PDCP, 0, 5, CountTracker.PDCP_SRB_SN_BITS);
+
+        // 只有 kRrcEnc：NAS 的还得等
+        q.onContextSaved(ctx("UE-1", null, null));
+        assertFalse(q.hasReleased());
+        assertTrue(q.drain().isEmpty());
+
+        q.onContextSaved(ctx("UE-1", "aa", null));
+        assertTrue(q.hasReleased());
+        List<DeferredDecryptQueue.Released> out = q.drain();
+        assertFalse(q.hasReleased());
+        // UL 流内按 COUNT 排序，DL 仍在原来第 2 个位置
+        assertEquals(List.of("ul-1", "dl-0", "ul-2"), ids(out));
+        assertTrue(out.stream().allMatch(DeferredDecryptQueue.Released::keyReady));
+        assertTrue(q.hasPending("UE-1", CountTracker.LAYER_PDCP));
+        assertFalse(q.hasPending("UE-1", nas));
+
+        q.onContextSaved(ctx("UE-1", "aa", "bb"));
+        assertEquals(List.of("pdcp"), ids(q.drain()));
+        assertEquals(0, q.stats().pending());
+    }
+
+    @Test
+    void sqnWrapKeepsCountOrder() {
+        DeferredDecryptQueue q = queue(16, 100, 0);
+        q.park(msg("UE-1", "c0"), CountTracker.LAYER_NAS, 0, 0, CountTracker.NAS_SQN_BITS);   // 回绕后
+        q.park(msg("UE-1", "c255"), CountTracker.LAYER_NAS, 0, 255, CountTracker.NAS_SQN_BITS); // 回绕前的迟到报文
+        q.park(msg("UE-1", "c254"), CountTracker.LAYER_NAS, 0, 254, CountTracker.NAS_SQN_BITS);
+        q.onContextSaved(ctx("UE-1", "aa", null));
+        // 第一条 SQN=0 当基准，后两条在半窗之外，判成回绕前的迟到报文，排到前面
+        assertEquals(List.of("c254", "c255", "c0"), ids(q.drain()));
+    }
+
+    @Test
+    void overflowAndAgeReleaseWithoutKey() {
+        DeferredDecryptQueue q = queue(2, 3, 5_000);
+        q.park(msg("UE-1", "a1"), CountTracker.LAYER_NAS, 0, 1, CountTracker.NAS_SQN_BITS);
+        q.park(msg("UE-1", "a2"), CountTracker.LAYER_NAS, 0, 2, CountTracker.NAS_SQN_BITS);
+        q.park(msg("UE-1", "a3"), CountTracker.LAYER_NAS, 0, 3, CountTracker.NAS_SQN_BITS);  // 单 UE 超限放出 a1
+        now.addAndGet(1_000);
+        q.park(msg("UE-2", "b1"), CountTracker.LAYER_PDCP, 1, 7, CountTracker.PDCP_SRB_SN_BITS);
+        q.park(msg("UE-3", "c1"), CountTracker.LAYER_PDCP, 1, 7, CountTracker.PDCP_SRB_SN_BITS); // 全局超限放出 a2
+
+        List<DeferredDecryptQueue.Released> out = q.drain();
+        assertEquals(List.of("a1", "a2"), ids(out));
+        assertTrue(out.stream().noneMatch(DeferredDecryptQueue.Released::keyReady));
+
+        now.addAndGet(4_500);   // a3 停了 5.5s，b1/c1 停了 4.5s
+        assertEquals(List.of("a3"), ids(q.drain()));
+        now.addAndGet(1_000);
+        assertEquals(List.of("b1", "c1"), ids(q.drain()));
+
+        DeferredDecryptQueue.Stats st = q.stats();
+        assertEquals(5, st.parked());
+        assertEquals(2, st.overflowed());
+        assertEquals(3, st.expired());
+        assertEquals(0, st.pending());
+    }
+
+    @Test
+    void disabledNeverParks() {
+        DeferredDecryptQueue q = new DeferredDecryptQueue(false, 16, 100, 0, now::get);
+        assertFalse(q.park(msg("UE-1", "x"), CountTracker.LAYER_NAS, 0, 1, CountTracker.NAS_SQN_BITS));
+        assertTrue(q.drain().isEmpty());
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.keyderivation.CachingKeyDerivationProvider;
+import com.example.procedure.keyderivation.DerivedKeyCache;
+import com.example.procedure.keyderivation.JavaKeyDerivationProvider;
+import com.example.procedure.keyderivation.KeyDerivationProvider;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DerivedKeyCacheTest {
+
+    private static final String KAMF = "26E1FC1550C96063B33847E9F2AFC85CC05A2FA9A7F902BCD46C9FCA1C2DEC7E";
+
+    @Test
+    void cachedResultMatchesDirectDerivation() {
+        KeyDerivationProvider plain = new JavaKeyDerivationProvider();
+        CachingKeyDerivationProvider cached =
+                new CachingKeyDerivationProvider(plain, new DerivedKeyCache(64, 0));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(plain.algorithmKeyDerivation(KeyDerivationProvider.N_NAS_ENC_ALG, 1, KAMF),
+                    cached.algorithmKeyDerivation(KeyDerivationProvider.N_NAS_ENC_ALG, 1, KAMF));
+            assertEquals(plain.kgnbFromKamf(0, KeyDerivationProvider.ACCESS_3GPP, KAMF),
+                    cached.kgnbFromKamf(0, KeyDerivationProvider.ACCESS_3GPP, KAMF));
+        }
+        // 只看 hex 大小写/分隔符不同的同一把密钥也应命中
+        cached.algorithmKeyDerivation(KeyDerivationProvider.N_NAS_ENC_ALG, 1, KAMF.toLowerCase());
+
+        DerivedKeyCache.Stats st = cached.cache().stats();
+        assertEquals(2, st.misses());
+        assertEquals(5, st.hits());
+    }
+
+    /** 两个线程同时 miss 同一个 key：后写的那条要还能命中 */
+    @Test
+    void concurrentMissOnSameKeyStaysFindable() {
+        DerivedKeyCache cache = new DerivedKeyCache(64, 0);
+        // 外层 loader 还没回来，内层同一个 key 也 miss 并先写进去
+        String v = cache.get(DerivedKeyCache.Key.of(0x69, KAMF, 1, 2),
+                () -> cache.get(DerivedKeyCache.Key.of(0x69, KAMF, 1, 2), () -> "AA11").replace("11", "22"));
+        assertEquals("AA22", v);
+        assertEquals(1, cache.size());
+
+        assertEquals("AA22", cache.get(DerivedKeyCache.Key.of(0x69, KAMF, 1, 2), () -> "FF"));
+        assertEquals(1, cache.stats().hits());
+        assertEquals(2, cache.stats().misses());
+    }
+
+    @Test
+    void differentParamsAreDifferentEntries() {
+        DerivedKeyCache cache = new DerivedKeyCache(64, 0);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(DerivedKeyCache.Key.of(0x69, KAMF, 1, 2), () -> "AA0" + loads.incrementAndGet());
+        cache.get(DerivedKeyCache.Key.of(0x69, KAMF, 2, 1), () -> "BB0" + loads.incrementAndGet());
+        cache.get(DerivedKeyCache.Key.of(0x6E, KAMF, 1, 2), () -> "CC0" + loads.incrementAndGet());
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void sizeBoundEvicts() {
+        DerivedKeyCache cache = new DerivedKeyCache(16, 0);
+        for (int i = 0; i < 1000; i++) {
+            cache.get(DerivedKeyCache.Key.of(0x69, KAMF, i), () -> "0102");
+        }
+        DerivedKeyCache.Stats st = cache.stats();
+        assertTrue(st.size() <= 16, "size=" + st.size());
+        assertEquals(1000 - st.size(), st.evictions());
+    }
+
+    @Test
+    void expiredEntryIsReloaded() throws InterruptedException {
+        DerivedKeyCache cache = new DerivedKeyCache(16, 5);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(DerivedKeyCache.Key.of(0x69, KAMF, 1), () -> { loads.incrementAndGet(); return "0102"; });
+        Thread.sleep(20);
+        assertEquals("0102",
+                cache.get(DerivedKeyCache.Key.of(0x69, KAMF, 1), () -> { loads.incrementAndGet(); return "0102"; }));
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.stats().expirations());
+    }
+
+    @Test
+    void failedDerivationIsNotCached() {
+        DerivedKeyCache cache = new DerivedKeyCache(16, 0);
+        cache.get(DerivedKeyCache.Key.of(0x69, KAMF, 1), () -> null);
+        cache.get(DerivedKeyCache.Key.of(0x69, KAMF, 1), () -> "");
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.archive.ProcedureArchiveWriter;
+import com.example.procedure.clock.EventTimeClock;
+import com.example.procedure.clock.EventTimeReplayer;
+import com.example.procedure.expiry.ExpiryProperties;
+import com.example.procedure.expiry.ProcedureExpiry;
+import com.example.procedure.id.IdGenerator;
+import com.example.procedure.model.Procedure;
+import com.example.procedure.model.ProcedureTypeEnum;
+import com.example.procedure.model.SignalingMessage;
+import com.example.procedure.service.ProManager_Service;
+import com.example.procedure.store.InMemoryProcedureStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventTimeReplayTest {
+
+    private static final long T0 = 1_764_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private static SignalingMessage msg(String ueId, String type, long ts) {
+        SignalingMessage m = new SignalingMessage();
+        m.setUeId(ueId);
+        m.setMsgType(type);
+        m.setTimestamp(ts);
+        return m;
+    }
+
+    private static List<String> names(List<SignalingMessage> out) {
+        return out.stream().map(SignalingMessage::getMsgType).toList();
+    }
+
+    @Test
+    void replayerReordersWithinLatenessAndPassesLateOnes() {
+        EventTimeClock clock = new EventTimeClock();
+        List<SignalingMessage> out = new ArrayList<>();
+        List<Long> seenNow = new ArrayList<>();
+        EventTimeReplayer r = new EventTimeReplayer(clock, m -> {
+            out.add(m);
+            seenNow.add(clock.now());
+        }, 1_000, 100);
+
+        r.accept(msg("UE-1", "b", T0 + 500));
+        r.accept(msg("UE-1", "a", T0));            // 乱序但在 1s 之内
+        r.accept(msg("UE-1", "c", T0 + 900));
+        assertTrue(out.isEmpty());
+
+        r.accept(msg("UE-1", "d", T0 + 1_600));    // 水位线到 T0+600：a、b 放出
+        assertEquals(List.of("a", "b"), names(out));
+
+        r.accept(msg("UE-1", "late", T0 + 100));   // 比已放出的 b 还早
+        r.accept(msg("UE-1", "untimed", 0));
+        r.finish();
+        assertEquals(List.of("a", "b", "late", "c", "d", "untimed"), names(out));
+
+        // 时钟只进不退：迟到的那条处理时还是 T0+500
+        assertEquals(List.of(T0, T0 + 500, T0 + 500, T0 + 900, T0 + 1_600, T0 + 1_600), seenNow);
+        EventTimeReplayer.Stats st = r.stats();
+        assertEquals(6, st.out());
+        assertEquals(1, st.late());
+        assertEquals(1, st.untimed());
+        assertEquals(0, st.buffered());
+    }
+
+    @Test
+    void timersFireOnEventTimeAndRunsAreDeterministic() {
+        List<String> first = replayIdleCapture(dir.resolve("a"));
+        List<String> second = replayIdleCapture(dir.resolve("b"));
+        assertEquals(first, second);
+    }
+
+    /**
+     * 一个流程开了之后 2 分钟（报文时间）没动静：另一个 UE 的报文把时钟推过空闲超时，它被关掉；
+     * 整个过程不 sleep。返回每一步能看到的状态，用来比两次回放是否一致。
+     */
+    private List<String> replayIdleCapture(Path archiveDir) {
+        ExpiryProperties props = new ExpiryProperties();
+        props.setIdleTimeoutMs(60_000);
+        EventTimeClock clock = new EventTimeClock();
+        ProcedureExpiry expiry = new ProcedureExpiry(props, clock);
+        ProcedureArchiveWriter archive = new ProcedureArchiveWriter(new ObjectMapper(), archiveDir, "procedure_history",
+                1024, 16, 50, 0, 0, false, System::currentTimeMillis);
+        List<String> trace = new ArrayList<>();
+        try {
+            ProManager_Service pm = new ProManager_Service(new InMemoryProcedureStore(null), new IdGenerator(1, 16),
+                    archive, expiry, clock);
+            EventTimeReplayer r = new EventTimeReplayer(clock, m -> {
+                if (m.getUeId().equals("UE-1") && pm.listActiveProcedures("UE-1").isEmpty()) {
+                    pm.add_ActProcedure("UE-1", ProcedureTypeEnum.INITIAL_ACCESS, m.getMsgType());
+                }
+                for (Procedure p : pm.listActiveProcedures("UE-1")) {
+                    trace.add(m.getMsgType() + "@" + clock.now() + " active since " + p.getActivateMs());
+                }
+            }, 2_000, 1_000);
+
+            r.accept(msg("UE-1", "RRCSetupRequest", T0));
+            r.accept(msg("UE-2", "Paging", T0 + 30_000));
+            r.accept(msg("UE-2", "Paging", T0 + 120_000));
+            r.finish();
+
+            assertTrue(pm.listActiveProcedures("UE-1").isEmpty());
+            assertEquals(1, expiry.stats().closedIdle());
+            assertEquals(List.of("RRCSetupRequest@" + T0 + " active since " + T0,
+                    "Paging@" + (T0 + 30_000) + " active since " + T0), trace);
+        } finally {
+            expiry.close();
+            archive.close();
+        }
+        return trace;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.id.IdGenerator;
+import com.example.procedure.model.SignalingMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdGeneratorTest {
+
+    private final AtomicLong now = new AtomicLong(IdGenerator.EPOCH_MS + 1_000_000);
+
+    @Test
+    void layoutAndFormat() {
+        IdGenerator g = new IdGenerator(37, 8, now::get);
+        long a = g.next(), b = g.next();
+        assertEquals(37, IdGenerator.nodeOf(a));
+        assertEquals(now.get(), IdGenerator.timestampMs(a));
+        assertEquals(a + 1, b);
+
+        String s = IdGenerator.format(a);
+        assertEquals(13, s.length());
+        assertTrue(IdGenerator.format(b).compareTo(s) > 0);
+        assertEquals("0000000000000", IdGenerator.format(0));
+        assertEquals("7ZZZZZZZZZZZZ", IdGenerator.format(Long.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(1024, 8));
+    }
+
+    @Test
+    void monotonicWhenClockGoesBackOrSequenceRunsOut() {
+        IdGenerator g = new IdGenerator(1, 4096, now::get);
+        long last = g.next();
+        for (int i = 0; i < 10_000; i++) {        // 一毫秒内远超 4096 个：借用后面的毫秒
+            long id = g.next();
+            assertTrue(id > last);
+            last = id;
+        }
+        now.addAndGet(-60_000);                  // 时钟回拨一分钟
+        now.addAndGet(5_000);                    // 领的段过期，重领
+        assertTrue(g.next() > last);
+    }
+
+    @Test
+    void uniqueAcrossThreads() throws InterruptedException {
+        IdGenerator g = new IdGenerator(5, 64);
+        Set<Long> all = ConcurrentHashMap.newKeySet();
+        List<Thread> ts = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread th = new Thread(() -> {
+                long prev = -1;
+                Set<Long> mine = new HashSet<>();
+                for (int i = 0; i < 20_000; i++) {
+                    long id = g.next();
+                    if (id <= prev) throw new AssertionError("not monotonic in thread");
+                    prev = id;
+                    mine.add(id);
+                }
+                all.addAll(mine);
+            });
+            ts.add(th);
+            th.start();
+        }
+        for (Thread th : ts) th.join();
+        assertEquals(8 * 20_000, all.size());
+    }
+
+    @Test
+    void messageIdRenderedLazily() {
+        SignalingMessage m = new SignalingMessage();
+        assertNull(m.getMsgId());
+        m.setMsgIdNum(new IdGenerator(2, 8, now::get).next());
+        String id = m.getMsgId();
+        assertTrue(id.startsWith("MSG-") && id.length() == 17, id);
+        // 显式设过的字符串优先
+        m.setMsgId("FRAME-7");
+        assertEquals("FRAME-7", m.getMsgId());
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.identity.IdType;
+import com.example.procedure.identity.IdentityGraph;
+import com.example.procedure.identity.IdentityKey;
+import com.example.procedure.identity.UeIdentityCorrelator;
+import com.example.procedure.model.SignalingMessage;
+import com.example.procedure.parser.MacInfo;
+import com.example.procedure.parser.NasInfo;
+import com.example.procedure.parser.NgapInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class IdentityCorrelationTest {
+
+    private static final IdentityKey RAN_7 = IdentityKey.of(IdType.RAN_UE_NGAP_ID, "7");
+    private static final IdentityKey AMF_100 = IdentityKey.of(IdType.AMF_UE_NGAP_ID, "100");
+    private static final IdentityKey RNTI_B16 = IdentityKey.of(IdType.C_RNTI, "0x0b16");
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final List<SignalingMessage> out = new ArrayList<>();
+
+    private static IdentityKey supi(String v) {
+        return IdentityKey.of(IdType.SUPI, v);
+    }
+
+    private static SignalingMessage msg(String type, String ueId, String ranId, String amfId, String crnti) {
+        SignalingMessage m = new SignalingMessage();
+        m.setMsgType(type);
+        m.setUeId(ueId);
+        if (ranId != null || amfId != null) {
+            NgapInfo n = new NgapInfo();
+            n.setRanUeNgapId(ranId);
+            n.setAmfUeNgapId(amfId);
+            m.setNgapInfoList(List.of(n));
+        }
+        if (crnti != null) {
+            MacInfo mac = new MacInfo();
+            mac.setRnti(crnti);
+            mac.setRntiType("3");
+            m.setMacInfo(mac);
+        }
+        return m;
+    }
+
+    private List<String> types() {
+        return out.stream().map(m -> m.getMsgType() + "@" + m.getUeId()).toList();
+    }
+
+    @Test
+    void transitiveLinksResolveToTheAnchor() {
+        IdentityGraph g = new IdentityGraph(Map.of(), 100, 64);
+        List<String> resolved = new ArrayList<>();
+        g.setListener((ueId, keys) -> keys.forEach(k -> resolved.add(k + "=" + ueId)));
+
+        // C-RNTI ~ RAN ID ~ AMF ID，都还没有 SUPI
+        assertNull(g.link(0, List.of(RNTI_B16, RAN_7)));
+        assertNull(g.link(0, List.of(RAN_7, AMF_100)));
+        assertNull(g.resolve(RNTI_B16));
+        assertEquals(3, g.cluster(RNTI_B16).size());
+
+        // AMF ID 和 SUPI 一起出现：整簇解析，回调里是之前没锚点的三个
+        assertEquals("imsi-1", g.link(0, List.of(supi("imsi-1"), AMF_100)));
+        assertEquals("imsi-1", g.resolve(RNTI_B16));
+        assertEquals(3, resolved.size());
+        assertEquals(4, g.cluster(supi("imsi-1")).size());
+    }
+
+    @Test
+    void releasedOrExpiredIdsCanBeReusedByAnotherUe() {
+        IdentityGraph g = new IdentityGraph(Map.of(IdType.C_RNTI, 1_000L), 100, 64);
+        g.link(0, List.of(supi("imsi-1"), RAN_7, RNTI_B16));
+
+        // RAN ID 释放后分给 imsi-2
+        g.release(RAN_7);
+        assertNull(g.resolve(RAN_7));
+        assertEquals("imsi-2", g.link(10, List.of(supi("imsi-2"), RAN_7)));
+        assertEquals("imsi-1", g.resolve(supi("imsi-1")));
+
+        // C-RNTI 期间一直能见到就不过期；之后 1 秒没见到就摘掉
+        g.link(900, List.of(RNTI_B16));
+        g.expire(1_500);
+        assertEquals("imsi-1", g.resolve(RNTI_B16));
+        g.expire(2_000);
+        assertNull(g.resolve(RNTI_B16));
+        assertEquals(1, g.stats().expired());
+        assertEquals(1, g.stats().released());
+    }
+
+    @Test
+    void conflictingAnchorsMoveTheWeakerIdInsteadOfMergingUes() {
+        IdentityGraph g = new IdentityGraph(Map.of(), 100, 64);
+        g.link(0, List.of(supi("imsi-1"), RNTI_B16));
+        g.link(0, List.of(supi("imsi-2"), RAN_7));
+
+        // 漏掉了 RRCRelease：C-RNTI 其实已经给了 imsi-2
+        assertEquals("imsi-2", g.link(5, List.of(RAN_7, RNTI_B16)));
+        assertEquals("imsi-2", g.resolve(RNTI_B16));
+        assertEquals(List.of(supi("imsi-1")), g.cluster(supi("imsi-1")));
+        assertEquals(1, g.stats().conflicts());
+    }
+
+    @Test
+    void correlatorBuffersUntilClusterGetsSupiAndReleasesOnTeardown() {
+        UeIdentityCorrelator c = new UeIdentityCorrelator(Map.of(), 100, 64, 120_000, true, 22, now::get);
+        c.handle(msg("rrcSetupRequest", null, null, null, "0x0B16"), out::add);
+        c.handle(msg("InitialUEMessage", null, "7", null, null), out::add);
+        c.handle(msg("rrcSetupComplete", null, null, null, "0x0b16"), out::add);
+        assertEquals(List.of(), types());
+
+        // RAN ID 和 C-RNTI 还没连起来：SUPI 只带着 RAN ID 到，C-RNTI 那两条还得等
+        c.handle(msg("InitialContextSetupRequest", "imsi-1", "7", "100", null), out::add);
+        assertEquals(List.of("InitialUEMessage@imsi-1", "InitialContextSetupRequest@imsi-1"), types());
+        assertEquals(2, c.stats().pending());
+
+        // 一条同时带 C-RNTI 和 RAN ID 的消息把两边连上，缓冲的按到达顺序放出来
+        out.clear();
+        now.addAndGet(10);
+        SignalingMessage both = msg("UplinkNASTransport", null, "7", null, "0x0b16");
+        c.handle(both, out::add);
+        assertEquals(List.of("rrcSetupRequest@imsi-1", "rrcSetupComplete@imsi-1", "UplinkNASTransport@imsi-1"),
+                types());
+        assertEquals(0, c.stats().pending());
+
+        // 释放之后同一个 RAN ID 不再归 imsi-1
+        c.handle(msg("UEContextReleaseComplete", null, "7", "100", null), out::add);
+        assertNull(c.resolve(RAN_7));
+        assertEquals("imsi-1", c.resolve(IdentityKey.of(IdType.C_RNTI, "0x0b16")));
+    }
+
+    @Test
+    void suciAndGutiFromNasLinkToTheSupi() {
+        UeIdentityCorrelator c = new UeIdentityCorrelator(Map.of(), 100, 64, 120_000, true, 22, now::get);
+
+        // 初始注册只带 SUCI：先缓冲，SUPI 和同一个 SUCI 一起出现时放出来
+        NasInfo suci = new NasInfo();
+        suci.setSuciMcc("460");
+        suci.setSuciMnc("00");
+        suci.setSuciRoutingIndicator("0");
+        suci.setSuciSchemeOutput("1032547698");
+        c.handle(withNas(msg("RegistrationRequest", null, null, null, null), suci), out::add);
+        assertEquals(List.of(), types());
+        c.handle(withNas(msg("AuthenticationRequest", "imsi-1", null, null, null), suci), out::add);
+        assertEquals(List.of("RegistrationRequest@imsi-1", "AuthenticationRequest@imsi-1"), types());
+        assertEquals("imsi-1", c.resolve(IdentityKey.of(IdType.SUCI, "460-00-0", "1032547698")));
+
+        // 注册接受下发 5G-GUTI，之后带这个 GUTI 的移动性注册（新的 RAN ID）直接解析
+        NasInfo guti = new NasInfo();
+        guti.setGuamiMcc("460");
+        guti.setGuamiMnc("00");
+        guti.setAmfRegionId("1");
+        guti.setAmfSetId("4");
+        guti.setAmfPointer("0");
+        guti.setTmsi("0x0000abcd");
+        c.handle(withNas(msg("RegistrationAccept", "imsi-1", null, null, null), guti), out::add);
+        out.clear();
+        c.handle(withNas(msg("RegistrationRequest", null, "9", null, null), guti), out::add);
+        assertEquals(List.of("RegistrationRequest@imsi-1"), types());
+        assertEquals("imsi-1", c.resolve(IdentityKey.of(IdType.GUTI_5G, "460-00-1-4-0", "0x0000abcd")));
+        assertEquals("imsi-1", c.resolve(IdentityKey.of(IdType.RAN_UE_NGAP_ID, "9")));
+
+        // 5G-S-TMSI（没有 region）只出 TMSI，不出 GUTI
+        NasInfo sTmsi = new NasInfo();
+        sTmsi.setAmfSetId("4");
+        sTmsi.setAmfPointer("0");
+        sTmsi.setTmsi("0x0000beef");
+        c.handle(withNas(msg("ServiceRequest", "imsi-2", null, null, null), sTmsi), out::add);
+        assertEquals("imsi-2", c.resolve(IdentityKey.of(IdType.TMSI_5G, "", "0x0000beef")));
+        assertNull(c.resolve(IdentityKey.of(IdType.GUTI_5G, "-4-0", "0x0000beef")));
+    }
+
+    @Test
+    void ranIdsAreScopedPerGnbAndCRntiNeedsSingleCell() {
+        UeIdentityCorrelator c = new UeIdentityCorrelator(Map.of(), 100, 64, 120_000, false, 22, now::get);
+
+        // 两种写法的 NCI 是同一个 gNB（gNB ID = 0x19b，22 位）
+        assertEquals("gnb-19b", c.gnbScope("0x00066c001"));
+        assertEquals("gnb-19b", c.gnbScope("00:06:6c:00:10"));
+        assertNull(c.gnbScope("cell-1"));
+
+        // 两个 gNB 上都是 RAN UE NGAP ID 7：各归各的
+        c.handle(withCell(msg("InitialUEMessage", "imsi-1", "7", null, null), "0x00066c001"), out::add);
+        c.handle(withCell(msg("InitialUEMessage", "imsi-2", "7", null, null), "0x00099c001"), out::add);
+        assertEquals("imsi-1", c.resolve(IdentityKey.of(IdType.RAN_UE_NGAP_ID, "gnb-19b", "7")));
+        assertEquals("imsi-2", c.resolve(IdentityKey.of(IdType.RAN_UE_NGAP_ID, "gnb-267", "7")));
+        assertEquals(0, c.stats().conflicts());
+
+        // 没有 NR-CGI 的 RAN ID、没有小区的 C-RNTI 都不抽：一个标识都没有，丢掉
+        out.clear();
+        c.handle(msg("DownlinkNASTransport", null, "7", null, null), out::add);
+        c.handle(msg("rrcSetupRequest", null, null, null, "0x0b16"), out::add);
+        assertEquals(List.of(), types());
+        assertEquals(2, c.stats().dropped());
+        assertNull(c.resolve(RNTI_B16));
+
+        // 下行消息靠 AMF ID 连；释放时不带 NR-CGI，按 AMF ID 把同簇的 RAN ID 一起摘
+        c.handle(withCell(msg("UplinkNASTransport", "imsi-1", "7", "100", null), "0x00066c001"), out::add);
+        c.handle(msg("UEContextReleaseComplete", null, "7", "100", null), out::add);
+        assertNull(c.resolve(IdentityKey.of(IdType.RAN_UE_NGAP_ID, "gnb-19b", "7")));
+        assertEquals("imsi-2", c.resolve(IdentityKey.of(IdType.RAN_UE_NGAP_ID, "gnb-267", "7")));
+    }
+
+    private static SignalingMessage withCell(SignalingMessage m, String nci) {
+        m.getNgapInfoList().get(0).setNrCellIdentity(nci);
+        return m;
+    }
+
+    private static SignalingMessage withNas(SignalingMessage m, NasInfo nas) {
+        m.setNasList(List.of(nas));
+        return m;
+    }
+}
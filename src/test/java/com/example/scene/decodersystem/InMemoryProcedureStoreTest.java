@@ -0,0 +1,159 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.model.Procedure;
+import com.example.procedure.store.InMemoryProcedureStore;
+import com.example.procedure.store.ProcedureReplicator;
+import com.example.procedure.store.ProcedureStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryProcedureStoreTest {
+
+    private static int seq;
+
+    private static Procedure proc(String ueId, String code) {
+        Procedure p = new Procedure();
+        p.setProcedureId(ueId + "-" + code + "-" + (++seq));
+        p.setUeId(ueId);
+        p.setProcedureTypeCode(code);
+        p.setProcedureType(code + " desc");
+        p.setLastMessageType("First");
+        p.setActivateTime("2025-01-01 00:00:00");
+        p.setLastUpdateTime("2025-01-01 00:00:00");
+        p.setMessageNum(1);
+        return p;
+    }
+
+    private static ProcedureStore.Update upd(String msgType, Boolean endSeen) {
+        return new ProcedureStore.Update(msgType, "2025-01-01 00:00:05", 1_735_689_605_000L, 2, 3, endSeen, 99L, 7);
+    }
+
+    private static String add(ProcedureStore store, Procedure p) {
+        store.add(p);
+        return p.getProcedureId();
+    }
+
+    @Test
+    void addListUpdateRemoveWithoutRedis() {
+        InMemoryProcedureStore store = new InMemoryProcedureStore(null);
+        String a = add(store, proc("UE-1", "IA"));
+        String b = add(store, proc("UE-1", "IA"));
+
+        assertTrue(store.update("UE-1", a, upd("Second", null)));
+        Procedure p = store.get("UE-1", a);
+        assertEquals("Second", p.getLastMessageType());
+        assertEquals(2, p.getMessageNum());
+        assertEquals(2, p.getLastPhaseIndex());
+        assertFalse(p.isEndSeen());           // endSeen 为 null：不动
+        assertEquals(0, p.getKeyMask());
+
+        assertTrue(store.update("UE-1", a, upd("Third", true)));
+        p = store.get("UE-1", a);
+        assertTrue(p.isEndSeen());
+        assertEquals(99L, p.getEndSeenAtMs());
+        assertEquals(7, p.getKeyMask());
+        assertFalse(store.update("UE-1", "nope", upd("X", null)));
+        assertFalse(store.update("UE-2", a, upd("X", null)));
+
+        // 返回的是副本
+        List<Procedure> l = store.list("UE-1");
+        assertEquals(List.of(a, b), l.stream().map(Procedure::getProcedureId).toList());
+        l.get(0).setMessageNum(100);
+        assertNotSame(l.get(0), store.list("UE-1").get(0));
+        assertEquals(3, store.get("UE-1", a).getMessageNum());
+
+        store.remove("UE-1", a);
+        store.remove("UE-1", b);
+        assertTrue(store.list("UE-1").isEmpty());
+        assertNull(store.get("UE-1", a));
+        assertEquals(new InMemoryProcedureStore.Stats(0, 0), store.stats());
+    }
+
+    @Test
+    void replicatorCoalescesAndWritesLatestState() {
+        List<List<Procedure>> ups = new ArrayList<>();
+        List<List<String[]>> rms = new ArrayList<>();
+        ProcedureReplicator rep = new ProcedureReplicator((u, r) -> {
+            ups.add(u);
+            rms.add(r);
+        }, 0, 100, 10);
+        InMemoryProcedureStore store = new InMemoryProcedureStore(rep);
+
+        String a = add(store, proc("UE-1", "SR"));
+        for (int i = 0; i < 5; i++) store.update("UE-1", a, upd("M" + i, null));
+        String b = add(store, proc("UE-1", "SR"));
+        store.remove("UE-1", b);
+
+        assertEquals(2, rep.flush());
+        assertEquals(1, ups.size());
+        assertEquals(1, ups.get(0).size());
+        assertEquals("M4", ups.get(0).get(0).getLastMessageType());
+        assertEquals(6, ups.get(0).get(0).getMessageNum());
+        assertEquals(b, rms.get(0).get(0)[1]);
+        assertEquals(0, rep.flush());
+    }
+
+    @Test
+    void failedBatchIsRetriedAndOverflowIsCounted() {
+        boolean[] down = {true};
+        List<Procedure> written = new ArrayList<>();
+        ProcedureReplicator rep = new ProcedureReplicator((u, r) -> {
+            if (down[0]) throw new IllegalStateException("redis down");
+            written.addAll(u);
+        }, 0, 2, 10);
+        InMemoryProcedureStore store = new InMemoryProcedureStore(rep);
+
+        store.add(proc("UE-1", "IA"));
+        store.add(proc("UE-2", "IA"));
+        store.add(proc("UE-3", "IA"));      // 超过 maxPending=2，丢
+        assertEquals(0, rep.flush());
+        assertEquals(2, rep.stats().pending());
+
+        down[0] = false;
+        assertEquals(2, rep.flush());
+        assertEquals(2, written.size());
+        ProcedureReplicator.Stats st = rep.stats();
+        assertEquals(1, st.dropped());
+        assertEquals(1, st.failures());
+        assertEquals(2, st.upserts());
+    }
+
+    @Test
+    void removalsAreNeverDroppedWhenThePendingTableIsFull() {
+        boolean[] down = {true};
+        List<String> deleted = new ArrayList<>();
+        ProcedureReplicator rep = new ProcedureReplicator((u, r) -> {
+            if (down[0]) throw new IllegalStateException("redis down");
+            for (String[] x : r) deleted.add(x[1]);
+        }, 0, 2, 10);
+        InMemoryProcedureStore store = new InMemoryProcedureStore(rep);
+
+        String a = add(store, proc("UE-1", "IA"));
+        String b = add(store, proc("UE-2", "IA"));
+        String c = add(store, proc("UE-3", "IA"));   // 脏表满了，这条新建丢
+        assertEquals(0, rep.flush());
+        assertEquals(1, rep.stats().dropped());
+
+        // 脏表还是满的，三个删除都要记住（c 的新建丢了，但 Redis 里可能有它的旧副本）
+        store.remove("UE-1", a);
+        store.remove("UE-2", b);
+        store.remove("UE-3", c);
+        assertEquals(0, rep.flush());
+        assertEquals(3, rep.stats().pending());
+        assertEquals(1, rep.stats().dropped());
+
+        down[0] = false;
+        assertEquals(3, rep.flush());
+        assertEquals(List.of(a, b, c), deleted);
+        assertEquals(3, rep.stats().removals());
+        assertEquals(0, rep.stats().pending());
+    }
+}
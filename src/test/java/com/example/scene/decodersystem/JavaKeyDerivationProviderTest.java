@@ -0,0 +1,69 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.keyderivation.JavaKeyDerivationProvider;
+import com.example.procedure.keyderivation.KeyDerivationProvider;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 纯 Java 密钥推导的 known-answer 测试。
+ * 期望值取自 KeyDerivationNativeTest 里 C++ 实现给出的 "correct" 结果，
+ * 链路同样是一步接一步（上一步输出作为下一步输入）。
+ */
+class JavaKeyDerivationProviderTest {
+
+    private final KeyDerivationProvider kdf = new JavaKeyDerivationProvider();
+
+    private static final String SNN   = "5G:mnc001.mcc001.3gppnetwork.org";
+    private static final String SUPI  = "001010000000001";
+    private static final String KAUSF = "2a4b148e8b6831ffef59c107a8a325ad2dbb3035660d487f42a7d83a3a4fb606";
+
+    private static final String KSEAF = "166128D8111E632A84FC0F9A531A34CD33891B8F8FDB5648989FCA0B637003EC";
+    private static final String KAMF  = "26E1FC1550C96063B33847E9F2AFC85CC05A2FA9A7F902BCD46C9FCA1C2DEC7E";
+    private static final String KGNB  = "FD1B305CDA7E7EB5008A614DB72DE59DFB78A657272ABE4053AD301EB6F28F38";
+    private static final String NH    = "FD92A02CCD42C769125E5F3A972B12E95B9C91400D9D58E5A4241694F1439BA2";
+
+    @Test
+    void kseafFromKausf() {
+        assertEquals(KSEAF, kdf.kseafFromKausf(SNN, KAUSF));
+    }
+
+    @Test
+    void kamfFromKseaf() {
+        assertEquals(KAMF, kdf.kamfFromKseaf(SUPI, new byte[]{0x00, 0x00}, KSEAF));
+    }
+
+    @Test
+    void nasEncKeyNea1() {
+        assertEquals("AF44E132B69821903DBBB229C19CB38E140EAAC075364B0528617CC39CB4859E",
+                kdf.algorithmKeyDerivation(KeyDerivationProvider.N_NAS_ENC_ALG, 0x01, KAMF));
+    }
+
+    @Test
+    void kgnbFromKamf() {
+        assertEquals(KGNB, kdf.kgnbFromKamf(0x00L, KeyDerivationProvider.ACCESS_3GPP, KAMF));
+    }
+
+    @Test
+    void nhFromKamf() {
+        assertEquals(NH, kdf.nhFromKamf(KGNB, KAMF));
+    }
+
+    @Test
+    void kngRanStarFromNh() {
+        assertEquals("366B20A388A448A6999BEA3DF31162713BA0F101CAA59A03A28197F7498139CE",
+                kdf.kngRanStarFromKgnb(0x0800, "00001388", NH));
+    }
+
+    @Test
+    void kamfFromKamfN2Handover() {
+        assertEquals("028CAFDD3F0652AB1B95B0BB5730E8106DB964F1D098F4D1E6BAEF822CDA9CEC",
+                kdf.kamfFromKamf(KeyDerivationProvider.DIRECTION_N2_HANDOVER, 0x0aL, KAMF));
+    }
+
+    @Test
+    void acceptsLowerCaseAndPrefixedHex() {
+        assertEquals(KAMF, kdf.kamfFromKseaf(SUPI, new byte[]{0x00, 0x00}, "0x" + KSEAF.toLowerCase()));
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.decrypt.CountTracker;
+import com.example.procedure.decrypt.DecryptClient;
+import com.example.procedure.decrypt.KeyTrialEngine;
+import com.example.procedure.decrypt.LocalDecryptEngine;
+import com.example.procedure.decrypt.engine.NeaCipher;
+import com.example.procedure.decrypt.engine.NiaMac;
+import com.example.procedure.keyderivation.JavaKeyDerivationProvider;
+import com.example.procedure.keyderivation.KeyDerivationProvider;
+import com.example.procedure.model.UEContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyTrialEngineTest {
+
+    private static final HexFormat HEX = HexFormat.of();
+    private static final String UE = "UE-1";
+    private static final String PLAIN = "7e005c000d0100f110f0ff00001032547698";
+
+    /** 旧一代（重鉴权前）和新一代密钥 */
+    private static final KeyTrialEngine.KeySet OLD = KeyTrialEngine.KeySet.of(
+            "d3c5d592327fb11c4035c6680af8c6d1", "2", "2bd6459f82c5b300952c49104881ff48", "2");
+    private static final KeyTrialEngine.KeySet NEW = KeyTrialEngine.KeySet.of(
+            "00112233445566778899aabbccddeeff", "3", "ffeeddccbbaa99887766554433221100", "3");
+
+    /** 用 keys/count 构造一条 NAS 密文 PDU（MAC 覆盖 SQN || 密文） */
+    private static DecryptClient.DecryptRequest nasPdu(KeyTrialEngine.KeySet keys, int count) {
+        int enc = keys.encAlgo().charAt(3) - '0', integ = keys.intAlgo().charAt(3) - '0';
+        byte[] ct = NeaCipher.of(enc, low128(keys.encKey())).apply(count, 0, 0, HEX.parseHex(PLAIN), PLAIN.length() * 4);
+        byte[] in = new byte[ct.length + 1];
+        in[0] = (byte) count;
+        System.arraycopy(ct, 0, in, 1, ct.length);
+        byte[] mac = NiaMac.of(integ, low128(keys.intKey())).mac(count, 0, 0, in, in.length * 8);
+
+        DecryptClient.DecryptRequest r = new DecryptClient.DecryptRequest();
+        r.ueId = UE;
+        r.layer = "NAS";
+        r.bearer = 0;
+        r.direction = "UL";
+        r.ciphertext = HEX.formatHex(ct);
+        r.mac = HEX.formatHex(mac);
+        return r;
+    }
+
+    /** 真 KDF 输出是 256 位，NEA/NIA 取后 16 字节；手写的 16 字节密钥原样用 */
+    private static byte[] low128(String hex) {
+        byte[] k = HEX.parseHex(hex);
+        return k.length == 32 ? Arrays.copyOfRange(k, 16, 32) : k;
+    }
+
+    private static List<KeyTrialEngine.Trial> trials(List<KeyTrialEngine.KeySet> keySets, int... counts) {
+        List<KeyTrialEngine.Trial> out = new ArrayList<>();
+        for (KeyTrialEngine.KeySet k : keySets) for (int c : counts) out.add(new KeyTrialEngine.Trial(k, c));
+        return out;
+    }
+
+    private static UEContext ctx(KeyTrialEngine.KeySet k) {
+        UEContext c = new UEContext();
+        c.setUeId(UE);
+        c.setKNasEnc(k.encKey());
+        c.setNasCipherAlg(k.encAlgo());
+        c.setKNasInt(k.intKey());
+        c.setNasIntAlg(k.intAlgo());
+        return c;
+    }
+
+    @Test
+    void picksOlderGenerationAndCountByMac() {
+        KeyTrialEngine engine = new KeyTrialEngine(3, 4, 2, 100);
+        engine.observe(ctx(OLD));
+        engine.observe(ctx(NEW));
+        List<KeyTrialEngine.KeySet> keySets = engine.keySets(UE, CountTracker.LAYER_NAS, NEW);
+        assertEquals(List.of(NEW, OLD), keySets);
+
+        DecryptClient.DecryptRequest pdu = nasPdu(OLD, 257);
+        KeyTrialEngine.Outcome o = engine.select(pdu, trials(keySets, 1, 257, 513));
+        assertNotNull(o);
+        assertEquals(OLD, o.trial().keys());
+        assertEquals(257, o.trial().count());
+
+        // 选中的候选解出来完整性也得对
+        KeyTrialEngine.apply(pdu, o.trial());
+        assertEquals(LocalDecryptEngine.INTEGRITY_SUCCESS, LocalDecryptEngine.verify(pdu));
+        assertEquals(PLAIN, new LocalDecryptEngine(10, 0, 256).decrypt(pdu).getPlainData());
+
+        // 胜出的那代下次排在最前
+        assertEquals(List.of(OLD, NEW), engine.keySets(UE, CountTracker.LAYER_NAS, NEW));
+    }
+
+    @Test
+    void serialAndParallelAgree() {
+        KeyTrialEngine serial = new KeyTrialEngine(3, 1, 2, 100);
+        KeyTrialEngine parallel = new KeyTrialEngine(3, 4, 2, 100);
+        DecryptClient.DecryptRequest pdu = nasPdu(NEW, 2);
+        List<KeyTrialEngine.Trial> ts = trials(List.of(OLD, NEW), 0, 1, 2, 3);
+        assertEquals(serial.select(pdu, ts), parallel.select(pdu, ts));
+        assertEquals(6, parallel.select(pdu, ts).index());   // OLD 占 0..3，NEW 的 COUNT 2 在 6
+    }
+
+    @Test
+    void noMatchReturnsNull() {
+        KeyTrialEngine engine = new KeyTrialEngine(3, 2, 2, 100);
+        DecryptClient.DecryptRequest pdu = nasPdu(NEW, 7);
+        assertNull(engine.select(pdu, trials(List.of(OLD), 7, 8)));
+        assertEquals(1, engine.stats().noMatch());
+    }
+
+    @Test
+    void generationsAreBoundedAndDeduplicated() {
+        KeyTrialEngine engine = new KeyTrialEngine(2, 1, 2, 100);
+        KeyTrialEngine.KeySet third = KeyTrialEngine.KeySet.of("0f0e0d0c0b0a09080706050403020100", "1",
+                "000102030405060708090a0b0c0d0e0f", "1");
+        engine.observe(ctx(OLD));
+        engine.observe(ctx(OLD));
+        engine.observe(ctx(NEW));
+        engine.observe(ctx(third));
+        assertEquals(List.of(third, NEW), engine.keySets(UE, CountTracker.LAYER_NAS, null));
+        assertEquals(List.of(third, NEW), engine.keySets(UE, CountTracker.LAYER_NAS, third));
+    }
+
+    @Test
+    void kdfDerivedGenerationsAreTellApartAndUnknownAlgorithmsAreSkipped() {
+        // 两代真 KDF 推出来的密钥（大写 hex，完整 256 位输出）：重鉴权前后各一个 KAMF
+        KeyDerivationProvider kdf = new JavaKeyDerivationProvider();
+        KeyTrialEngine.KeySet before = kdfKeys(kdf, "26E1FC1550C96063B33847E9F2AFC85CC05A2FA9A7F902BCD46C9FCA1C2DEC7E");
+        KeyTrialEngine.KeySet after = kdfKeys(kdf, "C05A2FA9A7F902BCD46C9FCA1C2DEC7E26E1FC1550C96063B33847E9F2AFC85C");
+        assertEquals(64, before.encKey().length());
+
+        try (KeyTrialEngine engine = new KeyTrialEngine(3, 2, 2, 100)) {
+            DecryptClient.DecryptRequest pdu = nasPdu(before, 5);
+            KeyTrialEngine.Outcome o = engine.select(pdu, trials(List.of(after, before), 4, 5));
+            assertNotNull(o);
+            assertEquals(before, o.trial().keys());
+            assertEquals(5, o.trial().count());
+
+            KeyTrialEngine.apply(pdu, o.trial());
+            assertEquals(LocalDecryptEngine.INTEGRITY_SUCCESS, LocalDecryptEngine.verify(pdu));
+            assertEquals(PLAIN, new LocalDecryptEngine(10, 0, 256).decrypt(pdu).getPlainData());
+        }
+
+        // 算法没有 / 认不出：不猜成 1，也不拿这把按别的算法号推出来的密钥去换算法试
+        KeyTrialEngine.KeySet unknownInt = KeyTrialEngine.KeySet.of(before.encKey(), "2", before.intKey(), "");
+        assertNull(unknownInt.intAlgo());
+        assertFalse(unknownInt.isComplete());
+        assertNull(KeyTrialEngine.KeySet.of(before.encKey(), "7", before.intKey(), "3").encAlgo());
+        assertTrue(before.isComplete());
+    }
+
+    private static KeyTrialEngine.KeySet kdfKeys(KeyDerivationProvider kdf, String kamf) {
+        return KeyTrialEngine.KeySet.of(
+                kdf.algorithmKeyDerivation(KeyDerivationProvider.N_NAS_ENC_ALG, 2, kamf), "NEA2",
+                kdf.algorithmKeyDerivation(KeyDerivationProvider.N_NAS_INT_ALG, 3, kamf), "NIA3");
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.decrypt.DecryptClient;
+import com.example.procedure.decrypt.DecryptResponse;
+import com.example.procedure.decrypt.LocalDecryptEngine;
+import com.example.procedure.decrypt.engine.NeaCipher;
+import com.example.procedure.decrypt.engine.NiaMac;
+import com.example.procedure.keyderivation.JavaKeyDerivationProvider;
+import com.example.procedure.keyderivation.KeyDerivationProvider;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LocalDecryptEngineTest {
+
+    private static final HexFormat HEX = HexFormat.of();
+    private static final String K_ENC = "d3c5d592327fb11c4035c6680af8c6d1";
+    private static final String K_INT = "2bd6459f82c5b300952c49104881ff48";
+    private static final String PLAIN = "7e005c000d0100f110f0ff00001032547698";
+
+    private final LocalDecryptEngine engine = new LocalDecryptEngine(100, 0, 256);
+
+    @Test
+    void nasRoundTripAllAlgorithms() {
+        for (int alg = 1; alg <= 3; alg++) {
+            int count = 5, bearer = 1, dir = 0;
+            byte[] ct = NeaCipher.of(alg, HEX.parseHex(K_ENC)).apply(count, bearer, dir, HEX.parseHex(PLAIN), PLAIN.length() * 4);
+            byte[] macInput = new byte[ct.length + 1];
+            macInput[0] = (byte) count;
+            System.arraycopy(ct, 0, macInput, 1, ct.length);
+            byte[] mac = NiaMac.of(alg, HEX.parseHex(K_INT)).mac(count, bearer, dir, macInput, macInput.length * 8);
+
+            DecryptResponse r = engine.decrypt(req("NAS", alg, count, bearer, "UL", HEX.formatHex(ct), HEX.formatHex(mac)));
+            assertEquals(LocalDecryptEngine.DECRYPT_SUCCESS, r.getDecryptStatus(), "NEA" + alg);
+            assertEquals(PLAIN, r.getPlainData());
+            assertEquals(LocalDecryptEngine.INTEGRITY_SUCCESS, r.getIntegrityStatus(), "NIA" + alg);
+        }
+    }
+
+    @Test
+    void pdcpDecryptsDataAndMacTogether() {
+        int alg = 2, count = 3, bearer = 0, dir = 1;
+        byte[] plain = HEX.parseHex(PLAIN);
+        byte[] macInput = new byte[plain.length + 2];
+        macInput[1] = (byte) count;
+        System.arraycopy(plain, 0, macInput, 2, plain.length);
+        byte[] mac = NiaMac.of(alg, HEX.parseHex(K_INT)).mac(count, bearer, dir, macInput, macInput.length * 8);
+
+        byte[] all = new byte[plain.length + 4];
+        System.arraycopy(plain, 0, all, 0, plain.length);
+        System.arraycopy(mac, 0, all, plain.length, 4);
+        byte[] ct = NeaCipher.of(alg, HEX.parseHex(K_ENC)).apply(count, bearer, dir, all, all.length * 8);
+
+        String ctHex = HEX.formatHex(ct);
+        DecryptResponse r = engine.decrypt(req("AS", alg, count, bearer, "DL",
+                ctHex.substring(0, ctHex.length() - 8), ctHex.substring(ctHex.length() - 8)));
+        assertEquals(PLAIN, r.getPlainData());
+        assertEquals(HEX.formatHex(mac), r.getPlainMac());
+        assertEquals(LocalDecryptEngine.INTEGRITY_SUCCESS, r.getIntegrityStatus());
+    }
+
+    @Test
+    void precomputedKeystreamGivesSameResult() {
+        byte[] ct = NeaCipher.of(3, HEX.parseHex(K_ENC)).apply(9, 1, 0, HEX.parseHex(PLAIN), PLAIN.length() * 4);
+        DecryptClient.DecryptRequest r = req("NAS", 3, 9, 1, "UL", HEX.formatHex(ct), "00000000");
+        engine.precompute(r, 8, 4, 64);
+        DecryptResponse resp = engine.decrypt(r);
+        assertEquals(PLAIN, resp.getPlainData());
+        assertEquals(LocalDecryptEngine.INTEGRITY_FAILED, resp.getIntegrityStatus());
+        assertEquals(1, engine.sessionCount());
+    }
+
+    /** 密钥直接用 KDF 推出来的（大写 hex），不手搓 16 字节 */
+    @Test
+    void kdfDerivedNasAndRrcKeysDecrypt() {
+        KeyDerivationProvider kdf = new JavaKeyDerivationProvider();
+        String kamf = "26E1FC1550C96063B33847E9F2AFC85CC05A2FA9A7F902BCD46C9FCA1C2DEC7E";
+        String kgnb = kdf.kgnbFromKamf(0, KeyDerivationProvider.ACCESS_3GPP, kamf);
+        int alg = 2, count = 4, bearer = 1, dir = 0;
+
+        String nasEnc = kdf.algorithmKeyDerivation(KeyDerivationProvider.N_NAS_ENC_ALG, alg, kamf);
+        String nasInt = kdf.algorithmKeyDerivation(KeyDerivationProvider.N_NAS_INT_ALG, alg, kamf);
+        byte[] ct = NeaCipher.of(alg, low128(nasEnc)).apply(count, bearer, dir, HEX.parseHex(PLAIN), PLAIN.length() * 4);
+        byte[] macInput = new byte[ct.length + 1];
+        macInput[0] = (byte) count;
+        System.arraycopy(ct, 0, macInput, 1, ct.length);
+        byte[] mac = NiaMac.of(alg, low128(nasInt)).mac(count, bearer, dir, macInput, macInput.length * 8);
+
+        DecryptClient.DecryptRequest nas = req("NAS", alg, count, bearer, "UL", HEX.formatHex(ct), HEX.formatHex(mac));
+        nas.encKey = nasEnc;
+        nas.intKey = nasInt;
+        DecryptResponse r = engine.decrypt(nas);
+        assertEquals(LocalDecryptEngine.DECRYPT_SUCCESS, r.getDecryptStatus(), r.getErrorMsg());
+        assertEquals(PLAIN, r.getPlainData());
+        assertEquals(LocalDecryptEngine.INTEGRITY_SUCCESS, r.getIntegrityStatus());
+
+        // RRC 只做完整性（SRB1 的 SecurityModeCommand 这类），K_RRCint 从 KgNB 推
+        String rrcInt = kdf.algorithmKeyDerivation(KeyDerivationProvider.N_RRC_INT_ALG, alg, kgnb);
+        byte[] plain = HEX.parseHex(PLAIN);
+        byte[] rrcInput = new byte[plain.length + 2];
+        rrcInput[1] = (byte) count;
+        System.arraycopy(plain, 0, rrcInput, 2, plain.length);
+        byte[] rrcMac = NiaMac.of(alg, low128(rrcInt)).mac(count, bearer, 1, rrcInput, rrcInput.length * 8);
+
+        DecryptClient.DecryptRequest rrc = req("AS", 0, count, bearer, "DL", PLAIN, HEX.formatHex(rrcMac));
+        rrc.intKey = rrcInt;
+        rrc.intAlgo = "NIA" + alg;
+        r = engine.decrypt(rrc);
+        assertEquals(LocalDecryptEngine.DECRYPT_SUCCESS, r.getDecryptStatus(), r.getErrorMsg());
+        assertEquals(LocalDecryptEngine.INTEGRITY_SUCCESS, r.getIntegrityStatus());
+    }
+
+    /** KDF 给的是完整 256 位输出，NEA/NIA 自己用低 128 位（TS 33.501 A.8） */
+    private static byte[] low128(String kdfOutput) {
+        byte[] k = HEX.parseHex(kdfOutput);
+        assertEquals(32, k.length);
+        return Arrays.copyOfRange(k, 16, 32);
+    }
+
+    /** 上下文 / C++ 库 / 外部服务给的完整 256 位输出：取后 16 字节 */
+    @Test
+    void fullKdfOutputIsCutToLow128Bits() {
+        byte[] ct = NeaCipher.of(2, HEX.parseHex(K_ENC)).apply(5, 1, 0, HEX.parseHex(PLAIN), PLAIN.length() * 4);
+        DecryptClient.DecryptRequest r = req("NAS", 2, 5, 1, "UL", HEX.formatHex(ct), "");
+        r.encKey = "ffeeddccbbaa99887766554433221100" + K_ENC;
+        r.intKey = null;
+        DecryptResponse resp = engine.decrypt(r);
+        assertEquals(LocalDecryptEngine.DECRYPT_SUCCESS, resp.getDecryptStatus(), resp.getErrorMsg());
+        assertEquals(PLAIN, resp.getPlainData());
+    }
+
+    @Test
+    void badInputReportsFailure() {
+        DecryptClient.DecryptRequest r = req("NAS", 2, 0, 1, "XX", "00", "00000000");
+        assertEquals(LocalDecryptEngine.DECRYPT_FAILED, engine.decrypt(r).getDecryptStatus());
+    }
+
+    private static DecryptClient.DecryptRequest req(String layer, int alg, int count, int bearer, String dir,
+                                                    String ct, String mac) {
+        DecryptClient.DecryptRequest req = new DecryptClient.DecryptRequest();
+        req.messageId = "MSG-1";
+        req.ueId = "UE-1";
+        req.contextRef = "UE-1";
+        req.layer = layer;
+        req.encKey = K_ENC;
+        req.intKey = K_INT;
+        req.encAlgo = "NEA" + alg;
+        req.intAlgo = "NIA" + alg;
+        req.count = count;
+        req.bearer = bearer;
+        req.direction = dir;
+        req.ciphertext = ct;
+        req.mac = mac;
+        return req;
+    }
+}
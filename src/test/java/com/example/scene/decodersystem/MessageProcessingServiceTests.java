@@ -2,7 +2,7 @@ package com.example.scene.decodersystem;
 
 import com.example.procedure.Application;
 import com.example.procedure.model.*;
-import com.example.procedure.rule.UeIdBinder;
+import com.example.procedure.identity.UeBinder;
 import com.example.procedure.initial_acess.*;
 import com.example.procedure.parser.TsharkJsonMessageParser;
 import com.example.procedure.service.MsgProcessing_Service;
@@ -30,7 +30,7 @@ class MessageProcessingServiceTests {
     @Autowired
     private MsgProcessing_Service messageProcessingService;
     @Autowired
-    private UeIdBinder ueIdBinder;
+    private UeBinder ueBinder;
 
     // ====== 通用构造器 ======
     private SignalingMessage buildMsg(String ueId,
@@ -387,7 +387,7 @@ class MessageProcessingServiceTests {
         for (SignalingMessage msg : messages) {
             idx++;
 
-            ueIdBinder.handle(msg, m -> {
+            ueBinder.handle(msg, m -> {
                 MessageProcessingResult result = messageProcessingService.process(m);
 
                 SignalingMessagePrinter.printAndWriteToFile(
@@ -486,7 +486,7 @@ class MessageProcessingServiceTests {
     }
 
     private void processOne(SignalingMessage msg) {
-        ueIdBinder.handle(msg, m -> {
+        ueBinder.handle(msg, m -> {
             MessageProcessingResult result = messageProcessingService.process(m);
             SignalingMessagePrinter.printAndWriteToFile(
                     m, Paths.get("logs/signaling_dump.log"), true
@@ -0,0 +1,103 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.model.MessageCategory;
+import com.example.procedure.model.MsgCode;
+import com.example.procedure.model.ProcedureTypeEnum;
+import com.example.procedure.model.SignalingMessage;
+import com.example.procedure.rule.MessageCategoryClassifier;
+import com.example.procedure.rule.MsgTypeCodes;
+import com.example.procedure.rule.ProcedureAutomaton;
+import com.example.procedure.streaming.parser.PacketParseContext;
+import com.example.procedure.streaming.parser.RrcNasParseResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MsgCodeCatalogTest {
+
+    private static SignalingMessage msg(String type, MsgCode code) {
+        SignalingMessage m = new SignalingMessage();
+        m.setMsgType(type);
+        if (code != null) m.setMsgCode(code.code);
+        return m;
+    }
+
+    private static long row(ProcedureTypeEnum type, MsgCode code) {
+        return ProcedureAutomaton.of(type).row(MsgTypeCodes.forCode(code));
+    }
+
+    @Test
+    void wireNamesResolveToStableCodes() {
+        Set<Integer> codes = new HashSet<>();
+        for (MsgCode c : MsgCode.values()) {
+            assertTrue(codes.add(c.code), c.name());
+            assertEquals(c, MsgCode.byCode(c.code));
+        }
+        // 老的 6 个 code 不能变（RrcNasParseResult 里存的就是它）
+        assertEquals(1001, MsgCode.RRC_SETUP_COMPLETE.code);
+        assertEquals(4001, MsgCode.NUAR_AUTHENTICATE_RESPONSE.code);
+
+        assertEquals(MsgCode.RRC_SECURITY_MODE_COMMAND, MsgCode.ofRrc("securityModeCommand"));
+        assertEquals(MsgCode.NGAP_INITIAL_UE_MESSAGE, MsgCode.ofNgap("initialuemessage"));
+        assertEquals(MsgCode.XNAP_SN_STATUS_TRANSFER, MsgCode.ofXnap("SNStatusTransfer"));
+        assertEquals(MsgCode.NAS_SECURITY_MODE_COMMAND, MsgCode.ofNasMm("0x5D"));
+        assertEquals(MsgCode.NAS_REGISTRATION_REQUEST, MsgCode.ofNasMm("65"));
+        assertEquals(MsgCode.UNKNOWN, MsgCode.ofNasMm("0xzz"));
+        assertEquals(MsgCode.UNKNOWN, MsgCode.ofRrc("notAMessage"));
+    }
+
+    @Test
+    void differentSpellingsLandOnOneCode() {
+        SignalingMessage a = msg("Initial UE Message", null);
+        SignalingMessage b = msg("INITIALUEMESSAGE", null);
+        SignalingMessage c = msg(RrcNasParseResult.normalizedMsgType(2001), MsgCode.NGAP_INITIAL_UE_MESSAGE);
+        assertEquals(MsgCode.NGAP_INITIAL_UE_MESSAGE.code, a.getMsgCode());
+        assertEquals(a.getMsgCode(), b.getMsgCode());
+        assertEquals(MsgTypeCodes.of(a), MsgTypeCodes.of(b));
+        assertEquals(MsgTypeCodes.of(a), MsgTypeCodes.of(c));
+
+        // 目录外的：code 0，退回按字符串
+        SignalingMessage x = msg("NAS_5GS", null);
+        assertEquals(0, x.getMsgCode());
+        assertEquals(MsgTypeCodes.of("NAS_5GS"), MsgTypeCodes.of(x));
+
+        // 改了 msgType 要重新查
+        x.setMsgType("rrcRelease");
+        assertEquals(MsgCode.RRC_RELEASE.code, x.getMsgCode());
+    }
+
+    @Test
+    void catalogNamesHitTheProcedureTables() {
+        MessageCategoryClassifier classifier = new MessageCategoryClassifier();
+        assertEquals(MessageCategory.PROCEDURE_DRIVING, classifier.classify(msg(null, MsgCode.NAS_REGISTRATION_COMPLETE)));
+        assertEquals(MessageCategory.PROCEDURE_AUX, classifier.classify(msg(null, MsgCode.NUDM_AUTH_GET_REQUEST)));
+        assertEquals(MessageCategory.NON_PROCEDURE, classifier.classify(msg(null, MsgCode.NGAP_PAGING)));
+        assertEquals(MessageCategory.PROCEDURE_DRIVING, classifier.classify(msg("RRCReconfiguration", null)));
+
+        assertNotEquals(0, ProcedureAutomaton.keyBit(row(ProcedureTypeEnum.INITIAL_ACCESS, MsgCode.RRC_SETUP_COMPLETE)));
+        assertTrue(ProcedureAutomaton.isEnd(row(ProcedureTypeEnum.INITIAL_ACCESS, MsgCode.NGAP_INITIAL_CONTEXT_SETUP_RESPONSE)));
+        assertTrue(ProcedureAutomaton.located(row(ProcedureTypeEnum.XN_HANDOVER, MsgCode.XNAP_HANDOVER_REQUEST)));
+        assertTrue(ProcedureAutomaton.located(row(ProcedureTypeEnum.XN_HANDOVER, MsgCode.NGAP_PATH_SWITCH_REQUEST)));
+        assertTrue(ProcedureAutomaton.located(row(ProcedureTypeEnum.N2_HANDOVER, MsgCode.NGAP_HANDOVER_NOTIFY)));
+        assertTrue(ProcedureAutomaton.located(row(ProcedureTypeEnum.RRCSTATE_TRANSFER, MsgCode.RRC_RESUME_REQUEST_1)));
+        assertTrue(ProcedureAutomaton.located(row(ProcedureTypeEnum.RRC_REESTABLISH, MsgCode.XNAP_RETRIEVE_UE_CONTEXT_RESPONSE)));
+    }
+
+    @Test
+    void nasInsideACarrierWinsButNotInsideARealMessage() {
+        PacketParseContext ctx = new PacketParseContext(new RrcNasParseResult(), 0, Set.of());
+        ctx.markMsgCode(MsgCode.RRC_UL_INFORMATION_TRANSFER);
+        ctx.markMsgCode(MsgCode.NAS_AUTHENTICATION_RESPONSE);
+        assertEquals(MsgCode.NAS_AUTHENTICATION_RESPONSE.code, ctx.result.getMsgCode());
+
+        ctx = new PacketParseContext(new RrcNasParseResult(), 0, Set.of());
+        ctx.markMsgCode(MsgCode.NGAP_INITIAL_UE_MESSAGE);
+        ctx.markMsgCode(MsgCode.NAS_REGISTRATION_REQUEST);
+        assertEquals(MsgCode.NGAP_INITIAL_UE_MESSAGE.code, ctx.result.getMsgCode());
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.decrypt.engine.NeaCipher;
+import com.example.procedure.decrypt.engine.NiaMac;
+import com.example.procedure.decrypt.engine.Snow3g;
+import com.example.procedure.decrypt.engine.Zuc;
+import org.junit.jupiter.api.Test;
+
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 3GPP/ETSI 公开测试向量：
+ *  - SNOW 3G / ZUC 密钥流：UEA2&UIA2 Doc 3、EEA3&EIA3 Doc 3
+ *  - 128-NEA1/2/3、128-NIA1/2/3：TS 33.401 附录 C（NR 的 128-NEA/NIA 与 EPS 的 EEA/EIA 相同）
+ */
+class NeaNiaTestVectorsTest {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private static byte[] h(String s) {
+        return HEX.parseHex(s.replace(" ", ""));
+    }
+
+    private static String enc(int alg, String key, int count, int bearer, int dir, String plain, int bits) {
+        return HEX.formatHex(NeaCipher.of(alg, h(key)).apply(count, bearer, dir, h(plain), bits));
+    }
+
+    private static String mac(int alg, String key, int count, int bearer, int dir, String msg, int bits) {
+        return HEX.formatHex(NiaMac.of(alg, h(key)).mac(count, bearer, dir, h(msg), bits));
+    }
+
+    // ===================== keystream generators =====================
+
+    @Test
+    void snow3gKeystreamTestSet1() {
+        Snow3g s = new Snow3g().init(
+                new int[]{0x2BD6459F, 0x82C5B300, 0x952C4910, 0x4881FF48},
+                new int[]{0xEA024714, 0xAD5C4D84, 0xDF1F9B25, 0x1C0BF45F});
+        assertEquals(0xABEE9704, s.next());
+        assertEquals(0x7AC31373, s.next());
+    }
+
+    @Test
+    void zucKeystreamAllZeros() {
+        Zuc z = new Zuc().init(new byte[16], new byte[16]);
+        assertEquals(0x27BEDE74, z.next());
+        assertEquals(0x018082DA, z.next());
+    }
+
+    @Test
+    void zucKeystreamAllOnes() {
+        byte[] ff = h("ffffffffffffffffffffffffffffffff");
+        Zuc z = new Zuc().init(ff, ff);
+        assertEquals(0x0657CFA0, z.next());
+        assertEquals(0x7096398B, z.next());
+    }
+
+    // ===================== NEA =====================
+
+    @Test
+    void nea1TestSet1() {
+        assertEquals("5d5bfe75eb04f68ce0a12377ea00b37d47c6a0ba06309155086a859c4341b378",
+                enc(1, "d3c5d592327fb11c4035c6680af8c6d1", 0x398a59b4, 0x15, 1,
+                        "981ba6824c1bfb1ab485472029b71d808ce33e2cc3c0b5fc1f3de8a6dc66b1f0", 253));
+    }
+
+    @Test
+    void nea2TestSet1() {
+        assertEquals("e9fed8a63d155304d71df20bf3e82214b20ed7dad2f233dc3c22d7bdeeed8e78",
+                enc(2, "d3c5d592327fb11c4035c6680af8c6d1", 0x398a59b4, 0x15, 1,
+                        "981ba6824c1bfb1ab485472029b71d808ce33e2cc3c0b5fc1f3de8a6dc66b1f0", 253));
+    }
+
+    @Test
+    void nea3TestSet1() {
+        assertEquals("a6c85fc66afb8533aafc2518dfe784940ee1e4b030238cc800",
+                enc(3, "173d14ba5003731d7a60049470f00a29", 0x66035492, 0x0f, 0,
+                        "6cf65340735552ab0c9752fa6f9025fe0bd675d9005875b200000000", 193));
+    }
+
+    @Test
+    void neaIsInvolution() {
+        String key = "d3c5d592327fb11c4035c6680af8c6d1";
+        String plain = "7e0055c1a0b2c3d4e5f6071829";
+        for (int alg = 0; alg <= 3; alg++) {
+            String c = enc(alg, key, 7, 1, 0, plain, plain.length() * 4);
+            assertEquals(plain, enc(alg, key, 7, 1, 0, c, plain.length() * 4), "NEA" + alg);
+        }
+    }
+
+    // ===================== NIA =====================
+
+    @Test
+    void snow3gF9TestSet1() {
+        // UIA2 test set 1：FRESH 任意取值，NIA1 只是 FRESH = BEARER||0^27 的特例
+        int mac = new Snow3g().f9(Snow3g.keyWords(h("2bd6459f82c5b300952c49104881ff48")),
+                0x38a6f056, 0x05d2ec49, 0,
+                h("6b227737296f393c8079353edc87e2e805d2ec49a4f2d8e0"), 189);
+        assertEquals(0x2BCE1820, mac);
+    }
+
+    @Test
+    void nia1TestSet1() {
+        assertEquals("731f1165",
+                mac(1, "2bd6459f82c5b300952c49104881ff48", 0x38a6f056, 0x1f, 0,
+                        "3332346263393861373479", 88));
+    }
+
+    @Test
+    void nia2TestSet1() {
+        assertEquals("118c6eb8",
+                mac(2, "2bd6459f82c5b300952c49104881ff48", 0x38a6f056, 0x18, 0,
+                        "3332346263393840", 58));
+    }
+
+
+    @Test
+    void nia3TestSet1() {
+        assertEquals("c8a9595e",
+                mac(3, "00000000000000000000000000000000", 0, 0, 0, "00000000", 1));
+    }
+}
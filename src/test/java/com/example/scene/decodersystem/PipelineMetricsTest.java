@@ -0,0 +1,144 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.keyderivation.JavaKeyDerivationProvider;
+import com.example.procedure.keyderivation.KeyDerivationProvider;
+import com.example.procedure.keyderivation.MeteredKeyDerivationProvider;
+import com.example.procedure.metrics.PipelineMetrics;
+import com.example.procedure.model.SignalingMessage;
+import com.example.procedure.parser.NgapInfo;
+import com.example.procedure.rule.UeIdBinder;
+import com.example.procedure.state.MeteredStateBackend;
+import com.example.procedure.state.OnHeapStateBackend;
+import com.example.procedure.state.StateBackend;
+import com.example.procedure.streaming.parser.RrcNasParseResult;
+import com.example.procedure.streaming.layers.LayersSelectiveParser;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 每个用例挂一个新的 SimpleMeterRegistry 到 global 上：计数从 0 开始，别的用例打的数不会串进来。
+ * 已有的 meter（别的用例起的 Spring 上下文建的）也会挂过来，查的时候标签要写全。
+ */
+class PipelineMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    @BeforeEach
+    void attach() {
+        Metrics.addRegistry(registry);
+    }
+
+    @AfterEach
+    void detach() {
+        Metrics.removeRegistry(registry);
+        registry.close();
+    }
+
+    @Test
+    void parseCountsPacketsChainsBytesAndFilteredPackets() throws Exception {
+        String json = "[\n"
+                + "{\"_source\":{\"layers\":{\"frame\":{\"frame.number\":\"1\",\"frame.protocols\":\"eth:ethertype:ip:udp:dns\"},"
+                + "\"dns\":{}}}},\n"
+                + "{\"_source\":{\"layers\":{\"frame\":{\"frame.number\":\"2\",\"frame.protocols\":\"eth:ethertype:ip:sctp:ngap\"},"
+                + "\"ngap\":{\"ngap.RAN_UE_NGAP_ID\":\"7\"}}}}\n"
+                + "]";
+        byte[] data = json.getBytes(StandardCharsets.UTF_8);
+        List<List<RrcNasParseResult>> out = new ArrayList<>();
+        LayersSelectiveParser.parsePackets(new ByteArrayInputStream(data), Set.of("ngap"), Set.of(), out::add);
+
+        assertEquals(2, out.size());
+        assertEquals(2, registry.get("pipeline.parse.packets").counter().count());
+        assertEquals(1, registry.get("pipeline.parse.dropped").counter().count());
+        assertEquals(out.get(0).size() + out.get(1).size(), registry.get("pipeline.parse.chains").counter().count());
+        assertEquals(2, registry.get("pipeline.parse").timer().count());
+        double bytes = registry.get("pipeline.parse.bytes").counter().count();
+        assertTrue(bytes > json.indexOf("\"ngap\":{") && bytes <= data.length, "bytes=" + bytes);
+    }
+
+    @Test
+    void binderCountsOutcomesAndTimesTheWaitForBinding() {
+        UeIdBinder b = new UeIdBinder(null, 120_000, 3_600_000, false, 1_000, 1000, -1, 1000, now::get);
+        List<SignalingMessage> out = new ArrayList<>();
+
+        b.handle(msg(null, "7"), out::add);          // 缓冲
+        now.addAndGet(250);
+        b.handle(msg("UE-1", "7"), out::add);        // 绑上，放出前一条
+        b.handle(msg(null, null), out::add);         // 没有任何索引，丢掉
+
+        assertEquals(2, out.size());
+        assertEquals(1, registry.get("pipeline.bind.messages").tag("outcome", "buffered").counter().count());
+        assertEquals(1, registry.get("pipeline.bind.messages").tag("outcome", "resolved").counter().count());
+        assertEquals(1, registry.get("pipeline.bind.messages").tag("outcome", "unindexed").counter().count());
+        assertEquals(1, registry.get("pipeline.bind.wait").timer().count());
+        assertEquals(250, registry.get("pipeline.bind.wait").timer().totalTime(TimeUnit.MILLISECONDS), 0.001);
+    }
+
+    @Test
+    void decryptTimersAreTaggedByModeAlgorithmAndOutcome() {
+        PipelineMetrics.decrypt(false, "2", PipelineMetrics.DecryptOutcome.OK).record(1, TimeUnit.MILLISECONDS);
+        PipelineMetrics.decrypt(false, "0x02", PipelineMetrics.DecryptOutcome.OK).record(1, TimeUnit.MILLISECONDS);
+        PipelineMetrics.decrypt(true, "7", PipelineMetrics.DecryptOutcome.ERROR).record(1, TimeUnit.MILLISECONDS);
+
+        assertEquals(2, registry.get("pipeline.decrypt")
+                .tags("mode", "local", "alg", "NEA2", "outcome", "ok").timer().count());
+        assertEquals(1, registry.get("pipeline.decrypt")
+                .tags("mode", "http", "alg", "unknown", "outcome", "error").timer().count());
+    }
+
+    @Test
+    void keyDerivationIsTimedPerFunction() {
+        KeyDerivationProvider kd = new MeteredKeyDerivationProvider(new JavaKeyDerivationProvider());
+        String kamf = "00".repeat(32);
+        kd.algorithmKeyDerivation(KeyDerivationProvider.N_NAS_ENC_ALG, 2, kamf);
+        kd.algorithmKeyDerivation(KeyDerivationProvider.N_NAS_INT_ALG, 2, kamf);
+        kd.kgnbFromKamf(0, KeyDerivationProvider.ACCESS_3GPP, kamf);
+
+        assertEquals(2, registry.get("pipeline.keyderivation").tags("provider", "java", "function", "algorithm-key")
+                .timer().count());
+        assertEquals(1, registry.get("pipeline.keyderivation").tags("provider", "java", "function", "kgnb").timer().count());
+    }
+
+    @Test
+    void stateBackendOperationsAreTimedPerOp() {
+        try (StateBackend state = new MeteredStateBackend(new OnHeapStateBackend(now::get))) {
+            state.contexts().put("UE-1", new byte[]{1}, 0);
+            state.contexts().get("UE-1");
+            state.contexts().get("UE-2");
+            state.mappings().putAll(Map.of("ue:map:ran:7", "UE-1"), 0);
+            state.sequences().incrementAndGet("proc");
+
+            assertEquals(2, registry.get("pipeline.state").tags("backend", "heap", "op", "context.get").timer().count());
+            assertEquals(1, registry.get("pipeline.state").tags("backend", "heap", "op", "context.put").timer().count());
+            assertEquals(1, registry.get("pipeline.state").tags("backend", "heap", "op", "mapping.putAll").timer().count());
+            assertEquals(1, registry.get("pipeline.state").tags("backend", "heap", "op", "sequence.incr").timer().count());
+        }
+    }
+
+    private static SignalingMessage msg(String ueId, String ngapId) {
+        SignalingMessage m = new SignalingMessage();
+        m.setMsgType("m");
+        m.setUeId(ueId);
+        if (ngapId != null) {
+            NgapInfo n = new NgapInfo();
+            n.setRanUeNgapId(ngapId);
+            m.setNgapInfoList(List.of(n));
+        }
+        return m;
+    }
+}
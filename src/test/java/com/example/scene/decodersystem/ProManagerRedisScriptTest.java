@@ -0,0 +1,287 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.archive.ProcedureArchiveWriter;
+import com.example.procedure.clock.WallClock;
+import com.example.procedure.codec.StateStorageProperties;
+import com.example.procedure.expiry.ProcedureExpiry;
+import com.example.procedure.id.IdGenerator;
+import com.example.procedure.model.Procedure;
+import com.example.procedure.model.ProcedureTypeEnum;
+import com.example.procedure.service.ProManager_Service;
+import com.example.procedure.store.InMemoryProcedureStore;
+import com.example.procedure.store.ProcedureReplicator;
+import com.example.procedure.store.RedisProcedureStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * RedisProcedureStore 的 Lua 写路径和 InMemoryProcedureStore 的 Redis 副本，对本机 Redis 跑
+ * （-Dredis.host / -Dredis.port，默认 127.0.0.1:6379），连不上就跳过。benchmark 要加 -Dbench=true（只打印，不断言耗时）：
+ *
+ *   mvn test -Dtest=ProManagerRedisScriptTest -Dbench=true
+ */
+class ProManagerRedisScriptTest {
+
+    private static LettuceConnectionFactory factory;
+    private static StringRedisTemplate redis;
+
+    @BeforeAll
+    static void connect() {
+        factory = new LettuceConnectionFactory(System.getProperty("redis.host", "127.0.0.1"),
+                Integer.getInteger("redis.port", 6379));
+        factory.afterPropertiesSet();
+        redis = new StringRedisTemplate(factory);
+        boolean up;
+        try {
+            up = "PONG".equals(redis.execute(c -> c.ping(), true));
+        } catch (Exception e) {
+            up = false;
+        }
+        if (!up) factory.destroy();
+        assumeTrue(up, "no local Redis");
+    }
+
+    @AfterAll
+    static void close() {
+        if (archive != null) archive.close();
+        if (factory != null) factory.destroy();
+    }
+
+    private static RedisProcedureStore store(String format) {
+        StateStorageProperties props = new StateStorageProperties();
+        props.setFormat(format);
+        return new RedisProcedureStore(redis, new ObjectMapper(), props);
+    }
+
+    private static final IdGenerator IDS = new IdGenerator(1, 16);
+    private static ProcedureArchiveWriter archive;
+
+    /** 归档写到临时目录，不碰 data/ */
+    private static ProcedureArchiveWriter archive() throws IOException {
+        if (archive == null) {
+            archive = new ProcedureArchiveWriter(new ObjectMapper(), Files.createTempDirectory("archive-test"),
+                    "procedure_history", 4096, 256, 200, 64L << 20, 3_600_000L, false, System::currentTimeMillis);
+        }
+        return archive;
+    }
+
+    private static ProcedureExpiry noExpiry() {
+        return new ProcedureExpiry(false, true, 100, 64, 0, 0, 0, 1000, System::currentTimeMillis);
+    }
+
+    private static ProManager_Service service(String format) {
+        try {
+            return new ProManager_Service(store(format), IDS, archive(), noExpiry(), new WallClock());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String ue(String tag) {
+        return "TEST-" + tag + "-" + System.nanoTime();
+    }
+
+    private static void lifecycle(String format) {
+        ProManager_Service pm = service(format);
+        String ueId = ue(format);
+
+        Map<String, Object> added = pm.add_ActProcedure(ueId, ProcedureTypeEnum.INITIAL_ACCESS, "RRCSetupRequest");
+        assertEquals(0, added.get("status"));
+        String id = (String) added.get("procedureId");
+        assertTrue(id.startsWith(ueId + "-IA-"), id);
+        String id2 = (String) pm.add_ActProcedure(ueId, ProcedureTypeEnum.INITIAL_ACCESS, "RRCSetupRequest")
+                .get("procedureId");
+        assertTrue(id2.compareTo(id) > 0, id2);
+        assertEquals(2, pm.listActiveProcedures(ueId).size());
+
+        assertEquals(0, pm.update_ActProcedure(ueId, id, "RRCSetup", 0, 1).get("status"));
+        assertEquals(0, pm.update_ActProcedureEx(ueId, id, "RegistrationRequest", 1, 2, true, 1234L, 5)
+                .get("status"));
+        assertEquals(1, pm.update_ActProcedureEx(ueId, "NO-SUCH", "X", 0, 0, false, 0L, 0).get("status"));
+
+        Procedure p = pm.listActiveProcedures(ueId).stream()
+                .filter(x -> id.equals(x.getProcedureId())).findFirst().orElseThrow();
+        assertEquals(ueId, p.getUeId());
+        assertEquals("IA", p.getProcedureTypeCode());
+        assertEquals("RegistrationRequest", p.getLastMessageType());
+        assertEquals(3, p.getMessageNum());
+        assertEquals(1, p.getLastPhaseIndex());
+        assertEquals(2, p.getLastOrderIndex());
+        assertTrue(p.isEndSeen());
+        assertEquals(1234L, p.getEndSeenAtMs());
+        assertEquals(5, p.getKeyMask());
+        Long ttl = redis.getExpire("procedure:set:ue:" + ueId, TimeUnit.SECONDS);
+        assertTrue(ttl != null && ttl > 0);
+
+        assertEquals(0, pm.end_Procedure(ueId, id).get("status"));
+        assertEquals(0, pm.end_Procedure(ueId, id2).get("status"));
+        assertTrue(pm.listActiveProcedures(ueId).isEmpty());
+    }
+
+    @Test
+    void binaryLifecycle() {
+        lifecycle("binary");
+    }
+
+    @Test
+    void hashLifecycle() {
+        lifecycle("hash");
+    }
+
+    @Test
+    void binaryUpdateMigratesLegacyHash() {
+        ProManager_Service legacy = service("hash");
+        ProManager_Service pm = service("binary");
+        String ueId = ue("mig");
+        String id = (String) legacy.add_ActProcedure(ueId, ProcedureTypeEnum.SERVICE_REQUEST, "ServiceRequest")
+                .get("procedureId");
+
+        assertEquals(0, pm.update_ActProcedure(ueId, id, "ServiceAccept", 2, 3).get("status"));
+        assertEquals(Boolean.FALSE, redis.hasKey("procedure:hash:" + id));
+        Procedure p = pm.listActiveProcedures(ueId).get(0);
+        assertEquals(2, p.getMessageNum());
+        assertEquals("ServiceAccept", p.getLastMessageType());
+        pm.end_Procedure(ueId, id);
+    }
+
+    @Test
+    void memoryStoreReplicatesAndRecovers() throws IOException {
+        RedisProcedureStore redisStore = store("binary");
+        ProcedureReplicator replicator = new ProcedureReplicator(redisStore, 0, 1000, 100);
+        ProManager_Service pm = new ProManager_Service(new InMemoryProcedureStore(replicator), IDS, archive(), noExpiry(), new WallClock());
+        String ueId = ue("mem");
+
+        String id = (String) pm.add_ActProcedure(ueId, ProcedureTypeEnum.N2_HANDOVER, "HandoverRequired")
+                .get("procedureId");
+        String gone = (String) pm.add_ActProcedure(ueId, ProcedureTypeEnum.UNKNOWN, "X").get("procedureId");
+        pm.update_ActProcedureEx(ueId, id, "HandoverCommand", 1, 1, false, 0L, 3);
+        // 还没刷：Redis 里什么都没有
+        assertTrue(redisStore.list(ueId).isEmpty());
+
+        replicator.flush();
+        assertEquals(2, redisStore.list(ueId).size());
+        pm.end_Procedure(ueId, gone);
+        replicator.flush();
+
+        // 模拟重启：新的内存 store 从 Redis 恢复
+        InMemoryProcedureStore restarted = new InMemoryProcedureStore(null);
+        redisStore.recover(restarted::load);
+        List<Procedure> l = restarted.list(ueId);
+        assertEquals(1, l.size());
+        assertEquals(id, l.get(0).getProcedureId());
+        assertEquals(2, l.get(0).getMessageNum());
+        assertEquals(3, l.get(0).getKeyMask());
+
+        pm.end_Procedure(ueId, id);
+        replicator.close();
+        assertTrue(redisStore.list(ueId).isEmpty());
+    }
+
+    @Test
+    void repeatedUpdatesAndAddEndKeepTheStoreConsistent() {
+        int n = 100;
+        for (String format : List.of("hash", "binary")) {
+            ProManager_Service pm = service(format);
+            String ueId = ue("repeat-" + format);
+            String id = (String) pm.add_ActProcedure(ueId, ProcedureTypeEnum.INITIAL_ACCESS, "M").get("procedureId");
+
+            for (int i = 0; i < n; i++) {
+                assertEquals(0, pm.update_ActProcedureEx(ueId, id, "M" + i, 1, 2, false, 0L, i).get("status"));
+            }
+            for (int i = 0; i < n; i++) {
+                String tmp = (String) pm.add_ActProcedure(ueId, ProcedureTypeEnum.XN_HANDOVER, "M").get("procedureId");
+                assertEquals(0, pm.end_Procedure(ueId, tmp).get("status"));
+            }
+            // 集合里留着一个 value 已经没了的 id（过期 / 别处删掉）：list 跳过它
+            redis.opsForSet().add("procedure:set:ue:" + ueId, "GONE");
+
+            List<Procedure> l = pm.listActiveProcedures(ueId);
+            assertEquals(1, l.size(), format);
+            assertEquals(id, l.get(0).getProcedureId());
+            assertEquals(n + 1, l.get(0).getMessageNum(), format);
+            assertEquals("M" + (n - 1), l.get(0).getLastMessageType());
+            assertEquals(n - 1, l.get(0).getKeyMask());
+
+            pm.end_Procedure(ueId, id);
+            redis.delete("procedure:set:ue:" + ueId);
+        }
+    }
+
+    /** 老的逐条命令写法（hasKey + 7×HSET + HINCRBY + 2×EXPIRE），只给 benchmark 当对照 */
+    private static void legacyUpdateEx(String ueId, String procedureId, String msgType) {
+        String key = "procedure:hash:" + procedureId;
+        if (!Boolean.TRUE.equals(redis.hasKey(key))) return;
+        redis.opsForHash().put(key, "lastMessageType", msgType);
+        redis.opsForHash().put(key, "lastUpdateTime", "2025-01-01 00:00:00");
+        redis.opsForHash().put(key, "lastPhaseIndex", "1");
+        redis.opsForHash().put(key, "lastOrderIndex", "2");
+        redis.opsForHash().increment(key, "messageNum", 1);
+        redis.opsForHash().put(key, "endSeen", "false");
+        redis.opsForHash().put(key, "endSeenAtMs", "0");
+        redis.opsForHash().put(key, "keyMask", "0");
+        redis.expire(key, 3600, TimeUnit.SECONDS);
+        redis.expire("procedure:set:ue:" + ueId, 3600, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "bench", matches = "true")
+    void benchmarkUpdateEx() {
+        int n = Integer.getInteger("bench.n", 20_000);
+        ProManager_Service hash = service("hash");
+        ProManager_Service bin = service("binary");
+        // 两种存法各用一个 UE：binary 的 list 会把同一集合里的老 hash 迁走
+        String hashUe = ue("bench-hash");
+        String binUe = ue("bench-bin");
+        String hashId = (String) hash.add_ActProcedure(hashUe, ProcedureTypeEnum.INITIAL_ACCESS, "M").get("procedureId");
+        String binId = (String) bin.add_ActProcedure(binUe, ProcedureTypeEnum.SERVICE_REQUEST, "M").get("procedureId");
+
+        for (int i = 0; i < n / 10; i++) {   // 预热
+            legacyUpdateEx(hashUe, hashId, "M");
+            hash.update_ActProcedureEx(hashUe, hashId, "M", 1, 2, false, 0L, 0);
+            bin.update_ActProcedureEx(binUe, binId, "M", 1, 2, false, 0L, 0);
+        }
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < n; i++) legacyUpdateEx(hashUe, hashId, "M");
+        long t1 = System.nanoTime();
+        for (int i = 0; i < n; i++) hash.update_ActProcedureEx(hashUe, hashId, "M", 1, 2, false, 0L, 0);
+        long t2 = System.nanoTime();
+        for (int i = 0; i < n; i++) bin.update_ActProcedureEx(binUe, binId, "M", 1, 2, false, 0L, 0);
+        long t3 = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            String id = (String) bin.add_ActProcedure(binUe, ProcedureTypeEnum.XN_HANDOVER, "M").get("procedureId");
+            bin.end_Procedure(binUe, id);
+        }
+        long t4 = System.nanoTime();
+        for (int i = 0; i < n; i++) bin.listActiveProcedures(binUe);
+        long t5 = System.nanoTime();
+
+        System.out.printf("updateEx x%d: legacy %.1f us/op, hash script %.1f us/op, binary script %.1f us/op%n",
+                n, (t1 - t0) / 1e3 / n, (t2 - t1) / 1e3 / n, (t3 - t2) / 1e3 / n);
+        System.out.printf("add+end x%d (binary): %.1f us/op%n", n, (t4 - t3) / 1e3 / n);
+        System.out.printf("list x%d (binary, 1 procedure): %.1f us/op%n", n, (t5 - t4) / 1e3 / n);
+
+        // 只看数，不断言耗时；计数对得上说明测的确实是成功的更新
+        assertEquals(2 * (n + n / 10) + 1, hash.listActiveProcedures(hashUe).get(0).getMessageNum());
+        assertEquals(n + n / 10 + 1, bin.listActiveProcedures(binUe).get(0).getMessageNum());
+
+        hash.end_Procedure(hashUe, hashId);
+        bin.end_Procedure(binUe, binId);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.archive.ProcedureArchiveQuery;
+import com.example.procedure.archive.ProcedureArchiveQuery.Page;
+import com.example.procedure.archive.ProcedureArchiveQuery.Query;
+import com.example.procedure.archive.ProcedureArchiveWriter;
+import com.example.procedure.model.Procedure;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProcedureArchiveQueryTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final DateTimeFormatter FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 12, 4, 15, 0, 0);
+    private static final String[] TYPES = {"IA", "SR", "XHO"};
+
+    @TempDir
+    Path dir;
+
+    /** 第 i 条：UE-(i%4)，类型 TYPES[i%3]，T0+i 分钟开始、持续 30 秒 */
+    private static Procedure proc(int i) {
+        Procedure p = new Procedure();
+        p.setUeId("UE-" + (i % 4));
+        p.setProcedureId("P-" + i);
+        p.setProcedureTypeCode(TYPES[i % 3]);
+        p.setActivateTime(T0.plusMinutes(i).format(FMT));
+        p.setEndTime(T0.plusMinutes(i).plusSeconds(30).format(FMT));
+        p.setMessageNum(i);
+        return p;
+    }
+
+    private static long ms(LocalDateTime t) {
+        return t.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void archive(int from, int to, long segmentMaxBytes, boolean gzip) {
+        ProcedureArchiveWriter w = new ProcedureArchiveWriter(MAPPER, dir, "procedure_history", 4096, 64, 50,
+                segmentMaxBytes, 3_600_000L, gzip, System::currentTimeMillis);
+        for (int i = from; i < to; i++) assertTrue(w.append(proc(i)));
+        w.close();
+    }
+
+    private static List<String> ids(Page p) {
+        return p.items().stream().map(Procedure::getProcedureId).toList();
+    }
+
+    @Test
+    void filtersByUeTypeAndTimeAcrossSegments() throws IOException {
+        archive(0, 600, 8192, false);
+        ProcedureArchiveQuery q = new ProcedureArchiveQuery(MAPPER, dir, "procedure_history");
+
+        // UE-1 且 IA：i%4==1 && i%3==0 -> i = 9, 21, 33, ...
+        Page all = q.query(new Query("UE-1", "IA", 0, 0, 0, 1000));
+        assertEquals(50, all.total());
+        assertEquals("P-9", all.items().get(0).getProcedureId());
+        assertEquals("P-21", all.items().get(1).getProcedureId());
+
+        // 时间窗 [T0+100min, T0+200min]：和 [act, act+30s] 有交集的 i 是 100..200
+        Page window = q.query(new Query("UE-1", "IA", ms(T0.plusMinutes(100)), ms(T0.plusMinutes(200)), 0, 1000));
+        assertEquals(List.of("P-105", "P-117", "P-129", "P-141", "P-153", "P-165", "P-177", "P-189"), ids(window));
+
+        // 不限 UE
+        assertEquals(200, q.query(new Query(null, "SR", 0, 0, 0, 10)).total());
+        assertEquals(0, q.query(new Query("UE-9", null, 0, 0, 0, 10)).total());
+    }
+
+    @Test
+    void pagesAreStableAndComplete() throws IOException {
+        archive(0, 300, 4096, false);
+        ProcedureArchiveQuery q = new ProcedureArchiveQuery(MAPPER, dir, "procedure_history");
+
+        StringBuilder seen = new StringBuilder();
+        int total = -1;
+        for (int off = 0; ; off += 7) {
+            Page p = q.query(new Query("UE-2", null, 0, 0, off, 7));
+            total = p.total();
+            if (p.items().isEmpty()) break;
+            for (Procedure x : p.items()) seen.append(x.getMessageNum()).append(',');
+        }
+        assertEquals(75, total);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 2; i < 300; i += 4) expected.append(i).append(',');
+        assertEquals(expected.toString(), seen.toString());
+    }
+
+    @Test
+    void gzipSegmentsAndNewAppendsAreQueryable() throws IOException {
+        archive(0, 100, 0, true);
+        ProcedureArchiveQuery q = new ProcedureArchiveQuery(MAPPER, dir, "procedure_history");
+        assertEquals(25, q.query(new Query("UE-3", null, 0, 0, 0, 100)).total());
+        assertEquals("P-99", q.query(new Query("UE-3", null, 0, 0, 24, 1)).items().get(0).getProcedureId());
+
+        // 后来又写了一个段：下次查询能看到
+        archive(100, 200, 0, false);
+        Page p = q.query(new Query("UE-3", null, 0, 0, 24, 2));
+        assertEquals(50, p.total());
+        assertEquals(List.of("P-99", "P-103"), ids(p));
+    }
+
+    @Test
+    void legacyFileAndMissingSidecarAreScanned() throws IOException {
+        StringBuilder legacy = new StringBuilder();
+        for (int i = 0; i < 10; i++) legacy.append(MAPPER.writeValueAsString(proc(i))).append('\n');
+        legacy.append("{\"ueId\":\"UE-0\",\"procedureId\":\"half");       // 没写完的行不认
+        Files.writeString(dir.resolve("procedure_history.jsonl"), legacy, StandardCharsets.UTF_8);
+
+        archive(10, 20, 0, false);
+        try (Stream<Path> s = Files.list(dir)) {
+            for (Path idx : s.filter(f -> f.toString().endsWith(".idx")).toList()) Files.delete(idx);
+        }
+
+        ProcedureArchiveQuery q = new ProcedureArchiveQuery(MAPPER, dir, "procedure_history");
+        Page p = q.query(new Query("UE-0", null, 0, 0, 0, 100));
+        // 老文件在前：0,4,8，然后段里 12,16
+        assertEquals(List.of("P-0", "P-4", "P-8", "P-12", "P-16"), ids(p));
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.archive.ProcedureArchiveWriter;
+import com.example.procedure.model.Procedure;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProcedureArchiveWriterTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    private ProcedureArchiveWriter writer(long segmentMaxBytes, boolean gzip) {
+        return new ProcedureArchiveWriter(MAPPER, dir, "procedure_history", 1024, 16, 50,
+                segmentMaxBytes, 3_600_000L, gzip, System::currentTimeMillis);
+    }
+
+    private static Procedure proc(int i) {
+        Procedure p = new Procedure();
+        p.setUeId("UE-" + (i % 3));
+        p.setProcedureId("P-" + i);
+        p.setProcedureTypeCode("IA");
+        p.setMessageNum(i);
+        return p;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(f -> !f.toString().endsWith(".idx")).sorted().toList();
+        }
+    }
+
+    private static List<Procedure> read(Path seg) throws IOException {
+        List<Procedure> out = new ArrayList<>();
+        try (InputStream in = seg.toString().endsWith(".gz")
+                ? new GZIPInputStream(Files.newInputStream(seg)) : Files.newInputStream(seg);
+             BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) out.add(MAPPER.readValue(line, Procedure.class));
+        }
+        return out;
+    }
+
+    @Test
+    void everyAppendedProcedureEndsUpOnDiskInOrder() throws IOException {
+        ProcedureArchiveWriter w = writer(0, false);
+        for (int i = 0; i < 1000; i++) assertTrue(w.append(proc(i)));
+        w.close();
+
+        List<Path> segs = segments();
+        assertEquals(1, segs.size());
+        assertTrue(segs.get(0).getFileName().toString().matches("procedure_history-\\d{8}-\\d{9}\\.jsonl"));
+        List<Procedure> back = read(segs.get(0));
+        assertEquals(1000, back.size());
+        for (int i = 0; i < 1000; i++) assertEquals("P-" + i, back.get(i).getProcedureId());
+
+        ProcedureArchiveWriter.Stats st = w.stats();
+        assertEquals(1000, st.appended());
+        assertEquals(1000, st.written());
+        assertEquals(0, st.failed());
+        assertTrue(st.syncs() < 1000, "group commit: " + st.syncs());
+        assertNull(w.currentSegment());
+    }
+
+    @Test
+    void segmentsRotateBySize() throws IOException {
+        ProcedureArchiveWriter w = writer(4096, false);
+        for (int i = 0; i < 500; i++) assertTrue(w.append(proc(i)));
+        w.close();
+
+        List<Path> segs = segments();
+        assertTrue(segs.size() > 1, "segments: " + segs.size());
+        List<Procedure> all = new ArrayList<>();
+        for (Path s : segs) {
+            assertTrue(Files.size(s) <= 4096, s + " " + Files.size(s));
+            all.addAll(read(s));
+        }
+        assertEquals(500, all.size());
+        assertEquals(segs.size(), w.stats().segments());
+    }
+
+    @Test
+    void gzipSegmentsAreReadable() throws IOException {
+        ProcedureArchiveWriter w = writer(0, true);
+        for (int i = 0; i < 300; i++) w.append(proc(i));
+        w.close();
+
+        List<Path> segs = segments();
+        assertEquals(1, segs.size());
+        assertTrue(segs.get(0).toString().endsWith(".jsonl.gz"));
+        List<Procedure> back = read(segs.get(0));
+        assertEquals(300, back.size());
+        assertEquals(299, back.get(299).getMessageNum());
+    }
+
+    @Test
+    void appendAfterCloseIsRejected() throws IOException {
+        ProcedureArchiveWriter w = writer(0, false);
+        w.close();
+        assertFalse(w.append(proc(1)));
+        assertEquals(1, w.stats().rejected());
+        assertTrue(segments().isEmpty());
+    }
+
+    @Test
+    void appendsRacingCloseAreEitherWrittenOrRejected() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            ProcedureArchiveWriter w = new ProcedureArchiveWriter(MAPPER, dir.resolve("r" + round), "procedure_history",
+                    1 << 16, 1 << 20, 50, 0, 3_600_000L, false, System::currentTimeMillis);
+            CountDownLatch started = new CountDownLatch(4);
+            List<Thread> producers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread th = new Thread(() -> {
+                    started.countDown();
+                    for (int i = 0; i < 2000; i++) w.append(proc(i));
+                });
+                th.start();
+                producers.add(th);
+            }
+            started.await();
+            w.close();
+            for (Thread th : producers) th.join();
+
+            // 收下的每一条都写到了盘上，close 之后进来的都被拒掉
+            ProcedureArchiveWriter.Stats st = w.stats();
+            assertEquals(8000, st.appended() + st.rejected());
+            assertEquals(st.appended(), st.written(), "round " + round);
+            assertEquals(0, st.pending());
+        }
+    }
+}
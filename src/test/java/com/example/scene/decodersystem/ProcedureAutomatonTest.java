@@ -0,0 +1,69 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.model.ProcedureTypeEnum;
+import com.example.procedure.rule.InitialAccessKeyBits;
+import com.example.procedure.rule.InitialAccessPhases;
+import com.example.procedure.rule.MsgTypeCodes;
+import com.example.procedure.rule.PhaseDef;
+import com.example.procedure.rule.ProcedureAutomaton;
+import com.example.procedure.rule.XnHandoverKeyBits;
+import com.example.procedure.rule.XnHandoverPhases;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProcedureAutomatonTest {
+
+    // 表里的写法 + 解析器可能给出的大小写 / 空格变体 + 不认识的
+    private static final List<String> SAMPLES = List.of(
+            "RRCSetupComplete", "rrcSetupComplete", "Initial UE Message", "InitialUEMessage",
+            "Security Mode Complete", "Registration complete", "RegistrationComplete",
+            "HandoverRequest", "Handover Request", "HANDOVER COMMAND", "handoverCommand",
+            "RRCReconfigurationComplete", "UEContextRelease", "UE Context Release",
+            "Path Switch Request", "PathSwitchRequestAcknowledge", "foo", " ");
+
+    private static void assertSameAsTables(ProcedureAutomaton a, String t, PhaseDef.PhaseLocation loc,
+                                           boolean end, int bit) {
+        long row = a.row(MsgTypeCodes.of(t));
+        assertEquals(loc != null, ProcedureAutomaton.located(row), t);
+        if (loc != null) {
+            assertEquals(loc.getPhaseIndex(), ProcedureAutomaton.phase(row), t);
+            assertEquals(loc.getOrderIndex(), ProcedureAutomaton.order(row), t);
+            assertEquals(loc.isPhaseStart(), ProcedureAutomaton.isPhaseStart(row), t);
+            assertEquals(loc.isKey(), ProcedureAutomaton.isKey(row), t);
+        }
+        assertEquals(end, ProcedureAutomaton.isEnd(row), t);
+        assertEquals(bit, ProcedureAutomaton.keyBit(row), t);
+    }
+
+    @Test
+    void rowsMatchThePhaseAndKeyBitTables() {
+        ProcedureAutomaton ia = ProcedureAutomaton.of(ProcedureTypeEnum.INITIAL_ACCESS);
+        ProcedureAutomaton xho = ProcedureAutomaton.of(ProcedureTypeEnum.XN_HANDOVER);
+        for (String t : SAMPLES) {
+            assertSameAsTables(ia, t, InitialAccessPhases.locate(t), InitialAccessPhases.isEndMessage(t),
+                    InitialAccessKeyBits.bitForMsgType(t));
+            assertSameAsTables(xho, t, XnHandoverPhases.locate(t), XnHandoverPhases.isEndMessage(t),
+                    XnHandoverKeyBits.bitForMsgType(t));
+        }
+        assertTrue(ProcedureAutomaton.isHandoverCommand(xho.row(MsgTypeCodes.of("HANDOVER COMMAND"))));
+        assertFalse(ProcedureAutomaton.isHandoverCommand(ia.row(MsgTypeCodes.of("HANDOVER COMMAND"))));
+        assertNull(ProcedureAutomaton.of(ProcedureTypeEnum.UNKNOWN));
+    }
+
+    @Test
+    void codesAreStableAndNullIsUnknown() {
+        int c = MsgTypeCodes.of("SomeBrandNewMessage");
+        assertEquals(c, MsgTypeCodes.of("SomeBrandNewMessage"));
+        assertEquals("SomeBrandNewMessage", MsgTypeCodes.name(c));
+        assertNotEquals(c, MsgTypeCodes.of("somebrandnewmessage"));
+        assertEquals(MsgTypeCodes.UNKNOWN, MsgTypeCodes.of((String) null));
+        assertEquals(0L, ProcedureAutomaton.of(ProcedureTypeEnum.INITIAL_ACCESS).row(MsgTypeCodes.UNKNOWN));
+    }
+}
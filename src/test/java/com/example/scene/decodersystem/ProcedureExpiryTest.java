@@ -0,0 +1,174 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.archive.ProcedureArchiveWriter;
+import com.example.procedure.clock.WallClock;
+import com.example.procedure.expiry.HashedTimingWheel;
+import com.example.procedure.expiry.ProcedureExpiry;
+import com.example.procedure.id.IdGenerator;
+import com.example.procedure.model.ProcedureTypeEnum;
+import com.example.procedure.service.ProManager_Service;
+import com.example.procedure.store.InMemoryProcedureStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProcedureExpiryTest {
+
+    private static final long T0 = 1_764_000_000_000L;
+
+    @TempDir
+    Path dir;
+
+    private ProcedureArchiveWriter archive;
+
+    @AfterEach
+    void closeArchive() {
+        if (archive != null) archive.close();
+    }
+
+    /** 回放模式：宽限 5s、空闲 60s、最长 10min */
+    private ProManager_Service manager(ProcedureExpiry expiry) {
+        archive = new ProcedureArchiveWriter(new ObjectMapper(), dir, "procedure_history", 1024, 16, 50,
+                0, 0, false, System::currentTimeMillis);
+        return new ProManager_Service(new InMemoryProcedureStore(null), new IdGenerator(1, 16), archive, expiry, new WallClock());
+    }
+
+    private static ProcedureExpiry eventExpiry() {
+        return new ProcedureExpiry(true, true, 100, 64, 5_000, 60_000, 600_000, 1_000, () -> 0L);
+    }
+
+    @Test
+    void wheelFiresInDeadlineOrderAndCancelIsO1() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 8);
+        List<String> fired = new ArrayList<>();
+        wheel.advance(0, t -> fired.add(t.value()));
+
+        wheel.schedule("a", 35);
+        HashedTimingWheel.Timeout<String> b = wheel.schedule("b", 55);
+        wheel.schedule("far", 1_000);          // 转好几圈
+        wheel.cancel(b);
+        assertFalse(b.isPending());
+        assertEquals(2, wheel.size());
+
+        wheel.advance(30, t -> fired.add(t.value()));
+        assertTrue(fired.isEmpty());
+        wheel.advance(60, t -> fired.add(t.value()));
+        assertEquals(List.of("a"), fired);
+        wheel.advance(999, t -> fired.add(t.value()));
+        assertEquals(List.of("a"), fired);
+        // 一次跳过好几圈
+        wheel.advance(50_000, t -> fired.add(t.value()));
+        assertEquals(List.of("a", "far"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void endSeenGraceClosesWithoutAnotherMessage() {
+        ProcedureExpiry expiry = eventExpiry();
+        ProManager_Service pm = manager(expiry);
+        expiry.observe(T0);
+        String ue = "UE-1";
+        String id = (String) pm.add_ActProcedure(ue, ProcedureTypeEnum.INITIAL_ACCESS, "RRCSetupRequest").get("procedureId");
+
+        expiry.observe(T0 + 1_000);
+        pm.update_ActProcedureEx(ue, id, "RegistrationComplete", 3, 1, true, T0 + 1_000, 0);
+
+        expiry.observe(T0 + 5_900);                 // 宽限还没到
+        assertEquals(1, pm.listActiveProcedures(ue).size());
+        expiry.observe(T0 + 6_100);
+        assertTrue(pm.listActiveProcedures(ue).isEmpty());
+        assertEquals(1, expiry.stats().closedEndSeen());
+        assertEquals(0, expiry.stats().tracked());
+
+        archive.close();
+        assertEquals(1, archive.stats().written());
+    }
+
+    @Test
+    void idleAndMaxLifetimeAreBoundedByPolicy() {
+        ProcedureExpiry expiry = eventExpiry();
+        ProManager_Service pm = manager(expiry);
+        expiry.observe(T0);
+        pm.add_ActProcedure("UE-2", ProcedureTypeEnum.XN_HANDOVER, "HandoverRequest");
+        String busy = (String) pm.add_ActProcedure("UE-3", ProcedureTypeEnum.N2_HANDOVER, "HandoverRequired").get("procedureId");
+
+        // busy 每 30s 来一条消息：空闲超时一直往后推，最后被最长存活关掉
+        for (long t = 30_000; t <= 600_000; t += 30_000) {
+            expiry.observe(T0 + t);
+            pm.update_ActProcedure("UE-3", busy, "X", 0, 0);
+            if (t == 30_000) assertEquals(1, pm.listActiveProcedures("UE-2").size());
+        }
+        assertTrue(pm.listActiveProcedures("UE-2").isEmpty());
+        assertTrue(pm.listActiveProcedures("UE-3").isEmpty());
+
+        ProcedureExpiry.Stats st = expiry.stats();
+        assertEquals(1, st.closedIdle());
+        assertEquals(1, st.closedMaxLifetime());
+        assertEquals(0, st.tracked());
+    }
+
+    @Test
+    void outOfOrderTimestampsDoNotMoveTimeBackwards() {
+        ProcedureExpiry expiry = eventExpiry();
+        ProManager_Service pm = manager(expiry);
+        expiry.observe(T0);
+        pm.add_ActProcedure("UE-4", ProcedureTypeEnum.SERVICE_REQUEST, "ServiceRequest");
+        expiry.observe(T0 + 59_000);
+        expiry.observe(T0 - 3_600_000);     // 乱序的老报文
+        assertEquals(T0 + 59_000, expiry.now());
+        assertEquals(1, pm.listActiveProcedures("UE-4").size());
+        expiry.observe(T0 + 61_000);
+        assertTrue(pm.listActiveProcedures("UE-4").isEmpty());
+    }
+
+    /** 消息线程结束流程、到期线程关流程同时落到同一个流程上：只归档一次 */
+    @Test
+    void concurrentClosesArchiveEachProcedureOnce() throws Exception {
+        ProcedureExpiry expiry = eventExpiry();
+        ProManager_Service pm = manager(expiry);
+        expiry.observe(T0);
+        int n = 500;            // 小于归档队列容量（1024）
+        List<String> ids = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            ids.add((String) pm.add_ActProcedure("UE-" + (i % 50), ProcedureTypeEnum.SERVICE_REQUEST, "ServiceRequest")
+                    .get("procedureId"));
+        }
+
+        AtomicInteger archived = new AtomicInteger();
+        CountDownLatch go = new CountDownLatch(1);
+        Runnable closer = () -> {
+            try {
+                go.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            for (int i = 0; i < n; i++) {
+                if (Integer.valueOf(0).equals(pm.end_Procedure("UE-" + (i % 50), ids.get(i)).get("status"))) {
+                    archived.incrementAndGet();
+                }
+            }
+        };
+        Thread a = new Thread(closer), b = new Thread(closer);
+        a.start();
+        b.start();
+        go.countDown();
+        a.join();
+        b.join();
+
+        assertEquals(n, archived.get());
+        assertEquals(n, archive.stats().appended());
+        assertEquals(0, expiry.stats().tracked());
+    }
+}
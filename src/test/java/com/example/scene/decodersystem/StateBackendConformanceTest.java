@@ -0,0 +1,408 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.codec.StateStorageProperties;
+import com.example.procedure.codec.UEContextCodec;
+import com.example.procedure.model.Procedure;
+import com.example.procedure.model.UEContext;
+import com.example.procedure.state.MappedSlotTable;
+import com.example.procedure.state.MappedStateBackend;
+import com.example.procedure.state.OnHeapStateBackend;
+import com.example.procedure.state.RedisStateBackend;
+import com.example.procedure.state.StateBackend;
+import com.example.procedure.state.StateBackendProperties;
+import com.example.procedure.store.ProcedureStore;
+import com.example.procedure.store.RedisProcedureStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/** 同一套用例跑三种 state.backend：heap / mmap 用假时钟，redis 连本机（没有就跳过）、过期靠真等 */
+class StateBackendConformanceTest {
+
+    @TempDir
+    Path dir;
+
+    /** 一个后端 + 怎么让时间往前走 */
+    private interface Fixture extends AutoCloseable {
+        StateBackend backend();
+
+        void advance(long ms) throws InterruptedException;
+
+        @Override
+        void close();
+    }
+
+    private Fixture open(String mode) {
+        AtomicLong now = new AtomicLong(1_000_000);
+        switch (mode) {
+            case "heap":
+                return fixture(new OnHeapStateBackend(now::get), now, null);
+            case "mmap":
+                return fixture(new MappedStateBackend(smallMmap(), now::get), now, null);
+            case "redis":
+                return redisFixture(new StateStorageProperties());
+            default:
+                throw new IllegalArgumentException(mode);
+        }
+    }
+
+    /** 连本机 Redis，连不上就跳过 */
+    private static Fixture redisFixture(StateStorageProperties storage) {
+        LettuceConnectionFactory f = new LettuceConnectionFactory(System.getProperty("redis.host", "127.0.0.1"),
+                Integer.getInteger("redis.port", 6379));
+        f.afterPropertiesSet();
+        StringRedisTemplate redis = new StringRedisTemplate(f);
+        boolean up;
+        try {
+            up = "PONG".equals(redis.execute(c -> c.ping(), true));
+        } catch (Exception e) {
+            up = false;
+        }
+        if (!up) f.destroy();
+        assumeTrue(up, "no local Redis");
+        ObjectMapper mapper = new ObjectMapper();
+        return fixture(new RedisStateBackend(redis, mapper, storage, new RedisProcedureStore(redis, mapper, storage)),
+                null, f);
+    }
+
+    private static Fixture fixture(StateBackend backend, AtomicLong now, LettuceConnectionFactory f) {
+        return new Fixture() {
+            @Override
+            public StateBackend backend() {
+                return backend;
+            }
+
+            @Override
+            public void advance(long ms) throws InterruptedException {
+                if (now != null) now.addAndGet(ms);
+                else Thread.sleep(ms);
+            }
+
+            @Override
+            public void close() {
+                backend.close();
+                if (f != null) f.destroy();
+            }
+        };
+    }
+
+    private StateBackendProperties.Mmap smallMmap() {
+        StateBackendProperties.Mmap m = new StateBackendProperties.Mmap();
+        m.setDir(dir.toString());
+        m.setContextCapacity(1024);
+        m.setMappingCapacity(1024);
+        m.setProcedureCapacity(256);
+        m.setSequenceCapacity(16);
+        m.setSyncIntervalMs(0);
+        return m;
+    }
+
+    /** redis 是共享的：每个用例的 key 都带上这个 */
+    private static String unique(String s) {
+        return s + "-" + System.nanoTime();
+    }
+
+    private static UEContext context(String ueId) {
+        UEContext c = new UEContext();
+        c.setUeId(ueId);
+        c.setSupi("001010000000001");
+        c.setRanUeNgapId("1");
+        c.setNasCipherAlg("2");
+        c.setNasIntAlg("2");
+        c.setAttachState("NAS_SMC");
+        c.setKAmf("7d6f1d5f6b3f2ad0f9dc9c8d2a6f0a2c8e4b5a4f6e6a0c1b2d3e4f5a6b7c8d9e");
+        c.setKNasEnc("d3c5d592327fb11c4035c6680af8c6d1");
+        c.setKNasInt("2bd6459f82c5b300952c49104881ff48");
+        return c;
+    }
+
+    /**
+     * 所有字段都填上、密钥都按最占地方的写法：256 位、大小写混着（存不了原始字节，只能存字符串）。
+     * 服务正常写的是纯大写 / 纯小写，会比这个小得多。
+     */
+    private static UEContext fullContext(String ueId) {
+        UEContext c = new UEContext();
+        c.setUeId(ueId);
+        c.setSupi("460001234567890");
+        c.setAmfUeNgapId("1099511627775");
+        c.setRanUeNgapId("4294967295");
+        c.setCrnti("0x4601");
+        c.setCellId("0x0000000001234567");
+        c.setNasCipherAlg("2");
+        c.setNasIntAlg("2");
+        c.setRrcCipherAlg("2");
+        c.setRrcIntAlg("2");
+        c.setAttachState("RRC_SECURITY_MODE_COMPLETE");
+        c.setKSeaf(mixedKey(1));
+        c.setKAmf(mixedKey(2));
+        c.setSecurityKeyHex(mixedKey(3));
+        c.setKNasEnc(mixedKey(4));
+        c.setKNasInt(mixedKey(5));
+        c.setKRrcEnc(mixedKey(6));
+        c.setKRrcInt(mixedKey(7));
+        return c;
+    }
+
+    private static String mixedKey(int seed) {
+        StringBuilder sb = new StringBuilder(64);
+        Random r = new Random(seed);
+        for (int i = 0; i < 64; i++) sb.append("0123456789abcdefABCDEF".charAt(r.nextInt(22)));
+        sb.setCharAt(0, 'a');
+        sb.setCharAt(1, 'B');
+        return sb.toString();
+    }
+
+    /** 上下文最大的时候，默认槽位也要放得下（mmap 放不下会直接抛，整个保存失败） */
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "mmap", "redis"})
+    void fullyPopulatedContextFitsDefaultSlot(String mode) {
+        try (Fixture fx = open(mode)) {
+            String ueId = unique("imsi-460001234567890");
+            UEContext c = fullContext(ueId);
+            byte[] value = UEContextCodec.encode(c);
+            int need = MappedSlotTable.SLOT_HEADER + ueId.length() + value.length;
+            int slot = new StateBackendProperties.Mmap().getContextSlotBytes();
+            assertTrue(need * 5 <= slot * 4, "need " + need + " of " + slot + " bytes, want 20% headroom");
+
+            fx.backend().contexts().put(ueId, value, 60_000);
+            assertEquals(c, UEContextCodec.decode(fx.backend().contexts().get(ueId)));
+            fx.backend().contexts().remove(ueId);
+        }
+    }
+
+    private static Procedure proc(String ueId, String id) {
+        Procedure p = new Procedure();
+        p.setProcedureId(id);
+        p.setUeId(ueId);
+        p.setProcedureTypeCode("IA");
+        p.setProcedureType("IA desc");
+        p.setLastMessageType("First");
+        p.setActivateTime("2025-01-01 00:00:00");
+        p.setLastUpdateTime("2025-01-01 00:00:00");
+        p.setMessageNum(1);
+        return p;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "mmap", "redis"})
+    void contextsPutGetTouchRemoveAndExpire(String mode) throws Exception {
+        try (Fixture fx = open(mode)) {
+            StateBackend.Contexts contexts = fx.backend().contexts();
+            String ueId = unique("UE-ctx");
+            UEContext c = context(ueId);
+
+            assertNull(contexts.get(ueId));
+            assertFalse(contexts.touch(ueId, 60_000));
+            contexts.put(ueId, UEContextCodec.encode(c), 60_000);
+            assertEquals(c, UEContextCodec.decode(contexts.get(ueId)));
+
+            c.setAttachState("RRC_SMC");
+            contexts.put(ueId, UEContextCodec.encode(c), 60_000);
+            assertEquals("RRC_SMC", UEContextCodec.decode(contexts.get(ueId)).getAttachState());
+            assertTrue(contexts.touch(ueId, 60_000));
+
+            contexts.remove(ueId);
+            assertNull(contexts.get(ueId));
+
+            // 短存活期：过了就读不到，touch 续过的还在
+            String shortLived = unique("UE-short");
+            String touched = unique("UE-touched");
+            contexts.put(shortLived, UEContextCodec.encode(context(shortLived)), 200);
+            contexts.put(touched, UEContextCodec.encode(context(touched)), 200);
+            assertTrue(contexts.touch(touched, 60_000));
+            fx.advance(400);
+            assertNull(contexts.get(shortLived));
+            assertEquals(touched, UEContextCodec.decode(contexts.get(touched)).getUeId());
+            contexts.remove(touched);
+        }
+    }
+
+    /** format=hash：服务端差量写，变成 null 的字段要删掉，存活期照样续上 */
+    @Test
+    void redisHashFormatDropsClearedFieldsAndKeepsTtl() throws Exception {
+        StateStorageProperties storage = new StateStorageProperties();
+        storage.setFormat("hash");
+        try (Fixture fx = redisFixture(storage)) {
+            StateBackend.Contexts contexts = fx.backend().contexts();
+            String ueId = unique("UE-hash");
+            UEContext c = context(ueId);
+            c.setKNasEnc("00112233445566778899aabbccddeeff");
+            contexts.put(ueId, UEContextCodec.encode(c), 60_000);
+            assertEquals(c, UEContextCodec.decode(contexts.get(ueId)));
+
+            c.setKNasEnc(null);
+            c.setAttachState("RRC_SMC");
+            contexts.put(ueId, UEContextCodec.encode(c), 300);
+            assertEquals(c, UEContextCodec.decode(contexts.get(ueId)));
+
+            // 内容没变也要续上这次给的存活期
+            contexts.put(ueId, UEContextCodec.encode(c), 300);
+            fx.advance(500);
+            assertNull(contexts.get(ueId));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "mmap", "redis"})
+    void mappingsBatchWriteScanAndExpire(String mode) throws Exception {
+        try (Fixture fx = open(mode)) {
+            StateBackend.Mappings mappings = fx.backend().mappings();
+            String prefix = unique("conf:map") + ":";
+
+            Map<String, String> batch = new LinkedHashMap<>();
+            for (int i = 0; i < 20; i++) batch.put(prefix + i, "UE-" + i);
+            mappings.putAll(batch, 60_000);
+            mappings.putAll(Map.of(prefix + "short", "UE-short"), 200);
+
+            assertEquals("UE-7", mappings.get(prefix + 7));
+            assertNull(mappings.get(prefix + "missing"));
+
+            mappings.remove(prefix + 0);
+            fx.advance(400);
+            assertNull(mappings.get(prefix + "short"));
+
+            Map<String, String> seen = new TreeMap<>();
+            mappings.forEach(prefix, seen::put);
+            Map<String, String> expected = new TreeMap<>(batch);
+            expected.remove(prefix + 0);
+            assertEquals(expected, seen);
+
+            for (String k : batch.keySet()) mappings.remove(k);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "mmap", "redis"})
+    void sequencesStartAtOneAndAreIndependent(String mode) {
+        try (Fixture fx = open(mode)) {
+            StateBackend.Sequences seq = fx.backend().sequences();
+            String a = unique("conf-seq-a"), b = unique("conf-seq-b");
+            assertEquals(1, seq.incrementAndGet(a));
+            assertEquals(2, seq.incrementAndGet(a));
+            assertEquals(1, seq.incrementAndGet(b));
+            assertEquals(3, seq.incrementAndGet(a));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "mmap", "redis"})
+    void proceduresAddUpdateListRemove(String mode) {
+        try (Fixture fx = open(mode)) {
+            ProcedureStore store = fx.backend().procedures();
+            String ueId = unique("UE-proc");
+            store.add(proc(ueId, ueId + "-a"));
+            store.add(proc(ueId, ueId + "-b"));
+
+            assertTrue(store.update(ueId, ueId + "-a",
+                    new ProcedureStore.Update("Second", "2025-01-01 00:00:05", 1_735_689_605_000L, 2, 3, null, 0L, 0)));
+            assertTrue(store.update(ueId, ueId + "-a",
+                    new ProcedureStore.Update("Third", "2025-01-01 00:00:06", 1_735_689_606_000L, 4, 5, true, 99L, 7)));
+            assertFalse(store.update(ueId, ueId + "-none",
+                    new ProcedureStore.Update("X", "2025-01-01 00:00:06", 1_735_689_606_000L, 0, 0, null, 0L, 0)));
+
+            Procedure a = store.get(ueId, ueId + "-a");
+            assertEquals("Third", a.getLastMessageType());
+            assertEquals(3, a.getMessageNum());
+            assertEquals(4, a.getLastPhaseIndex());
+            assertTrue(a.isEndSeen());
+            assertEquals(99L, a.getEndSeenAtMs());
+            assertEquals(7, a.getKeyMask());
+            assertEquals(1_735_689_606_000L, a.getLastUpdateMs());
+            assertEquals(1, store.get(ueId, ueId + "-b").getMessageNum());
+
+            Set<String> ids = store.list(ueId).stream().map(Procedure::getProcedureId).collect(Collectors.toSet());
+            assertEquals(Set.of(ueId + "-a", ueId + "-b"), ids);
+
+            assertTrue(store.remove(ueId, ueId + "-a"));
+            assertFalse(store.remove(ueId, ueId + "-a"));     // 已经删过：只有第一个删的人归档
+            assertTrue(store.remove(ueId, ueId + "-b"));
+            assertTrue(store.list(ueId).isEmpty());
+            assertNull(store.get(ueId, ueId + "-a"));
+        }
+    }
+
+    // ===================== mmap 独有的 =====================
+
+    @Test
+    void mmapStateSurvivesRestart() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        UEContext c = context("UE-1");
+        try (MappedStateBackend first = new MappedStateBackend(smallMmap(), now::get)) {
+            first.contexts().put("UE-1", UEContextCodec.encode(c), 60_000);
+            first.mappings().putAll(Map.of("ue:map:ran:7", "UE-1"), 60_000);
+            first.sequences().incrementAndGet("id:node");
+            first.procedures().add(proc("UE-1", "P-1"));
+        }
+        try (MappedStateBackend second = new MappedStateBackend(smallMmap(), now::get)) {
+            assertEquals(c, UEContextCodec.decode(second.contexts().get("UE-1")));
+            assertEquals("UE-1", second.mappings().get("ue:map:ran:7"));
+            assertEquals(2, second.sequences().incrementAndGet("id:node"));
+            assertEquals("P-1", second.procedures().get("UE-1", "P-1").getProcedureId());
+        }
+        // 布局对不上的不许打开
+        StateBackendProperties.Mmap other = smallMmap();
+        other.setContextSlotBytes(other.getContextSlotBytes() * 2);
+        assertThrows(IllegalStateException.class, () -> new MappedStateBackend(other, now::get));
+    }
+
+    @Test
+    void slotTableMatchesHashMapUnderChurn() {
+        // 容量很小、key 很多：探测链很长，删除时的 backward-shift 都会走到
+        try (MappedSlotTable t = new MappedSlotTable(dir.resolve("churn.slt"), 48, 64)) {
+            Map<String, byte[]> ref = new HashMap<>();
+            Random rnd = new Random(42);
+            for (int i = 0; i < 20_000; i++) {
+                String k = "k" + rnd.nextInt(80);
+                if (rnd.nextInt(3) == 0) {
+                    assertEquals(ref.remove(k) != null, t.remove(k));
+                } else if (ref.size() < 50 || ref.containsKey(k)) {
+                    byte[] v = new byte[rnd.nextInt(16)];
+                    rnd.nextBytes(v);
+                    t.put(k, v, 0, 0);
+                    ref.put(k, v);
+                }
+                if (i % 97 == 0) {
+                    for (Map.Entry<String, byte[]> e : ref.entrySet()) assertArrayEquals(e.getValue(), t.get(e.getKey(), 0));
+                    assertEquals(ref.size(), t.size());
+                }
+            }
+        }
+    }
+
+    @Test
+    void slotTableRejectsOversizedValuesAndSweepsWhenFull() {
+        try (MappedSlotTable t = new MappedSlotTable(dir.resolve("full.slt"), 48, 8)) {
+            assertThrows(IllegalArgumentException.class, () -> t.put("k", new byte[48], 0, 0));
+
+            // 8 个槽位最多放 7 个（90%）；满了先清过期的，还不够就拒绝
+            for (int i = 0; i < 7; i++) t.put("k" + i, new byte[4], i < 3 ? 100 : 0, 0);
+            assertThrows(IllegalStateException.class, () -> t.put("x", new byte[4], 0, 0));
+            t.put("x", new byte[4], 0, 200);
+            assertEquals(5, t.size());
+            assertNull(t.get("k0", 200));
+            assertEquals(4, t.get("k6", 200).length);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.codec.BinaryFields;
+import com.example.procedure.codec.ProcedureCodec;
+import com.example.procedure.codec.UEContextCodec;
+import com.example.procedure.keyderivation.JavaKeyDerivationProvider;
+import com.example.procedure.keyderivation.KeyDerivationProvider;
+import com.example.procedure.model.Procedure;
+import com.example.procedure.model.UEContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StateCodecTest {
+
+    private static UEContext fullContext() {
+        UEContext c = new UEContext();
+        c.setUeId("001010000000001");
+        c.setSupi("001010000000001");
+        c.setRanUeNgapId("1");
+        c.setCrnti("0x4601");
+        c.setNasCipherAlg("2");
+        c.setNasIntAlg("2");
+        c.setRrcCipherAlg("0");
+        c.setRrcIntAlg("2");
+        c.setAttachState("RRC_SMC");
+        c.setKSeaf("e6b6e2d1aa8cc2c3b2ab64e0ee7e3a2bd5a5bd5ad2aa4cebd9e6bcd5c9e2a0f2");
+        c.setKAmf("7d6f1d5f6b3f2ad0f9dc9c8d2a6f0a2c8e4b5a4f6e6a0c1b2d3e4f5a6b7c8d9e");
+        c.setSecurityKeyHex("AB:CD:EF");   // 不是纯 hex，要原样存回
+        c.setKNasEnc("d3c5d592327fb11c4035c6680af8c6d1");
+        c.setKNasInt("2bd6459f82c5b300952c49104881ff48");
+        c.setKRrcEnc("00112233445566778899aabbccddeeff");
+        c.setKRrcInt("ffeeddccbbaa99887766554433221100");
+        return c;
+    }
+
+    @Test
+    void ueContextRoundTripAndIsSmallerThanHash() {
+        UEContext c = fullContext();
+        byte[] bin = UEContextCodec.encode(c);
+        assertEquals(c, UEContextCodec.decode(bin));
+
+        // 对比老 hash 存法的字段名 + 值的字节数
+        @SuppressWarnings("unchecked")
+        Map<String, Object> hash = new ObjectMapper().convertValue(c, Map.class);
+        int hashBytes = hash.entrySet().stream()
+                .filter(e -> e.getValue() != null)
+                .mapToInt(e -> e.getKey().length() + String.valueOf(e.getValue()).length())
+                .sum();
+        assertTrue(bin.length * 10 <= hashBytes * 6, "binary=" + bin.length + " hash=" + hashBytes);
+
+        assertEquals(new UEContext(), UEContextCodec.decode(UEContextCodec.encode(new UEContext())));
+    }
+
+    /** KDF 出来的密钥是大写 hex：也要按原始字节存，读回来还是大写 */
+    @Test
+    void kdfUppercaseKeysAreStoredAsRawBytes() {
+        KeyDerivationProvider kdf = new JavaKeyDerivationProvider();
+        String kseaf = kdf.kseafFromKausf("5G:mnc001.mcc001.3gppnetwork.org",
+                "2a4b148e8b6831ffef59c107a8a325ad2dbb3035660d487f42a7d83a3a4fb606");
+        String kamf = kdf.kamfFromKseaf("001010000000001", new byte[]{0, 0}, kseaf);
+        String kgnb = kdf.kgnbFromKamf(0, KeyDerivationProvider.ACCESS_3GPP, kamf);
+
+        UEContext c = new UEContext();
+        c.setUeId("001010000000001");
+        c.setKSeaf(kseaf);
+        c.setKAmf(kamf);
+        c.setKNasEnc(kdf.algorithmKeyDerivation(KeyDerivationProvider.N_NAS_ENC_ALG, 2, kamf));
+        c.setKNasInt(kdf.algorithmKeyDerivation(KeyDerivationProvider.N_NAS_INT_ALG, 2, kamf));
+        c.setKRrcEnc(kdf.algorithmKeyDerivation(KeyDerivationProvider.N_RRC_ENC_ALG, 2, kgnb));
+        c.setKRrcInt(kdf.algorithmKeyDerivation(KeyDerivationProvider.N_RRC_INT_ALG, 2, kgnb));
+        assertEquals(kamf.toUpperCase(), kamf);
+
+        byte[] bin = UEContextCodec.encode(c);
+        assertEquals(c, UEContextCodec.decode(bin));
+
+        // 6 个 32 字节的密钥按字节存 = 192，加上 ueId 和每个字段的 tag / 长度
+        int keyBytes = 6 * 32;
+        assertTrue(bin.length <= keyBytes + c.getUeId().length() + 20, "binary=" + bin.length);
+
+        // 混着大小写的存不了字节，原样存回
+        c.setKAmf("AbCd");
+        assertEquals(c, UEContextCodec.decode(UEContextCodec.encode(c)));
+    }
+
+    @Test
+    void procedureRoundTripKeepsDefaultsAndTimes() {
+        Procedure p = new Procedure();
+        p.setProcedureId("UE1-IA-3-a1b2c3");
+        p.setUeId("UE1");
+        p.setProcedureType("Initial Access");
+        p.setProcedureTypeCode("IA");
+        p.setLastMessageType("RRCSetupComplete");
+        p.setActivateTime("2025-01-02 03:04:05");
+        p.setLastUpdateTime("2025-13-40 99:99:99");   // 格式不合法也要原样保留
+        p.setMessageNum(7);
+        p.setLastPhaseIndex(2);
+        p.setEndSeen(true);
+        p.setEndSeenAtMs(1_736_000_000_123L);
+        p.setKeyMask(0b1011);
+        p.setActivateMs(1_735_758_245_000L);
+        p.setLastUpdateMs(1_735_758_250_500L);
+        assertEquals(p, ProcedureCodec.decode(ProcedureCodec.encode(p)));
+
+        Procedure fresh = new Procedure();
+        Procedure back = ProcedureCodec.decode(ProcedureCodec.encode(fresh));
+        assertEquals(-1, back.getLastOrderIndex());
+        assertEquals(fresh, back);
+        assertNull(back.getEndTime());
+    }
+
+    @Test
+    void unknownFieldsAreSkipped() {
+        // 模拟新版本多写了几个字段（各种线型），老代码应当跳过
+        byte[] bin = new BinaryFields.Writer(2)
+                .str(1, "UE-9")
+                .num(40, -123456789L)
+                .hex(41, "deadbeef")
+                .time(42, "2025-01-01 00:00:00")
+                .str(43, "new")
+                .str(11, "INIT")
+                .toByteArray();
+        UEContext c = UEContextCodec.decode(bin);
+        assertEquals("UE-9", c.getUeId());
+        assertEquals("INIT", c.getAttachState());
+    }
+}
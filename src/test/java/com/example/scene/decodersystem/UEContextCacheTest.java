@@ -0,0 +1,106 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.codec.UEContextCodec;
+import com.example.procedure.model.UEContext;
+import com.example.procedure.uecontext.UEContextCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UEContextCacheTest {
+
+    private static final long TTL = 60_000;
+
+    private final AtomicLong now = new AtomicLong(0);
+    private final UEContextCache cache = new UEContextCache(100, TTL, now::get);
+
+    /** 假后端：ueId -> 编码 */
+    private final Map<String, byte[]> backend = new HashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final Function<String, byte[]> loader = id -> {
+        loads.incrementAndGet();
+        return backend.get(id);
+    };
+
+    private static UEContext ctx(String state, String kNasEnc) {
+        UEContext c = new UEContext();
+        c.setUeId("UE-1");
+        c.setAttachState(state);
+        c.setKNasEnc(kNasEnc);
+        return c;
+    }
+
+    private static byte[] enc(UEContext c) {
+        return UEContextCodec.encode(c);
+    }
+
+    @Test
+    void missingContextIsCachedToo() {
+        assertNull(cache.get("UE-1", loader, UEContextCodec::decode));
+        assertNull(cache.get("UE-1", loader, UEContextCodec::decode));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void unchangedEncodingSkipsTheWrite() {
+        UEContextCache.Delta first = cache.saveEncoded(ctx("INIT", null), enc(ctx("INIT", null)));
+        assertTrue(first.full());
+        assertTrue(first.refreshTtl());
+
+        // 同样的内容再存一次：什么都不用写
+        assertTrue(cache.saveEncoded(ctx("INIT", null), enc(ctx("INIT", null))).isEmpty());
+
+        // 内容变了（包括字段变成 null）：整个重写
+        assertTrue(cache.saveEncoded(ctx("NAS_SMC", "aa"), enc(ctx("NAS_SMC", "aa"))).full());
+        assertTrue(cache.saveEncoded(ctx("NAS_SMC", null), enc(ctx("NAS_SMC", null))).full());
+        assertTrue(cache.saveEncoded(ctx("NAS_SMC", null), enc(ctx("NAS_SMC", null))).isEmpty());
+
+        // 过了 1/4 TTL 才续期
+        now.addAndGet(TTL / 4 + 1);
+        UEContextCache.Delta d = cache.saveEncoded(ctx("NAS_SMC", null), enc(ctx("NAS_SMC", null)));
+        assertFalse(d.full());
+        assertTrue(d.refreshTtl());
+    }
+
+    @Test
+    void hitsReturnCopiesAndLoadedEntriesWriteFullOnce() {
+        backend.put("UE-1", enc(ctx("AUTH_COMPLETED", "bb")));
+        UEContext a = cache.get("UE-1", loader, UEContextCodec::decode);
+        UEContext b = cache.get("UE-1", loader, UEContextCodec::decode);
+        assertEquals(1, loads.get());
+        assertEquals("bb", b.getKNasEnc());
+        assertNotSame(a, b);
+        a.setAttachState("CHANGED_BUT_NOT_SAVED");
+        assertEquals("AUTH_COMPLETED", cache.get("UE-1", loader, UEContextCodec::decode).getAttachState());
+
+        // 读进来的不知道后端剩余 TTL，内容没变第一次 save 也整个写
+        assertTrue(cache.saveEncoded(ctx("AUTH_COMPLETED", "bb"), enc(ctx("AUTH_COMPLETED", "bb"))).full());
+        assertTrue(cache.saveEncoded(ctx("AUTH_COMPLETED", "bb"), enc(ctx("AUTH_COMPLETED", "bb"))).isEmpty());
+    }
+
+    @Test
+    void expiryAndInvalidationForceReload() {
+        cache.saveEncoded(ctx("INIT", null), enc(ctx("INIT", null)));
+        backend.put("UE-1", enc(ctx("FROM_OTHER_NODE", null)));
+        assertEquals("INIT", cache.get("UE-1", loader, UEContextCodec::decode).getAttachState());
+
+        cache.invalidate("UE-1");
+        assertEquals("FROM_OTHER_NODE", cache.get("UE-1", loader, UEContextCodec::decode).getAttachState());
+
+        now.addAndGet(TTL);
+        backend.remove("UE-1");
+        assertNull(cache.get("UE-1", loader, UEContextCodec::decode));
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.scene.decodersystem;
+
+import com.example.procedure.model.SignalingMessage;
+import com.example.procedure.parser.MacInfo;
+import com.example.procedure.parser.NgapInfo;
+import com.example.procedure.codec.StateStorageProperties;
+import com.example.procedure.rule.UeIdBinder;
+import com.example.procedure.state.RedisStateBackend;
+import com.example.procedure.state.StateBackend;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class UeIdBinderTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final List<SignalingMessage> out = new ArrayList<>();
+
+    /** 不带 Redis：热路径上任何 Redis 调用都会 NPE */
+    private UeIdBinder localBinder() {
+        return new UeIdBinder(null, 120_000, 3_600_000, false, 1_000, 1000, -1, 1000, now::get);
+    }
+
+    private static SignalingMessage msg(String type, String ueId, String ngapId, String rntiType) {
+        SignalingMessage m = new SignalingMessage();
+        m.setMsgType(type);
+        m.setUeId(ueId);
+        if (ngapId != null) {
+            NgapInfo n = new NgapInfo();
+            n.setRanUeNgapId(ngapId);
+            m.setNgapInfoList(List.of(n));
+        }
+        if (rntiType != null) {
+            MacInfo mac = new MacInfo();
+            mac.setRntiType(rntiType);
+            m.setMacInfo(mac);
+        }
+        return m;
+    }
+
+    private List<String> types() {
+        return out.stream().map(m -> m.getMsgType() + "@" + m.getUeId()).toList();
+    }
+
+    @Test
+    void pendingMessagesAreReleasedInOrderOnceBound() {
+        UeIdBinder b = localBinder();
+        b.handle(msg("m1", null, "7", null), out::add);
+        now.addAndGet(10);
+        b.handle(msg("m2", null, "7", null), out::add);
+        b.handle(msg("r1", null, null, "C-RNTI"), out::add);
+        assertEquals(3, b.stats().pending());
+        assertEquals(List.of(), types());
+
+        // 带 ueId 和 ngapId 的消息到了：绑定，缓冲的按顺序补 ueId 下发；rntiType 就近绑给同一个 UE
+        b.handle(msg("m3", "IMSI-1", "7", null), out::add);
+        assertEquals(List.of("m1@IMSI-1", "m2@IMSI-1", "r1@IMSI-1", "m3@IMSI-1"), types());
+        assertEquals(0, b.stats().pending());
+
+        // 之后只带索引的直接查本地
+        b.handle(msg("m4", null, "7", null), out::add);
+        b.handle(msg("r2", null, null, "C-RNTI"), out::add);
+        assertEquals("m4@IMSI-1", types().get(4));
+        assertEquals("r2@IMSI-1", types().get(5));
+        assertEquals(1, b.stats().ngapBindings());
+        assertEquals(1, b.stats().rntiBindings());
+    }
+
+    @Test
+    void ueIdFirstThenIndexBindsToWaitingUe() {
+        UeIdBinder b = localBinder();
+        b.handle(msg("nas", "IMSI-2", null, null), out::add);
+        b.handle(msg("ngap", null, "9", null), out::add);       // 缓冲的同时就近绑给 IMSI-2，马上放出
+        b.handle(msg("ngap2", null, "9", null), out::add);
+        assertEquals(List.of("nas@IMSI-2", "ngap@IMSI-2", "ngap2@IMSI-2"), types());
+        assertEquals(0, b.stats().pending());
+    }
+
+    @Test
+    void pendingAndBindingsExpireFromTheQueueHead() {
+        UeIdBinder b = localBinder();
+        for (int i = 0; i < 1000; i++) {
+            b.handle(msg("p" + i, null, "N" + i, null), out::add);
+            now.addAndGet(100);
+        }
+        assertEquals(1000, b.stats().pending());
+
+        now.addAndGet(120_000 - 50_000);      // 前一半过期
+        b.handle(msg("x", null, null, null), out::add);
+        assertEquals(500, b.stats().pending());
+        assertEquals(500, b.stats().expiredPending());
+
+        // 绑定过期后同一个 ngapId 又是未绑定：只带 ngapId 的消息重新缓冲
+        b.handle(msg("a", "IMSI-3", "N999", null), out::add);
+        assertEquals("p999@IMSI-3", types().get(0));
+        now.addAndGet(3_600_001);
+        b.handle(msg("later", null, "N999", null), out::add);
+        assertEquals(2, out.size());
+        assertEquals(1, b.stats().pending());
+    }
+
+    @Test
+    void bindingsReplicateAndRecoverThroughRedis() {
+        LettuceConnectionFactory f = new LettuceConnectionFactory(System.getProperty("redis.host", "127.0.0.1"),
+                Integer.getInteger("redis.port", 6379));
+        f.afterPropertiesSet();
+        try {
+            StringRedisTemplate redis = new StringRedisTemplate(f);
+            boolean up;
+            try {
+                up = "PONG".equals(redis.execute(c -> c.ping(), true));
+            } catch (Exception e) {
+                up = false;
+            }
+            assumeTrue(up, "no local Redis");
+
+            StateBackend.Mappings mappings =
+                    new RedisStateBackend(redis, new ObjectMapper(), new StateStorageProperties(), null).mappings();
+            String ngapId = "T" + System.nanoTime();
+            UeIdBinder first = new UeIdBinder(mappings, 120_000, 60_000, false, 1_000, 1000, 0, 1000, now::get);
+            first.handle(msg("a", "IMSI-R", ngapId, null), out::add);
+            assertNull(redis.opsForValue().get("ue:map:ran:" + ngapId));        // 还没刷
+            assertEquals(2, first.flush());
+            assertEquals("IMSI-R", redis.opsForValue().get("ue:map:ran:" + ngapId));
+
+            // 重启：恢复后不问 Redis 就能查到
+            UeIdBinder restarted = new UeIdBinder(mappings, 120_000, 60_000, false, 1_000, 1000, -1, 1000, now::get);
+            restarted.recover();
+            restarted.handle(msg("b", null, ngapId, null), out::add);
+            assertEquals("b@IMSI-R", types().get(1));
+            assertEquals(0, restarted.stats().backendReads());
+
+            // readThrough：别的实例写的能查到；没有的 ID 只问一次
+            UeIdBinder shared = new UeIdBinder(mappings, 120_000, 60_000, true, 1_000, 1000, -1, 1000, now::get);
+            shared.handle(msg("c", null, ngapId, null), out::add);
+            assertEquals("c@IMSI-R", types().get(2));
+            long reads = shared.stats().backendReads();
+            for (int i = 0; i < 10; i++) shared.handle(msg("d", null, "NONE-" + ngapId, null), out::add);
+            assertEquals(reads + 1, shared.stats().backendReads());
+
+            redis.delete(List.of("ue:map:ran:" + ngapId, "ue:idx:ue:IMSI-R:ran"));
+        } finally {
+            f.destroy();
+        }
+    }
+}